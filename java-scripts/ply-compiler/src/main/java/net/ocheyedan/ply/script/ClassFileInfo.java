@@ -0,0 +1,191 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.ConstantPool;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * The information from a compiled class file which is needed by the {@link DependencyIndex}; the top-level classes it
+ * references, its super-types and a description of its non-private api.  Class names are those of the top-level
+ * class (i.e., {@literal a.b.C$D} is represented as {@literal a.b.C}) as dependencies are tracked per source file.
+ * <p/>
+ * Note, the compiler inlines constants (static final primitives and strings with a constant initializer) and so
+ * their use is not a reference within the class file.  The non-private constants are therefore described
+ * separately (see {@link #getConstants()}).
+ */
+final class ClassFileInfo {
+
+    private static final int ACC_PRIVATE = 0x0002;
+
+    private static final int ACC_STATIC = 0x0008;
+
+    private static final int ACC_FINAL = 0x0010;
+
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    /**
+     * @param in the class file (which is not closed by this method)
+     * @return the parsed information
+     * @throws IOException if {@code in} could not be read or is not a class file
+     */
+    static ClassFileInfo parse(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        ConstantPool pool = ConstantPool.read(data);
+        ClassFileInfo info = new ClassFileInfo();
+        for (String referenced : pool.getReferencedClasses()) {
+            info.references.add(toTopLevel(referenced));
+        }
+
+        int access = data.readUnsignedShort() & ~ACC_SUPER;
+        String name = pool.getClassName(data.readUnsignedShort());
+        info.name = name.replace('/', '.');
+        String superName = pool.getClassName(data.readUnsignedShort());
+        if (superName != null) {
+            info.supertypes.add(toTopLevel(superName));
+        }
+        int interfacesCount = data.readUnsignedShort();
+        List<String> interfaces = new ArrayList<String>(interfacesCount);
+        for (int i = 0; i < interfacesCount; i++) {
+            String interfaceName = pool.getClassName(data.readUnsignedShort());
+            interfaces.add(interfaceName);
+            info.supertypes.add(toTopLevel(interfaceName));
+        }
+        boolean api = !isAnonymousOrLocal(name);
+        Map<String, Object> attributes = new HashMap<String, Object>(4);
+        for (int member = 0; member < 2; member++) { // fields then methods
+            int count = data.readUnsignedShort();
+            for (int i = 0; i < count; i++) {
+                int memberAccess = data.readUnsignedShort();
+                String memberName = (String) pool.get(data.readUnsignedShort());
+                String descriptor = (String) pool.get(data.readUnsignedShort());
+                readAttributes(data, pool, attributes);
+                if (!api || ((memberAccess & (ACC_PRIVATE | ACC_SYNTHETIC)) != 0)) {
+                    continue;
+                }
+                StringBuilder description = new StringBuilder(info.name).append(' ').append(memberAccess).append(' ');
+                description.append(memberName).append(' ').append(descriptor);
+                if (attributes.containsKey("Signature")) {
+                    description.append(' ').append(attributes.get("Signature"));
+                }
+                if (attributes.containsKey("Exceptions")) {
+                    description.append(" throws ").append(attributes.get("Exceptions"));
+                }
+                if (attributes.containsKey("ConstantValue")
+                        && ((memberAccess & (ACC_STATIC | ACC_FINAL)) == (ACC_STATIC | ACC_FINAL))) {
+                    description.append(" = ").append(attributes.get("ConstantValue"));
+                    info.constants.add(description.toString());
+                }
+                info.api.add(description.toString());
+            }
+        }
+        readAttributes(data, pool, attributes);
+        if (api) {
+            info.api.add(String.format("%s %d extends %s implements %s %s", info.name, access, superName, interfaces,
+                    (attributes.containsKey("Signature") ? attributes.get("Signature") : "")));
+        }
+        String topLevel = toTopLevel(name);
+        info.references.remove(topLevel);
+        info.supertypes.remove(topLevel);
+        return info;
+    }
+
+    /**
+     * Reads the {@literal Signature}, {@literal ConstantValue} and {@literal Exceptions} attributes (skipping all
+     * others) into {@code into}.
+     */
+    private static void readAttributes(DataInputStream data, ConstantPool pool, Map<String, Object> into)
+            throws IOException {
+        into.clear();
+        int count = data.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            String name = (String) pool.get(data.readUnsignedShort());
+            int length = data.readInt();
+            if ("Signature".equals(name)) {
+                into.put(name, pool.get(data.readUnsignedShort()));
+            } else if ("ConstantValue".equals(name)) {
+                int index = data.readUnsignedShort();
+                String string = pool.getString(index);
+                into.put(name, (string != null ? "\"" + string + "\"" : pool.get(index)));
+            } else if ("Exceptions".equals(name)) {
+                int exceptions = data.readUnsignedShort();
+                List<String> thrown = new ArrayList<String>(exceptions);
+                for (int exception = 0; exception < exceptions; exception++) {
+                    thrown.add(pool.getClassName(data.readUnsignedShort()));
+                }
+                into.put(name, thrown);
+            } else if (data.skipBytes(length) != length) {
+                throw new IOException("Truncated class file.");
+            }
+        }
+    }
+
+    private static boolean isAnonymousOrLocal(String internalName) {
+        int index = internalName.indexOf('$');
+        while (index != -1) {
+            if ((index + 1 < internalName.length()) && Character.isDigit(internalName.charAt(index + 1))) {
+                return true;
+            }
+            index = internalName.indexOf('$', index + 1);
+        }
+        return false;
+    }
+
+    private static String toTopLevel(String internalName) {
+        String name = internalName.replace('/', '.');
+        int index = name.indexOf('$');
+        return (index == -1 ? name : name.substring(0, index));
+    }
+
+    private String name;
+
+    private final Set<String> references = new HashSet<String>();
+
+    private final Set<String> supertypes = new HashSet<String>();
+
+    private final List<String> api = new ArrayList<String>();
+
+    private final List<String> constants = new ArrayList<String>();
+
+    private ClassFileInfo() { }
+
+    /**
+     * @return the binary name of the class
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return the top-level classes referenced by the class (excluding its own top-level class)
+     */
+    Set<String> getReferences() {
+        return references;
+    }
+
+    /**
+     * @return the top-level classes of the super-class and interfaces of the class
+     */
+    Set<String> getSupertypes() {
+        return supertypes;
+    }
+
+    /**
+     * @return descriptions of the non-private api of the class (empty for anonymous and local classes)
+     */
+    List<String> getApi() {
+        return api;
+    }
+
+    /**
+     * @return descriptions of the non-private constants of the class
+     */
+    List<String> getConstants() {
+        return constants;
+    }
+
+}
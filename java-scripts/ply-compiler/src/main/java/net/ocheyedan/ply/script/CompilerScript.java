@@ -12,10 +12,7 @@ import javax.tools.ToolProvider;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 /**
  * User: blangel
@@ -25,7 +22,13 @@ import java.util.Set;
  * Script used to compile source code for the ply build system.
  *
  * This script is dependent upon the {@literal ply-file-changed} script as it uses this information to determine which
- * files to recompile. The property file used to configure this script is {@literal compiler.properties} and so the
+ * files to recompile.  In addition to the changed files, any source which depends upon a class whose api (non-private
+ * signatures, super-types or constant values) changed is recompiled, transitively, as is any source which depends
+ * upon a class whose source has been removed.  As the compiler inlines constants, a change to the value of a non-private
+ * constant causes every source to be recompiled.  The class files of removed sources are deleted.  This dependency
+ * information is kept in {@literal compiler-index[.scope].properties} within the build directory (see
+ * {@link DependencyIndex}); if it is missing or was created with different compiler arguments every source is
+ * recompiled.  The property file used to configure this script is {@literal compiler.properties} and so the
  * context is {@literal compiler}.
  * The following properties exist:
  * build.path=string [[default=${project.build.dir}/classes]] (where to place the compiled files)
@@ -118,6 +121,10 @@ public class CompilerScript {
 
     private final File errorsPropertiesFile;
 
+    private final File buildClassesDir;
+
+    private final File indexFile;
+
     private CompilerScript() {
         if (!isSupportedJavaVersion(getJavaVersion())) {
             System.exit(1);
@@ -133,8 +140,8 @@ public class CompilerScript {
         this.sourceFilePaths = new HashSet<String>();
         // ensure the build directories are created
         String buildClassesPath = Props.get("build.path", Context.named("compiler")).value();
-        File buildClassesDir = new File(buildClassesPath);
-        buildClassesDir.mkdirs();
+        this.buildClassesDir = new File(buildClassesPath);
+        this.buildClassesDir.mkdirs();
         // load the changed[.scope].properties file from the build  directory.
         File changedPropertiesFile = FileUtil.fromParts(buildDir, "changed" + scope.getFileSuffix() + ".properties");
         PropFile changedProperties = PropFiles.load(changedPropertiesFile.getPath(), false, false);
@@ -148,10 +155,15 @@ public class CompilerScript {
             }
         }
         this.errorsPropertiesFile = FileUtil.fromParts(buildDir, "compiler-errors" + scope.getFileSuffix() + ".properties");
+        this.indexFile = FileUtil.fromParts(buildDir, "compiler-index" + scope.getFileSuffix() + ".properties");
     }
 
     private void invoke() {
-        if (sourceFilePaths.isEmpty()) {
+        List<String> compilerArgs = getCompilerArgs();
+        DependencyIndex index = DependencyIndex.load(indexFile, compilerArgs);
+        Set<String> toCompile = getInvalidated(index);
+        if (toCompile.isEmpty()) {
+            index.store(indexFile);
             if (handleExistingErrors()) {
                 System.exit(1);
             } else {
@@ -169,33 +181,126 @@ public class CompilerScript {
         } catch (IOException ioe) {
             throw new AssertionError(ioe);
         }
-        FormattedDiagnosticListener diagnosticListener = new FormattedDiagnosticListener(srcPath);
-        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
-        StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnosticListener, null, null);
-        Iterable<? extends JavaFileObject> sourceFiles = fileManager.getJavaFileObjects(sourceFilePaths.toArray(new String[sourceFilePaths.size()]));
-        StringWriter extraPrintStatements = new StringWriter();
-        JavaCompiler.CompilationTask compilationTask = javac.getTask(extraPrintStatements, fileManager, diagnosticListener,
-                                                        getCompilerArgs(), null, sourceFiles);
-        Output.print("Compiling ^b^%d^r^ %ssource file%s for ^b^%s^r^", sourceFilePaths.size(),
+        Output.print("Compiling ^b^%d^r^ %ssource file%s for ^b^%s^r^", toCompile.size(),
                                                                         Scope.named(Props.get("scope", Context.named("ply")).value()).getPrettyPrint(),
-                                                                       (sourceFilePaths.size() == 1 ? "" : "s"),
+                                                                       (toCompile.size() == 1 ? "" : "s"),
                                                                        Props.get("name", Context.named("project")).value());
-        boolean result = compilationTask.call();
-        for (String notes : diagnosticListener.getNotes()) {
-            Output.print(notes);
+        while (!toCompile.isEmpty()) {
+            for (String source : toCompile) {
+                index.deleteOutputs(source, buildClassesDir);
+            }
+            FormattedDiagnosticListener diagnosticListener = new FormattedDiagnosticListener(srcPath);
+            JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+            StandardJavaFileManager fileManager = javac.getStandardFileManager(diagnosticListener, null, null);
+            DependencyCollector collector = new DependencyCollector(fileManager);
+            Iterable<? extends JavaFileObject> sourceFiles = collector.getJavaFileObjects(toCompile);
+            StringWriter extraPrintStatements = new StringWriter();
+            JavaCompiler.CompilationTask compilationTask = javac.getTask(extraPrintStatements, collector, diagnosticListener,
+                                                            compilerArgs, null, sourceFiles);
+            boolean result = compilationTask.call();
+            for (String notes : diagnosticListener.getNotes()) {
+                Output.print(notes);
+            }
+            for (String warning : diagnosticListener.getWarnings()) {
+                Output.print(warning);
+            }
+            for (String error : diagnosticListener.getErrors()) {
+                Output.print(error);
+            }
+            if (extraPrintStatements.getBuffer().length() > 0) {
+                Output.print(extraPrintStatements.toString());
+            }
+            handleFilesWithError(diagnosticListener.getErrors(), this.errorsPropertiesFile);
+            if (!result) {
+                // forget the failed sources so that they are recompiled on the next invocation
+                for (String source : toCompile) {
+                    index.remove(source);
+                }
+                index.store(indexFile);
+                System.exit(1);
+            }
+            Set<String> apiChanged = new HashSet<String>();
+            boolean constantsChanged = false;
+            for (Map.Entry<String, DependencyIndex.Entry> compiled : collector.getEntries().entrySet()) {
+                DependencyIndex.Entry previous = index.get(compiled.getKey());
+                if ((previous != null) && !previous.constants.equals(compiled.getValue().constants)) {
+                    constantsChanged = true;
+                }
+                if ((previous == null) || !previous.api.equals(compiled.getValue().api)) {
+                    if (previous != null) {
+                        apiChanged.addAll(previous.classes);
+                    }
+                    apiChanged.addAll(compiled.getValue().classes);
+                }
+                index.put(compiled.getKey(), compiled.getValue());
+            }
+            // users of inlined constants cannot be determined from the class files, so recompile everything
+            Set<String> dependents = (constantsChanged ? new HashSet<String>(index.getSources())
+                                                       : index.getDependents(apiChanged));
+            dependents.removeAll(toCompile);
+            toCompile = dependents;
+            if (!toCompile.isEmpty()) {
+                Output.print("Recompiling ^b^%d^r^ dependent source file%s", toCompile.size(),
+                                                                            (toCompile.size() == 1 ? "" : "s"));
+            }
         }
-        for (String warning : diagnosticListener.getWarnings()) {
-            Output.print(warning);
+        index.store(indexFile);
+    }
+
+    /**
+     * Determines which sources must be compiled; those which have changed (according to {@literal changed.properties}),
+     * those which are not within {@code index} and those which depend upon a class whose source has been removed.
+     * The outputs of removed sources are deleted and the sources are removed from {@code index}.
+     * @param index of the previous compilation
+     * @return the canonical paths of the sources to compile
+     */
+    private Set<String> getInvalidated(DependencyIndex index) {
+        Set<String> sources = new HashSet<String>();
+        File sourceDir = new File(srcDir);
+        if (sourceDir.isDirectory()) {
+            collectSources(sourceDir, FileUtil.getCanonicalPath(sourceDir), sources);
+        }
+        Set<String> invalidated = new HashSet<String>();
+        for (String changed : sourceFilePaths) {
+            if (sources.contains(changed)) {
+                invalidated.add(changed);
+            }
         }
-        for (String error : diagnosticListener.getErrors()) {
-            Output.print(error);
+        for (String source : sources) {
+            if (index.get(source) == null) {
+                invalidated.add(source);
+            }
         }
-        if (extraPrintStatements.getBuffer().length() > 0) {
-            Output.print(extraPrintStatements.toString());
+        Set<String> removedClasses = new HashSet<String>();
+        for (String indexed : new ArrayList<String>(index.getSources())) {
+            if (!sources.contains(indexed)) {
+                index.deleteOutputs(indexed, buildClassesDir);
+                removedClasses.addAll(index.remove(indexed).classes);
+            }
         }
-        handleFilesWithError(diagnosticListener.getErrors(), this.errorsPropertiesFile);
-        if (!result) {
-            System.exit(1);
+        invalidated.addAll(index.getDependents(removedClasses));
+        return invalidated;
+    }
+
+    /**
+     * Collects the paths of all java source files within {@code from} (recursively) into {@code into}.  Paths are
+     * derived from {@code fromPath} in the same manner as the {@literal ply-file-changed} script.
+     */
+    private static void collectSources(File from, String fromPath, Set<String> into) {
+        String[] names = from.list();
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            String path = fromPath + File.separator + name;
+            if (name.endsWith(".java")) {
+                into.add(path);
+            } else {
+                File file = new File(from, name);
+                if (file.isDirectory()) {
+                    collectSources(file, path, into);
+                }
+            }
         }
     }
 
@@ -293,7 +398,7 @@ public class CompilerScript {
         args.add(createClasspath(Props.get("build.path", compileContext).value(), Deps.getResolvedProperties(false)));
 
         args.add("-sourcepath");
-        args.add(srcDir);
+        args.add(FileUtil.getCanonicalPath(new File(srcDir)));
 
         return args;
     }
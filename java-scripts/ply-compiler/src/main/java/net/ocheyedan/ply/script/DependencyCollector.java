@@ -0,0 +1,149 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.Output;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.ForwardingJavaFileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.*;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Intercepts the class files written by the compiler and collects, per source file, the information needed by the
+ * {@link DependencyIndex} (see {@link ClassFileInfo}).  The compiler provides the source file from which a class
+ * file was generated as the {@literal sibling} when asking for the output file.  Sources are keyed by the path with
+ * which they were given to the compiler (see {@link #getJavaFileObjects(Collection)}) so that the index is keyed
+ * exactly as the sources are listed, regardless of how the compiler resolves the path.
+ */
+final class DependencyCollector extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    /**
+     * The information collected for a single source file.
+     */
+    private static final class Collected {
+        private final Set<String> classes = new HashSet<String>();
+        private final Set<String> supertypes = new HashSet<String>();
+        private final Set<String> references = new HashSet<String>();
+        private final List<String> api = new ArrayList<String>();
+        private final List<String> constants = new ArrayList<String>();
+    }
+
+    private final Map<String, Collected> collected;
+
+    /**
+     * Mapping of the uri of each source given to the compiler to the path with which it was given.
+     */
+    private final Map<URI, String> sources;
+
+    DependencyCollector(StandardJavaFileManager fileManager) {
+        super(fileManager);
+        this.collected = new HashMap<String, Collected>();
+        this.sources = new HashMap<URI, String>();
+    }
+
+    /**
+     * @param paths of the sources to compile
+     * @return the file objects to give to the compiler for {@code paths}
+     */
+    List<JavaFileObject> getJavaFileObjects(Collection<String> paths) {
+        List<JavaFileObject> fileObjects = new ArrayList<JavaFileObject>(paths.size());
+        for (String path : paths) {
+            for (JavaFileObject fileObject : fileManager.getJavaFileObjects(path)) {
+                sources.put(fileObject.toUri(), path);
+                fileObjects.add(fileObject);
+            }
+        }
+        return fileObjects;
+    }
+
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                         FileObject sibling) throws IOException {
+        JavaFileObject output = super.getJavaFileForOutput(location, className, kind, sibling);
+        if ((kind != JavaFileObject.Kind.CLASS) || (sibling == null) || !"file".equals(sibling.toUri().getScheme())) {
+            return output;
+        }
+        String given = sources.get(sibling.toUri());
+        // sources found on the source-path (rather than given) are keyed by their absolute path
+        final String source = (given == null ? new File(sibling.toUri()).getAbsolutePath() : given);
+        return new ForwardingJavaFileObject<JavaFileObject>(output) {
+            @Override public OutputStream openOutputStream() throws IOException {
+                return new FilterOutputStream(super.openOutputStream()) {
+                    private final ByteArrayOutputStream copy = new ByteArrayOutputStream(4096);
+                    @Override public void write(int b) throws IOException {
+                        out.write(b);
+                        copy.write(b);
+                    }
+                    @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+                        out.write(bytes, offset, length);
+                        copy.write(bytes, offset, length);
+                    }
+                    @Override public void close() throws IOException {
+                        super.close();
+                        collect(source, copy.toByteArray());
+                    }
+                };
+            }
+        };
+    }
+
+    private void collect(String source, byte[] classFile) {
+        ClassFileInfo info;
+        try {
+            info = ClassFileInfo.parse(new ByteArrayInputStream(classFile));
+        } catch (IOException ioe) {
+            Output.print("^warn^ could not index class file generated from ^b^%s^r^.", source);
+            Output.print(ioe);
+            return;
+        }
+        Collected into = collected.get(source);
+        if (into == null) {
+            into = new Collected();
+            collected.put(source, into);
+        }
+        String name = info.getName();
+        int nested = name.indexOf('$');
+        into.classes.add(nested == -1 ? name : name.substring(0, nested));
+        into.supertypes.addAll(info.getSupertypes());
+        into.references.addAll(info.getReferences());
+        into.api.addAll(info.getApi());
+        into.constants.addAll(info.getConstants());
+    }
+
+    /**
+     * @return the collected entries keyed by source path
+     */
+    Map<String, DependencyIndex.Entry> getEntries() {
+        Map<String, DependencyIndex.Entry> entries = new HashMap<String, DependencyIndex.Entry>(collected.size());
+        for (Map.Entry<String, Collected> entry : collected.entrySet()) {
+            Collected value = entry.getValue();
+            value.supertypes.removeAll(value.classes);
+            value.references.removeAll(value.classes);
+            entries.put(entry.getKey(), new DependencyIndex.Entry(hash(value.api), hash(value.constants), value.classes,
+                                                                  value.supertypes, value.references));
+        }
+        return entries;
+    }
+
+    private static String hash(List<String> descriptions) {
+        Collections.sort(descriptions); // independent of declaration and compilation order
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String description : descriptions) {
+                digest.update(description.getBytes("UTF-8"));
+                digest.update((byte) '\n');
+            }
+            return BitUtil.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+}
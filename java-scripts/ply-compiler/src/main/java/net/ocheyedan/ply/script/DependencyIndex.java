@@ -0,0 +1,242 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFiles;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Records, for each compiled source file, the top-level classes it declares, the super-types and other top-level
+ * classes its classes reference and a hash of both the non-private api and the non-private constants of its classes
+ * (see {@link ClassFileInfo}).  The index is stored in the build directory in a file named
+ * {@literal compiler-index[.scope].properties} with format:
+ * source-path=api-hash;constants-hash;declared-class,...;super-type,...;referenced-class,...
+ * The compiler arguments used to produce the index are stored within the same file so that a change in arguments
+ * (including the classpath) invalidates the entire index.
+ */
+final class DependencyIndex {
+
+    /**
+     * The indexed information about a single source file.
+     */
+    static final class Entry {
+
+        final String api;
+
+        final String constants;
+
+        final Set<String> classes;
+
+        final Set<String> supertypes;
+
+        final Set<String> references;
+
+        Entry(String api, String constants, Set<String> classes, Set<String> supertypes, Set<String> references) {
+            this.api = api;
+            this.constants = constants;
+            this.classes = classes;
+            this.supertypes = supertypes;
+            this.references = references;
+        }
+    }
+
+    /**
+     * Name of the property holding the hash of the compiler arguments.  As source paths are canonical this will
+     * not conflict with any source.
+     */
+    private static final String ARGS_KEY = "compiler.args";
+
+    /**
+     * @param from the index file
+     * @param args the compiler arguments which will be used with the index
+     * @return the index stored at {@code from} or an empty index if none exists or if it was created with
+     *         arguments other than {@code args}
+     */
+    static DependencyIndex load(File from, List<String> args) {
+        String argsHash = hash(args);
+        DependencyIndex index = new DependencyIndex(argsHash);
+        PropFile stored = PropFiles.load(from.getPath(), false, false);
+        if (!argsHash.equals(stored.get(ARGS_KEY).value())) {
+            return index;
+        }
+        for (PropFile.Prop prop : stored.props()) {
+            if (ARGS_KEY.equals(prop.name)) {
+                continue;
+            }
+            String[] split = prop.value().split(";", -1);
+            if (split.length != 5) {
+                continue; // corrupted, source will be recompiled
+            }
+            index.put(prop.name, new Entry(split[0], split[1], split(split[2]), split(split[3]), split(split[4])));
+        }
+        return index;
+    }
+
+    private static Set<String> split(String value) {
+        Set<String> values = new HashSet<String>();
+        for (String token : value.split(",")) {
+            if (!token.isEmpty()) {
+                values.add(token);
+            }
+        }
+        return values;
+    }
+
+    private static String hash(List<String> args) {
+        StringBuilder buffer = new StringBuilder();
+        for (String arg : args) {
+            buffer.append(arg).append('\n');
+        }
+        return String.valueOf(buffer.toString().hashCode());
+    }
+
+    private final String argsHash;
+
+    private final Map<String, Entry> entries;
+
+    private DependencyIndex(String argsHash) {
+        this.argsHash = argsHash;
+        this.entries = new HashMap<String, Entry>();
+    }
+
+    /**
+     * @return the indexed source paths
+     */
+    Set<String> getSources() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @param source path
+     * @return the entry for {@code source} or null if it has not been indexed
+     */
+    Entry get(String source) {
+        return entries.get(source);
+    }
+
+    void put(String source, Entry entry) {
+        entries.put(source, entry);
+    }
+
+    Entry remove(String source) {
+        return entries.remove(source);
+    }
+
+    /**
+     * As sub-types inherit the api of their super-types, a source is a dependent of a class if it references the
+     * class or any of the indexed sub-types of the class.
+     * @param classes the top-level class names whose api has changed
+     * @return the indexed sources which depend upon any of {@code classes}
+     */
+    Set<String> getDependents(Set<String> classes) {
+        Set<String> dependents = new HashSet<String>();
+        if (classes.isEmpty()) {
+            return dependents;
+        }
+        Set<String> changed = new HashSet<String>(classes);
+        boolean expanded = true;
+        while (expanded) {
+            expanded = false;
+            for (Entry entry : entries.values()) {
+                if (!changed.containsAll(entry.classes) && intersects(entry.supertypes, changed)) {
+                    changed.addAll(entry.classes);
+                    expanded = true;
+                }
+            }
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (intersects(entry.getValue().references, changed)) {
+                dependents.add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    private static boolean intersects(Set<String> values, Set<String> of) {
+        for (String value : values) {
+            if (of.contains(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Deletes the class files (including those of nested and anonymous classes) of the classes declared by
+     * {@code source} from {@code buildDir}.
+     * @param source path
+     * @param buildDir into which classes are compiled
+     */
+    void deleteOutputs(String source, File buildDir) {
+        Entry entry = entries.get(source);
+        if (entry == null) {
+            return;
+        }
+        for (String declared : entry.classes) {
+            int index = declared.lastIndexOf('.');
+            String packageName = (index == -1 ? "" : declared.substring(0, index));
+            final String simpleName = declared.substring(index + 1);
+            File packageDir = FileUtil.fromParts(buildDir.getPath(), packageName.replace('.', File.separatorChar));
+            File[] outputs = packageDir.listFiles();
+            if (outputs == null) {
+                continue;
+            }
+            for (File output : outputs) {
+                String name = output.getName();
+                if (name.equals(simpleName + ".class")
+                        || (name.startsWith(simpleName + "$") && name.endsWith(".class"))) {
+                    FileUtil.delete(output);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves this index to {@code to}.  Super-types and references within the {@literal java} packages are not saved as
+     * no source can declare them; all others are, including those to classes not (yet) declared by an indexed source
+     * (i.e., a source which failed to compile) as they will cause recompilation once such a source is indexed.
+     * @param to the index file
+     */
+    void store(File to) {
+        PropFile index = new PropFile(Context.named("compiler-index"), PropFile.Loc.Local);
+        index.add(ARGS_KEY, argsHash);
+        List<String> sources = new ArrayList<String>(entries.keySet());
+        Collections.sort(sources);
+        for (String source : sources) {
+            Entry entry = entries.get(source);
+            StringBuilder value = new StringBuilder(entry.api).append(';').append(entry.constants).append(';');
+            append(value, new TreeSet<String>(entry.classes));
+            value.append(';');
+            append(value, getDeclarable(entry.supertypes));
+            value.append(';');
+            append(value, getDeclarable(entry.references));
+            index.add(source, value.toString());
+        }
+        PropFiles.store(index, to.getPath(), true);
+    }
+
+    private static Set<String> getDeclarable(Set<String> classes) {
+        Set<String> declarable = new TreeSet<String>();
+        for (String name : classes) {
+            if (!name.startsWith("java.")) {
+                declarable.add(name);
+            }
+        }
+        return declarable;
+    }
+
+    private static void append(StringBuilder buffer, Collection<String> values) {
+        boolean first = true;
+        for (String value : values) {
+            if (!first) {
+                buffer.append(',');
+            }
+            buffer.append(value);
+            first = false;
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static junit.framework.Assert.*;
+
+public class ClassFileInfoTest {
+
+    static class Sample extends AbstractList<DependencyIndex> implements RandomAccess {
+        public static final int CONSTANT = 42;
+        public static final String NAME = "sample";
+        private static final int HIDDEN = 7;
+        @Override public DependencyIndex get(int index) {
+            return null;
+        }
+        @Override public int size() {
+            return HIDDEN;
+        }
+        public List<ClassFileInfo> infos() throws IOException {
+            return null;
+        }
+    }
+
+    @Test
+    public void parse() throws IOException {
+        InputStream in = ClassFileInfoTest.class.getResourceAsStream("ClassFileInfoTest$Sample.class");
+        ClassFileInfo info;
+        try {
+            info = ClassFileInfo.parse(in);
+        } finally {
+            in.close();
+        }
+        assertEquals("net.ocheyedan.ply.script.ClassFileInfoTest$Sample", info.getName());
+        assertTrue(info.getSupertypes().contains("java.util.AbstractList"));
+        assertTrue(info.getSupertypes().contains("java.util.RandomAccess"));
+        // referenced via the generic signature and a method descriptor
+        assertTrue(info.getReferences().contains("net.ocheyedan.ply.script.DependencyIndex"));
+        assertTrue(info.getReferences().contains("net.ocheyedan.ply.script.ClassFileInfo"));
+        assertTrue(info.getReferences().contains("java.io.IOException"));
+        // its own top-level class is not a reference
+        assertFalse(info.getReferences().contains("net.ocheyedan.ply.script.ClassFileInfoTest"));
+        // the string literal is not mistaken for a descriptor
+        assertEquals(2, info.getConstants().size());
+        boolean foundConstant = false, foundName = false;
+        for (String constant : info.getConstants()) {
+            foundConstant |= constant.endsWith("= 42");
+            foundName |= constant.endsWith("= \"sample\"");
+            assertFalse(constant.contains("HIDDEN"));
+        }
+        assertTrue(foundConstant);
+        assertTrue(foundName);
+        for (String api : info.getApi()) {
+            assertFalse(api.contains("HIDDEN"));
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class DependencyIndexTest {
+
+    @Test
+    public void storeAndLoad() throws IOException {
+        File indexFile = File.createTempFile("compiler-index", ".properties");
+        indexFile.deleteOnExit();
+        List<String> args = Arrays.asList("-d", "target/classes");
+        DependencyIndex index = DependencyIndex.load(indexFile, args);
+        assertTrue(index.getSources().isEmpty());
+        index.put("/src/a/A.java", new DependencyIndex.Entry("api-a", "const-a", set("a.A"), set("java.lang.Object"),
+                                                                     set("java.lang.Object")));
+        index.put("/src/b/B.java", new DependencyIndex.Entry("api-b", "const-b", set("b.B", "b.C"), set("a.A"),
+                                                                     set("a.A", "c.D", "java.util.List")));
+        index.store(indexFile);
+
+        DependencyIndex loaded = DependencyIndex.load(indexFile, args);
+        assertEquals(2, loaded.getSources().size());
+        assertEquals("api-a", loaded.get("/src/a/A.java").api);
+        assertEquals("const-a", loaded.get("/src/a/A.java").constants);
+        assertEquals(set("a.A"), loaded.get("/src/a/A.java").classes);
+        // references to classes within the java packages are not stored
+        assertTrue(loaded.get("/src/a/A.java").supertypes.isEmpty());
+        assertTrue(loaded.get("/src/a/A.java").references.isEmpty());
+        assertEquals(set("b.B", "b.C"), loaded.get("/src/b/B.java").classes);
+        assertEquals(set("a.A"), loaded.get("/src/b/B.java").supertypes);
+        // but those to classes not (yet) declared by an indexed source are
+        assertEquals(set("a.A", "c.D"), loaded.get("/src/b/B.java").references);
+        loaded.put("/src/c/D.java", new DependencyIndex.Entry("api-d", "const-d", set("c.D"), set(), set()));
+        assertEquals(set("/src/b/B.java"), loaded.getDependents(set("c.D")));
+
+        DependencyIndex withOtherArgs = DependencyIndex.load(indexFile, Arrays.asList("-d", "target/other"));
+        assertTrue(withOtherArgs.getSources().isEmpty());
+    }
+
+    @Test
+    public void getDependents() throws IOException {
+        File indexFile = File.createTempFile("compiler-index", ".properties");
+        indexFile.deleteOnExit();
+        DependencyIndex index = DependencyIndex.load(indexFile, Collections.<String>emptyList());
+        index.put("/src/a/A.java", new DependencyIndex.Entry("api-a", "", set("a.A"), set(), set()));
+        index.put("/src/b/B.java", new DependencyIndex.Entry("api-b", "", set("b.B"), set("a.A"), set("a.A")));
+        index.put("/src/c/C.java", new DependencyIndex.Entry("api-c", "", set("c.C"), set(), set("b.B")));
+        index.put("/src/d/D.java", new DependencyIndex.Entry("api-d", "", set("d.D"), set(), set("c.C")));
+
+        // c.C references only b.B but b.B inherits from a.A
+        assertEquals(set("/src/b/B.java", "/src/c/C.java"), index.getDependents(set("a.A")));
+        assertEquals(set("/src/c/C.java"), index.getDependents(set("b.B")));
+        assertEquals(set("/src/d/D.java"), index.getDependents(set("c.C")));
+        assertTrue(index.getDependents(set("d.D")).isEmpty());
+        assertTrue(index.getDependents(set()).isEmpty());
+
+        index.remove("/src/c/C.java");
+        assertEquals(set("/src/b/B.java"), index.getDependents(set("a.A")));
+    }
+
+    private static Set<String> set(String ... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+
+}
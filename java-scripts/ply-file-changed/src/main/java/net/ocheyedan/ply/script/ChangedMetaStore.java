@@ -0,0 +1,364 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * The information saved about each file by {@link FileChangeDetector}; its timestamp, size and (optionally) hash.
+ * The information is stored in a binary file which is memory-mapped when read so that opening the store is
+ * independent of the number of files and looking up a file only requires a binary search over the mapped bytes.
+ * The format of the file is (all numbers are big-endian):
+ * <pre>
+ * header:  magic (int), version (int), count (int), hash-width (int)
+ * paths:   count * (path-offset (int), path-length (int)) sorted by the path's utf-8 bytes
+ * columns: count * timestamp (long), count * size (long), count * hash-length (byte), count * hash-width bytes
+ * data:    the utf-8 bytes of each path
+ * </pre>
+ * A size of -1 means the size is unknown and a hash-length of 0 means the hash was not computed.
+ */
+final class ChangedMetaStore {
+
+    /**
+     * Collects file information and writes it as a {@link ChangedMetaStore}.
+     */
+    static final class Writer {
+
+        private static final class Record {
+            private final byte[] path;
+            private final long lastModified;
+            private final long size;
+            private final byte[] hash;
+            private Record(byte[] path, long lastModified, long size, byte[] hash) {
+                this.path = path;
+                this.lastModified = lastModified;
+                this.size = size;
+                this.hash = hash;
+            }
+        }
+
+        private final List<Record> records = new ArrayList<Record>();
+
+        private int hashWidth = 0;
+
+        /**
+         * @param path of the file
+         * @param lastModified timestamp of the file
+         * @param size of the file or -1 if unknown
+         * @param hash of the file or null if not computed
+         */
+        void add(String path, long lastModified, long size, byte[] hash) {
+            hash = (hash == null ? EMPTY : hash);
+            if (hash.length > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Hash too long.");
+            }
+            hashWidth = Math.max(hashWidth, hash.length);
+            records.add(new Record(utf8(path), lastModified, size, hash));
+        }
+
+        /**
+         * Writes the collected information to a temporary file and then renames it to {@code to}.
+         * @param to the file into which to write
+         * @throws IOException on failure
+         */
+        void write(File to) throws IOException {
+            Collections.sort(records, new Comparator<Record>() {
+                @Override public int compare(Record left, Record right) {
+                    return compareBytes(left.path, right.path);
+                }
+            });
+            int count = records.size();
+            File temp = new File(to.getPath() + ".tmp");
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                out.writeInt(hashWidth);
+                int pathOffset = HEADER_SIZE + (count * (8 + 8 + 8 + 1 + hashWidth));
+                for (Record record : records) {
+                    out.writeInt(pathOffset);
+                    out.writeInt(record.path.length);
+                    pathOffset += record.path.length;
+                }
+                for (Record record : records) {
+                    out.writeLong(record.lastModified);
+                }
+                for (Record record : records) {
+                    out.writeLong(record.size);
+                }
+                for (Record record : records) {
+                    out.writeByte(record.hash.length);
+                }
+                byte[] padding = new byte[hashWidth];
+                for (Record record : records) {
+                    out.write(record.hash);
+                    out.write(padding, 0, hashWidth - record.hash.length);
+                }
+                for (Record record : records) {
+                    out.write(record.path);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(to) && (!to.delete() || !temp.renameTo(to))) {
+                throw new IOException(String.format("Could not rename %s to %s.", temp.getPath(), to.getPath()));
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x504c5943; // PLYC
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * An empty store (used when there is no saved information).
+     */
+    static final ChangedMetaStore Empty = new ChangedMetaStore(ByteBuffer.allocate(HEADER_SIZE), 0, 0);
+
+    /**
+     * Opens the store saved within {@code file}.  If {@code file} does not exist but {@code legacy} (the
+     * {@literal changed-meta.properties} file used prior to this store) does, its information is migrated into
+     * {@code file} and {@code legacy} is deleted.
+     * @param file of the store
+     * @param legacy properties file, may be null
+     * @return the store or {@link #Empty} if no information has been saved or it is corrupted
+     */
+    static ChangedMetaStore open(File file, File legacy) {
+        if (!file.exists() && (legacy != null) && legacy.exists()) {
+            if (!migrate(legacy, file)) {
+                return Empty;
+            }
+        }
+        if (!file.exists()) {
+            return Empty;
+        }
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = randomAccessFile.getChannel();
+                if (channel.size() < HEADER_SIZE) {
+                    return corrupted(file);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION)) {
+                    return corrupted(file);
+                }
+                int count = buffer.getInt(8);
+                int hashWidth = buffer.getInt(12);
+                if ((count < 0) || (hashWidth < 0)
+                        || (HEADER_SIZE + ((long) count * (8 + 8 + 8 + 1 + hashWidth)) > channel.size())) {
+                    return corrupted(file);
+                }
+                return new ChangedMetaStore(buffer, count, hashWidth);
+            } finally {
+                randomAccessFile.close(); // the mapping remains valid after the channel is closed
+            }
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return corrupted(file);
+        }
+    }
+
+    private static ChangedMetaStore corrupted(File file) {
+        Output.print("^warn^ corrupted %s file, recomputing.", file.getName());
+        return Empty;
+    }
+
+    /**
+     * Converts the {@literal file-path=timestamp,sha1-hash} (or {@literal file-path=timestamp,size,hash}) entries
+     * of {@code legacy} into a store saved at {@code to}.
+     * @return true if the migration succeeded
+     */
+    private static boolean migrate(File legacy, File to) {
+        PropFile properties = PropFiles.load(legacy.getPath(), false, false);
+        Writer writer = new Writer();
+        for (PropFile.Prop prop : properties.props()) {
+            String[] split = prop.value().split("\\,");
+            if ((split.length != 2) && (split.length != 3)) {
+                continue;
+            }
+            try {
+                long lastModified = Long.valueOf(split[0]);
+                long size = (split.length == 3 ? Long.valueOf(split[1]) : -1L);
+                writer.add(prop.name, lastModified, size, fromHex(split[split.length - 1]));
+            } catch (NumberFormatException nfe) {
+                // skip, file will be considered changed
+            }
+        }
+        try {
+            writer.write(to);
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return false;
+        }
+        if (!legacy.delete()) {
+            Output.print("^warn^ could not delete ^b^%s^r^.", legacy.getPath());
+        }
+        return true;
+    }
+
+    /**
+     * @param hex the hex string of a hash
+     * @return the bytes of {@code hex} or null if {@code hex} is not a hex string (i.e., {@literal not-computed})
+     */
+    static byte[] fromHex(String hex) {
+        if ((hex == null) || hex.isEmpty() || ((hex.length() % 2) != 0)) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt((i * 2) + 1), 16);
+            if ((high == -1) || (low == -1)) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    private static byte[] utf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+    private static int compareBytes(byte[] left, byte[] right) {
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (left[i] & 0xff) - (right[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return left.length - right.length;
+    }
+
+    private final ByteBuffer buffer;
+
+    private final int count;
+
+    private final int hashWidth;
+
+    private final int lastModifiedOffset;
+
+    private final int sizeOffset;
+
+    private final int hashLengthOffset;
+
+    private final int hashOffset;
+
+    private ChangedMetaStore(ByteBuffer buffer, int count, int hashWidth) {
+        this.buffer = buffer;
+        this.count = count;
+        this.hashWidth = hashWidth;
+        this.lastModifiedOffset = HEADER_SIZE + (count * 8);
+        this.sizeOffset = lastModifiedOffset + (count * 8);
+        this.hashLengthOffset = sizeOffset + (count * 8);
+        this.hashOffset = hashLengthOffset + count;
+    }
+
+    /**
+     * @return the number of files within the store
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @param path of the file
+     * @return the index of {@code path} within this store or -1 if it is not present
+     */
+    int indexOf(String path) {
+        if (count == 0) {
+            return -1;
+        }
+        byte[] key = utf8(path);
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = comparePath(middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int comparePath(int index, byte[] key) {
+        int offset = buffer.getInt(HEADER_SIZE + (index * 8));
+        int length = buffer.getInt(HEADER_SIZE + (index * 8) + 4);
+        int shortest = Math.min(length, key.length);
+        for (int i = 0; i < shortest; i++) {
+            int difference = (buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+    long getLastModified(int index) {
+        return buffer.getLong(lastModifiedOffset + (index * 8));
+    }
+
+    /**
+     * @param index of the file
+     * @return the size of the file at {@code index} or -1 if it is unknown
+     */
+    long getSize(int index) {
+        return buffer.getLong(sizeOffset + (index * 8));
+    }
+
+    /**
+     * @param index of the file
+     * @return the hash of the file at {@code index} or null if it was not computed
+     */
+    byte[] getHash(int index) {
+        int length = buffer.get(hashLengthOffset + index);
+        if (length == 0) {
+            return null;
+        }
+        byte[] hash = new byte[length];
+        for (int i = 0; i < length; i++) {
+            hash[i] = buffer.get(hashOffset + (index * hashWidth) + i);
+        }
+        return hash;
+    }
+
+    /**
+     * @param index of the file
+     * @param hash to compare
+     * @return true if the saved hash of the file at {@code index} is {@code hash}
+     */
+    boolean isHash(int index, byte[] hash) {
+        int length = buffer.get(hashLengthOffset + index);
+        if ((length == 0) || (hash == null) || (hash.length != length)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(hashOffset + (index * hashWidth) + i) != hash[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -1,15 +1,19 @@
 package net.ocheyedan.ply.script;
 
-import net.ocheyedan.ply.BitUtil;
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.props.*;
 
 import java.io.*;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 /**
  * User: blangel
@@ -21,128 +25,259 @@ import java.util.concurrent.atomic.AtomicReference;
  * referred to as '${suffix}' below.
  *
  * Determines which files within {@literal project[.scope].src.dir} have changed since last invocation.
- * The information used to determine if a file has changed is saved in the {@literal project.build.dir} in a file named
- * {@literal changed-meta[.${suffix}].properties}.  The list of files which have changed since last invocation is stored
- * in a file named {@literal changed[.${suffix}].properties} in directory {@literal project[.scope].build.dir}.
- * The information used to determine change is stored relative to {@literal project[.scope].build.dir} to allow for cleans to
- * force a full-recompilation.  The format of the {@literal changed-meta[.${suffix}].properties} file is:
- * file-path=timestamp,sha1-hash
- * and the format of the {@literal changed[.${suffix}].properties} is simply a listing of file paths which have changed.
+ * The information used to determine if a file has changed is saved in the {@literal project.build.dir} in a binary file
+ * named {@literal changed-meta[.${suffix}].dat} (see {@link ChangedMetaStore}).  The list of files which have changed
+ * since last invocation is stored in a file named {@literal changed[.${suffix}].properties} in directory
+ * {@literal project[.scope].build.dir}.  The information used to determine change is stored relative to
+ * {@literal project[.scope].build.dir} to allow for cleans to force a full-recompilation.  The format of the
+ * {@literal changed[.${suffix}].properties} is simply a listing of file paths which have changed.  Information saved
+ * by prior versions of this script within {@literal changed-meta[.${suffix}].properties} is migrated.
+ * The file paths are those of the canonical {@literal project[.scope].src.dir} joined with the path of the file
+ * relative to it (symbolic links within the source directory are not resolved).
  *
- * By default only the files' timestamps are consulted.  Call this script with the {@link --compute-hash} to
- * perform a {@literal SHA1} hash of the file to assist in determining whether the file has been updated.  Clearly
- * this is a more expensive operation but may save time if dependent actions are time-intensive and having
- * the hash would reduce the amount of processing by dependent actions.
+ * By default only the files' timestamps and sizes are consulted.  Call this script with the {@link --compute-hash} to
+ * perform a {@literal SHA1} hash of the file to assist in determining whether the file has been updated (or with
+ * {@literal --compute-hash=algorithm} to use another {@link MessageDigest} algorithm or one of the faster, non
+ * cryptographic, {@literal CRC32} or {@literal Adler32} checksums).  Clearly this is a more expensive operation but may
+ * save time if dependent actions are time-intensive and having the hash would reduce the amount of processing by
+ * dependent actions.  Only files whose timestamp or size has changed are hashed and the hashing is done concurrently.
  */
 public class FileChangeDetector {
 
+    /**
+     * A file found within the source directory along with its previously saved information.
+     */
+    static final class Candidate {
+        final File file;
+        final String path;
+        final long lastModified;
+        final long size;
+        /**
+         * Index of the file within the {@link ChangedMetaStore} or -1 if the file is new.
+         */
+        final int existing;
+        private Future<byte[]> hash;
+        private Candidate(File file, String path, long lastModified, long size, int existing) {
+            this.file = file;
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.existing = existing;
+        }
+    }
+
     public static void main(String[] args) {
-        boolean computeSha1Hash = false;
+        String hashAlgorithm = null;
         if ((args != null) && (args.length > 0) && "--compute-hash".equals(args[0])) {
-            computeSha1Hash = true;
+            hashAlgorithm = "SHA1";
+        } else if ((args != null) && (args.length > 0) && args[0].startsWith("--compute-hash=")) {
+            hashAlgorithm = args[0].substring("--compute-hash=".length());
+        }
+        if ((hashAlgorithm != null) && !isSupportedAlgorithm(hashAlgorithm)) {
+            Output.print("^error^ unknown hash algorithm ^b^%s^r^.", hashAlgorithm);
+            System.exit(1);
         }
         Scope scope = Scope.named(Props.get("scope", Context.named("ply")).value());
         String srcDirPath = Props.get("src.dir", Context.named("project")).value();
         String buildDirPath = Props.get("build.dir", Context.named("project")).value();
-        File lastSrcChanged = FileUtil.fromParts(buildDirPath, "changed-meta" + scope.getFileSuffix() + ".properties");
+        File lastSrcChanged = FileUtil.fromParts(buildDirPath, "changed-meta" + scope.getFileSuffix() + ".dat");
+        File legacyLastSrcChanged = FileUtil.fromParts(buildDirPath, "changed-meta" + scope.getFileSuffix() + ".properties");
         File changedPropertiesFile = FileUtil.fromParts(buildDirPath, "changed" + scope.getFileSuffix() + ".properties");
         File srcDir = new File(srcDirPath);
-        PropFile existing = PropFiles.load(lastSrcChanged.getPath(), true, false);
+        changedPropertiesFile.getParentFile().mkdirs();
+        ChangedMetaStore existing = ChangedMetaStore.open(lastSrcChanged, legacyLastSrcChanged);
         try {
             changedPropertiesFile.createNewFile();
         } catch (IOException ioe) {
             Output.print(ioe);
         }
-        computeFilesChanged(lastSrcChanged, changedPropertiesFile, srcDir, existing, scope, computeSha1Hash);
+        computeFilesChanged(lastSrcChanged, changedPropertiesFile, srcDir, existing, hashAlgorithm);
     }
 
-    private static void computeFilesChanged(File lastSrcChanged, File changedPropertiesFile, File srcDir,
-                                            PropFile existing, Scope scope, boolean computeSha1Hash) {
+    static void computeFilesChanged(File lastSrcChanged, File changedPropertiesFile, File srcDir,
+                                    ChangedMetaStore existing, String hashAlgorithm) {
         PropFile changedList = new PropFile(Context.named("changed"), PropFile.Loc.Local);
-        PropFile properties = new PropFile(Context.named("changed-meta"), PropFile.Loc.Local);
-        collectAllFileChanges(srcDir, changedList, properties, existing, scope, computeSha1Hash);
+        ChangedMetaStore.Writer store = new ChangedMetaStore.Writer();
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        if (srcDir.isDirectory()) {
+            collectAllFiles(srcDir, FileUtil.getCanonicalPath(srcDir), existing, candidates);
+        }
+        hashCandidates(candidates, existing, hashAlgorithm);
+        for (Candidate candidate : candidates) {
+            byte[] hash = getHash(candidate);
+            if (hasChanged(candidate, existing, hash)) {
+                store.add(candidate.path, candidate.lastModified, candidate.size, hash);
+                changedList.add(candidate.path, "");
+            } else {
+                store.add(candidate.path, candidate.lastModified, candidate.size, existing.getHash(candidate.existing));
+            }
+        }
         PropFiles.store(changedList, changedPropertiesFile.getPath());
-        PropFiles.store(properties, lastSrcChanged.getPath());
+        try {
+            store.write(lastSrcChanged);
+        } catch (IOException ioe) {
+            Output.print(ioe);
+        }
     }
 
-    private static void collectAllFileChanges(File from, PropFile changedList, PropFile into, PropFile existing,
-                                              Scope scope, boolean computeSha1Hash) {
-        File[] subfiles = from.listFiles();
-        if (subfiles == null) {
+    /**
+     * Collects every file within {@code from} (recursively) into {@code into}.  The path of each file is derived
+     * from {@code fromPath} rather than computing the canonical path of every file; each entry listed costs three
+     * stats ({@link File#isDirectory()}, {@link File#lastModified()} and {@link File#length()}) and no path resolution.
+     * @param from the directory to search
+     * @param fromPath the path of {@code from}
+     * @param existing the saved information from the last invocation
+     * @param into which to collect the files
+     */
+    static void collectAllFiles(File from, String fromPath, ChangedMetaStore existing, List<Candidate> into) {
+        String[] names = from.list();
+        if (names == null) {
             return;
         }
-        for (File file : subfiles) {
+        for (String name : names) {
+            File file = new File(from, name);
+            String path = fromPath + File.separator + name;
             if (file.isDirectory()) {
-                collectAllFileChanges(file, changedList, into, existing, scope, computeSha1Hash);
+                collectAllFiles(file, path, existing, into);
             } else {
-                try {
-                    AtomicReference<String> sha1HashRef = new AtomicReference<String>();
-                    String path = file.getCanonicalPath();
-                    if (hasChanged(file, existing, sha1HashRef, scope, computeSha1Hash) && file.exists()) {
-                        String timeFileLastChanged = String.valueOf(file.lastModified());
-                        String sha1Hash =
-                                (computeSha1Hash
-                                        ? (sha1HashRef.get() == null ? computeSha1Hash(file) : sha1HashRef.get())
-                                        : "not-computed");
-                        into.add(path, timeFileLastChanged + "," + sha1Hash);
-                        changedList.add(path, "");
-                    } else if (file.exists()) {
-                        into.add(path, existing.get(path).value());
-                    }
-                } catch (IOException ioe) {
-                    Output.print(ioe);
+                long lastModified = file.lastModified();
+                if (lastModified == 0L) {
+                    continue; // removed since listed
                 }
+                into.add(new Candidate(file, path, lastModified, file.length(), existing.indexOf(path)));
             }
         }
     }
 
-    private static boolean hasChanged(File file, PropFile existing, AtomicReference<String> computedSha1, Scope scope,
-                                      boolean computeSha1Hash) {
+    /**
+     * Concurrently computes the hash of each of {@code candidates} which may need it; those which are new or whose
+     * timestamp has changed but size has not.
+     * @param candidates to hash
+     * @param existing the saved information from the last invocation
+     * @param hashAlgorithm the algorithm with which to hash or null if hashing is not to be done
+     */
+    private static void hashCandidates(List<Candidate> candidates, ChangedMetaStore existing,
+                                       final String hashAlgorithm) {
+        if (hashAlgorithm == null) {
+            return;
+        }
+        ExecutorService executor = null;
         try {
-            String propertyValue;
-            if ((propertyValue = existing.get(file.getCanonicalPath()).value()).isEmpty()) {
-                return true;
-            }
-            String[] split = propertyValue.split("\\,");
-            if (split.length != 2) {
-                Output.print("^warn^ corrupted changed-meta%s.properties file, recomputing.", scope.getFileSuffix());
-                return true;
-            }
-            long timestamp = Long.valueOf(split[0]);
-            if (file.lastModified() == timestamp) {
-                return false;
+            for (final Candidate candidate : candidates) {
+                if (!needsHash(candidate, existing)) {
+                    continue;
+                }
+                if (executor == null) {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger(0);
+                        @Override public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "ply-file-changed-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+                candidate.hash = executor.submit(new Callable<byte[]>() {
+                    @Override public byte[] call() throws Exception {
+                        return computeHash(candidate.file, hashAlgorithm);
+                    }
+                });
             }
-            if (computeSha1Hash) {
-                String oldHashAsHex = split[1];
-                String asHex = computeSha1Hash(file);
-                computedSha1.set(asHex);
-                return !asHex.equals(oldHashAsHex);
-            } else {
-                computedSha1.set("not-computed");
-                return true;
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
             }
-        } catch (IOException ioe) {
-            throw new AssertionError(ioe);
-        } catch (NumberFormatException nfe) {
-            Output.print("^warn^ corrupted changed-meta%s.properties file, recomputing.", scope.getFileSuffix());
+        }
+    }
+
+    private static boolean needsHash(Candidate candidate, ChangedMetaStore existing) {
+        if (candidate.existing == -1) {
             return true;
         }
+        long size = existing.getSize(candidate.existing);
+        return ((candidate.lastModified != existing.getLastModified(candidate.existing))
+                && ((size == -1L) || (candidate.size == size)));
     }
 
-    private static String computeSha1Hash(File file) {
+    private static boolean hasChanged(Candidate candidate, ChangedMetaStore existing, byte[] hash) {
+        if (candidate.existing == -1) {
+            return true;
+        }
+        // files saved by prior versions of this script do not have a size
+        long size = existing.getSize(candidate.existing);
+        if ((candidate.lastModified == existing.getLastModified(candidate.existing))
+                && ((size == -1L) || (candidate.size == size))) {
+            return false;
+        }
+        if ((size != -1L) && (candidate.size != size)) {
+            return true;
+        }
+        return !existing.isHash(candidate.existing, hash);
+    }
+
+    private static byte[] getHash(Candidate candidate) {
+        if (candidate.hash == null) {
+            return null;
+        }
+        try {
+            return candidate.hash.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ee) {
+            throw new AssertionError(ee.getCause());
+        }
+    }
+
+    private static boolean isSupportedAlgorithm(String algorithm) {
+        if ("CRC32".equalsIgnoreCase(algorithm) || "Adler32".equalsIgnoreCase(algorithm)) {
+            return true;
+        }
+        try {
+            MessageDigest.getInstance(algorithm);
+            return true;
+        } catch (NoSuchAlgorithmException nsae) {
+            return false;
+        }
+    }
+
+    /**
+     * @param file to hash
+     * @param algorithm either {@literal CRC32}, {@literal Adler32} or the name of a {@link MessageDigest} algorithm
+     * @return the hash of {@code file} or null on error
+     */
+    private static byte[] computeHash(File file, String algorithm) {
         InputStream fileInputStream = null;
         try {
-            MessageDigest hash = MessageDigest.getInstance("SHA1");
-            fileInputStream = new BufferedInputStream(new FileInputStream(file));
-            DigestInputStream digestInputStream = new DigestInputStream(fileInputStream, hash);
+            MessageDigest digest = null;
+            Checksum checksum = null;
+            if ("CRC32".equalsIgnoreCase(algorithm)) {
+                checksum = new CRC32();
+            } else if ("Adler32".equalsIgnoreCase(algorithm)) {
+                checksum = new Adler32();
+            } else {
+                digest = MessageDigest.getInstance(algorithm);
+            }
+            fileInputStream = new FileInputStream(file);
             byte[] buffer = new byte[8192];
-            while (digestInputStream.read(buffer, 0, 8192) != -1) { }
-            byte[] sha1 = hash.digest();
-            return BitUtil.toHexString(sha1);
+            int read;
+            while ((read = fileInputStream.read(buffer, 0, 8192)) != -1) {
+                if (digest != null) {
+                    digest.update(buffer, 0, read);
+                } else {
+                    checksum.update(buffer, 0, read);
+                }
+            }
+            if (digest != null) {
+                return digest.digest();
+            }
+            long value = checksum.getValue();
+            return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
         } catch (NoSuchAlgorithmException nsae) {
-            throw new AssertionError(nsae);
+            throw new AssertionError(nsae); // checked by isSupportedAlgorithm
         } catch (FileNotFoundException fnfe) {
-            throw new AssertionError(fnfe);
+            // removed since listed
         } catch (IOException ioe) {
             Output.print(ioe);
         } finally {
@@ -154,7 +289,7 @@ public class FileChangeDetector {
                 throw new AssertionError(ioe);
             }
         }
-        return ""; // error!
+        return null; // error!
     }
 
-}
\ No newline at end of file
+}
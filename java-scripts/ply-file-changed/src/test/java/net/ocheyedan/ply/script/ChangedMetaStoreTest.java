@@ -0,0 +1,89 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFiles;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.*;
+
+public class ChangedMetaStoreTest {
+
+    @Test
+    public void writeAndOpen() throws IOException {
+        File file = File.createTempFile("changed-meta", ".dat");
+        file.deleteOnExit();
+        ChangedMetaStore.Writer writer = new ChangedMetaStore.Writer();
+        writer.add("/src/b/B.java", 2L, 20L, new byte[] { 1, 2, 3 });
+        writer.add("/src/a/A.java", 1L, 10L, null);
+        writer.add("/src/\u00e9/E.java", 3L, -1L, new byte[] { (byte) 0xff });
+        writer.write(file);
+
+        ChangedMetaStore store = ChangedMetaStore.open(file, null);
+        assertEquals(3, store.size());
+        assertEquals(-1, store.indexOf("/src/c/C.java"));
+        assertEquals(-1, store.indexOf("/src/a/A.jav"));
+        int a = store.indexOf("/src/a/A.java");
+        assertEquals(1L, store.getLastModified(a));
+        assertEquals(10L, store.getSize(a));
+        assertNull(store.getHash(a));
+        assertFalse(store.isHash(a, null));
+        int b = store.indexOf("/src/b/B.java");
+        assertEquals(2L, store.getLastModified(b));
+        assertEquals(20L, store.getSize(b));
+        assertTrue(store.isHash(b, new byte[] { 1, 2, 3 }));
+        assertFalse(store.isHash(b, new byte[] { 1, 2, 4 }));
+        assertFalse(store.isHash(b, new byte[] { 1, 2 }));
+        int e = store.indexOf("/src/\u00e9/E.java");
+        assertEquals(-1L, store.getSize(e));
+        assertEquals(1, store.getHash(e).length);
+        assertEquals((byte) 0xff, store.getHash(e)[0]);
+    }
+
+    @Test
+    public void migrate() throws IOException {
+        File legacy = File.createTempFile("changed-meta", ".properties");
+        legacy.deleteOnExit();
+        File file = new File(legacy.getPath().replace(".properties", ".dat"));
+        file.deleteOnExit();
+        PropFile properties = new PropFile(Context.named("changed-meta"), PropFile.Loc.Local);
+        properties.add("/src/a/A.java", "1,0A0B");
+        properties.add("/src/b/B.java", "2,20,not-computed");
+        properties.add("/src/c/C.java", "corrupted");
+        PropFiles.store(properties, legacy.getPath(), true);
+
+        ChangedMetaStore store = ChangedMetaStore.open(file, legacy);
+        assertFalse(legacy.exists());
+        assertTrue(file.exists());
+        assertEquals(2, store.size());
+        int a = store.indexOf("/src/a/A.java");
+        assertEquals(1L, store.getLastModified(a));
+        assertEquals(-1L, store.getSize(a));
+        assertTrue(store.isHash(a, new byte[] { 0x0a, 0x0b }));
+        int b = store.indexOf("/src/b/B.java");
+        assertEquals(20L, store.getSize(b));
+        assertNull(store.getHash(b));
+        assertEquals(-1, store.indexOf("/src/c/C.java"));
+    }
+
+    @Test
+    public void corrupted() throws IOException {
+        File file = File.createTempFile("changed-meta", ".dat");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] { 'n', 'o', 't', ' ', 'a', ' ', 's', 't', 'o', 'r', 'e', '.', '.', '.', '.', '.' });
+        } finally {
+            out.close();
+        }
+        ChangedMetaStore store = ChangedMetaStore.open(file, null);
+        assertEquals(0, store.size());
+        assertEquals(-1, store.indexOf("/src/a/A.java"));
+        assertEquals(0, ChangedMetaStore.open(new File(file.getPath() + ".missing"), null).size());
+    }
+
+}
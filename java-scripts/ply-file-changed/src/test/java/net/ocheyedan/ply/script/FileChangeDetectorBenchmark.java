@@ -0,0 +1,82 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.FileUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the time taken by {@link FileChangeDetector#collectAllFiles(File, String, ChangedMetaStore, List)} to walk
+ * a source tree against that of the previous implementation, which (for each unchanged file) canonicalized the file's
+ * path twice and checked {@link File#isDirectory()}, {@link File#lastModified()} and {@link File#exists()}.  The
+ * tree is shaped like a java source directory; packages four directories deep each holding fifty files.  Run via its
+ * main method, the optional arguments are the number of iterations and the number of files.
+ */
+public final class FileChangeDetectorBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        int size = (args.length > 1 ? Integer.parseInt(args[1]) : 50000);
+        File src = File.createTempFile("file-changed", "");
+        src.delete();
+        try {
+            byte[] content = "package net.ocheyedan;\n".getBytes("UTF-8");
+            for (int i = 0; i < size; i++) {
+                File file = FileUtil.fromParts(src.getPath(), "net", "ocheyedan", "pkg" + (i / 50),
+                        "Type" + i + ".java");
+                file.getParentFile().mkdirs();
+                FileOutputStream output = new FileOutputStream(file);
+                try {
+                    output.write(content);
+                } finally {
+                    output.close();
+                }
+            }
+            String srcPath = FileUtil.getCanonicalPath(src);
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                List<FileChangeDetector.Candidate> candidates = new ArrayList<FileChangeDetector.Candidate>(size);
+                FileChangeDetector.collectAllFiles(src, srcPath, ChangedMetaStore.Empty, candidates);
+                long collect = (System.nanoTime() - start) / 1000000L;
+                start = System.nanoTime();
+                int legacy = legacyScan(src);
+                long legacyTime = (System.nanoTime() - start) / 1000000L;
+                if (candidates.size() != legacy) {
+                    throw new AssertionError(String.format("Found %d files but legacy found %d.", candidates.size(), legacy));
+                }
+                System.out.printf("iteration %d: %d files [ collect %dms, legacy %dms ]%n", (i + 1), legacy, collect,
+                        legacyTime);
+            }
+        } finally {
+            FileUtil.delete(src);
+        }
+    }
+
+    /**
+     * @return the number of files found within {@code from}, walked as done by the previous implementation
+     */
+    private static int legacyScan(File from) throws IOException {
+        File[] subfiles = from.listFiles();
+        if (subfiles == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : subfiles) {
+            if (file.isDirectory()) {
+                count += legacyScan(file);
+            } else {
+                file.getCanonicalPath(); // path of the file
+                file.getCanonicalPath(); // lookup of the saved information
+                file.lastModified();
+                if (file.exists()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+}
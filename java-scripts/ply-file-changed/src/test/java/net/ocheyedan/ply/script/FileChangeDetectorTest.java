@@ -0,0 +1,147 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFiles;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class FileChangeDetectorTest {
+
+    @Test
+    public void collectAllFiles() throws IOException {
+        File base = createTempDir();
+        try {
+            File src = new File(base, "src");
+            write(new File(src, "A.java"), "a");
+            write(new File(src, "a/B.java"), "bb");
+            write(new File(src, "a/b/c/C.java"), "ccc");
+            write(new File(src, "a/b/c/c.properties"), "");
+            new File(src, "empty/dir").mkdirs();
+
+            List<FileChangeDetector.Candidate> candidates = new ArrayList<FileChangeDetector.Candidate>();
+            FileChangeDetector.collectAllFiles(src, FileUtil.getCanonicalPath(src), ChangedMetaStore.Empty, candidates);
+            Map<String, String> collected = new HashMap<String, String>();
+            for (FileChangeDetector.Candidate candidate : candidates) {
+                assertEquals(-1, candidate.existing);
+                collected.put(candidate.path, candidate.lastModified + "," + candidate.size);
+            }
+            // the same paths, timestamps and sizes as canonicalizing each file
+            assertEquals(scanCanonically(src), collected);
+            assertEquals(4, collected.size());
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void computeFilesChanged() throws IOException {
+        File base = createTempDir();
+        try {
+            File src = new File(base, "src");
+            File meta = new File(base, "changed-meta.dat");
+            File changed = new File(base, "changed.properties");
+            assertTrue(changed.createNewFile()); // as done by main
+            String srcPath = FileUtil.getCanonicalPath(src);
+            write(new File(src, "Same.java"), "same");
+            write(new File(src, "Touched.java"), "touched");
+            write(new File(src, "Resized.java"), "resized");
+            write(new File(src, "Removed.java"), "removed");
+
+            FileChangeDetector.computeFilesChanged(meta, changed, src, ChangedMetaStore.open(meta, null), "SHA1");
+            assertEquals(set(srcPath, "Same.java", "Touched.java", "Resized.java", "Removed.java"), load(changed));
+
+            FileChangeDetector.computeFilesChanged(meta, changed, src, ChangedMetaStore.open(meta, null), "SHA1");
+            assertEquals(Collections.<String>emptySet(), load(changed));
+
+            File touched = new File(src, "Touched.java");
+            assertTrue(touched.setLastModified(touched.lastModified() - 10000L));
+            File resized = new File(src, "Resized.java");
+            long resizedLastModified = resized.lastModified();
+            write(resized, "resized!");
+            assertTrue(resized.setLastModified(resizedLastModified));
+            assertTrue(new File(src, "Removed.java").delete());
+            write(new File(src, "a/Added.java"), "added");
+
+            // touched has the same content (and so hash), resized has the same timestamp but not size
+            FileChangeDetector.computeFilesChanged(meta, changed, src, ChangedMetaStore.open(meta, null), "SHA1");
+            assertEquals(set(srcPath, "Resized.java", "a" + File.separator + "Added.java"), load(changed));
+            ChangedMetaStore store = ChangedMetaStore.open(meta, null);
+            assertEquals(4, store.size());
+            assertEquals(-1, store.indexOf(srcPath + File.separator + "Removed.java"));
+            int index = store.indexOf(srcPath + File.separator + "Touched.java");
+            assertEquals(touched.lastModified(), store.getLastModified(index));
+            assertNotNull(store.getHash(index));
+
+            // without hashing a changed timestamp alone is a change
+            assertTrue(touched.setLastModified(touched.lastModified() - 10000L));
+            FileChangeDetector.computeFilesChanged(meta, changed, src, ChangedMetaStore.open(meta, null), null);
+            assertEquals(set(srcPath, "Touched.java"), load(changed));
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    /**
+     * The scan done prior to {@link FileChangeDetector#collectAllFiles(File, String, ChangedMetaStore, List)}; each
+     * file's canonical path.
+     */
+    private static Map<String, String> scanCanonically(File from) throws IOException {
+        Map<String, String> scanned = new HashMap<String, String>();
+        File[] subfiles = from.listFiles();
+        if (subfiles == null) {
+            return scanned;
+        }
+        for (File file : subfiles) {
+            if (file.isDirectory()) {
+                scanned.putAll(scanCanonically(file));
+            } else if (file.exists()) {
+                scanned.put(file.getCanonicalPath(), file.lastModified() + "," + file.length());
+            }
+        }
+        return scanned;
+    }
+
+    private static Set<String> load(File changed) {
+        PropFile changedList = new PropFile(Context.named("changed"), PropFile.Loc.Local);
+        PropFiles.load(changed.getPath(), changedList);
+        Set<String> paths = new HashSet<String>();
+        for (PropFile.Prop prop : changedList.props()) {
+            paths.add(prop.name);
+        }
+        return paths;
+    }
+
+    private static Set<String> set(String srcPath, String ... names) {
+        Set<String> paths = new HashSet<String>(names.length);
+        for (String name : names) {
+            paths.add(srcPath + File.separator + name);
+        }
+        return paths;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static File createTempDir() throws IOException {
+        File base = File.createTempFile("file-changed", "");
+        base.delete();
+        base.mkdirs();
+        return base;
+    }
+
+}
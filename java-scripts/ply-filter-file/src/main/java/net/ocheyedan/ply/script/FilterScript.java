@@ -5,7 +5,9 @@ import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.Filter;
+import net.ocheyedan.ply.props.PropFile;
 import net.ocheyedan.ply.props.PropFileChain;
+import net.ocheyedan.ply.props.PropFiles;
 import net.ocheyedan.ply.props.Props;
 
 import java.io.File;
@@ -18,6 +20,7 @@ import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 import static net.ocheyedan.ply.props.PropFile.Prop;
 
@@ -45,6 +48,10 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  * if there is a {@literal $\{compiler.buildDir\}} then the property {@literal compiler[.scope].buildDir} is looked
  * up and its value is used in filtering.
  *
+ * Files are re-filtered every time (as the values for which they are filtered may have changed) but a file whose
+ * filtered content is the same as when last filtered is given the timestamp it was given then, so that scripts which
+ * only process changed files (i.e., incremental packaging) see it as unchanged.  The checksum and timestamp of each
+ * filtered file is recorded in {@literal project[.scope].filter.dir}{@literal .filtered}.
  */
 public final class FilterScript {
 
@@ -128,10 +135,24 @@ public final class FilterScript {
             return;
         }
 
+        File filteredRecordFile = new File(filterDir.getPath() + ".filtered");
+        PropFile filteredRecord = PropFiles.load(filteredRecordFile.getPath(), true, false);
+        String filterDirPath = filterDir.getPath() + File.separator;
         for (File file : files) {
             Output.print("^info^ Filtering file %s.", file.getPath());
-            filter(file);
+            String checksum = file.length() + "," + filter(file);
+            String name = (file.getPath().startsWith(filterDirPath) ? file.getPath().substring(filterDirPath.length())
+                                                                       : file.getPath());
+            String previous = filteredRecord.get(name).value();
+            int timestampIndex = previous.lastIndexOf(',');
+            if ((timestampIndex != -1) && checksum.equals(previous.substring(0, timestampIndex))) {
+                file.setLastModified(Long.parseLong(previous.substring(timestampIndex + 1)));
+            } else {
+                filteredRecord.remove(name);
+                filteredRecord.add(name, checksum + "," + file.lastModified());
+            }
         }
+        PropFiles.store(filteredRecord, filteredRecordFile.getPath(), true);
     }
 
     private static void getApplicableFiles(List<FilterPattern> filterPatterns, File dir, Set<File> collecting) {
@@ -141,7 +162,12 @@ public final class FilterScript {
         }
     }
 
-    private static void filter(File file) {
+    /**
+     * Filters {@code file} in place.
+     * @param file to filter
+     * @return the checksum of the filtered content
+     */
+    private static long filter(File file) {
         FileChannel fc = null;
         try {
             RandomAccessFile stream = new RandomAccessFile(file, "rw");
@@ -150,7 +176,10 @@ public final class FilterScript {
             String text = Charset.defaultCharset().decode(mappedByteBuffer).toString();
             text = Filter.filter(text, Context.named("ply"), String.valueOf(System.identityHashCode(file)), Props.get());
             fc.position(0);
-            ByteBuffer filtered = ByteBuffer.wrap(text.getBytes());
+            byte[] filteredBytes = text.getBytes();
+            CRC32 checksum = new CRC32();
+            checksum.update(filteredBytes);
+            ByteBuffer filtered = ByteBuffer.wrap(filteredBytes);
             long currentSize = fc.size();
             long newSize = filtered.capacity();
             while (filtered.hasRemaining()) {
@@ -159,9 +188,11 @@ public final class FilterScript {
             if (newSize < currentSize) {
                 fc.truncate(newSize);
             }
+            return checksum.getValue();
         } catch (IOException ioe) {
             Output.print(ioe);
             System.exit(1);
+            return 0L;
         } finally {
             if (fc != null) {
                 try {
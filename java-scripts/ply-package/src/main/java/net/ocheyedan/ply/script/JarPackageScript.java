@@ -1,13 +1,10 @@
 package net.ocheyedan.ply.script;
 
-import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.dep.Deps;
 import net.ocheyedan.ply.props.*;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.*;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -36,55 +33,49 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  */
 public class JarPackageScript extends ZipPackageScript {
 
+    static final String DEPENDENCIES_NAME = "META-INF/ply/dependencies.properties";
+
+    /**
+     * The content of the manifest; created by {@link #preprocess()}
+     */
+    protected byte[] manifest;
+
+    /**
+     * The content of the {@literal META-INF/ply/dependencies.properties} file; created by {@link #preprocess()}
+     */
+    protected byte[] dependencies;
+
     @Override protected String getType() {
         return "jar";
     }
 
     @Override protected void preprocess() {
-        createManifestFile();
-        String buildDir = getBuildDir();
-        File dependenciesFile = createDependenciesFile(buildDir);
-        if (dependenciesFile == null) {
-            Output.print("^error^ Error creating the %sMETA-INF/ply/dependencies.properties file.", buildDir);
+        manifest = createManifest();
+        dependencies = createDependencies();
+        if (dependencies == null) {
+            Output.print("^error^ Error creating the META-INF/ply/dependencies.properties file.");
             System.exit(1);
         }
     }
 
     /**
-     * Augment the includes to also have the manifest file and the {@literal project.build.dir}/META-INF/ply files.
+     * Augment the includes to also have the manifest file and the {@literal META-INF/ply} files (which are written
+     * directly into the package from memory).
+     * @param packager @see {@link ZipPackageScript#addIncludes(ZipPackager, String, String)}
      * @param compileDir the directory containing compiled output.
      * @param resourceDir the directory where resources are.
-     * @return @see {@link ZipPackageScript#getIncludes(String, String)}
      */
-    @Override protected String[] getIncludes(String compileDir, String resourceDir) {
-        String[] standardArgs = super.getIncludes(compileDir, resourceDir);
-
-        String manifestFile = getManifestFilePath();
-        String buildDir = getBuildDir();
-
-        String[] jarIncludes = new String[standardArgs.length + 4];
-        jarIncludes[0] = manifestFile;
-        jarIncludes[1] = "-C";
-        jarIncludes[2] = buildDir;
-        jarIncludes[3] = "META-INF/ply";
-        System.arraycopy(standardArgs, 0, jarIncludes, 4, standardArgs.length);
-
-        return jarIncludes;
-    }
-
-    @Override protected String getBaseOptions() {
-        return "cfm";
-    }
-
-    protected String getBuildDir() {
-        String buildDir = Props.get("build.dir", Context.named("project")).value();
-        return buildDir + (buildDir.endsWith(File.separator) ? "" : File.separator);
+    @Override protected void addIncludes(ZipPackager packager, String compileDir, String resourceDir) {
+        packager.addContent(manifest, ZipPackager.MANIFEST_NAME);
+        packager.addContent(dependencies, DEPENDENCIES_NAME);
+        super.addIncludes(packager, compileDir, resourceDir);
     }
 
     /**
-     * Create the manifest file to be included in the packaged file.
+     * Create the manifest to be included in the packaged file.
+     * @return the manifest's content
      */
-    private void createManifestFile() {
+    private static byte[] createManifest() {
         Map<String, Prop> manifestProps = getManifestProps();
         Context packageContext = Context.named("package");
         // filter out and handle the short-named manifest properties
@@ -125,23 +116,12 @@ public class JarPackageScript extends ZipPackageScript {
         for (String property : manifestProps.keySet()) {
             appendManifestInformation(property, manifestProps.get(property).value(), buffer);
         }
-        File manifestFile = new File(getManifestFilePath());
-        PrintWriter writer = null;
+        // important, manifest files must end in a new line
+        buffer.append('\n');
         try {
-            manifestFile.getParentFile().mkdirs();
-            manifestFile.createNewFile();
-            writer = new PrintWriter(manifestFile);
-            // important, manifest files must end in a new line
-            writer.println(buffer.toString());
-            writer.flush();
-        } catch (IOException ioe) {
-            Output.print(ioe);
-            ioe.printStackTrace();
-            System.exit(1);
-        } finally {
-            if (writer != null) {
-                writer.close();
-            }
+            return buffer.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
         }
     }
 
@@ -169,31 +149,30 @@ public class JarPackageScript extends ZipPackageScript {
         return manifestProps;
     }
 
-    protected static String getManifestFilePath() {
-        String buildDirPath = Props.get("build.dir", Context.named("project")).value();
-        File metaInfDir = FileUtil.fromParts(buildDirPath, "META-INF");
-        metaInfDir.mkdirs();
-        return FileUtil.pathFromParts(metaInfDir.getPath(), "Manifest.mf");
-    }
-
     /**
-     * Reads in the {@literal resolved-deps.properties} file stored at {@literal project[.scope].build.dir} and copies it
-     * to {@literal project[.scope].build.dir}/META-INF/ply/dependencies.properties stripping away the property values (as
-     * the values are the resolved local-repo paths to the dependencies).  If there is no {@literal resolved-deps.properties}
-     * file then a blank file will be copied to {@literal project[.scope].build.dir}/META-INF/ply/dependencies.properties.
-     * @param buildDirPath the build directory path (assumed to end in {@link File#separator}).
-     * @return the handle to the created dependencies.properties file or null if an error occurred while creating the file.
+     * Creates the content of the {@literal META-INF/ply/dependencies.properties} file from the
+     * {@literal resolved-deps.properties} file stored at {@literal project[.scope].build.dir} stripping away the property
+     * values (as the values are the resolved local-repo paths to the dependencies).  If there is no
+     * {@literal resolved-deps.properties} file then the content will be blank.
+     * @return the content of the dependencies.properties file or null if an error occurred while creating it.
      */
-    private static File createDependenciesFile(String buildDirPath) {
+    private static byte[] createDependencies() {
         // read in resolved-deps.properties file
         PropFile dependencies = new PropFile(Context.named("dependencies"), PropFile.Loc.System);
         PropFile resolvedDeps = Deps.getResolvedProperties(false);
         for (PropFile.Prop resolvedDep : resolvedDeps.props()) {
             dependencies.add(resolvedDep.name, "");
         }
-        File metaInfPlyDepFile = FileUtil.fromParts(buildDirPath, "META-INF", "ply", "dependencies.properties");
-        PropFiles.store(dependencies, metaInfPlyDepFile.getPath(), true);
-        return metaInfPlyDepFile;
+        StringWriter content = new StringWriter();
+        try {
+            BufferedWriter writer = new BufferedWriter(content);
+            PropFileWriter.Default.store(writer, dependencies);
+            writer.flush();
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return null;
+        }
+        return content.toString().getBytes();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.DirectorySync;
+import net.ocheyedan.ply.jna.JnaAccessor;
+
+import java.io.File;
+
+/**
+ * A {@link DirectorySync} which, if files cannot be hard-linked via {@literal java.nio.file.Files#createLink} (i.e.,
+ * when not running on Java 7+), hard-links them via the native c-library (if available).
+ */
+final class NativeDirectorySync extends DirectorySync {
+
+    NativeDirectorySync(File root) {
+        super(root);
+    }
+
+    @Override protected boolean link(File source, File target) {
+        if (super.link(source, target)) {
+            return true;
+        }
+        return ((JnaAccessor.getCUnixLibrary() != null)
+                && (JnaAccessor.getCUnixLibrary().link(source.getAbsolutePath(), target.getAbsolutePath()) == 0));
+    }
+
+}
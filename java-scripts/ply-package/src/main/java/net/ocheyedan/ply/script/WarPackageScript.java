@@ -1,10 +1,10 @@
 package net.ocheyedan.ply.script;
 
+import net.ocheyedan.ply.DirectorySync;
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.dep.DependencyAtom;
 import net.ocheyedan.ply.dep.Deps;
-import net.ocheyedan.ply.jna.JnaAccessor;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.PropFile;
 import net.ocheyedan.ply.props.Props;
@@ -21,6 +21,13 @@ import java.io.File;
  * webapp.dir=string [[default=src/main/webapp]] (the parent directory of the WEB-INF directory).
  * exploded.war.dir=string [[default=${project.build.dir}/${project.artifact.name} (sans the package)]] (the location
  *                  in which to store the exploded war)
+ * exploded.war.link=boolean [[default=false]] (if true, the compiled classes and resources within the exploded war
+ *                   are hard-linked to their build output rather than copied.  A hard-linked file is the same file
+ *                   as its build output, so anything which modifies the exploded war in place (i.e., a container
+ *                   hot-deploying from it) also modifies the build output.  Files from the webapp directory and
+ *                   dependencies from the local repository are always copied, so they are never modified this way.)
+ * The exploded war is updated incrementally via {@link DirectorySync}; only changed files are replaced and files no
+ * longer part of the war are removed.
  */
 public class WarPackageScript extends JarPackageScript implements PackagingScript {
 
@@ -29,48 +36,43 @@ public class WarPackageScript extends JarPackageScript implements PackagingScrip
     }
 
     /**
-     * Includes the exploded directory view of the war (created via {@link #preprocess()}
+     * Includes the exploded directory view of the war (created via {@link #preprocess()}) along with the manifest.
+     * @param packager @see {@link ZipPackageScript#addIncludes(ZipPackager, String, String)}
      * @param compileDir the directory containing compiled output.
      * @param resourceDir the directory where resources are.
-     * @return { "-C", "", "." }
      */
-    @Override protected String[] getIncludes(String compileDir, String resourceDir) {
-        String manifestFile = getManifestFilePath();
-        String explodedWarPath = getExplodedWarDirPath();
-        return new String[] { manifestFile, "-C", explodedWarPath, "." };
+    @Override protected void addIncludes(ZipPackager packager, String compileDir, String resourceDir) {
+        packager.addContent(manifest, ZipPackager.MANIFEST_NAME);
+        packager.addDirectory(new File(getExplodedWarDirPath()), "");
     }
 
     /**
-     * Creates an exploded view of the war.
+     * Creates (or incrementally updates) an exploded view of the war.
      */
     @Override protected void preprocess() {
         super.preprocess();
-        String buildDir = getBuildDir();
-        // create the exploded war directory
         File explodedWarDir = new File(getExplodedWarDirPath());
         explodedWarDir.mkdirs();
-        // get the web-inf dir and copy to the exploded war web-inf dir
+        DirectorySync sync = new NativeDirectorySync(explodedWarDir);
+        boolean link = "true".equalsIgnoreCase(Props.get("exploded.war.link", Context.named("package")).value());
+        // the web-inf dir into the exploded war web-inf dir
         String webappDir = Props.get("webapp.dir", Context.named("package")).value();
-        FileUtil.copyDir(FileUtil.fromParts(webappDir, "WEB-INF"),
-                FileUtil.fromParts(explodedWarDir.getPath(), "WEB-INF"));
-        // copy the meta-dir to the exploded war meta-inf dir
-        FileUtil.copyDir(FileUtil.fromParts(buildDir, "META-INF"),
-                FileUtil.fromParts(explodedWarDir.getPath(), "META-INF"));
-        // copy the classes/resources directory to the WEB-INF/classes
+        sync.addDirectory(FileUtil.fromParts(webappDir, "WEB-INF"), "WEB-INF");
+        // the manifest and ply dependencies into the exploded war meta-inf dir
+        sync.addContent(manifest, "META-INF/Manifest.mf");
+        sync.addContent(dependencies, DEPENDENCIES_NAME);
+        // the classes/resources directory into the WEB-INF/classes
         String buildPath = Props.get("build.path", Context.named("compiler")).value();
         String resBuildPath = Props.get("res.build.dir", Context.named("project")).value();
-        File buildPathDir = new File(buildPath);
-        File resBuildPathDir = new File(resBuildPath);
-        if (buildPathDir.exists()) {
-            FileUtil.copyDir(buildPathDir, FileUtil.fromParts(explodedWarDir.getPath(), "WEB-INF", "classes"));
-        }
-        if (resBuildPathDir.exists()) {
-            FileUtil.copyDir(resBuildPathDir, FileUtil.fromParts(explodedWarDir.getPath(), "WEB-INF", "classes"));
-        }
-        // copy the dependencies to the WEB-INF/lib directory
+        sync.addDirectory(new File(buildPath), "WEB-INF/classes", null, link);
+        sync.addDirectory(new File(resBuildPath), "WEB-INF/classes", null, link);
+        // the dependencies into the WEB-INF/lib directory
         PropFile resolvedProperties = Deps.getResolvedProperties(false);
-        Output.print("^info^ Copying dependencies for war file.");
-        copyDependencies(resolvedProperties, FileUtil.fromParts(explodedWarDir.getPath(), "WEB-INF", "lib"));
+        addDependencies(resolvedProperties, sync);
+        if (!sync.sync()) {
+            Output.print("^error^ Error creating the exploded war directory ^b^%s^r^.", explodedWarDir.getPath());
+            System.exit(1);
+        }
     }
 
     protected String getExplodedWarDirPath() {
@@ -81,21 +83,15 @@ public class WarPackageScript extends JarPackageScript implements PackagingScrip
         return explodedWarDir;
     }
 
-    protected void copyDependencies(PropFile resolvedProperties, File copyToDir) {
-        copyToDir.mkdirs();
+    protected void addDependencies(PropFile resolvedProperties, DirectorySync sync) {
+        sync.addDirectory("WEB-INF/lib");
         for (PropFile.Prop resolvedKey : resolvedProperties.props()) {
             if (DependencyAtom.isTransient(resolvedKey.name)) {
                 continue;
             }
             File dependency = new File(resolvedKey.value());
-            File to = FileUtil.fromParts(copyToDir.getPath(), dependency.getName());
-            if (!to.exists()) {
-                if (JnaAccessor.getCUnixLibrary() != null) {
-                    JnaAccessor.getCUnixLibrary().symlink(dependency.getPath(), to.getPath());
-                } else {
-                    FileUtil.copy(dependency, to);
-                }
-            }
+            // never linked, modifying the exploded war must not modify the local repository
+            sync.addFile(dependency, "WEB-INF/lib/" + dependency.getName(), false);
         }
     }
 
@@ -0,0 +1,189 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.Output;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Merges zip files into a single zip file (i.e., a {@literal -with-deps} fat jar) without decompressing and
+ * recompressing their entries.  Each merged zip's central directory is read (via {@link ZipReader}) and the already
+ * compressed data of each of its entries is copied (via {@link ZipWriter}) directly into the merged file along with
+ * the entry's original crc and sizes.
+ * Entries are merged according to the following rules:
+ * - the first entry of a given name wins; subsequent entries of that name are skipped (with a warning unless the entry
+ *   is a directory, {@literal META-INF/MANIFEST.MF} or {@literal META-INF/ply/dependencies.properties}).
+ * - {@literal META-INF/services/*} provider-configuration files of the same name are concatenated (without duplicate
+ *   provider lines) so that all providers remain available.
+ * - signature files ({@literal META-INF/*.SF}, {@literal *.DSA}, {@literal *.RSA} and {@literal *.EC}) and
+ *   {@literal META-INF/INDEX.LIST} are dropped as they are invalid for the merged file.
+ * Zip files which cannot be copied raw (see {@link ZipReader.Unsupported}) are read through {@link ZipFile} and their
+ * entries recompressed.
+ */
+final class ZipMerger {
+
+    private final ZipWriter writer;
+
+    private final Set<String> existing;
+
+    /**
+     * Merged {@literal META-INF/services/*} provider lines mapped by entry name (in the order encountered).
+     */
+    private final Map<String, Set<String>> services;
+
+    ZipMerger(File to) throws IOException {
+        this.writer = new ZipWriter(to);
+        this.existing = new HashSet<String>();
+        this.services = new LinkedHashMap<String, Set<String>>();
+    }
+
+    /**
+     * Merges all entries of {@code zip} (subject to the rules described in {@link ZipMerger}) into the merged file.
+     * @param zip to merge
+     * @throws IOException if {@code zip} could not be read or the merged file could not be written
+     */
+    void merge(File zip) throws IOException {
+        ZipReader reader = new ZipReader(zip);
+        try {
+            List<ZipReader.Entry> entries;
+            try {
+                entries = reader.entries();
+            } catch (ZipReader.Unsupported u) {
+                mergeRecompressed(zip);
+                return;
+            }
+            for (ZipReader.Entry entry : entries) {
+                if (!accept(entry.name)) {
+                    continue;
+                }
+                if (isService(entry.name)) {
+                    addService(entry.name, reader.read(entry));
+                } else {
+                    writer.copy(reader, entry, entry.dosTime);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes any merged {@literal META-INF/services/*} files followed by the central directory and closes the merged
+     * file.
+     * @throws IOException if the merged file could not be written
+     */
+    void close() throws IOException {
+        try {
+            int now = ZipWriter.toDosTime(System.currentTimeMillis());
+            for (Map.Entry<String, Set<String>> service : services.entrySet()) {
+                StringBuilder content = new StringBuilder();
+                for (String line : service.getValue()) {
+                    content.append(line).append('\n');
+                }
+                writer.add(service.getKey(), content.toString().getBytes(ZipReader.UTF_8), true, now);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @param name of the entry
+     * @return true if the entry named {@code name} should be merged (or is a service file which should be merged);
+     *         false if it is to be skipped
+     */
+    private boolean accept(String name) {
+        if (name.startsWith("META-INF/")) {
+            String upperCaseName = name.toUpperCase(Locale.ENGLISH);
+            if (upperCaseName.indexOf('/', 9) == -1 && (upperCaseName.endsWith(".SF") || upperCaseName.endsWith(".DSA")
+                    || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".EC")
+                    || "META-INF/INDEX.LIST".equals(upperCaseName))) {
+                return false;
+            }
+            if (isService(name)) {
+                return true;
+            }
+        }
+        if (!existing.add(name)) {
+            if (!name.endsWith("/") && !"META-INF/MANIFEST.MF".equalsIgnoreCase(name)
+                    && !JarPackageScript.DEPENDENCIES_NAME.equals(name)) {
+                Output.print("^warn^ Duplicate entry ^b^%s^r^ skipped.", name);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isService(String name) {
+        return name.startsWith("META-INF/services/") && (name.length() > 18) && !name.endsWith("/");
+    }
+
+    private void addService(String name, byte[] content) {
+        Set<String> lines = services.get(name);
+        if (lines == null) {
+            lines = new LinkedHashSet<String>();
+            services.put(name, lines);
+        }
+        BufferedReader reader = new BufferedReader(new StringReader(new String(content, ZipReader.UTF_8)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe);
+        }
+    }
+
+    /**
+     * Merges {@code zip} by reading and recompressing each entry (used when {@code zip} cannot be merged raw).
+     * @param zip to merge
+     * @throws IOException @see {@link ZipFile#getInputStream(ZipEntry)}
+     */
+    private void mergeRecompressed(File zip) throws IOException {
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry zipEntry = zipEntries.nextElement();
+                String name = zipEntry.getName();
+                if (!accept(name)) {
+                    continue;
+                }
+                if (isService(name)) {
+                    addService(name, read(zipFile.getInputStream(zipEntry)));
+                } else if (zipEntry.isDirectory()) {
+                    writer.addDirectory(name, ZipWriter.toDosTime(zipEntry.getTime()));
+                } else {
+                    InputStream content = zipFile.getInputStream(zipEntry);
+                    try {
+                        writer.add(name, content, true, ZipWriter.toDosTime(zipEntry.getTime()));
+                    } finally {
+                        content.close();
+                    }
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            return content.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+}
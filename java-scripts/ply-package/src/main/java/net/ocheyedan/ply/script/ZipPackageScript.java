@@ -4,17 +4,12 @@ import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.dep.DependencyAtom;
 import net.ocheyedan.ply.dep.Deps;
-import net.ocheyedan.ply.jna.JnaAccessor;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.PropFile;
 import net.ocheyedan.ply.props.Props;
 
-import java.io.*;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
+import java.io.File;
+import java.io.IOException;
 
 /**
  * User: blangel
@@ -23,6 +18,7 @@ import java.util.zip.ZipOutputStream;
  *
  * Packages all files within {@literal compiler[.scope].build.path} and {@literal project[.scope].res.build.dir} into a
  * zip file and stores within {@literal project[.scope].build.dir} as {@literal package[.scope].name}.zip
+ * The package is created in-process via {@link ZipPackager}.
  * The property file used to configure this script is {@literal package[.scope].properties} and so the context is
  * {@literal package}.
  * The following properties exist:
@@ -30,6 +26,9 @@ import java.util.zip.ZipOutputStream;
  * verbose=boolean [[default=false]] (print verbose output).
  * compress=boolean [[default=true]] (if true, the package file will be compressed).
  * includeDeps=boolean [[default=false]] (if true, the dependencies will be included in the archive).
+ * incremental=boolean [[default=true]] (if true, packaging is skipped if no packaged file has changed since the package
+ *                                       file was last created and otherwise only changed files are compressed; the
+ *                                       inputs of the package file are recorded next to it as {@literal .inputs}).
  */
 public class ZipPackageScript implements PackagingScript {
 
@@ -43,28 +42,27 @@ public class ZipPackageScript implements PackagingScript {
             System.exit(0);
         }
         preprocess();
-        String[] cmdArgs = createArgs(getType(), getIncludes(buildPath, resBuildPath));
-        ProcessBuilder processBuilder = new ProcessBuilder(cmdArgs).redirectErrorStream(true);
-        Process process;
+        boolean verbose = getBoolean(Props.get("verbose", Context.named("package")).value());
+        boolean compress = getBoolean(Props.get("compress", Context.named("package")).value());
+        ZipPackager packager = new ZipPackager(compress, verbose);
+        addIncludes(packager, buildPath, resBuildPath);
+        String packageName = getPackageName(getType());
+        File packageFile = new File(packageName);
+        File inputsFile = new File(packageName + ".inputs");
+        boolean incremental = getBoolean(Props.get("incremental", Context.named("package")).value());
+        if (!incremental) {
+            inputsFile.delete();
+        } else if (packager.isUpToDate(packageFile, inputsFile)) {
+            Output.print("^dbug^ Package ^b^%s^r^ is up to date, skipping.", packageName);
+            System.exit(postprocess(0));
+        }
         try {
-            process = processBuilder.start();
+            packager.write(packageFile, (incremental ? inputsFile : null));
         } catch (IOException ioe) {
-            Output.print("^error^ Error creating %s file %s", getType(), Arrays.toString(cmdArgs));
+            Output.print("^error^ Error creating %s file %s", getType(), packageName);
             throw ioe;
         }
-        InputStream processStdout = process.getInputStream();
-        BufferedReader lineReader = new BufferedReader(new InputStreamReader(processStdout));
-        String processStdoutLine;
-        while ((processStdoutLine = lineReader.readLine()) != null) {
-            System.out.println(processStdoutLine); // don't use Output, just print directly and let ply itself handle
-        }
-        int result = process.waitFor();
-        if (result != 0) {
-            System.exit(result);
-        } else {
-            result = postprocess(result);
-        }
-        System.exit(result);
+        System.exit(postprocess(0));
     }
 
     /**
@@ -97,34 +95,22 @@ public class ZipPackageScript implements PackagingScript {
                          (numberDeps == 1 ? "y" : "ies"), packaging);
             String name = getPackageName(packaging);
             String nameWithDeps = getPackageName(packaging, "with-deps");
-            File nameWithDepsFile = new File(nameWithDeps);
-            ZipOutputStream output = null;
             try {
-                nameWithDepsFile.createNewFile();
-                Set<String> existing = new HashSet<String>();
-                output = new ZipOutputStream(new FileOutputStream(nameWithDepsFile));
-                ZipFiles.append(new ZipInputStream(new FileInputStream(name)), output, existing);
-                for (PropFile.Prop dep : deps.props()) {
-                    if (DependencyAtom.isTransient(dep.name)) {
-                        continue;
+                ZipMerger merger = new ZipMerger(new File(nameWithDeps));
+                try {
+                    merger.merge(new File(name));
+                    for (PropFile.Prop dep : deps.props()) {
+                        if (DependencyAtom.isTransient(dep.name)) {
+                            continue;
+                        }
+                        merger.merge(new File(dep.value()));
                     }
-                    String depFile = dep.value();
-                    ZipFiles.append(new ZipInputStream(new FileInputStream(depFile)), output, existing);
+                } finally {
+                    merger.close();
                 }
-                output.close();
-            } catch (FileNotFoundException fnfe) {
-                throw new AssertionError(fnfe);
             } catch (IOException ioe) {
                 Output.print(ioe);
                 return 1;
-            } finally {
-                if (output != null) {
-                    try {
-                        output.close();
-                    } catch (IOException ioe) {
-                        throw new AssertionError(ioe);
-                    }
-                }
             }
         }
         return exitCode;
@@ -132,60 +118,16 @@ public class ZipPackageScript implements PackagingScript {
 
     /**
      * Allows subclasses a hook to augment the included files/directories within the package.
-     * One of {@code compileDir} or {@code resourceDir} must exist.
+     * One of {@code compileDir} or {@code resourceDir} must exist.  Overlapping sub-directories of {@code compileDir}
+     * and {@code resourceDir} are merged by the {@code packager} (with files from {@code compileDir} taking
+     * precedence).
+     * @param packager into which to add the files/directories to package
      * @param compileDir the directory containing compiled output.
      * @param resourceDir the directory where resources are.
-     * @return the included files for packaging within the {@literal jar} executable format (i.e., may include '-C' for
-     *         directories)
      */
-    protected String[] getIncludes(String compileDir, String resourceDir) {
-        File compileDirFile = new File(compileDir);
-        File resourceDirFile = new File(resourceDir);
-        if (compileDirFile.exists() && resourceDirFile.exists()) {
-            if (subdirectoriesIntersect(compileDirFile, resourceDirFile)) {
-                return getIntersectedDirectories(compileDirFile, compileDir, resourceDirFile);
-            } else {
-                return new String[] { "-C", compileDir, ".", "-C", resourceDir, "." };
-            }
-        } else if (compileDirFile.exists()) {
-            return new String[] { "-C", compileDir, "." };
-        } else {
-            return new String[] { "-C", resourceDir, "." };
-        }
-    }
-
-    /**
-     * @return the base options to use when creating the package file.
-     * @see {@literal http://download.oracle.com/javase/tutorial/deployment/jar/build.html}
-     */
-    protected String getBaseOptions() {
-        return "cfM";
-    }
-
-    /**
-     * Creates the arguments to give to the {@literal jar} executable
-     * @param packaging type of the project (i.e., zip, jar, war).
-     * @param includes list of directories/files to include within the package (may include '-C' information)
-     * @return the arguments to the {@literal jar} executable.
-     */
-    protected String[] createArgs(String packaging, String[] includes) {
-        String jarScript = Props.get("java", Context.named("ply")).value().replace("bin" + File.separator + "java",
-                "bin" + File.separator + "jar");
-        String options = getBaseOptions();
-        if (getBoolean(Props.get("verbose", Context.named("package")).value())) {
-            options += "v";
-        }
-        if (!getBoolean(Props.get("compress", Context.named("package")).value())) {
-            options += "0";
-        }
-        String name = getPackageName(packaging);
-
-        String[] args = new String[includes.length + 3];
-        args[0] = jarScript;
-        args[1] = options;
-        args[2] = name;
-        System.arraycopy(includes, 0, args, 3, includes.length);
-        return args;
+    protected void addIncludes(ZipPackager packager, String compileDir, String resourceDir) {
+        packager.addDirectory(new File(compileDir), "");
+        packager.addDirectory(new File(resourceDir), "");
     }
 
     protected String getPackageName(String packaging) {
@@ -226,68 +168,4 @@ public class ZipPackageScript implements PackagingScript {
         return "true".equalsIgnoreCase(value);
     }
 
-    /**
-     * A {@link FilenameFilter} which only accepts directories.
-     */
-    private static final FilenameFilter DIRECTORY_FILTER = new FilenameFilter() {
-        @Override public boolean accept(File dir, String name) {
-            return (FileUtil.fromParts(dir.getPath(), name)).isDirectory();
-        }
-    };
-
-    /**
-     * @param first directory to compare to {@code second}
-     * @param second directory to compare with {@code first}
-     * @return true if {@code first} and {@code second} have overlapping sub-directory structures.
-     */
-    static boolean subdirectoriesIntersect(File first, File second) {
-        String[] firstSubfileNames = first.list(DIRECTORY_FILTER);
-        String[] secondSubfileNames = second.list(DIRECTORY_FILTER);
-        Arrays.sort(firstSubfileNames);
-        Arrays.sort(secondSubfileNames);
-        for (String firstSubfileName : firstSubfileNames) {
-            if (Arrays.binarySearch(secondSubfileNames, firstSubfileName) >= 0) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * @param first into which to link files from {@code second}
-     * @param firstPath the pre-computed path of {@code first}
-     * @param second from which to link all files into {@code first}
-     * @return jar command arguments for {@code first} (note, all files within {@code second} are first linked into {@code first}).
-     */
-    static String[] getIntersectedDirectories(File first, String firstPath, File second) {
-        // TODO - either do programmatically (create package via java-api not jar command or at least
-        // TODO - link the files into an independent directory so as to not pollute classes/resources dirs).
-        linkIntersectedDirectories(first, second);
-        return new String[] { "-C", firstPath, "." };
-    }
-
-    /**
-     * Links all files within {@code from} to {@code to}
-     * @param to directory into which to link all files within {@code from}
-     * @param from directory from which to link all files into {@code to}
-     */
-    private static void linkIntersectedDirectories(File to, File from) {
-        for (File secondFile : from.listFiles()) {
-            File firstFile = FileUtil.fromParts(to.getPath(), secondFile.getName());
-            if (firstFile.exists()) {
-                if (secondFile.isDirectory()) {
-                    linkIntersectedDirectories(firstFile, secondFile);
-                } else {
-                    Output.print("^warn^ Found a duplicate entry [ ^b^%s^r^ ], skipping inclusion of ^i^^yellow^%s^r^.", firstFile.getPath(), secondFile.getPath());
-                }
-            } else {
-                if (JnaAccessor.getCUnixLibrary() != null) {
-                    JnaAccessor.getCUnixLibrary().symlink(secondFile.getAbsolutePath(), firstFile.getAbsolutePath());
-                } else {
-                    FileUtil.copy(secondFile, firstFile);
-                }
-            }
-        }
-    }
-
 }
@@ -0,0 +1,433 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.Output;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Creates zip (and jar/war) packages in-process by streaming files directly into a {@link ZipWriter}, replacing
+ * the forked {@literal jar} executable.
+ * Content is added as directories (whose contents are rooted at a given entry prefix), single files or in-memory
+ * bytes and written, in the order added, by {@link #write(File, File)}.  Overlapping directories are merged virtually;
+ * the first entry added for a given name wins and subsequent files of the same name are skipped with a warning (as was
+ * done when linking intersecting directories prior to invoking {@literal jar}).  As with {@literal jar}, any entry
+ * named {@literal META-INF/MANIFEST.MF} (ignoring case) after the first is silently skipped and parent directory
+ * entries are created for every file.
+ * Packaging may be incremental; the inputs of each package written are recorded (each entry's name along with its
+ * file's size and timestamp or its in-memory content's size and crc) so that {@link #isUpToDate(File, File)} can skip
+ * packaging altogether when no input has changed and {@link #write(File, File)} can copy the compressed data of
+ * unchanged entries from the previous package as-is rather than recompressing them.
+ */
+final class ZipPackager {
+
+    static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    private static final int INPUTS_MAGIC = 0x504c595a; // 'PLYZ'
+
+    private static final int INPUTS_VERSION = 1;
+
+    /**
+     * A single entry within the package; exactly one of {@code file} or {@code content} is non-null unless this
+     * entry represents a directory (in which case both are null).
+     */
+    private static final class Entry {
+
+        private final String name;
+
+        private final File file;
+
+        private final byte[] content;
+
+        private Entry(String name, File file, byte[] content) {
+            this.name = name;
+            this.file = file;
+            this.content = content;
+        }
+
+        private boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    /**
+     * The recorded information about an entry; for files the size and last modified time of the file, for in-memory
+     * content the size and crc of the content and for directories -1 for both.
+     */
+    private static final class Input {
+
+        private final String name;
+
+        private final long size;
+
+        private final long stamp;
+
+        private Input(String name, long size, long stamp) {
+            this.name = name;
+            this.size = size;
+            this.stamp = stamp;
+        }
+
+        private static Input of(Entry entry) {
+            if (entry.file != null) {
+                return new Input(entry.name, entry.file.length(), entry.file.lastModified());
+            } else if (entry.content != null) {
+                CRC32 crc = new CRC32();
+                crc.update(entry.content);
+                return new Input(entry.name, entry.content.length, crc.getValue());
+            } else {
+                return new Input(entry.name, -1L, -1L);
+            }
+        }
+
+        private boolean matches(Input input) {
+            return name.equals(input.name) && (size == input.size) && (stamp == input.stamp);
+        }
+    }
+
+    /**
+     * The recorded inputs of a package along with the package's size and timestamp when written.
+     */
+    private static final class Inputs {
+
+        private final boolean compress;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final List<Input> inputs;
+
+        private Inputs(boolean compress, long size, long lastModified, List<Input> inputs) {
+            this.compress = compress;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.inputs = inputs;
+        }
+    }
+
+    private final boolean compress;
+
+    private final boolean verbose;
+
+    private final List<Entry> entries;
+
+    private final Map<String, Entry> byName;
+
+    ZipPackager(boolean compress, boolean verbose) {
+        this.compress = compress;
+        this.verbose = verbose;
+        this.entries = new ArrayList<Entry>();
+        this.byName = new HashMap<String, Entry>();
+    }
+
+    /**
+     * Adds all files within {@code dir} (recursively) rooted at {@code prefix}.
+     * @param dir the directory whose contents to add; if it does not exist nothing is added.
+     * @param prefix the entry name prefix (i.e., {@literal WEB-INF/classes}) or the empty string for the package's root.
+     */
+    void addDirectory(File dir, String prefix) {
+        if (!dir.isDirectory()) {
+            return;
+        }
+        String root = normalize(prefix);
+        if (!root.isEmpty()) {
+            addParents(root + "/");
+            add(new Entry(root + "/", null, null));
+        }
+        addChildren(dir, (root.isEmpty() ? "" : root + "/"));
+    }
+
+    /**
+     * Adds {@code file} as {@code name}.
+     * @param file to add
+     * @param name of the entry
+     */
+    void addFile(File file, String name) {
+        String entryName = normalize(name);
+        addParents(entryName);
+        add(new Entry(entryName, file, null));
+    }
+
+    /**
+     * Adds {@code content} as {@code name}.
+     * @param content to add
+     * @param name of the entry
+     */
+    void addContent(byte[] content, String name) {
+        String entryName = normalize(name);
+        addParents(entryName);
+        add(new Entry(entryName, null, content));
+    }
+
+    /**
+     * @param to the package file
+     * @param inputsFile the inputs recorded when {@code to} was last written
+     * @return true if {@code to} is unchanged since last written and its recorded inputs are the same as the entries
+     *         added to this packager
+     */
+    boolean isUpToDate(File to, File inputsFile) {
+        if (!to.exists()) {
+            return false;
+        }
+        Inputs inputs = readInputs(inputsFile);
+        if ((inputs == null) || (inputs.compress != compress) || (inputs.size != to.length())
+                || (inputs.lastModified != to.lastModified()) || (inputs.inputs.size() != entries.size())) {
+            return false;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (!Input.of(entries.get(i)).matches(inputs.inputs.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes all added entries to {@code to} (via a temporary file which then replaces {@code to}).
+     * @param to the package file to create
+     * @param inputsFile if non-null, the package is written incrementally; entries unchanged from those recorded
+     *                   within {@code inputsFile} (or, if not recorded, whose size and crc are unchanged) are copied
+     *                   from the existing {@code to} file without being recompressed and the inputs of the written
+     *                   package are then recorded to {@code inputsFile}
+     * @throws IOException on any failure reading an entry's file or writing {@code to}
+     */
+    void write(File to, File inputsFile) throws IOException {
+        File parent = to.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        Map<String, Input> previousInputs = new HashMap<String, Input>();
+        Map<String, ZipReader.Entry> previousEntries = new HashMap<String, ZipReader.Entry>();
+        ZipReader previous = null;
+        if ((inputsFile != null) && to.exists()) {
+            Inputs inputs = readInputs(inputsFile);
+            if ((inputs != null) && (inputs.compress == compress)) {
+                for (Input input : inputs.inputs) {
+                    previousInputs.put(input.name, input);
+                }
+            }
+            previous = openPrevious(to, previousEntries);
+        }
+        File temp = new File(to.getPath() + ".tmp");
+        List<Input> written = new ArrayList<Input>(entries.size());
+        int reused = 0;
+        try {
+            ZipWriter writer = new ZipWriter(temp);
+            try {
+                int now = ZipWriter.toDosTime(System.currentTimeMillis());
+                for (Entry entry : entries) {
+                    Input input = Input.of(entry);
+                    written.add(input);
+                    ZipReader.Entry previousEntry = previousEntries.get(entry.name);
+                    if (entry.isDirectory()) {
+                        writer.addDirectory(entry.name, (previousEntry == null ? now : previousEntry.dosTime));
+                    } else if (isUnchanged(entry, input, previousInputs.get(entry.name), previousEntry)) {
+                        writer.copy(previous, previousEntry, (entry.file == null ? previousEntry.dosTime
+                                                                                 : ZipWriter.toDosTime(input.stamp)));
+                        reused++;
+                    } else if (entry.content != null) {
+                        writer.add(entry.name, entry.content, compress, now);
+                    } else {
+                        writer.add(entry.name, entry.file, compress, ZipWriter.toDosTime(input.stamp));
+                    }
+                    if (verbose) {
+                        Output.print("adding: %s", entry.name);
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ioe) {
+            temp.delete();
+            throw ioe;
+        } finally {
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        if (to.exists() && !to.delete()) {
+            throw new IOException(String.format("Could not replace %s", to.getPath()));
+        }
+        if (!temp.renameTo(to)) {
+            throw new IOException(String.format("Could not rename %s to %s", temp.getPath(), to.getPath()));
+        }
+        if (inputsFile != null) {
+            if (reused > 0) {
+                Output.print("^dbug^ Reused ^b^%d^r^ of ^b^%d^r^ entr%s from the previous package.", reused,
+                        entries.size(), (entries.size() == 1 ? "y" : "ies"));
+            }
+            writeInputs(new Inputs(compress, to.length(), to.lastModified(), written), inputsFile);
+        }
+    }
+
+    /**
+     * @return true if {@code entry} is unchanged from {@code previousEntry} (as evidenced by its recorded
+     *         {@code previousInput} or, if there is no such record or the record differs, by its size and crc)
+     */
+    private boolean isUnchanged(Entry entry, Input input, Input previousInput, ZipReader.Entry previousEntry)
+            throws IOException {
+        if ((previousEntry == null)
+                || (previousEntry.method != (compress ? ZipEntry.DEFLATED : ZipEntry.STORED))) {
+            return false;
+        }
+        if (entry.content != null) {
+            return (previousEntry.size == input.size) && (previousEntry.crc == input.stamp);
+        }
+        if (previousEntry.size != input.size) {
+            return false;
+        }
+        if ((previousInput != null) && input.matches(previousInput)) {
+            return true;
+        }
+        // the file was touched (i.e., recompiled) or never recorded; it's unchanged if its content is unchanged
+        return (previousEntry.crc == crc(entry.file));
+    }
+
+    private static ZipReader openPrevious(File to, Map<String, ZipReader.Entry> into) {
+        ZipReader previous = null;
+        try {
+            previous = new ZipReader(to);
+            for (ZipReader.Entry entry : previous.entries()) {
+                into.put(entry.name, entry);
+            }
+            return previous;
+        } catch (IOException ioe) {
+            // not readable (or a zip64 file); simply package from scratch
+            into.clear();
+            if (previous != null) {
+                try {
+                    previous.close();
+                } catch (IOException closeIoe) {
+                    throw new AssertionError(closeIoe);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static Inputs readInputs(File inputsFile) {
+        if (!inputsFile.exists()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(inputsFile)));
+            if ((input.readInt() != INPUTS_MAGIC) || (input.readInt() != INPUTS_VERSION)) {
+                return null;
+            }
+            boolean compress = input.readBoolean();
+            long size = input.readLong();
+            long lastModified = input.readLong();
+            int count = input.readInt();
+            List<Input> inputs = new ArrayList<Input>(count);
+            for (int i = 0; i < count; i++) {
+                inputs.add(new Input(input.readUTF(), input.readLong(), input.readLong()));
+            }
+            return new Inputs(compress, size, lastModified, inputs);
+        } catch (IOException ioe) {
+            return null; // a corrupt record; simply package from scratch
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    private static void writeInputs(Inputs inputs, File inputsFile) throws IOException {
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(inputsFile)));
+        try {
+            output.writeInt(INPUTS_MAGIC);
+            output.writeInt(INPUTS_VERSION);
+            output.writeBoolean(inputs.compress);
+            output.writeLong(inputs.size);
+            output.writeLong(inputs.lastModified);
+            output.writeInt(inputs.inputs.size());
+            for (Input input : inputs.inputs) {
+                output.writeUTF(input.name);
+                output.writeLong(input.size);
+                output.writeLong(input.stamp);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static long crc(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        } finally {
+            input.close();
+        }
+        return crc.getValue();
+    }
+
+    private void addChildren(File dir, String prefix) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            File child = new File(dir, name);
+            if (child.isDirectory()) {
+                add(new Entry(prefix + name + "/", null, null));
+                addChildren(child, prefix + name + "/");
+            } else {
+                add(new Entry(prefix + name, child, null));
+            }
+        }
+    }
+
+    private void addParents(String name) {
+        for (int index = name.indexOf('/'); (index != -1) && (index < (name.length() - 1)); index = name.indexOf('/', index + 1)) {
+            add(new Entry(name.substring(0, index + 1), null, null));
+        }
+    }
+
+    private void add(Entry entry) {
+        Entry existing = byName.get(entry.name);
+        if (existing == null) {
+            if (MANIFEST_NAME.equalsIgnoreCase(entry.name) && byName.containsKey(MANIFEST_NAME)) {
+                return;
+            }
+            byName.put((MANIFEST_NAME.equalsIgnoreCase(entry.name) ? MANIFEST_NAME : entry.name), entry);
+            entries.add(entry);
+        } else if (!entry.isDirectory() && !MANIFEST_NAME.equalsIgnoreCase(entry.name)) {
+            Output.print("^warn^ Found a duplicate entry [ ^b^%s^r^ ], skipping inclusion of ^i^^yellow^%s^r^.",
+                    describe(existing), describe(entry));
+        }
+    }
+
+    private static String describe(Entry entry) {
+        return (entry.file == null ? entry.name : entry.file.getPath());
+    }
+
+    /**
+     * @param name to normalize
+     * @return {@code name} using '/' as the separator and without leading or trailing separators
+     */
+    private static String normalize(String name) {
+        String normalized = name.replace(File.separatorChar, '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+}
@@ -0,0 +1,263 @@
+package net.ocheyedan.ply.script;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip file so that its entries' compressed data can be copied, as-is, into another
+ * zip file by a {@link ZipWriter}.  Zip files using zip64 extensions are not supported (see {@link Unsupported}).
+ */
+final class ZipReader {
+
+    /**
+     * Thrown when a zip file's central directory cannot be read by {@link ZipReader} (i.e., it uses zip64 extensions
+     * or is not a zip file).
+     */
+    @SuppressWarnings("serial")
+    static final class Unsupported extends IOException {
+        private Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * An entry as described by the central directory.
+     */
+    static final class Entry {
+
+        final String name;
+        final byte[] nameBytes;
+        final int versionMadeBy;
+        final int versionNeeded;
+        final int flags;
+        final int method;
+        final int dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final int internalAttributes;
+        final long externalAttributes;
+        final long localHeaderOffset;
+
+        private Entry(String name, byte[] nameBytes, int versionMadeBy, int versionNeeded, int flags, int method,
+                      int dosTime, long crc, long compressedSize, long size, int internalAttributes,
+                      long externalAttributes, long localHeaderOffset) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.internalAttributes = internalAttributes;
+            this.externalAttributes = externalAttributes;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    static final int LOCAL_HEADER_SIG = 0x04034b50;
+
+    static final int CENTRAL_HEADER_SIG = 0x02014b50;
+
+    static final int END_SIG = 0x06054b50;
+
+    static final int ZIP64_END_SIG = 0x06064b50;
+
+    static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+
+    static final int LOCAL_HEADER_LENGTH = 30;
+
+    static final int CENTRAL_HEADER_LENGTH = 46;
+
+    static final int END_LENGTH = 22;
+
+    static final long MAX_UNSIGNED_INT = 0xFFFFFFFFL;
+
+    /**
+     * General purpose flag bit 11; set if the entry's name (and comment) are encoded as UTF-8.
+     */
+    static final int UTF_8_FLAG = 0x800;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The encoding of entry names without the {@link #UTF_8_FLAG} (per the zip specification); null if the jvm doesn't
+     * support it, in which case such zip files are {@link Unsupported}.
+     */
+    static final Charset CP437 = (Charset.isSupported("IBM437") ? Charset.forName("IBM437") : null);
+
+    private final File zip;
+
+    private final RandomAccessFile file;
+
+    private final FileChannel channel;
+
+    ZipReader(File zip) throws IOException {
+        this.zip = zip;
+        this.file = new RandomAccessFile(zip, "r");
+        this.channel = file.getChannel();
+    }
+
+    /**
+     * @return the entries of the zip file in central directory order
+     * @throws Unsupported if the zip file uses zip64 extensions or has no (valid) end of central directory record
+     * @throws IOException if the zip file could not be read
+     */
+    List<Entry> entries() throws IOException {
+        ByteBuffer centralDirectory = readCentralDirectory();
+        List<Entry> entries = new ArrayList<Entry>();
+        while (centralDirectory.remaining() >= CENTRAL_HEADER_LENGTH) {
+            if (centralDirectory.getInt() != CENTRAL_HEADER_SIG) {
+                throw new ZipException(String.format("Invalid central directory within %s", zip.getPath()));
+            }
+            int versionMadeBy = centralDirectory.getShort() & 0xFFFF;
+            int versionNeeded = centralDirectory.getShort() & 0xFFFF;
+            int flags = centralDirectory.getShort() & 0xFFFF;
+            int method = centralDirectory.getShort() & 0xFFFF;
+            int dosTime = centralDirectory.getInt();
+            long crc = centralDirectory.getInt() & MAX_UNSIGNED_INT;
+            long compressedSize = centralDirectory.getInt() & MAX_UNSIGNED_INT;
+            long size = centralDirectory.getInt() & MAX_UNSIGNED_INT;
+            int nameLength = centralDirectory.getShort() & 0xFFFF;
+            int extraLength = centralDirectory.getShort() & 0xFFFF;
+            int commentLength = centralDirectory.getShort() & 0xFFFF;
+            centralDirectory.getShort(); // disk number start
+            int internalAttributes = centralDirectory.getShort() & 0xFFFF;
+            long externalAttributes = centralDirectory.getInt() & MAX_UNSIGNED_INT;
+            long localHeaderOffset = centralDirectory.getInt() & MAX_UNSIGNED_INT;
+            byte[] name = new byte[nameLength];
+            centralDirectory.get(name);
+            centralDirectory.position(centralDirectory.position() + extraLength + commentLength);
+            entries.add(new Entry(decode(name, flags), name, versionMadeBy, versionNeeded, flags, method, dosTime, crc,
+                                  compressedSize, size, internalAttributes, externalAttributes, localHeaderOffset));
+        }
+        return entries;
+    }
+
+    /**
+     * @param name the encoded entry name
+     * @param flags the entry's general purpose flags
+     * @return the decoded {@code name}; as UTF-8 if {@link #UTF_8_FLAG} is set and otherwise as {@link #CP437}
+     * @throws Unsupported if {@code name} is not UTF-8 encoded and the jvm doesn't support {@link #CP437}
+     */
+    private static String decode(byte[] name, int flags) throws Unsupported {
+        if ((flags & UTF_8_FLAG) != 0) {
+            return new String(name, UTF_8);
+        }
+        if (CP437 == null) {
+            throw new Unsupported("IBM437 encoded entry names");
+        }
+        return new String(name, CP437);
+    }
+
+    /**
+     * @param entry for which to find the data offset
+     * @return the offset within the zip file at which {@code entry}'s (compressed) data begins
+     * @throws IOException if the local header of {@code entry} could not be read
+     */
+    long getDataOffset(Entry entry) throws IOException {
+        ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(localHeader, entry.localHeaderOffset);
+        if (localHeader.getInt(0) != LOCAL_HEADER_SIG) {
+            throw new ZipException(String.format("Invalid local header for %s within %s", entry.name, zip.getPath()));
+        }
+        int nameLength = localHeader.getShort(26) & 0xFFFF;
+        int extraLength = localHeader.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOCAL_HEADER_LENGTH + nameLength + extraLength;
+    }
+
+    /**
+     * @param entry to read
+     * @return the uncompressed content of {@code entry}
+     * @throws IOException if {@code entry} could not be read or uses an unsupported compression method
+     */
+    byte[] read(Entry entry) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) entry.compressedSize);
+        readFully(data, getDataOffset(entry));
+        if (entry.method == ZipEntry.STORED) {
+            return data.array();
+        } else if (entry.method != ZipEntry.DEFLATED) {
+            throw new ZipException(String.format("Unsupported compression method %d.", entry.method));
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            // per Inflater, an extra dummy byte is required when using the 'nowrap' option
+            byte[] input = Arrays.copyOf(data.array(), data.capacity() + 1);
+            inflater.setInput(input);
+            byte[] content = new byte[(int) entry.size];
+            int offset = 0;
+            while (offset < content.length) {
+                int inflated = inflater.inflate(content, offset, content.length - offset);
+                if ((inflated == 0) && (inflater.finished() || inflater.needsInput())) {
+                    throw new ZipException(String.format("Truncated entry %s within %s", entry.name, zip.getPath()));
+                }
+                offset += inflated;
+            }
+            return content;
+        } catch (DataFormatException dfe) {
+            throw new ZipException(dfe.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    FileChannel getChannel() {
+        return channel;
+    }
+
+    void close() throws IOException {
+        file.close();
+    }
+
+    private ByteBuffer readCentralDirectory() throws IOException {
+        long length = channel.size();
+        int tailLength = (int) Math.min(length, END_LENGTH + 0xFFFF);
+        ByteBuffer tail = ByteBuffer.allocate(tailLength).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(tail, length - tailLength);
+        for (int i = tailLength - END_LENGTH; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIG) {
+                int entries = tail.getShort(i + 10) & 0xFFFF;
+                long centralDirectoryLength = tail.getInt(i + 12) & MAX_UNSIGNED_INT;
+                long centralDirectoryOffset = tail.getInt(i + 16) & MAX_UNSIGNED_INT;
+                if ((entries == 0xFFFF) || (centralDirectoryLength == MAX_UNSIGNED_INT)
+                        || (centralDirectoryOffset == MAX_UNSIGNED_INT)
+                        || ((i >= 20) && (tail.getInt(i - 20) == ZIP64_LOCATOR_SIG))) {
+                    throw new Unsupported("zip64");
+                }
+                if ((centralDirectoryOffset + centralDirectoryLength) > length) {
+                    throw new Unsupported("invalid central directory");
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, centralDirectoryOffset, centralDirectoryLength)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+        throw new Unsupported("no end of central directory record");
+    }
+
+    private void readFully(ByteBuffer into, long offset) throws IOException {
+        while (into.hasRemaining()) {
+            int read = channel.read(into, offset + into.position());
+            if (read == -1) {
+                throw new EOFException();
+            }
+        }
+        into.flip();
+    }
+
+}
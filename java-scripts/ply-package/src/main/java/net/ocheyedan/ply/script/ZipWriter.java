@@ -0,0 +1,362 @@
+package net.ocheyedan.ply.script;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import static net.ocheyedan.ply.script.ZipReader.*;
+
+/**
+ * Writes a zip file either from content (which is compressed, or not, as it is written) or by copying the already
+ * compressed data of entries within other zip files (read via {@link ZipReader}) directly, via
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, along with their original crc
+ * and sizes.  Local headers are always complete (data descriptors are never written); when the crc and sizes of an
+ * entry are not known ahead of its data the local header is patched after the data is written.
+ * The central directory and end records are written by {@link #close()}; zip64 end records are written if there are
+ * more than 65535 entries but the zip file itself may not exceed 4GB.
+ */
+final class ZipWriter {
+
+    /**
+     * General purpose flag bit indicating sizes and crc follow the entry's data (rather than being within the
+     * local header); always cleared as the local headers written are complete.
+     */
+    private static final int DATA_DESCRIPTOR_FLAG = 0x08;
+
+    /**
+     * The central directory information of an entry written.
+     */
+    private static final class Record {
+
+        private final byte[] name;
+        private final int versionMadeBy;
+        private final int versionNeeded;
+        private final int flags;
+        private final int method;
+        private final int dosTime;
+        private long crc;
+        private long compressedSize;
+        private long size;
+        private final int internalAttributes;
+        private final long externalAttributes;
+        private final long offset;
+
+        private Record(byte[] name, int versionMadeBy, int versionNeeded, int flags, int method, int dosTime, long crc,
+                       long compressedSize, long size, int internalAttributes, long externalAttributes, long offset) {
+            this.name = name;
+            this.versionMadeBy = versionMadeBy;
+            this.versionNeeded = versionNeeded;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.internalAttributes = internalAttributes;
+            this.externalAttributes = externalAttributes;
+            this.offset = offset;
+        }
+    }
+
+    private final FileOutputStream output;
+
+    private final FileChannel channel;
+
+    private final List<Record> records;
+
+    /**
+     * Buffers headers and content prior to writing to {@link #channel}; {@link #flushed} is the position within the
+     * zip file of the buffer's first byte.
+     */
+    private final ByteBuffer buffer;
+
+    private final byte[] input;
+
+    private final byte[] deflated;
+
+    private final Deflater deflater;
+
+    private final CRC32 crc;
+
+    private long flushed;
+
+    ZipWriter(File to) throws IOException {
+        this.output = new FileOutputStream(to);
+        this.channel = output.getChannel();
+        this.records = new ArrayList<Record>();
+        this.buffer = ByteBuffer.allocate(128 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        this.input = new byte[64 * 1024];
+        this.deflated = new byte[64 * 1024];
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.crc = new CRC32();
+        this.flushed = 0L;
+    }
+
+    /**
+     * Copies {@code entry}'s compressed data from {@code from} as-is.
+     * @param from the zip file containing {@code entry}
+     * @param entry to copy
+     * @param dosTime the (dos formatted) modification time of the entry
+     * @throws IOException if {@code entry} could not be read or the zip file could not be written
+     */
+    void copy(ZipReader from, ZipReader.Entry entry, int dosTime) throws IOException {
+        long dataOffset = from.getDataOffset(entry);
+        Record record = new Record(entry.nameBytes, entry.versionMadeBy, entry.versionNeeded,
+                                   (entry.flags & ~DATA_DESCRIPTOR_FLAG), entry.method, dosTime, entry.crc,
+                                   entry.compressedSize, entry.size, entry.internalAttributes,
+                                   entry.externalAttributes, position());
+        writeLocalHeader(record);
+        flush();
+        FileChannel source = from.getChannel();
+        long transferred = 0L;
+        while (transferred < entry.compressedSize) {
+            long amount = source.transferTo(dataOffset + transferred, entry.compressedSize - transferred, channel);
+            if (amount <= 0) {
+                throw new EOFException();
+            }
+            transferred += amount;
+        }
+        flushed += entry.compressedSize;
+        records.add(record);
+    }
+
+    /**
+     * @param name of the directory entry (ending in '/')
+     * @param dosTime the (dos formatted) modification time of the entry
+     * @throws IOException if the zip file could not be written
+     */
+    void addDirectory(String name, int dosTime) throws IOException {
+        Record record = new Record(name.getBytes(UTF_8), 20, 10, UTF_8_FLAG, ZipEntry.STORED, dosTime, 0L, 0L, 0L,
+                                   0, 0L, position());
+        writeLocalHeader(record);
+        records.add(record);
+    }
+
+    /**
+     * @param name of the entry
+     * @param content of the entry
+     * @param compress true to deflate {@code content}
+     * @param dosTime the (dos formatted) modification time of the entry
+     * @throws IOException if the zip file could not be written
+     */
+    void add(String name, byte[] content, boolean compress, int dosTime) throws IOException {
+        add(name, new ByteArrayInputStream(content), compress, dosTime);
+    }
+
+    /**
+     * @param name of the entry
+     * @param file whose content to write as the entry
+     * @param compress true to deflate the content of {@code file}
+     * @param dosTime the (dos formatted) modification time of the entry
+     * @throws IOException if {@code file} could not be read or the zip file could not be written
+     */
+    void add(String name, File file, boolean compress, int dosTime) throws IOException {
+        InputStream content = new FileInputStream(file);
+        try {
+            add(name, content, compress, dosTime);
+        } finally {
+            content.close();
+        }
+    }
+
+    /**
+     * @param name of the entry
+     * @param content of the entry (which is read fully but not closed)
+     * @param compress true to deflate {@code content}
+     * @param dosTime the (dos formatted) modification time of the entry
+     * @throws IOException if {@code content} could not be read or the zip file could not be written
+     */
+    void add(String name, InputStream content, boolean compress, int dosTime) throws IOException {
+        int method = (compress ? ZipEntry.DEFLATED : ZipEntry.STORED);
+        Record record = new Record(name.getBytes(UTF_8), 20, (compress ? 20 : 10), UTF_8_FLAG, method, dosTime, 0L,
+                                   0L, 0L, 0, 0L, position());
+        writeLocalHeader(record);
+        long dataOffset = position();
+        crc.reset();
+        long size = 0L;
+        int read;
+        if (compress) {
+            deflater.reset();
+            while ((read = content.read(input)) != -1) {
+                crc.update(input, 0, read);
+                size += read;
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    put(deflated, deflater.deflate(deflated));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                put(deflated, deflater.deflate(deflated));
+            }
+        } else {
+            while ((read = content.read(input)) != -1) {
+                crc.update(input, 0, read);
+                size += read;
+                put(input, read);
+            }
+        }
+        record.crc = crc.getValue();
+        record.size = size;
+        record.compressedSize = position() - dataOffset;
+        if ((record.size > MAX_UNSIGNED_INT) || (record.compressedSize > MAX_UNSIGNED_INT)) {
+            throw new ZipException(String.format("Entry %s exceeds 4GB.", name));
+        }
+        // patch the local header's crc and sizes
+        ByteBuffer patch = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        patch.putInt((int) record.crc);
+        patch.putInt((int) record.compressedSize);
+        patch.putInt((int) record.size);
+        patch.flip();
+        long patchOffset = record.offset + 14;
+        if (patchOffset >= flushed) {
+            int index = (int) (patchOffset - flushed);
+            buffer.putInt(index, (int) record.crc);
+            buffer.putInt(index + 4, (int) record.compressedSize);
+            buffer.putInt(index + 8, (int) record.size);
+        } else {
+            while (patch.hasRemaining()) {
+                channel.write(patch, patchOffset + patch.position());
+            }
+        }
+        records.add(record);
+    }
+
+    /**
+     * Writes the central directory and end records and closes the zip file.
+     * @throws IOException if the zip file could not be written
+     */
+    void close() throws IOException {
+        try {
+            long centralDirectoryOffset = position();
+            for (Record record : records) {
+                ensure(CENTRAL_HEADER_LENGTH + record.name.length);
+                buffer.putInt(CENTRAL_HEADER_SIG);
+                buffer.putShort((short) record.versionMadeBy);
+                buffer.putShort((short) record.versionNeeded);
+                buffer.putShort((short) record.flags);
+                buffer.putShort((short) record.method);
+                buffer.putInt(record.dosTime);
+                buffer.putInt((int) record.crc);
+                buffer.putInt((int) record.compressedSize);
+                buffer.putInt((int) record.size);
+                buffer.putShort((short) record.name.length);
+                buffer.putShort((short) 0); // extra length
+                buffer.putShort((short) 0); // comment length
+                buffer.putShort((short) 0); // disk number start
+                buffer.putShort((short) record.internalAttributes);
+                buffer.putInt((int) record.externalAttributes);
+                buffer.putInt((int) record.offset);
+                buffer.put(record.name);
+            }
+            long centralDirectoryLength = position() - centralDirectoryOffset;
+            if ((centralDirectoryOffset + centralDirectoryLength) > MAX_UNSIGNED_INT) {
+                throw new ZipException("Zip file exceeds 4GB.");
+            }
+            boolean zip64 = (records.size() >= 0xFFFF);
+            ensure(98);
+            if (zip64) {
+                long zip64EndOffset = position();
+                buffer.putInt(ZIP64_END_SIG);
+                buffer.putLong(44L); // size of the remaining record
+                buffer.putShort((short) 45);
+                buffer.putShort((short) 45);
+                buffer.putInt(0); // number of this disk
+                buffer.putInt(0); // disk with the central directory
+                buffer.putLong(records.size());
+                buffer.putLong(records.size());
+                buffer.putLong(centralDirectoryLength);
+                buffer.putLong(centralDirectoryOffset);
+                buffer.putInt(ZIP64_LOCATOR_SIG);
+                buffer.putInt(0); // disk with the zip64 end record
+                buffer.putLong(zip64EndOffset);
+                buffer.putInt(1); // total number of disks
+            }
+            int count = (zip64 ? 0xFFFF : records.size());
+            buffer.putInt(END_SIG);
+            buffer.putShort((short) 0); // number of this disk
+            buffer.putShort((short) 0); // disk with the central directory
+            buffer.putShort((short) count);
+            buffer.putShort((short) count);
+            buffer.putInt((int) centralDirectoryLength);
+            buffer.putInt((int) centralDirectoryOffset);
+            buffer.putShort((short) 0); // comment length
+            flush();
+        } finally {
+            deflater.end();
+            output.close();
+        }
+    }
+
+    /**
+     * @param time in milliseconds since the epoch
+     * @return {@code time} in dos format (as stored within zip files) with two second resolution
+     */
+    @SuppressWarnings("deprecation")
+    static int toDosTime(long time) {
+        Date date = new Date(time);
+        int year = date.getYear() + 1900;
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((year - 1980) << 25) | ((date.getMonth() + 1) << 21) | (date.getDate() << 16)
+                | (date.getHours() << 11) | (date.getMinutes() << 5) | (date.getSeconds() >> 1);
+    }
+
+    private void writeLocalHeader(Record record) throws IOException {
+        if (record.offset > MAX_UNSIGNED_INT) {
+            throw new ZipException("Zip file exceeds 4GB.");
+        }
+        ensure(LOCAL_HEADER_LENGTH + record.name.length);
+        buffer.putInt(LOCAL_HEADER_SIG);
+        buffer.putShort((short) record.versionNeeded);
+        buffer.putShort((short) record.flags);
+        buffer.putShort((short) record.method);
+        buffer.putInt(record.dosTime);
+        buffer.putInt((int) record.crc);
+        buffer.putInt((int) record.compressedSize);
+        buffer.putInt((int) record.size);
+        buffer.putShort((short) record.name.length);
+        buffer.putShort((short) 0); // extra length
+        buffer.put(record.name);
+    }
+
+    private long position() {
+        return flushed + buffer.position();
+    }
+
+    private void put(byte[] bytes, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int amount = Math.min(buffer.remaining(), length - offset);
+            buffer.put(bytes, offset, amount);
+            offset += amount;
+        }
+    }
+
+    private void ensure(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,170 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.FileUtil;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static junit.framework.Assert.*;
+
+public class ZipMergerTest {
+
+    @Test
+    public void merge() throws IOException {
+        File base = File.createTempFile("merger", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            File first = FileUtil.fromParts(base.getPath(), "first.jar");
+            write(first, "META-INF/", null, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n",
+                  "META-INF/services/a.Service", "a.First\n", "a/", null, "a/A.class", "first-a",
+                  "a/stored.txt", "stored");
+            File second = FileUtil.fromParts(base.getPath(), "second.jar");
+            write(second, "META-INF/", null, "META-INF/MANIFEST.MF", "Manifest-Version: 2.0\n",
+                  "META-INF/SIGNER.SF", "signature", "META-INF/SIGNER.RSA", "signature",
+                  "META-INF/services/a.Service", "a.First\na.Second", "a/", null, "a/A.class", "second-a",
+                  "b/B.class", "second-b");
+
+            File merged = FileUtil.fromParts(base.getPath(), "merged.jar");
+            ZipMerger merger = new ZipMerger(merged);
+            merger.merge(first);
+            merger.merge(second);
+            merger.close();
+
+            ZipFile zipFile = new ZipFile(merged);
+            try {
+                List<String> names = new ArrayList<String>();
+                for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                    names.add(entry.getName());
+                }
+                // first wins, signature files are dropped and service files are merged (and written last)
+                assertEquals(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "a/", "a/A.class", "a/stored.txt",
+                        "b/B.class", "META-INF/services/a.Service"), names);
+                assertEquals("Manifest-Version: 1.0\n", read(zipFile, "META-INF/MANIFEST.MF"));
+                assertEquals("first-a", read(zipFile, "a/A.class"));
+                assertEquals("stored", read(zipFile, "a/stored.txt"));
+                assertEquals(ZipEntry.STORED, zipFile.getEntry("a/stored.txt").getMethod());
+                assertEquals("second-b", read(zipFile, "b/B.class"));
+                assertEquals("a.First\na.Second\n", read(zipFile, "META-INF/services/a.Service"));
+            } finally {
+                zipFile.close();
+            }
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void mergeCp437Names() throws IOException {
+        File base = File.createTempFile("merger", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            // an entry named 'a/X.class' whose name is re-encoded as the single IBM437 byte for e-acute without the
+            // utf-8 flag (as written by tools which predate it)
+            File legacy = FileUtil.fromParts(base.getPath(), "legacy.jar");
+            write(legacy, "a/X.class", "legacy");
+            byte[] bytes = new byte[(int) legacy.length()];
+            RandomAccessFile input = new RandomAccessFile(legacy, "r");
+            try {
+                input.readFully(bytes);
+            } finally {
+                input.close();
+            }
+            for (int i = 0; i + 4 <= bytes.length; i++) {
+                int signature = (bytes[i] & 0xFF) | ((bytes[i + 1] & 0xFF) << 8) | ((bytes[i + 2] & 0xFF) << 16)
+                        | ((bytes[i + 3] & 0xFF) << 24);
+                if ((signature == ZipReader.LOCAL_HEADER_SIG) || (signature == ZipReader.CENTRAL_HEADER_SIG)) {
+                    int flags = i + ((signature == ZipReader.LOCAL_HEADER_SIG) ? 6 : 8);
+                    bytes[flags + 1] &= ~(ZipReader.UTF_8_FLAG >> 8);
+                }
+                if ((bytes[i] == 'a') && (bytes[i + 1] == '/') && (bytes[i + 2] == 'X')) {
+                    bytes[i + 2] = (byte) 0x82;
+                }
+            }
+            FileOutputStream output = new FileOutputStream(legacy);
+            try {
+                output.write(bytes);
+            } finally {
+                output.close();
+            }
+
+            ZipReader reader = new ZipReader(legacy);
+            try {
+                List<ZipReader.Entry> entries = reader.entries();
+                assertEquals(1, entries.size());
+                assertEquals("a/\u00e9.class", entries.get(0).name);
+            } finally {
+                reader.close();
+            }
+
+            File merged = FileUtil.fromParts(base.getPath(), "merged.jar");
+            ZipMerger merger = new ZipMerger(merged);
+            merger.merge(legacy);
+            merger.close();
+            // the entry is copied with its original name encoding and flags
+            reader = new ZipReader(merged);
+            try {
+                List<ZipReader.Entry> entries = reader.entries();
+                assertEquals(1, entries.size());
+                assertEquals("a/\u00e9.class", entries.get(0).name);
+                assertEquals(0, entries.get(0).flags & ZipReader.UTF_8_FLAG);
+                assertEquals("legacy", new String(reader.read(entries.get(0)), "UTF-8"));
+            } finally {
+                reader.close();
+            }
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    /**
+     * @param zip to create
+     * @param namesAndContent pairs of entry name and content (null for directories); names ending in '.txt' are
+     *                        stored rather than deflated.
+     */
+    private static void write(File zip, String ... namesAndContent) throws IOException {
+        ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip));
+        try {
+            for (int i = 0; i < namesAndContent.length; i += 2) {
+                ZipEntry entry = new ZipEntry(namesAndContent[i]);
+                byte[] content = (namesAndContent[i + 1] == null ? new byte[0] : namesAndContent[i + 1].getBytes("UTF-8"));
+                if (namesAndContent[i].endsWith(".txt")) {
+                    CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                output.putNextEntry(entry);
+                output.write(content);
+                output.closeEntry();
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    private static String read(ZipFile zipFile, String name) throws IOException {
+        InputStream input = zipFile.getInputStream(zipFile.getEntry(name));
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            int read;
+            while ((read = input.read()) != -1) {
+                content.write(read);
+            }
+            return content.toString("UTF-8");
+        } finally {
+            input.close();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.FileUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static junit.framework.Assert.*;
+
+public class ZipPackagerTest {
+
+    @Test
+    public void write() throws IOException {
+        File base = File.createTempFile("packager", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            File classes = FileUtil.fromParts(base.getPath(), "classes");
+            File resources = FileUtil.fromParts(base.getPath(), "resources");
+            write(FileUtil.fromParts(classes.getPath(), "net", "A.class"), "class-a");
+            write(FileUtil.fromParts(classes.getPath(), "net", "dup.txt"), "from-classes");
+            write(FileUtil.fromParts(resources.getPath(), "net", "dup.txt"), "from-resources");
+            write(FileUtil.fromParts(resources.getPath(), "net", "res.txt"), "resource");
+            write(FileUtil.fromParts(resources.getPath(), "META-INF", "Manifest.mf"), "ignored");
+
+            for (boolean compress : new boolean[] { true, false }) {
+                ZipPackager packager = new ZipPackager(compress, false);
+                packager.addContent("Manifest-Version: 1.0\n".getBytes("UTF-8"), ZipPackager.MANIFEST_NAME);
+                packager.addDirectory(classes, "");
+                packager.addDirectory(resources, "");
+                packager.addDirectory(FileUtil.fromParts(base.getPath(), "nonexistent"), "");
+                File zip = FileUtil.fromParts(base.getPath(), "target", "package.zip");
+                packager.write(zip, null);
+
+                ZipFile zipFile = new ZipFile(zip);
+                try {
+                    List<String> names = new ArrayList<String>();
+                    for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                        names.add(entry.getName());
+                        if (!entry.isDirectory()) {
+                            assertEquals((compress ? ZipEntry.DEFLATED : ZipEntry.STORED), entry.getMethod());
+                        }
+                    }
+                    // the manifest is first, parent directories precede their files and overlapping directories
+                    // are merged with the first added taking precedence
+                    assertEquals(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "net/", "net/A.class",
+                            "net/dup.txt", "net/res.txt"), names);
+                    assertEquals("Manifest-Version: 1.0\n", read(zipFile, "META-INF/MANIFEST.MF"));
+                    assertEquals("from-classes", read(zipFile, "net/dup.txt"));
+                    assertEquals("resource", read(zipFile, "net/res.txt"));
+                } finally {
+                    zipFile.close();
+                }
+            }
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void incremental() throws IOException {
+        File base = File.createTempFile("packager", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            File classes = FileUtil.fromParts(base.getPath(), "classes");
+            File a = FileUtil.fromParts(classes.getPath(), "net", "A.class");
+            File b = FileUtil.fromParts(classes.getPath(), "net", "B.class");
+            write(a, "class-a");
+            write(b, "class-b");
+            File zip = FileUtil.fromParts(base.getPath(), "package.zip");
+            File inputs = FileUtil.fromParts(base.getPath(), "package.zip.inputs");
+
+            ZipPackager packager = packager(classes, "manifest");
+            assertFalse(packager.isUpToDate(zip, inputs));
+            packager.write(zip, inputs);
+            assertTrue(inputs.exists());
+            assertTrue(packager(classes, "manifest").isUpToDate(zip, inputs));
+            // changed in-memory content, a touched file and a modified package are all changes
+            assertFalse(packager(classes, "changed").isUpToDate(zip, inputs));
+            assertTrue(a.setLastModified(a.lastModified() - 10000L));
+            assertFalse(packager(classes, "manifest").isUpToDate(zip, inputs));
+            packager(classes, "manifest").write(zip, inputs);
+            assertTrue(packager(classes, "manifest").isUpToDate(zip, inputs));
+            assertTrue(zip.setLastModified(zip.lastModified() - 10000L));
+            assertFalse(packager(classes, "manifest").isUpToDate(zip, inputs));
+
+            // a changed file is rewritten, unchanged entries are copied from the previous package
+            write(b, "class-b-changed");
+            write(FileUtil.fromParts(classes.getPath(), "net", "C.class"), "class-c");
+            packager = packager(classes, "changed");
+            packager.write(zip, inputs);
+            assertTrue(packager(classes, "changed").isUpToDate(zip, inputs));
+            ZipFile zipFile = new ZipFile(zip);
+            try {
+                List<String> names = new ArrayList<String>();
+                for (ZipEntry entry : Collections.list(zipFile.entries())) {
+                    names.add(entry.getName());
+                }
+                assertEquals(Arrays.asList("META-INF/", "META-INF/MANIFEST.MF", "net/", "net/A.class", "net/B.class",
+                        "net/C.class"), names);
+                assertEquals("changed", read(zipFile, "META-INF/MANIFEST.MF"));
+                assertEquals("class-a", read(zipFile, "net/A.class"));
+                assertEquals("class-b-changed", read(zipFile, "net/B.class"));
+                assertEquals("class-c", read(zipFile, "net/C.class"));
+            } finally {
+                zipFile.close();
+            }
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    private static ZipPackager packager(File classes, String manifest) throws IOException {
+        ZipPackager packager = new ZipPackager(true, false);
+        packager.addContent(manifest.getBytes("UTF-8"), ZipPackager.MANIFEST_NAME);
+        packager.addDirectory(classes, "");
+        return packager;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String read(ZipFile zipFile, String name) throws IOException {
+        InputStream input = zipFile.getInputStream(zipFile.getEntry(name));
+        try {
+            StringBuilder content = new StringBuilder();
+            int read;
+            while ((read = input.read()) != -1) {
+                content.append((char) read);
+            }
+            return content.toString();
+        } finally {
+            input.close();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package net.ocheyedan.ply.script;
 
+import net.ocheyedan.ply.DirectorySync;
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.props.Context;
@@ -20,6 +21,14 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  *
  * Simply copies {@literal project[.scope].res.dir} to {@literal project[.scope].res.build.dir} priming the resources
  * for filtering/packaging/etc.
+ * The property file used to configure this script is {@literal resources.properties} and so the context is {@literal resources}.
+ * The following properties exist:
+ * exclude=comma separated list [[default=.svn,CVS]] (names of files/directories which are not copied).
+ * incremental=boolean [[default=true]] (if true, only resources which have changed since last copied are copied and
+ *                                       resources which have been removed are removed from {@literal project[.scope].res.build.dir};
+ *                                       see {@link DirectorySync}).
+ * When incremental, the resources copied are recorded in {@literal project[.scope].res.build.dir}{@literal .sync} so that
+ * only those are ever removed; files placed within {@literal project[.scope].res.build.dir} by other scripts are untouched.
  */
 public final class ResourcesScript {
 
@@ -27,6 +36,7 @@ public final class ResourcesScript {
         Prop resourcesDirProp = Props.get("res.dir", Context.named("project"));
         Prop resourcesBuildDirProp = Props.get("res.build.dir", Context.named("project"));
         String resourcesExclusionPropValue = Props.get("exclude", Context.named("resources")).value();
+        boolean incremental = !"false".equalsIgnoreCase(Props.get("incremental", Context.named("resources")).value());
         if (Prop.Empty.equals(resourcesDirProp) || Prop.Empty.equals(resourcesBuildDirProp)) {
             Output.print("^error^ Could not find properties 'project.res.dir' or 'project.res.build.dir'");
             System.exit(1);
@@ -35,18 +45,25 @@ public final class ResourcesScript {
         final Set<String> exclusions = new HashSet<String>(Arrays.asList(split));
 
         File resDir = new File(resourcesDirProp.value());
-        if (!resDir.exists()) {
-            // nothing to copy.
-            Output.print("^dbug^ No resources to copy.");
-            return;
-        }
-
         File resBuildDir = new File(resourcesBuildDirProp.value());
         FilenameFilter excluding = (exclusions.isEmpty() ? null : new FilenameFilter() {
             @Override public boolean accept(File dir, String name) {
                 return exclusions.contains(name);
             }
         });
+        File syncManifest = new File(resBuildDir.getPath() + ".sync");
+        if (!resDir.exists()) {
+            // nothing to copy, but remove any resources previously copied
+            if (incremental && syncManifest.exists()) {
+                sync(resDir, resBuildDir, syncManifest, excluding);
+            }
+            Output.print("^dbug^ No resources to copy.");
+            return;
+        }
+        if (incremental) {
+            sync(resDir, resBuildDir, syncManifest, excluding);
+            return;
+        }
         if (!FileUtil.copyDir(resDir, resBuildDir, excluding)) {
             Output.print("^error^ Could not copy resources directory (%s) to resources build directory (%s).",
                     resourcesDirProp.value(), resourcesBuildDirProp.value());
@@ -54,6 +71,16 @@ public final class ResourcesScript {
         }
     }
 
+    private static void sync(File resDir, File resBuildDir, File syncManifest, FilenameFilter excluding) {
+        DirectorySync sync = new DirectorySync(resBuildDir, syncManifest);
+        sync.addDirectory(resDir, "", excluding, false);
+        if (!sync.sync()) {
+            Output.print("^error^ Could not synchronize resources directory (%s) to resources build directory (%s).",
+                    resDir.getPath(), resBuildDir.getPath());
+            System.exit(1);
+        }
+    }
+
     private ResourcesScript() { }
 
 }
@@ -0,0 +1,152 @@
+package net.ocheyedan.ply.script;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Orders and partitions test classes for parallel execution.  The duration of each class is estimated from the
+ * report saved by {@link MavenReporter} during a prior run (classes without a report are estimated as the average of
+ * those with one).  Classes are ordered longest first and partitions are filled by repeatedly assigning the next
+ * class to the partition with the least total duration.
+ */
+final class ClassPartitioner {
+
+    /**
+     * Matches the time attribute of the {@literal testsuite} element; the time is formatted with the default locale
+     * and so may use a comma as the decimal separator.
+     */
+    private static final Pattern SUITE_TIME = Pattern.compile("<testsuite[^>]*\\stime=\"([0-9]+)[.,]?([0-9]*)\"");
+
+    /**
+     * Estimate (in milliseconds) used for every class when there are no prior reports.
+     */
+    private static final long DEFAULT_ESTIMATE = 1000L;
+
+    private final Map<String, Long> estimates;
+
+    ClassPartitioner(Map<String, Long> estimates) {
+        this.estimates = estimates;
+    }
+
+    /**
+     * @param classNames the test classes
+     * @param reportDir directory containing the reports of a prior run, may be null
+     * @return a partitioner using estimates from the reports within {@code reportDir}
+     */
+    static ClassPartitioner fromReports(Collection<String> classNames, File reportDir) {
+        Map<String, Long> known = new HashMap<String, Long>(classNames.size());
+        long total = 0L;
+        if (reportDir != null) {
+            for (String className : classNames) {
+                Long duration = readDuration(new File(reportDir, MavenReporter.getReportName(className)));
+                if (duration != null) {
+                    known.put(className, duration);
+                    total += duration;
+                }
+            }
+        }
+        long unknown = (known.isEmpty() ? DEFAULT_ESTIMATE : Math.max(1L, total / known.size()));
+        Map<String, Long> estimates = new HashMap<String, Long>(classNames.size());
+        for (String className : classNames) {
+            Long duration = known.get(className);
+            estimates.put(className, (duration == null ? unknown : duration));
+        }
+        return new ClassPartitioner(estimates);
+    }
+
+    /**
+     * @param report file
+     * @return the duration in milliseconds recorded within {@code report} or null if it does not exist or could
+     *         not be parsed
+     */
+    static Long readDuration(File report) {
+        if (!report.exists()) {
+            return null;
+        }
+        InputStream inputStream = null;
+        try {
+            // the testsuite element (and its time attribute) precedes the properties/tests
+            inputStream = new FileInputStream(report);
+            byte[] buffer = new byte[512];
+            int length = 0, read;
+            while ((length < buffer.length) && ((read = inputStream.read(buffer, length, buffer.length - length)) != -1)) {
+                length += read;
+            }
+            Matcher matcher = SUITE_TIME.matcher(new String(buffer, 0, length, "UTF-8"));
+            if (!matcher.find()) {
+                return null;
+            }
+            String fraction = (matcher.group(2) + "000").substring(0, 3);
+            return (Long.parseLong(matcher.group(1)) * 1000L) + Long.parseLong(fraction);
+        } catch (IOException ioe) {
+            return null;
+        } catch (NumberFormatException nfe) {
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param classNames to order
+     * @return {@code classNames} ordered by descending estimated duration (ties by name)
+     */
+    List<String> order(Collection<String> classNames) {
+        List<String> ordered = new ArrayList<String>(classNames);
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override public int compare(String left, String right) {
+                long difference = getEstimate(right) - getEstimate(left);
+                return (difference != 0L ? (difference < 0L ? -1 : 1) : left.compareTo(right));
+            }
+        });
+        return ordered;
+    }
+
+    /**
+     * @param classNames to partition
+     * @param count of partitions
+     * @return {@code classNames} split into at most {@code count} (non-empty) partitions of roughly equal estimated
+     *         duration, each ordered by descending estimated duration
+     */
+    List<List<String>> partition(Collection<String> classNames, int count) {
+        List<List<String>> partitions = new ArrayList<List<String>>(count);
+        long[] totals = new long[count];
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<String>());
+        }
+        for (String className : order(classNames)) {
+            int least = 0;
+            for (int i = 1; i < count; i++) {
+                if (totals[i] < totals[least]) {
+                    least = i;
+                }
+            }
+            partitions.get(least).add(className);
+            totals[least] += getEstimate(className);
+        }
+        Iterator<List<String>> iterator = partitions.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return partitions;
+    }
+
+    long getEstimate(String className) {
+        Long estimate = estimates.get(className);
+        return (estimate == null ? DEFAULT_ESTIMATE : estimate);
+    }
+
+}
@@ -0,0 +1,111 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sortable;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.RunnerBuilder;
+
+/**
+ * Sets the name of the test class being run on the current thread so that {@link TrackingClassLoader} can attribute
+ * the classes it loads to the test class.  The listener sets the name as each test starts and clears it once the run
+ * finishes.  As a listener is not notified before a class' static initializers or {@literal @BeforeClass} methods
+ * run, nor after its {@literal @AfterClass} methods run, each class' runner is also wrapped (see {@link #wrap(ThreadLocal)}
+ * and {@link #run(ThreadLocal, String, Runnable)}) so that the name is set for the whole of the class' run and cleared
+ * after it.
+ */
+public class CurrentTestListener extends RunListener {
+
+    /**
+     * Delegates to the runner of a test class, setting the current test to the class for the duration of its run.
+     */
+    private static final class ClassRunner extends Runner implements Filterable, Sortable {
+
+        private final Runner delegate;
+
+        private final String className;
+
+        private final ThreadLocal<String> currentTest;
+
+        private ClassRunner(Runner delegate, String className, ThreadLocal<String> currentTest) {
+            this.delegate = delegate;
+            this.className = className;
+            this.currentTest = currentTest;
+        }
+
+        @Override public Description getDescription() {
+            return delegate.getDescription();
+        }
+
+        @Override public void run(final RunNotifier notifier) {
+            CurrentTestListener.run(currentTest, className, new Runnable() {
+                @Override public void run() {
+                    delegate.run(notifier);
+                }
+            });
+        }
+
+        @Override public void filter(Filter filter) throws NoTestsRemainException {
+            if (delegate instanceof Filterable) {
+                ((Filterable) delegate).filter(filter);
+            } else if (!filter.shouldRun(getDescription())) {
+                throw new NoTestsRemainException();
+            }
+        }
+
+        @Override public void sort(Sorter sorter) {
+            if (delegate instanceof Sortable) {
+                ((Sortable) delegate).sort(sorter);
+            }
+        }
+    }
+
+    /**
+     * @param currentTest to set with the name of the test class being run
+     * @return a {@link Computer} whose runner for each test class sets {@code currentTest} while the class is run
+     */
+    static Computer wrap(final ThreadLocal<String> currentTest) {
+        return new Computer() {
+            @Override protected Runner getRunner(RunnerBuilder builder, Class<?> testClass) throws Throwable {
+                return new ClassRunner(super.getRunner(builder, testClass), testClass.getName(), currentTest);
+            }
+        };
+    }
+
+    /**
+     * Runs {@code run} with {@code currentTest} set to {@code className}, clearing it afterwards.
+     * @param currentTest to set
+     * @param className of the test class being run
+     * @param run the running of the test class
+     */
+    static void run(ThreadLocal<String> currentTest, String className, Runnable run) {
+        currentTest.set(className);
+        try {
+            run.run();
+        } finally {
+            currentTest.remove();
+        }
+    }
+
+    private final ThreadLocal<String> currentTest;
+
+    public CurrentTestListener(ThreadLocal<String> currentTest) {
+        this.currentTest = currentTest;
+    }
+
+    @Override public void testStarted(Description description) throws Exception {
+        currentTest.set(description.getClassName());
+    }
+
+    @Override public void testRunFinished(Result result) throws Exception {
+        currentTest.remove();
+    }
+
+}
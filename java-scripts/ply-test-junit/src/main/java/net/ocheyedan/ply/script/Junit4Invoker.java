@@ -5,13 +5,19 @@ import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.Props;
 import net.ocheyedan.ply.script.print.PrivilegedOutput;
+import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.Runner;
 import org.junit.runner.manipulation.Filter;
 import org.junit.runner.notification.Failure;
 
+import java.io.File;
+import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 import static net.ocheyedan.ply.props.PropFile.Prop;
 
@@ -21,25 +27,54 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  * Time: 11:33 AM
  *
  * Executes {@literal junit}-4 unit tests.
+ * By default the test classes are run serially.  Property {@literal junit.parallel} may be set to {@literal threads}
+ * to run the test classes concurrently within this jvm or to {@literal forks} to spread the test classes over separate
+ * worker jvms (see {@link ParallelRunner}).  The number of threads or worker jvms is {@literal junit.parallel.count}
+ * (defaulting to the number of available processors) and the jvm options of each worker are
+ * {@literal junit.parallel.fork.options}.
+ * The result of invocation is the names of the test classes which had failures.
  */
-public class Junit4Invoker implements Runnable {
+public class Junit4Invoker implements Callable<Set<String>> {
 
-    private static final Comparator<Class> CLASS_NAME_COMPARATOR = new Comparator<Class>() {
-        @Override public int compare(Class o1, Class o2) {
+    private static final Comparator<Class<?>> CLASS_NAME_COMPARATOR = new Comparator<Class<?>>() {
+        @Override public int compare(Class<?> o1, Class<?> o2) {
             return o1.getName().compareTo(o2.getName());
         }
     };
 
-    private final Set<Class> classes;
+    private final Set<Class<?>> classes;
 
     private final Filter filter;
 
     private final AllFilterCollectPad padding;
 
+    private final Filter matcherFilter;
+
     private final String originalMatchers;
 
-    public Junit4Invoker(Set<Class> classes, String[] matchers, String unsplitMatchers) {
+    private final List<URL> classpath;
+
+    private final ThreadLocal<String> currentTest;
+
+    private final ConcurrentMap<String, Set<String>> loaded;
+
+    public Junit4Invoker(Set<Class<?>> classes, String[] matchers, String unsplitMatchers, List<URL> classpath,
+                         ThreadLocal<String> currentTest, ConcurrentMap<String, Set<String>> loaded) {
         this.classes = classes;
+        this.matcherFilter = createMatcherFilter(matchers);
+        this.padding = new AllFilterCollectPad();
+        this.filter = (matcherFilter == null ? padding : padding.intersect(matcherFilter));
+        this.originalMatchers = unsplitMatchers;
+        this.classpath = classpath;
+        this.currentTest = currentTest;
+        this.loaded = loaded;
+    }
+
+    /**
+     * @param matchers the test-atoms (see {@link JunitTester}), may be null
+     * @return a filter matching any of {@code matchers} or null if {@code matchers} is null
+     */
+    static Filter createMatcherFilter(String[] matchers) {
         UnionFilter filter = null;
         if (matchers != null) {
             for (String matcher : matchers) {
@@ -49,29 +84,43 @@ public class Junit4Invoker implements Runnable {
                 filter.union(new DescriptionMatcher(matcher));
             }
         }
-        this.padding = new AllFilterCollectPad();
-        this.filter = (filter == null ? padding : padding.intersect(filter));
-        this.originalMatchers = unsplitMatchers;
+        return filter;
     }
 
-    @Override public void run() {
+    @Override public Set<String> call() {
         if (classes.size() == 0) {
             PrivilegedOutput.print("No tests found, nothing to test.");
-            return;
+            return Collections.emptySet();
         }
 
-        JUnitCore jUnitCore = new JUnitCore();
-        jUnitCore.addListener(new Junit4RunListener(padding));
-        // TODO - allow skipping of report generation or always skip and allow override
-        jUnitCore.addListener(new MavenReporter());
-
-        List<Class> sorted = new ArrayList<Class>(classes);
+        List<Class<?>> sorted = new ArrayList<Class<?>>(classes);
         Collections.sort(sorted, CLASS_NAME_COMPARATOR);
-        Request request = Request.classes(sorted.toArray(new Class[sorted.size()]));
+        Request request = Request.classes(CurrentTestListener.wrap(currentTest), sorted.toArray(new Class<?>[sorted.size()]));
         if (filter != null) {
             request = request.filterWith(filter);
         }
-        Result result = jUnitCore.run(request);
+        // filters (and collects padding) prior to running
+        Runner runner = request.getRunner();
+
+        Result result;
+        ParallelRunner parallelRunner = createParallelRunner();
+        Map<String, Class<?>> matched = (parallelRunner == null ? null : getMatchedClasses(runner.getDescription(), sorted));
+        if ((matched != null) && (matched.size() > 1)) {
+            Prop reportDirProp = Props.get("reports.dir", Context.named("project"));
+            File reportDir = (Prop.Empty.equals(reportDirProp) ? null : new File(reportDirProp.value()));
+            ClassPartitioner partitioner = ClassPartitioner.fromReports(matched.keySet(), reportDir);
+            result = parallelRunner.run(runner.getDescription(), matched, partitioner, new Junit4RunListener(padding));
+            if (parallelRunner.hadErrors()) {
+                System.exit(1);
+            }
+        } else {
+            JUnitCore jUnitCore = new JUnitCore();
+            jUnitCore.addListener(new Junit4RunListener(padding));
+            // TODO - allow skipping of report generation or always skip and allow override
+            jUnitCore.addListener(new MavenReporter());
+            jUnitCore.addListener(new CurrentTestListener(currentTest));
+            result = jUnitCore.run(runner);
+        }
 
         int syntheticCount;
         if ((syntheticCount = countSynthetic(result)) == result.getRunCount()) {
@@ -80,7 +129,7 @@ public class Junit4Invoker implements Runnable {
             } else {
                 PrivilegedOutput.print("No tests found, nothing to test.");
             }
-            return;
+            return Collections.emptySet();
         }
         int runCount = result.getRunCount() - syntheticCount;
         int failCount = result.getFailureCount() - syntheticCount;
@@ -107,9 +156,74 @@ public class Junit4Invoker implements Runnable {
             PrivilegedOutput.print("");
         }
 
-        if (failCount != 0) {
+        Set<String> failed = new HashSet<String>(failCount);
+        for (Failure failure : result.getFailures()) {
+            if (!Junit4RunListener.isSyntheticDescription(failure.getDescription())) {
+                failed.add(failure.getDescription().getClassName());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return the runner for the configured {@literal junit.parallel} mode or null if tests are to be run serially
+     */
+    private ParallelRunner createParallelRunner() {
+        String parallel = Props.get("parallel", Context.named("junit")).value();
+        if (parallel.isEmpty() || "none".equals(parallel)) {
+            return null;
+        }
+        ParallelRunner.Mode mode;
+        try {
+            mode = ParallelRunner.Mode.valueOf(parallel);
+        } catch (IllegalArgumentException iae) {
+            PrivilegedOutput.print("^error^ Invalid ^b^junit.parallel^r^ value ^b^%s^r^; expected none, threads or forks.", parallel);
             System.exit(1);
+            return null;
+        }
+        int count = Runtime.getRuntime().availableProcessors();
+        String countValue = Props.get("parallel.count", Context.named("junit")).value();
+        if (!countValue.isEmpty()) {
+            try {
+                int configured = Integer.parseInt(countValue);
+                count = (configured > 0 ? configured : count);
+            } catch (NumberFormatException nfe) {
+                PrivilegedOutput.print("^warn^ Invalid ^b^junit.parallel.count^r^ value ^b^%s^r^, using %d.", countValue, count);
+            }
+        }
+        if (count < 2) {
+            return null;
+        }
+        List<String> forkOptions = new ArrayList<String>();
+        for (String option : Props.get("parallel.fork.options", Context.named("junit")).value().trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                forkOptions.add(option);
+            }
+        }
+        return new ParallelRunner(mode, count, matcherFilter, originalMatchers, classpath, forkOptions, currentTest,
+                                  loaded);
+    }
+
+    /**
+     * @param suite the filtered description of all tests
+     * @param classes the test classes
+     * @return the classes of {@code classes} having a test within {@code suite} keyed by name or null if
+     *         {@code suite}'s children do not correspond to {@code classes} (i.e., no tests matched)
+     */
+    private static Map<String, Class<?>> getMatchedClasses(Description suite, List<Class<?>> classes) {
+        Map<String, Class<?>> byName = new HashMap<String, Class<?>>(classes.size());
+        for (Class<?> clazz : classes) {
+            byName.put(clazz.getName(), clazz);
+        }
+        Map<String, Class<?>> matched = new HashMap<String, Class<?>>();
+        for (Description child : suite.getChildren()) {
+            Class<?> clazz = byName.get(child.getClassName());
+            if (clazz == null) {
+                return null;
+            }
+            matched.put(clazz.getName(), clazz);
         }
+        return matched;
     }
 
     private int countSynthetic(Result result) {
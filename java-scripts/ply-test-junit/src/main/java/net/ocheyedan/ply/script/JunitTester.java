@@ -16,11 +16,14 @@ import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 
@@ -42,6 +45,8 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  * matched {@link Class} object(s).
  * The set of {@link Class} objects to search comes from the {@literal project.scope.build.dir}/{@literal project.scope.artifact.name}.
  * If no such artifact exists, this script does nothing.
+ * When run without arguments only those test classes affected by changes since the last run are run (see
+ * {@link TestImpact}); set property {@literal junit.impact} to false to run all test classes.
  *
  */
 public class JunitTester {
@@ -68,15 +73,13 @@ public class JunitTester {
             Output.print("^warn^ No test artifact, skipping test execution.");
             return;
         }
-        List<URL> urls = getClasspathEntries(artifact, resolvedDepProps);
+        List<URL> projectUrls = getProjectClasspathEntries(artifact, resolvedDepProps);
+        List<URL> urls = getClasspathEntries(projectUrls, resolvedDepProps);
 
-        // create a loader with the given test artifact and its dependencies
-        ClassLoader loader = URLClassLoader.newInstance(
-                urls.toArray(new URL[urls.size()]),
-                // use the boot class-loader so as to not interfere with any common jars shared by this tester and the
-                // artifact being tested
-                null
-        );
+        // create a loader with the given test artifact and its dependencies which records the classes loaded by
+        // each test class
+        ThreadLocal<String> currentTest = new InheritableThreadLocal<String>();
+        TrackingClassLoader loader = new TrackingClassLoader(urls.toArray(new URL[urls.size()]), currentTest);
 
         FilenameFilter filter = new FilenameFilter() {
             @Override public boolean accept(File dir, String name) {
@@ -85,8 +88,6 @@ public class JunitTester {
         };
         Set<String> classNames = getClasses(artifact, filter);
 
-        Set<Class> classes = loadClasses(classNames, loader);
-
         String[] matchers = null;
         String unsplitMatchers = null;
         if (args.length == 1) {
@@ -94,6 +95,26 @@ public class JunitTester {
             matchers = args[0].split(",");
         }
 
+        // only analyze impact when running all tests; explicitly matched tests are always run
+        TestImpact impact = null;
+        File impactFile = FileUtil.fromParts(buildDirProp.value(), "test-impact" + Props.getScope().getFileSuffix() + ".properties");
+        boolean incremental = !"false".equalsIgnoreCase(Props.get("impact", Context.named("junit")).value());
+        Set<String> selectedNames = classNames;
+        if (matchers == null) {
+            impact = TestImpact.load(impactFile, projectUrls);
+            if (incremental) {
+                selectedNames = impact.getAffected(classNames);
+                if (selectedNames.isEmpty()) {
+                    Output.print("No test classes affected by changes, nothing to test (run with ^b^-Pjunit.impact=false^r^ to run all tests).");
+                    return;
+                } else if (selectedNames.size() < classNames.size()) {
+                    Output.print("^info^ Running ^b^%d^r^ of ^b^%d^r^ test classes affected by changes.", selectedNames.size(), classNames.size());
+                }
+            }
+        }
+
+        Set<Class<?>> classes = loadClasses(selectedNames, loader);
+
         // redirect out/err to a log file (except privileged code from this package)
         PrintStream oldOut = System.out;
         PrintStream oldErr = System.err;
@@ -118,15 +139,22 @@ public class JunitTester {
 
         // invoke the Junit4Runner in a thread to force usage of the {@code loader} which has reference to the
         // resolved dependencies
+        Set<String> failed = null;
         try {
             Resources.setResourcesLoader(loader);
-            Class junit4Invoker = loader.loadClass("net.ocheyedan.ply.script.Junit4Invoker");
-            Runnable instance = (Runnable) junit4Invoker.getConstructor(Set.class, String[].class,  String.class)
-                                                 .newInstance(classes, matchers, unsplitMatchers);
-            Thread runner = new Thread(instance);
+            Class<?> junit4Invoker = loader.loadClass("net.ocheyedan.ply.script.Junit4Invoker");
+            Callable<Set<String>> instance = (Callable<Set<String>>) junit4Invoker
+                    .getConstructor(Set.class, String[].class, String.class, List.class, ThreadLocal.class,
+                                    ConcurrentMap.class)
+                    .newInstance(classes, matchers, unsplitMatchers, urls, currentTest, loader.getLoaded());
+            FutureTask<Set<String>> task = new FutureTask<Set<String>>(instance);
+            Thread runner = new Thread(task);
             runner.setContextClassLoader(loader);
             runner.start();
-            runner.join();
+            failed = task.get();
+        } catch (ExecutionException ee) {
+            PrivilegedOutput.print(ee.getCause());
+            System.exit(1);
         } catch (ClassNotFoundException cfne) {
             PrivilegedOutput.print(cfne);
             System.exit(1);
@@ -145,20 +173,29 @@ public class JunitTester {
             System.exit(1);
         }
 
+        if (impact != null) {
+            Set<String> ran = new HashSet<String>(classes.size());
+            for (Class<?> clazz : classes) {
+                ran.add(clazz.getName());
+            }
+            impact.record(classNames, ran, failed, loader.getLoaded(), incremental);
+            impact.store(impactFile);
+        }
+        if (!failed.isEmpty()) {
+            System.exit(1);
+        }
     }
 
-    private static List<URL> getClasspathEntries(File artifact, PropFile dependencies) {
+    /**
+     * @return the urls of the test artifact and its dependencies
+     */
+    private static List<URL> getProjectClasspathEntries(File artifact, PropFile dependencies) {
         List<URL> urls = new ArrayList<URL>();
         URL artifactUrl = getUrl(artifact);
         if (artifactUrl == null) {
             throw new AssertionError(String.format("Could not find artifact: %s", artifact.getPath()));
         }
         urls.add(artifactUrl);
-        if (dependencies == null) {
-            return urls;
-        }
-
-        boolean includesPlyUtil = false;
         for (Prop depName : dependencies.props()) {
             // TODO - should this exclude the direct-transient deps? perhaps not b/c need for testing?
             String depPath = depName.value();
@@ -167,6 +204,17 @@ public class JunitTester {
                 throw new AssertionError(String.format("Could not find dependency artifact: %s", depPath));
             }
             urls.add(depUrl);
+        }
+        return urls;
+    }
+
+    /**
+     * @return {@code projectUrls} along with the urls of this script and its dependencies
+     */
+    private static List<URL> getClasspathEntries(List<URL> projectUrls, PropFile dependencies) {
+        List<URL> urls = new ArrayList<URL>(projectUrls);
+        boolean includesPlyUtil = false;
+        for (Prop depName : dependencies.props()) {
             // TODO - is this the best way to handle those projects which depend upon ply-util?
             if (depName.name.contains("ply-util")) {
                 includesPlyUtil = true;
@@ -216,7 +264,7 @@ public class JunitTester {
     private static URL getUrl(File artifact) {
         URL artifactUrl;
         try {
-            artifactUrl = new URL("file://" + artifact.getCanonicalPath());
+            artifactUrl = artifact.getCanonicalFile().toURI().toURL();
         } catch (MalformedURLException murle) {
             Output.print(murle);
             return null;
@@ -255,11 +303,11 @@ public class JunitTester {
         return classes;
     }
 
-    private static Set<Class> loadClasses(Set<String> classNames, ClassLoader loader) {
-        Set<Class> classes = new HashSet<Class>(classNames.size());
+    private static Set<Class<?>> loadClasses(Set<String> classNames, ClassLoader loader) {
+        Set<Class<?>> classes = new HashSet<Class<?>>(classNames.size());
         for (String className : classNames) {
             try {
-                Class clazz = Class.forName(className, true, loader);
+                Class<?> clazz = Class.forName(className, true, loader);
                 classes.add(clazz);
             } catch (ClassNotFoundException cnfe) {
                 Output.print(cnfe);
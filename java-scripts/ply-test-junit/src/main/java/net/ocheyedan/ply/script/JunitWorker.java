@@ -0,0 +1,144 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.Output;
+import org.junit.runner.manipulation.Filter;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The main class of the worker jvms forked by {@link ParallelRunner} when running in {@link ParallelRunner.Mode#forks}
+ * mode.  The classpath of the worker is that of the test classes.  Arguments are:
+ * events-file loaded-file classes-file [matchers]
+ * where {@literal classes-file} lists the names of the test classes to run (one per line), {@literal events-file}
+ * is where the {@link TestEvent} notifications of running the classes are written (a class at a time), {@literal loaded-file}
+ * is where the classes and resources loaded by each test class are written (once all classes have run) and the optional
+ * {@literal matchers} are those given to {@link JunitTester}.  Reports are saved via {@link MavenReporter} as each class
+ * completes.
+ * As within the invoking jvm, the test classes (and junit itself) are loaded by a {@link TrackingClassLoader} so that
+ * the classes and resources each test class loads are recorded.
+ */
+public class JunitWorker {
+
+    public static void main(String[] args) {
+        if ((args == null) || (args.length < 3)) {
+            Output.print("^error^ Usage: JunitWorker events-file loaded-file classes-file [matchers]");
+            System.exit(1);
+        }
+        ThreadLocal<String> currentTest = new InheritableThreadLocal<String>();
+        TrackingClassLoader loader = new TrackingClassLoader(getClasspath(), currentTest);
+        Thread.currentThread().setContextClassLoader(loader);
+        try {
+            Class<?> worker = loader.loadClass(JunitWorker.class.getName());
+            worker.getMethod("run", String.class, String.class, String.class, ThreadLocal.class)
+                  .invoke(null, args[0], args[2], (args.length > 3 ? args[3] : null), currentTest);
+        } catch (ClassNotFoundException cnfe) {
+            throw new AssertionError(cnfe); // the worker's own class is on its classpath
+        } catch (NoSuchMethodException nsme) {
+            throw new AssertionError(nsme);
+        } catch (IllegalAccessException iae) {
+            throw new AssertionError(iae);
+        } catch (InvocationTargetException ite) {
+            Output.print(ite.getCause());
+            System.exit(1);
+        }
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(args[1]), 65536));
+            TrackingClassLoader.write(loader.getLoaded(), out);
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            System.exit(1);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+        // tests may have left non-daemon threads running
+        System.exit(0);
+    }
+
+    /**
+     * Runs the test classes; invoked (reflectively) from the copy of this class loaded by the {@link TrackingClassLoader}.
+     * @param eventsFile to which to write the {@link TestEvent} notifications
+     * @param classesFile listing the names of the test classes to run
+     * @param matchers given to {@link JunitTester}, may be null
+     * @param currentTest to set with the name of the test class being run (see {@link TrackingClassLoader})
+     */
+    public static void run(String eventsFile, String classesFile, String matchers, ThreadLocal<String> currentTest) {
+        Filter filter = Junit4Invoker.createMatcherFilter(matchers != null ? matchers.split(",") : null);
+        DataOutputStream out = null;
+        try {
+            List<String> classNames = readClassNames(new File(classesFile));
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(eventsFile), 65536));
+            for (String className : classNames) {
+                Class<?> clazz;
+                try {
+                    clazz = Class.forName(className);
+                } catch (ClassNotFoundException cnfe) {
+                    Output.print(cnfe);
+                    continue;
+                }
+                for (TestEvent event : ParallelRunner.runClass(clazz, filter, currentTest)) {
+                    event.write(out);
+                }
+                out.flush();
+            }
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            System.exit(1);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the worker's classpath (that of the test classes)
+     */
+    private static URL[] getClasspath() {
+        String[] paths = System.getProperty("java.class.path").split(File.pathSeparator);
+        List<URL> urls = new ArrayList<URL>(paths.length);
+        for (String path : paths) {
+            if (path.isEmpty()) {
+                continue;
+            }
+            try {
+                urls.add(new File(path).toURI().toURL());
+            } catch (MalformedURLException murle) {
+                throw new AssertionError(murle);
+            }
+        }
+        return urls.toArray(new URL[urls.size()]);
+    }
+
+    private static List<String> readClassNames(File from) throws IOException {
+        List<String> classNames = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(from), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    classNames.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return classNames;
+    }
+
+}
@@ -0,0 +1,312 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.script.print.PrivilegedOutput;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.RunListener;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs test classes in parallel, either within threads of this jvm ({@link Mode#threads}) or across forked worker
+ * jvms ({@link Mode#forks}, see {@link JunitWorker}).  Each class (or each worker's set of classes) has its
+ * {@link TestEvent} notifications recorded and, once complete, replayed to the given listener on the calling thread.
+ * The {@link MavenReporter} reports are saved by the thread or worker running the class as the report's timings
+ * must be those of the actual run.  The classes and resources loaded by each test class within a worker (see
+ * {@link TrackingClassLoader}) are likewise transferred back and added to those loaded within this jvm.
+ */
+final class ParallelRunner {
+
+    static enum Mode { threads, forks }
+
+    private final Mode mode;
+
+    private final int count;
+
+    private final Filter filter;
+
+    private final String unsplitMatchers;
+
+    private final List<URL> classpath;
+
+    private final List<String> forkOptions;
+
+    private final ThreadLocal<String> currentTest;
+
+    private final ConcurrentMap<String, Set<String>> loaded;
+
+    private final AtomicInteger errors = new AtomicInteger(0);
+
+    /**
+     * @param mode of parallelism
+     * @param count the number of threads or worker jvms
+     * @param filter to apply to each class, may be null
+     * @param unsplitMatchers from which {@code filter} was created (passed to worker jvms), may be null
+     * @param classpath of the test classes (used by worker jvms)
+     * @param forkOptions jvm options for the worker jvms
+     * @param currentTest to set with the name of the test class running in each thread (see {@link TrackingClassLoader})
+     * @param loaded to which to add the resource paths loaded by each test class within the worker jvms
+     */
+    ParallelRunner(Mode mode, int count, Filter filter, String unsplitMatchers, List<URL> classpath,
+                   List<String> forkOptions, ThreadLocal<String> currentTest,
+                   ConcurrentMap<String, Set<String>> loaded) {
+        this.mode = mode;
+        this.count = count;
+        this.filter = filter;
+        this.unsplitMatchers = unsplitMatchers;
+        this.classpath = classpath;
+        this.forkOptions = forkOptions;
+        this.currentTest = currentTest;
+        this.loaded = loaded;
+    }
+
+    /**
+     * @param suite the description of all the tests to be run
+     * @param classes the test classes to run keyed by name
+     * @param partitioner with which to order/partition {@code classes}
+     * @param listener to which the notifications of all tests are replayed
+     * @return the merged result of all the tests
+     */
+    Result run(Description suite, Map<String, Class<?>> classes, ClassPartitioner partitioner, RunListener listener) {
+        Result result = new Result();
+        RunListener summary = result.createListener();
+        int threads = Math.min(count, classes.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(0);
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ply-test-junit-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            fire(listener, summary, suite, null);
+            CompletionService<List<TestEvent>> completionService = new ExecutorCompletionService<List<TestEvent>>(executor);
+            int submitted = 0;
+            if (mode == Mode.threads) {
+                for (String className : partitioner.order(classes.keySet())) {
+                    completionService.submit(createThreadTask(classes.get(className)));
+                    submitted++;
+                }
+            } else {
+                int worker = 0;
+                for (List<String> partition : partitioner.partition(classes.keySet(), threads)) {
+                    completionService.submit(createForkTask(++worker, partition));
+                    submitted++;
+                }
+            }
+            for (int i = 0; i < submitted; i++) {
+                try {
+                    for (TestEvent event : completionService.take().get()) {
+                        event.replay(listener);
+                        event.replay(summary);
+                    }
+                } catch (ExecutionException ee) {
+                    errors.incrementAndGet();
+                    PrivilegedOutput.print(ee.getCause());
+                }
+            }
+            fire(listener, summary, null, result);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            errors.incrementAndGet();
+        } catch (Exception e) {
+            throw new AssertionError(e); // listeners do not throw
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     * @return true if any class or worker failed to run to completion (independent of test failures)
+     */
+    boolean hadErrors() {
+        return (errors.get() > 0);
+    }
+
+    private static void fire(RunListener listener, RunListener summary, Description started, Result finished)
+            throws Exception {
+        if (started != null) {
+            listener.testRunStarted(started);
+            summary.testRunStarted(started);
+        } else {
+            summary.testRunFinished(finished);
+            listener.testRunFinished(finished);
+        }
+    }
+
+    private Callable<List<TestEvent>> createThreadTask(final Class<?> clazz) {
+        return new Callable<List<TestEvent>>() {
+            @Override public List<TestEvent> call() throws Exception {
+                return runClass(clazz, filter, currentTest);
+            }
+        };
+    }
+
+    /**
+     * Runs {@code clazz} saving its report via {@link MavenReporter}.
+     * @param clazz to run
+     * @param filter to apply, may be null
+     * @param currentTest to set with the name of the running test class, may be null
+     * @return the recorded events of running {@code clazz}
+     */
+    static List<TestEvent> runClass(Class<?> clazz, Filter filter, ThreadLocal<String> currentTest) {
+        Request request = Request.aClass(clazz);
+        if (filter != null) {
+            request = request.filterWith(filter);
+        }
+        TestEvent.Recorder recorder = new TestEvent.Recorder();
+        final JUnitCore jUnitCore = new JUnitCore();
+        jUnitCore.addListener(recorder);
+        jUnitCore.addListener(new MavenReporter());
+        if (currentTest == null) {
+            jUnitCore.run(request);
+        } else {
+            jUnitCore.addListener(new CurrentTestListener(currentTest));
+            final Request currentTestRequest = request;
+            CurrentTestListener.run(currentTest, clazz.getName(), new Runnable() {
+                @Override public void run() {
+                    jUnitCore.run(currentTestRequest);
+                }
+            });
+        }
+        return recorder.getEvents();
+    }
+
+    private Callable<List<TestEvent>> createForkTask(final int worker, final List<String> classNames) {
+        return new Callable<List<TestEvent>>() {
+            @Override public List<TestEvent> call() throws Exception {
+                return fork(worker, classNames);
+            }
+        };
+    }
+
+    private List<TestEvent> fork(int worker, List<String> classNames) throws IOException, InterruptedException {
+        File classesFile = File.createTempFile("ply-test-junit-classes", ".txt");
+        File eventsFile = File.createTempFile("ply-test-junit-events", ".dat");
+        File loadedFile = File.createTempFile("ply-test-junit-loaded", ".dat");
+        try {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(classesFile), "UTF-8"));
+            try {
+                for (String className : classNames) {
+                    writer.println(className);
+                }
+            } finally {
+                writer.close();
+            }
+            List<String> command = new ArrayList<String>();
+            command.add(new File(System.getProperty("java.home"), "bin" + File.separator + "java").getPath());
+            command.addAll(forkOptions);
+            command.add("-cp");
+            command.add(getClasspath());
+            command.add(JunitWorker.class.getName());
+            command.add(eventsFile.getPath());
+            command.add(loadedFile.getPath());
+            command.add(classesFile.getPath());
+            if (unsplitMatchers != null) {
+                command.add(unsplitMatchers);
+            }
+            Process process = new ProcessBuilder(command).start();
+            process.getOutputStream().close();
+            Thread out = pump(process.getInputStream(), System.out);
+            Thread err = pump(process.getErrorStream(), System.err);
+            int exitCode = process.waitFor();
+            out.join();
+            err.join();
+            List<TestEvent> events = readEvents(eventsFile);
+            readLoaded(loadedFile);
+            if (exitCode != 0) {
+                errors.incrementAndGet();
+                PrivilegedOutput.print("^error^ Test worker ^b^%d^r^ exited with ^b^%d^r^ before completing its tests.",
+                                       worker, exitCode);
+            }
+            return events;
+        } finally {
+            classesFile.delete();
+            eventsFile.delete();
+            loadedFile.delete();
+        }
+    }
+
+    /**
+     * @return the {@link #classpath} as the value of a {@literal -cp} option; i.e., its entries decoded into paths
+     */
+    private String getClasspath() {
+        StringBuilder buffer = new StringBuilder();
+        for (URL url : classpath) {
+            if (buffer.length() > 0) {
+                buffer.append(File.pathSeparator);
+            }
+            try {
+                buffer.append(new File(url.toURI()).getPath());
+            } catch (URISyntaxException urise) {
+                throw new AssertionError(urise); // created from files by JunitTester
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Reads the events written by a worker; a worker which exits prematurely may leave the last event incomplete.
+     */
+    private static List<TestEvent> readEvents(File eventsFile) throws IOException {
+        List<TestEvent> events = new ArrayList<TestEvent>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(eventsFile), 65536));
+        try {
+            while (true) {
+                events.add(TestEvent.read(in));
+            }
+        } catch (EOFException eofe) {
+            // done
+        } finally {
+            in.close();
+        }
+        return events;
+    }
+
+    /**
+     * Adds the resource paths loaded by each test class within a worker to {@link #loaded}; nothing has been written if
+     * the worker exited prematurely.
+     */
+    private void readLoaded(File loadedFile) throws IOException {
+        if (loadedFile.length() == 0L) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(loadedFile), 65536));
+        try {
+            TrackingClassLoader.read(in, loaded);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Thread pump(final InputStream from, final PrintStream to) {
+        Thread thread = new Thread(new Runnable() {
+            @Override public void run() {
+                byte[] buffer = new byte[8192];
+                int read;
+                try {
+                    while ((read = from.read(buffer)) != -1) {
+                        to.write(buffer, 0, read);
+                    }
+                    to.flush();
+                } catch (IOException ioe) {
+                    PrivilegedOutput.print(ioe);
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+}
@@ -0,0 +1,196 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recorded {@link RunListener} notification.  Test classes run in parallel (either by other threads or by forked
+ * worker jvms) have their notifications recorded and then replayed, a class at a time, to the listeners responsible for
+ * printing and summarizing the results so that the output of each class is not interleaved with that of other classes.
+ * Events recorded within a forked worker are transferred to the invoking jvm via {@link #write(DataOutputStream)} and
+ * {@link #read(DataInputStream)}.  As the classes of the exceptions thrown by tests may not be loadable by the invoking
+ * jvm, failures read from a worker carry a {@link ForkedException} which mimics the original exception.
+ */
+public final class TestEvent {
+
+    static enum Type { Started, Finished, Failed, AssumptionFailed, Ignored }
+
+    /**
+     * Stands in for an exception thrown within a forked worker jvm.
+     */
+    @SuppressWarnings("serial")
+    static final class ForkedException extends Exception {
+
+        private final String type;
+
+        private final String trace;
+
+        ForkedException(String type, String message, String trace, StackTraceElement[] stackTrace) {
+            super(message);
+            this.type = type;
+            this.trace = trace;
+            setStackTrace(stackTrace);
+        }
+
+        /**
+         * @return the class name of the original exception
+         */
+        String getType() {
+            return type;
+        }
+
+        @Override public void printStackTrace(PrintWriter writer) {
+            writer.print(trace);
+        }
+
+        @Override public void printStackTrace(PrintStream stream) {
+            stream.print(trace);
+        }
+
+        @Override public String toString() {
+            return (getMessage() == null ? type : type + ": " + getMessage());
+        }
+    }
+
+    /**
+     * Records the notifications received.
+     */
+    static final class Recorder extends RunListener {
+
+        private final List<TestEvent> events = new ArrayList<TestEvent>();
+
+        @Override public void testStarted(Description description) throws Exception {
+            events.add(new TestEvent(Type.Started, description, null));
+        }
+
+        @Override public void testFinished(Description description) throws Exception {
+            events.add(new TestEvent(Type.Finished, description, null));
+        }
+
+        @Override public void testFailure(Failure failure) throws Exception {
+            events.add(new TestEvent(Type.Failed, failure.getDescription(), failure));
+        }
+
+        @Override public void testAssumptionFailure(Failure failure) {
+            events.add(new TestEvent(Type.AssumptionFailed, failure.getDescription(), failure));
+        }
+
+        @Override public void testIgnored(Description description) throws Exception {
+            events.add(new TestEvent(Type.Ignored, description, null));
+        }
+
+        List<TestEvent> getEvents() {
+            return events;
+        }
+    }
+
+    private final Type type;
+
+    private final Description description;
+
+    private final Failure failure;
+
+    private TestEvent(Type type, Description description, Failure failure) {
+        this.type = type;
+        this.description = description;
+        this.failure = failure;
+    }
+
+    /**
+     * Notifies {@code listener} of this event.
+     * @param listener to notify
+     * @throws Exception from {@code listener}
+     */
+    void replay(RunListener listener) throws Exception {
+        switch (type) {
+            case Started: listener.testStarted(description); break;
+            case Finished: listener.testFinished(description); break;
+            case Failed: listener.testFailure(failure); break;
+            case AssumptionFailed: listener.testAssumptionFailure(failure); break;
+            case Ignored: listener.testIgnored(description); break;
+            default: throw new AssertionError(String.format("Unknown event type %s", type));
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        writeString(out, description.getDisplayName());
+        if (failure == null) {
+            return;
+        }
+        Throwable exception = failure.getException();
+        writeString(out, (exception instanceof ForkedException) ? ((ForkedException) exception).getType()
+                                                                 : exception.getClass().getName());
+        writeString(out, exception.getMessage());
+        writeString(out, failure.getTrace());
+        StackTraceElement[] stackTrace = exception.getStackTrace();
+        out.writeInt(stackTrace.length);
+        for (StackTraceElement element : stackTrace) {
+            writeString(out, element.getClassName());
+            writeString(out, element.getMethodName());
+            writeString(out, element.getFileName());
+            out.writeInt(element.getLineNumber());
+        }
+    }
+
+    /**
+     * @param in from which to read
+     * @return the event previously written by {@link #write(DataOutputStream)}
+     * @throws IOException on failure (including {@link java.io.EOFException} if there are no more events)
+     */
+    static TestEvent read(DataInputStream in) throws IOException {
+        int ordinal = in.readByte();
+        if ((ordinal < 0) || (ordinal >= Type.values().length)) {
+            throw new IOException(String.format("Unknown event type %d", ordinal));
+        }
+        Type type = Type.values()[ordinal];
+        // the display name is sufficient; class and method names are parsed from it
+        Description description = Description.createSuiteDescription(readString(in));
+        Failure failure = null;
+        if ((type == Type.Failed) || (type == Type.AssumptionFailed)) {
+            String exceptionType = readString(in);
+            String message = readString(in);
+            String trace = readString(in);
+            StackTraceElement[] stackTrace = new StackTraceElement[in.readInt()];
+            for (int i = 0; i < stackTrace.length; i++) {
+                stackTrace[i] = new StackTraceElement(readString(in), readString(in), readString(in), in.readInt());
+            }
+            failure = new Failure(description, new ForkedException(exceptionType, message, trace, stackTrace));
+        }
+        return new TestEvent(type, description, failure);
+    }
+
+    /**
+     * Strings are written as length prefixed utf-8 bytes (rather than via {@link DataOutputStream#writeUTF(String)})
+     * as stack traces may exceed its 64k limit.
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+}
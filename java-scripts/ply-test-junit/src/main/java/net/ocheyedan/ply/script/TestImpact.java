@@ -0,0 +1,276 @@
+package net.ocheyedan.ply.script;
+
+import net.ocheyedan.ply.ConstantPool;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFiles;
+import net.ocheyedan.ply.script.print.PrivilegedOutput;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Records the classes and resources (from the test artifact and its dependencies) each test class depends upon and
+ * determines which test classes are affected by changes to them.  The dependencies of a test class are the classes
+ * transitively referenced from its class file together with the classes and resources found by the
+ * {@link TrackingClassLoader} while it ran.  Along with the dependencies, a checksum of each is recorded; a test
+ * class is affected if it has not been recorded (i.e., it is new or last failed) or if the checksum of any of its
+ * dependencies has changed (i.e., was recompiled with a change) or the dependency no longer exists.
+ * The information is stored in the build directory in a file named {@literal test-impact[.scope].properties} with
+ * format (the test classes' entries also include their dependencies):
+ * resource-path=checksum[;dependency-resource-path,...]
+ */
+final class TestImpact {
+
+    /**
+     * Checksum used for dependencies which do not exist.
+     */
+    private static final String MISSING = "";
+
+    /**
+     * @param from the stored file
+     * @param projectClasspath the test artifact and its dependencies; the locations of the tracked dependencies
+     * @return the information stored at {@code from} or empty information if none has been stored
+     */
+    static TestImpact load(File from, List<URL> projectClasspath) {
+        TestImpact impact = new TestImpact(projectClasspath);
+        PropFile stored = PropFiles.load(from.getPath(), false, false);
+        for (PropFile.Prop prop : stored.props()) {
+            String value = prop.value();
+            int separator = value.indexOf(';');
+            impact.checksums.put(prop.name, (separator == -1 ? value : value.substring(0, separator)));
+            if (separator != -1) {
+                Set<String> dependencies = new HashSet<String>();
+                for (String dependency : value.substring(separator + 1).split(",")) {
+                    if (!dependency.isEmpty()) {
+                        dependencies.add(dependency);
+                    }
+                }
+                impact.dependencies.put(toClassName(prop.name), dependencies);
+            }
+        }
+        return impact;
+    }
+
+    /**
+     * Recorded checksums keyed by resource path.
+     */
+    private final Map<String, String> checksums = new HashMap<String, String>();
+
+    /**
+     * Recorded dependencies (resource paths) keyed by test class name.
+     */
+    private final Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+
+    /**
+     * Checksums of the current resources keyed by resource path (memoized).
+     */
+    private final Map<String, String> current = new HashMap<String, String>();
+
+    /**
+     * The resource paths of the classes referenced by a class keyed by the class' resource path (memoized).
+     */
+    private final Map<String, Set<String>> references = new HashMap<String, Set<String>>();
+
+    /**
+     * Finds resources within the test artifact and its dependencies (used only to read bytes, never to define).
+     */
+    private final URLClassLoader projectLoader;
+
+    private TestImpact(List<URL> projectClasspath) {
+        this.projectLoader = URLClassLoader.newInstance(projectClasspath.toArray(new URL[projectClasspath.size()]), null);
+    }
+
+    /**
+     * @param testClasses the names of the test classes
+     * @return those of {@code testClasses} which are affected by changes since they were last recorded
+     */
+    Set<String> getAffected(Collection<String> testClasses) {
+        Set<String> affected = new HashSet<String>();
+        for (String testClass : testClasses) {
+            Set<String> recorded = dependencies.get(testClass);
+            if (recorded == null) {
+                affected.add(testClass);
+                continue;
+            }
+            for (String dependency : recorded) {
+                String checksum = checksums.get(dependency);
+                if ((checksum == null) || !checksum.equals(getChecksum(dependency))) {
+                    affected.add(testClass);
+                    break;
+                }
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Records the dependencies of the test classes which were run.
+     * @param testClasses the names of all the test classes; recorded information for any other class is discarded
+     * @param ran the names of the test classes which were run
+     * @param failed the names of the test classes which failed; they are not recorded so as to be run again
+     * @param loaded the resource paths found by the {@link TrackingClassLoader} keyed by test class name
+     * @param incremental true to retain the previously recorded dependencies of the test classes which were run
+     */
+    void record(Collection<String> testClasses, Collection<String> ran, Collection<String> failed,
+                Map<String, Set<String>> loaded, boolean incremental) {
+        dependencies.keySet().retainAll(new HashSet<String>(testClasses));
+        for (String testClass : ran) {
+            if (failed.contains(testClass)) {
+                dependencies.remove(testClass);
+                continue;
+            }
+            Set<String> recorded = getClosure(toPath(testClass));
+            Set<String> loadedPaths = loaded.get(testClass);
+            if (loadedPaths != null) {
+                addExisting(new ArrayList<String>(loadedPaths), recorded);
+            }
+            Set<String> previous = dependencies.get(testClass);
+            if (incremental && (previous != null)) {
+                addExisting(previous, recorded);
+            }
+            dependencies.put(testClass, recorded);
+        }
+    }
+
+    private void addExisting(Collection<String> paths, Set<String> into) {
+        for (String path : paths) {
+            if (!MISSING.equals(getChecksum(path))) {
+                into.add(path);
+            }
+        }
+    }
+
+    /**
+     * @param to the file into which to store the recorded information
+     */
+    void store(File to) {
+        PropFile stored = new PropFile(Context.named("test-impact"), PropFile.Loc.Local);
+        Map<String, String> entries = new TreeMap<String, String>();
+        for (Set<String> recorded : dependencies.values()) {
+            for (String dependency : recorded) {
+                entries.put(dependency, getChecksum(dependency));
+            }
+        }
+        for (Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            String path = toPath(entry.getKey());
+            StringBuilder value = new StringBuilder(getChecksum(path)).append(';');
+            boolean first = true;
+            for (String dependency : new TreeSet<String>(entry.getValue())) {
+                if (!first) {
+                    value.append(',');
+                }
+                value.append(dependency);
+                first = false;
+            }
+            entries.put(path, value.toString());
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            stored.add(entry.getKey(), entry.getValue());
+        }
+        PropFiles.store(stored, to.getPath(), true);
+    }
+
+    /**
+     * @param path resource path of a class
+     * @return {@code path} and the resource paths of all classes (existing within the test artifact or its
+     *         dependencies) transitively referenced by it
+     */
+    private Set<String> getClosure(String path) {
+        Set<String> closure = new HashSet<String>();
+        LinkedList<String> queue = new LinkedList<String>();
+        queue.add(path);
+        while (!queue.isEmpty()) {
+            String next = queue.removeFirst();
+            if (MISSING.equals(getChecksum(next)) || !closure.add(next)) {
+                continue;
+            }
+            queue.addAll(getReferences(next));
+        }
+        return closure;
+    }
+
+    private String getChecksum(String path) {
+        String checksum = current.get(path);
+        if (checksum == null) {
+            byte[] bytes = read(path);
+            if (bytes == null) {
+                checksum = MISSING;
+            } else {
+                CRC32 crc = new CRC32();
+                crc.update(bytes, 0, bytes.length);
+                checksum = Long.toHexString(crc.getValue());
+                if (path.endsWith(".class")) {
+                    references.put(path, parseReferences(bytes));
+                }
+            }
+            current.put(path, checksum);
+        }
+        return checksum;
+    }
+
+    private Set<String> getReferences(String path) {
+        getChecksum(path);
+        Set<String> referenced = references.get(path);
+        return (referenced == null ? Collections.<String>emptySet() : referenced);
+    }
+
+    private byte[] read(String path) {
+        // find directly, rather than through the boot class-loader, so that only the project's resources are found
+        URL resource = projectLoader.findResource(path);
+        if (resource == null) {
+            return null;
+        }
+        InputStream inputStream = null;
+        try {
+            inputStream = resource.openStream();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } catch (IOException ioe) {
+            return null;
+        } finally {
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param classFile bytes of a class file
+     * @return the resource paths of the classes referenced from the constant pool of {@code classFile} (see
+     *         {@link ConstantPool#getReferencedClasses()}); empty if {@code classFile} cannot be parsed
+     */
+    static Set<String> parseReferences(byte[] classFile) {
+        Set<String> referenced = new HashSet<String>();
+        try {
+            for (String className : ConstantPool.read(new DataInputStream(new ByteArrayInputStream(classFile)))
+                    .getReferencedClasses()) {
+                referenced.add(className + ".class");
+            }
+        } catch (IOException ioe) {
+            PrivilegedOutput.print("^dbug^ could not parse class file for test impact: %s", ioe.getMessage());
+        }
+        return referenced;
+    }
+
+    private static String toPath(String className) {
+        return className.replace('.', '/') + ".class";
+    }
+
+    private static String toClassName(String path) {
+        return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    }
+
+}
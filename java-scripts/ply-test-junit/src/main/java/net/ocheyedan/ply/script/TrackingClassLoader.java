@@ -0,0 +1,117 @@
+package net.ocheyedan.ply.script;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link URLClassLoader} which records, for the test class currently running on the loading thread (see
+ * {@link CurrentTestListener}), the classes and resources it finds.  The recorded names are resource paths
+ * (i.e., {@literal net/ocheyedan/ply/Foo.class}) and are used by {@link TestImpact} to capture the dependencies
+ * of test classes which cannot be determined from their class files (i.e., classes loaded reflectively).
+ * Only the first load of a class is seen by the loader and so is attributed to the first test class to load it.
+ * Forked worker jvms (see {@link JunitWorker}) run their test classes within their own loader and transfer what it
+ * recorded via {@link #write(Map, DataOutputStream)} and {@link #read(DataInputStream, ConcurrentMap)}.
+ */
+final class TrackingClassLoader extends URLClassLoader {
+
+    private final ThreadLocal<String> currentTest;
+
+    private final ConcurrentMap<String, Set<String>> loaded = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * @param urls of the loader
+     * @param currentTest holding the name of the test class running on the current thread
+     */
+    TrackingClassLoader(URL[] urls, ThreadLocal<String> currentTest) {
+        // use the boot class-loader so as to not interfere with any common jars shared by this tester and the
+        // artifact being tested
+        super(urls, null);
+        this.currentTest = currentTest;
+    }
+
+    @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> clazz = super.findClass(name);
+        record(name.replace('.', '/') + ".class");
+        return clazz;
+    }
+
+    @Override public URL findResource(String name) {
+        URL resource = super.findResource(name);
+        if (resource != null) {
+            record(name);
+        }
+        return resource;
+    }
+
+    @Override public Enumeration<URL> findResources(String name) throws IOException {
+        Enumeration<URL> resources = super.findResources(name);
+        record(name);
+        return resources;
+    }
+
+    private void record(String path) {
+        String test = currentTest.get();
+        if (test == null) {
+            return;
+        }
+        getPaths(loaded, test).add(path);
+    }
+
+    /**
+     * @return the resource paths found by this loader keyed by the test class running at the time
+     */
+    ConcurrentMap<String, Set<String>> getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @param loaded as returned by {@link #getLoaded()}
+     * @param out to which to write {@code loaded}
+     * @throws IOException on failure
+     */
+    static void write(Map<String, Set<String>> loaded, DataOutputStream out) throws IOException {
+        out.writeInt(loaded.size());
+        for (Map.Entry<String, Set<String>> entry : loaded.entrySet()) {
+            out.writeUTF(entry.getKey());
+            synchronized (entry.getValue()) {
+                out.writeInt(entry.getValue().size());
+                for (String path : entry.getValue()) {
+                    out.writeUTF(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param in from which to read the resource paths previously written by {@link #write(Map, DataOutputStream)}
+     * @param into which to add the read resource paths
+     * @throws IOException on failure
+     */
+    static void read(DataInputStream in, ConcurrentMap<String, Set<String>> into) throws IOException {
+        int tests = in.readInt();
+        for (int i = 0; i < tests; i++) {
+            Set<String> paths = getPaths(into, in.readUTF());
+            int count = in.readInt();
+            for (int j = 0; j < count; j++) {
+                paths.add(in.readUTF());
+            }
+        }
+    }
+
+    private static Set<String> getPaths(ConcurrentMap<String, Set<String>> loaded, String test) {
+        Set<String> paths = loaded.get(test);
+        if (paths == null) {
+            Set<String> created = Collections.synchronizedSet(new HashSet<String>());
+            paths = loaded.putIfAbsent(test, created);
+            paths = (paths == null ? created : paths);
+        }
+        return paths;
+    }
+
+}
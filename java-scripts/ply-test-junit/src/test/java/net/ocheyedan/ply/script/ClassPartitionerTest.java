@@ -0,0 +1,65 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class ClassPartitionerTest {
+
+    @Test
+    public void partition() {
+        Map<String, Long> estimates = new HashMap<String, Long>();
+        estimates.put("a.A", 8000L);
+        estimates.put("b.B", 5000L);
+        estimates.put("c.C", 4000L);
+        estimates.put("d.D", 3000L);
+        estimates.put("e.E", 1000L);
+        ClassPartitioner partitioner = new ClassPartitioner(estimates);
+
+        assertEquals(Arrays.asList("a.A", "b.B", "c.C", "d.D", "e.E"), partitioner.order(estimates.keySet()));
+
+        List<List<String>> partitions = partitioner.partition(estimates.keySet(), 2);
+        assertEquals(2, partitions.size());
+        assertEquals(Arrays.asList("a.A", "d.D"), partitions.get(0));
+        assertEquals(Arrays.asList("b.B", "c.C", "e.E"), partitions.get(1));
+
+        // never more partitions than classes
+        assertEquals(5, partitioner.partition(estimates.keySet(), 8).size());
+    }
+
+    @Test
+    public void fromReports() throws IOException {
+        File reportDir = File.createTempFile("reports", "");
+        reportDir.delete();
+        reportDir.mkdirs();
+        reportDir.deleteOnExit();
+        writeReport(reportDir, "a.A", "2.500");
+        writeReport(reportDir, "b.B", "0,500"); // written with a locale using a comma as decimal separator
+
+        ClassPartitioner partitioner = ClassPartitioner.fromReports(Arrays.asList("a.A", "b.B", "c.C"), reportDir);
+        assertEquals(2500L, partitioner.getEstimate("a.A"));
+        assertEquals(500L, partitioner.getEstimate("b.B"));
+        // no report, the average of those with reports
+        assertEquals(1500L, partitioner.getEstimate("c.C"));
+
+        assertNull(ClassPartitioner.readDuration(new File(reportDir, "TEST-d.D.xml")));
+    }
+
+    private static void writeReport(File reportDir, String className, String time) throws IOException {
+        File report = new File(reportDir, MavenReporter.getReportName(className));
+        report.deleteOnExit();
+        FileWriter writer = new FileWriter(report);
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<testsuite failures=\"0\" time=\"" + time
+                    + "\" errors=\"0\" skipped=\"0\" tests=\"1\" name=\"" + className + "\">\n</testsuite>");
+        } finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,108 @@
+package net.ocheyedan.ply.script;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class TestImpactTest {
+
+    static class Sample {
+        Helper helper = new Helper();
+    }
+
+    static class Helper {
+    }
+
+    static class Unrelated {
+    }
+
+    private static final String SAMPLE = Sample.class.getName();
+
+    private static final String UNRELATED = Unrelated.class.getName();
+
+    @Test
+    public void parseReferences() throws IOException {
+        Set<String> references = TestImpact.parseReferences(bytes(Sample.class));
+        assertTrue(references.contains("net/ocheyedan/ply/script/TestImpactTest$Helper.class"));
+        assertTrue(references.contains("java/lang/Object.class"));
+        assertTrue(TestImpact.parseReferences(new byte[] { 1, 2, 3 }).isEmpty());
+    }
+
+    @Test
+    public void getAffected() throws IOException {
+        File dir = File.createTempFile("test-impact", "");
+        dir.delete();
+        File impactFile = new File(dir, "test-impact.properties");
+        copy(dir, Sample.class);
+        File helper = copy(dir, Helper.class);
+        copy(dir, Unrelated.class);
+        File resource = new File(dir, "data.txt");
+        write(resource, "data".getBytes("UTF-8"));
+        List<URL> classpath = Collections.singletonList(dir.toURI().toURL());
+        List<String> tests = Arrays.asList(SAMPLE, UNRELATED);
+
+        TestImpact impact = TestImpact.load(impactFile, classpath);
+        // nothing recorded, all are affected
+        assertEquals(new HashSet<String>(tests), impact.getAffected(tests));
+        Map<String, Set<String>> loaded = new HashMap<String, Set<String>>();
+        loaded.put(UNRELATED, Collections.singleton("data.txt"));
+        impact.record(tests, tests, Collections.<String>emptySet(), loaded, false);
+        impact.store(impactFile);
+
+        impact = TestImpact.load(impactFile, classpath);
+        assertTrue(impact.getAffected(tests).isEmpty());
+
+        // a change to a referenced class
+        write(helper, Arrays.copyOf(bytes(Helper.class), bytes(Helper.class).length + 1));
+        impact = TestImpact.load(impactFile, classpath);
+        assertEquals(Collections.singleton(SAMPLE), impact.getAffected(tests));
+
+        // a change to a loaded resource
+        write(resource, "changed".getBytes("UTF-8"));
+        impact = TestImpact.load(impactFile, classpath);
+        assertEquals(new HashSet<String>(tests), impact.getAffected(tests));
+
+        // failed tests are not recorded (and so are run again)
+        impact.record(tests, tests, Collections.singleton(UNRELATED), loaded, true);
+        impact.store(impactFile);
+        impact = TestImpact.load(impactFile, classpath);
+        assertEquals(Collections.singleton(UNRELATED), impact.getAffected(tests));
+    }
+
+    private static byte[] bytes(Class<?> clazz) throws IOException {
+        InputStream inputStream = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static File copy(File dir, Class<?> clazz) throws IOException {
+        File file = new File(dir, clazz.getName().replace('.', File.separatorChar) + ".class");
+        write(file, bytes(clazz));
+        return file;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        file.deleteOnExit();
+        OutputStream outputStream = new FileOutputStream(file);
+        try {
+            outputStream.write(bytes);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+}
@@ -13,4 +13,6 @@ public interface CUnixLibrary extends Library {
 
     int symlink(String targetPath, String linkPath);
 
+    int link(String targetPath, String linkPath);
+
 }
@@ -1,5 +1,9 @@
 package net.ocheyedan.ply;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 /**
  * User: blangel
  * Date: 10/3/11
@@ -24,6 +28,20 @@ public final class BitUtil {
         return sb.toString().toUpperCase();
     }
 
+    /**
+     * @param value to hash
+     * @return the {@literal SHA1} hash of the {@literal UTF-8} bytes of {@code value} as a hex string
+     */
+    public static String sha1Hex(String value) {
+        try {
+            return toHexString(MessageDigest.getInstance("SHA1").digest(value.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
     private BitUtil() { }
 
 }
@@ -0,0 +1,143 @@
+package net.ocheyedan.ply;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The constant pool of a compiled class file.  Only the values needed to determine the classes a class file references
+ * (and to describe its members) are retained; the utf8 and numeric values, the class entries and the string entries.
+ * Used by the compiler and junit scripts to track the dependencies between classes.
+ */
+public final class ConstantPool {
+
+    /**
+     * Matches class names within field, method and generic signature descriptors (i.e.,
+     * {@literal Lnet/ocheyedan/ply/Foo;}).
+     */
+    private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([^;<>:.\\[]+)[;<]");
+
+    /**
+     * Reads the header (magic number and version) and the constant pool of a class file.
+     * @param data the class file, which is left positioned at the access flags following the constant pool
+     * @return the constant pool
+     * @throws IOException if {@code data} could not be read, is not a class file or contains an unknown constant
+     */
+    public static ConstantPool read(DataInputStream data) throws IOException {
+        if (data.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file.");
+        }
+        data.readUnsignedShort(); // minor version
+        data.readUnsignedShort(); // major version
+        return new ConstantPool(data);
+    }
+
+    /**
+     * The utf8 and numeric values, by pool index.
+     */
+    private final Object[] values;
+
+    /**
+     * For class entries the pool index of the class name, otherwise 0.
+     */
+    private final int[] classNames;
+
+    /**
+     * For string entries the pool index of the string's value, otherwise 0.
+     */
+    private final int[] strings;
+
+    /**
+     * The pool indices of utf8 values which are string literals (rather than names or descriptors).
+     */
+    private final Set<Integer> literals;
+
+    private ConstantPool(DataInputStream data) throws IOException {
+        int size = data.readUnsignedShort();
+        this.values = new Object[size];
+        this.classNames = new int[size];
+        this.strings = new int[size];
+        this.literals = new HashSet<Integer>();
+        for (int i = 1; i < size; i++) {
+            int tag = data.readUnsignedByte();
+            switch (tag) {
+                case 1: values[i] = data.readUTF(); break;
+                case 3: values[i] = data.readInt(); break;
+                case 4: values[i] = data.readFloat(); break;
+                case 5: values[i++] = data.readLong(); break; // longs and doubles take two entries
+                case 6: values[i++] = data.readDouble(); break;
+                case 7: classNames[i] = data.readUnsignedShort(); break;
+                case 8: strings[i] = data.readUnsignedShort(); literals.add(strings[i]); break;
+                case 15: data.readUnsignedByte(); data.readUnsignedShort(); break;
+                case 16: case 19: case 20: data.readUnsignedShort(); break;
+                case 9: case 10: case 11: case 12: case 17: case 18: data.readInt(); break;
+                default: throw new IOException(String.format("Unknown constant pool tag %d.", tag));
+            }
+        }
+    }
+
+    /**
+     * @return the number of entries (one more than the largest index)
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index within the pool
+     * @return the utf8 ({@link String}) or numeric value at {@code index} or null if the entry at {@code index} is
+     *         of another type
+     */
+    public Object get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index within the pool
+     * @return the internal name of the class entry at {@code index} or null if {@code index} is 0 (i.e., the
+     *         super-class of {@link Object}) or not a class entry
+     */
+    public String getClassName(int index) {
+        return ((index == 0) || (classNames[index] == 0) ? null : (String) values[classNames[index]]);
+    }
+
+    /**
+     * @param index within the pool
+     * @return the value of the string entry at {@code index} or null if it is not a string entry
+     */
+    public String getString(int index) {
+        return (strings[index] == 0 ? null : (String) values[strings[index]]);
+    }
+
+    /**
+     * @param index within the pool
+     * @return true if the value at {@code index} is the value of a string literal
+     */
+    public boolean isLiteral(int index) {
+        return literals.contains(index);
+    }
+
+    /**
+     * @return the internal names of the classes referenced by this pool; i.e., those of the class entries (other
+     *         than arrays) and those within the descriptors and signatures (but not string literals)
+     */
+    public Set<String> getReferencedClasses() {
+        Set<String> referenced = new HashSet<String>();
+        for (int i = 1; i < values.length; i++) {
+            String className = getClassName(i);
+            if ((className != null) && !className.startsWith("[")) {
+                referenced.add(className);
+            } else if ((values[i] instanceof String) && !literals.contains(i)) {
+                Matcher matcher = DESCRIPTOR_CLASS.matcher((String) values[i]);
+                while (matcher.find()) {
+                    referenced.add(matcher.group(1));
+                }
+            }
+        }
+        return referenced;
+    }
+
+}
@@ -0,0 +1,494 @@
+package net.ocheyedan.ply;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Incrementally synchronizes a directory with the files, directories and in-memory content added to it.  As with
+ * {@link FileUtil#copyDir(File, File)}, content added later replaces content of the same path added earlier.  When
+ * {@link #sync()}-ed, only files whose size or timestamp differ from their source (or, for in-memory content, whose
+ * bytes differ) are replaced.  Replaced files are deleted rather than overwritten, so anything linked to the previous
+ * file is left untouched, and are either copied with their source's timestamp or, if added as linked, hard-linked to
+ * their source (via {@literal java.nio.file.Files#createLink} when running on Java 7+; see {@link #link(File, File)}).
+ * If there are many files to replace, they are replaced concurrently.
+ *
+ * Files and directories which are no longer added are removed.  If the directory is shared with others (i.e., is
+ * given a manifest, see {@link #DirectorySync(File, File)}) only those files and directories which a previous sync
+ * created are removed; otherwise everything within the directory not added is removed.
+ */
+public class DirectorySync {
+
+    /**
+     * The number of files to replace at or above which replacement is done concurrently.
+     */
+    private static final int PARALLEL_SYNC_THRESHOLD = 64;
+
+    /**
+     * The maximum number of threads with which to replace files; replacement is bound by the disk, not the cpu.
+     */
+    private static final int MAX_SYNC_THREADS = 4;
+
+    private static final Method TO_PATH;
+
+    private static final Method CREATE_LINK;
+
+    static {
+        Method toPath = null, createLink = null;
+        try {
+            Class<?> pathClass = Class.forName("java.nio.file.Path");
+            Class<?> filesClass = Class.forName("java.nio.file.Files");
+            toPath = File.class.getMethod("toPath");
+            createLink = filesClass.getMethod("createLink", pathClass, pathClass);
+        } catch (ClassNotFoundException cnfe) {
+            // pre Java 7; files are copied unless a subclass can link them
+        } catch (NoSuchMethodException nsme) {
+            toPath = createLink = null;
+        }
+        TO_PATH = toPath;
+        CREATE_LINK = createLink;
+    }
+
+    /**
+     * The source of a file within the synchronized directory; exactly one of {@code file} or {@code content} is
+     * non-null.
+     */
+    private static final class Source {
+
+        private final File file;
+
+        private final byte[] content;
+
+        private final boolean link;
+
+        private Source(File file, byte[] content, boolean link) {
+            this.file = file;
+            this.content = content;
+            this.link = link;
+        }
+    }
+
+    private final File root;
+
+    /**
+     * The file recording the paths (relative to {@link #root}) of the files and directories created by the last sync;
+     * null if everything within {@link #root} is owned by this sync.
+     */
+    private final File manifest;
+
+    /**
+     * The sources mapped by path relative to {@link #root} (using '/' as the separator).
+     */
+    private final Map<String, Source> files;
+
+    /**
+     * The directories (relative to {@link #root}) to retain (along with the parent directories of all {@link #files}).
+     */
+    private final Set<String> directories;
+
+    /**
+     * Creates a sync which owns everything within {@code root}; anything not added is removed.
+     * @param root the directory to synchronize
+     */
+    public DirectorySync(File root) {
+        this(root, null);
+    }
+
+    /**
+     * Creates a sync which shares {@code root} with others; only those files and directories which a previous sync
+     * (as recorded within {@code manifest}) created and which are no longer added are removed.
+     * @param root the directory to synchronize
+     * @param manifest the file in which to record the files and directories created (should not be within {@code root})
+     */
+    public DirectorySync(File root, File manifest) {
+        this.root = root;
+        this.manifest = manifest;
+        this.files = new HashMap<String, Source>();
+        this.directories = new HashSet<String>();
+    }
+
+    /**
+     * Adds all files within {@code dir} (recursively) at {@code path} to be copied.
+     * @param dir the directory whose contents to add; if it does not exist nothing is added.
+     * @param path relative to the synchronized directory at which to add the contents of {@code dir}
+     */
+    public void addDirectory(File dir, String path) {
+        addDirectory(dir, path, null, false);
+    }
+
+    /**
+     * Adds all files within {@code dir} (recursively) at {@code path}.
+     * @param dir the directory whose contents to add; if it does not exist nothing is added.
+     * @param path relative to the synchronized directory at which to add the contents of {@code dir}
+     * @param excluding if it accepts a file or directory it is not added; if null, nothing is excluded.
+     * @param link true to hard-link the files to their source, if possible; false to copy them.
+     */
+    public void addDirectory(File dir, String path, FilenameFilter excluding, boolean link) {
+        String[] names = dir.list();
+        if (names == null) {
+            return;
+        }
+        directories.add(path);
+        for (String name : names) {
+            if ((excluding != null) && excluding.accept(dir, name)) {
+                continue;
+            }
+            File child = new File(dir, name);
+            String childPath = (path.isEmpty() ? name : path + "/" + name);
+            if (child.isDirectory()) {
+                addDirectory(child, childPath, excluding, link);
+            } else {
+                files.put(childPath, new Source(child, null, link));
+            }
+        }
+    }
+
+    /**
+     * Adds an (empty) directory at {@code path}.
+     * @param path relative to the synchronized directory
+     */
+    public void addDirectory(String path) {
+        directories.add(path);
+    }
+
+    /**
+     * @param file to add
+     * @param path relative to the synchronized directory at which to add {@code file}
+     * @param link true to hard-link {@code file}, if possible; false to copy it.
+     */
+    public void addFile(File file, String path, boolean link) {
+        files.put(path, new Source(file, null, link));
+    }
+
+    /**
+     * @param content to add
+     * @param path relative to the synchronized directory at which to add {@code content}
+     */
+    public void addContent(byte[] content, String path) {
+        files.put(path, new Source(null, content, false));
+    }
+
+    /**
+     * Synchronizes the directory with the added files, directories and content.
+     * @return true on success; false otherwise
+     */
+    public boolean sync() {
+        Set<String> retained = new HashSet<String>();
+        List<String> paths = new ArrayList<String>(directories);
+        paths.addAll(files.keySet());
+        retained.addAll(directories);
+        for (String path : paths) {
+            for (int index = path.lastIndexOf('/'); index > 0; index = path.lastIndexOf('/', index - 1)) {
+                retained.add(path.substring(0, index));
+            }
+        }
+        retained.remove("");
+        int removed = (manifest == null ? removeStale(root, "", retained) : removeSynced(retained));
+        root.mkdirs();
+        for (String directory : retained) {
+            FileUtil.fromParts(root.getPath(), directory).mkdirs();
+        }
+        List<String> replace = new ArrayList<String>();
+        for (Map.Entry<String, Source> entry : files.entrySet()) {
+            if (!isCurrent(FileUtil.fromParts(root.getPath(), entry.getKey()), entry.getValue())) {
+                replace.add(entry.getKey());
+            }
+        }
+        boolean success;
+        if (replace.size() < PARALLEL_SYNC_THRESHOLD) {
+            success = true;
+            for (String path : replace) {
+                success &= replace(path);
+            }
+        } else {
+            success = replaceConcurrently(replace);
+        }
+        if (manifest != null) {
+            success &= storeManifest(retained);
+        }
+        Output.print("^dbug^ Synchronized ^b^%s^r^; replaced ^b^%d^r^ and removed ^b^%d^r^ of ^b^%d^r^ file%s.",
+                root.getPath(), replace.size(), removed, files.size(), (files.size() == 1 ? "" : "s"));
+        return success;
+    }
+
+    /**
+     * Creates {@code target} as a hard link to {@code source}.  Subclasses may override to link by other means
+     * (i.e., natively when not running on Java 7+).
+     * @param source of the link
+     * @param target the link to create
+     * @return true if {@code target} was created as a hard link to {@code source}
+     */
+    protected boolean link(File source, File target) {
+        if (CREATE_LINK == null) {
+            return false;
+        }
+        try {
+            CREATE_LINK.invoke(null, TO_PATH.invoke(target), TO_PATH.invoke(source));
+            return true;
+        } catch (IllegalAccessException iae) {
+            throw new AssertionError(iae);
+        } catch (InvocationTargetException ite) {
+            return false; // i.e., source and target are on different file systems
+        }
+    }
+
+    /**
+     * Removes all files within {@code dir} which are not within {@link #files} and all directories not within
+     * {@code retained}.
+     * @return the number of files removed
+     */
+    private int removeStale(File dir, String path, Set<String> retained) {
+        String[] names = dir.list();
+        if (names == null) {
+            return 0;
+        }
+        int removed = 0;
+        for (String name : names) {
+            String childPath = (path.isEmpty() ? name : path + "/" + name);
+            File child = new File(dir, name);
+            if (child.isDirectory()) {
+                if (isLink(child)) {
+                    // never follow linked directories; remove the link and re-create as a directory (if retained)
+                    child.delete();
+                } else if (retained.contains(childPath)) {
+                    removed += removeStale(child, childPath, retained);
+                } else {
+                    removed += count(child);
+                    FileUtil.delete(child);
+                }
+            } else if (!files.containsKey(childPath)) {
+                child.delete();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes those files and directories recorded within {@link #manifest} which are no longer within {@link #files}
+     * or {@code retained}, respectively.  Directories are only removed if empty.
+     * @return the number of files removed
+     */
+    private int removeSynced(Set<String> retained) {
+        List<String> synced = loadManifest();
+        List<String> staleDirectories = new ArrayList<String>();
+        int removed = 0;
+        for (String path : synced) {
+            if (path.endsWith("/")) {
+                String directory = path.substring(0, path.length() - 1);
+                if (!retained.contains(directory)) {
+                    staleDirectories.add(directory);
+                }
+            } else if (!files.containsKey(path)) {
+                File file = FileUtil.fromParts(root.getPath(), path);
+                if (file.isFile() && file.delete()) {
+                    removed++;
+                }
+            }
+        }
+        // deepest first so that children are removed before their parents
+        Collections.sort(staleDirectories, Collections.reverseOrder());
+        for (String directory : staleDirectories) {
+            FileUtil.fromParts(root.getPath(), directory).delete(); // fails (intentionally) if not empty
+        }
+        return removed;
+    }
+
+    private List<String> loadManifest() {
+        List<String> synced = new ArrayList<String>();
+        if (!manifest.exists()) {
+            return synced;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    synced.add(line);
+                }
+            }
+        } catch (IOException ioe) {
+            Output.print("^dbug^ Could not read ^b^%s^r^; %s", manifest.getPath(), ioe.getMessage());
+        } finally {
+            close(reader);
+        }
+        return synced;
+    }
+
+    private boolean storeManifest(Set<String> retained) {
+        List<String> synced = new ArrayList<String>(files.keySet());
+        for (String directory : retained) {
+            synced.add(directory + "/");
+        }
+        Collections.sort(synced);
+        manifest.getParentFile().mkdirs();
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8"));
+            for (String path : synced) {
+                writer.write(path);
+                writer.write('\n');
+            }
+            return true;
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return false;
+        } finally {
+            close(writer);
+        }
+    }
+
+    private static boolean isCurrent(File target, Source source) {
+        if (!target.isFile()) {
+            return false;
+        }
+        if (source.file != null) {
+            return (target.length() == source.file.length()) && (target.lastModified() == source.file.lastModified());
+        }
+        if (target.length() != source.content.length) {
+            return false;
+        }
+        try {
+            return Arrays.equals(source.content, read(target));
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    private boolean replace(String path) {
+        Source source = files.get(path);
+        File target = FileUtil.fromParts(root.getPath(), path);
+        if (target.exists() && !target.delete()) {
+            Output.print("^error^ Could not replace ^b^%s^r^.", target.getPath());
+            return false;
+        }
+        if (source.content != null) {
+            return FileUtil.copy(new ByteArrayInputStream(source.content), target);
+        }
+        if (source.link && link(source.file, target)) {
+            return true;
+        }
+        if (!copy(source.file, target)) {
+            return false;
+        }
+        target.setLastModified(source.file.lastModified());
+        return true;
+    }
+
+    private boolean replaceConcurrently(List<String> paths) {
+        int threads = Math.min(MAX_SYNC_THREADS, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ply-directory-sync-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<Boolean>> replacements = new ArrayList<Future<Boolean>>(paths.size());
+            for (final String path : paths) {
+                replacements.add(executor.submit(new Callable<Boolean>() {
+                    @Override public Boolean call() {
+                        return replace(path);
+                    }
+                }));
+            }
+            boolean success = true;
+            for (Future<Boolean> replacement : replacements) {
+                success &= replacement.get();
+            }
+            return success;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AssertionError(cause); // replace throws no checked exceptions
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Copies {@code from} to {@code to} via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+     * @return true on success; false otherwise
+     */
+    private static boolean copy(File from, File to) {
+        FileChannel fromChannel = null, toChannel = null;
+        try {
+            fromChannel = new FileInputStream(from).getChannel();
+            toChannel = new FileOutputStream(to).getChannel();
+            long size = fromChannel.size(), position = 0;
+            while (position < size) {
+                position += fromChannel.transferTo(position, size - position, toChannel);
+            }
+            return true;
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return false;
+        } finally {
+            close(fromChannel);
+            close(toChannel);
+        }
+    }
+
+    /**
+     * @return true if {@code file} is a symbolic link
+     */
+    private static boolean isLink(File file) {
+        try {
+            File inCanonicalParent = new File(file.getAbsoluteFile().getParentFile().getCanonicalFile(), file.getName());
+            return !inCanonicalParent.getCanonicalFile().equals(inCanonicalParent.getAbsoluteFile());
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    private static int count(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File child : children) {
+            count += (child.isDirectory() ? count(child) : 1);
+        }
+        return count;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] content = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0, read;
+            while ((offset < content.length) && ((read = input.read(content, offset, content.length - offset)) != -1)) {
+                offset += read;
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe);
+            }
+        }
+    }
+
+}
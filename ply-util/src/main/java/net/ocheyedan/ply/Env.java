@@ -0,0 +1,77 @@
+package net.ocheyedan.ply;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Provides access to the system environment variables.  Scripts invoked by ply within a separate process
+ * receive ply's properties as environment variables.  Scripts invoked by ply within its own process (see
+ * {@literal scripts-jar} property {@literal fork.default}) cannot have their environment modified and so instead ply
+ * {@link #inject(java.util.Map)}s the properties into the script's copy of this class before invoking it.  Similarly, a
+ * long running ply process (the ply daemon) {@link #replace(java.util.Map)}s the system environment with that of the
+ * client on whose behalf it is running.
+ * <p/>
+ * Note, this class is loaded by ply reflectively and so must not depend upon any other class within ply.
+ */
+public final class Env {
+
+    /**
+     * The values injected by ply (which take precedence over the system environment) or null if none were injected.
+     */
+    private static volatile Map<String, String> injected = null;
+
+    /**
+     * The values which replace the system environment or null if the system environment is used.
+     */
+    private static volatile Map<String, String> replaced = null;
+
+    /**
+     * Sets {@code environment} as values which take precedence over the system environment variables.
+     * @param environment to inject
+     */
+    public static void inject(Map<String, String> environment) {
+        injected = (environment == null ? null : new HashMap<String, String>(environment));
+    }
+
+    /**
+     * Sets {@code environment} as the values to use in place of the system environment variables.
+     * @param environment to use or null to use the system environment variables
+     */
+    public static void replace(Map<String, String> environment) {
+        replaced = (environment == null ? null : new HashMap<String, String>(environment));
+    }
+
+    /**
+     * @param name of the environment variable
+     * @return the value of the environment variable named {@code name} or null if there is no such variable
+     * @see System#getenv(String)
+     */
+    public static String get(String name) {
+        Map<String, String> injected = Env.injected;
+        if ((injected != null) && injected.containsKey(name)) {
+            return injected.get(name);
+        }
+        Map<String, String> replaced = Env.replaced;
+        return (replaced == null ? System.getenv(name) : replaced.get(name));
+    }
+
+    /**
+     * @return all environment variables
+     * @see System#getenv()
+     */
+    public static Map<String, String> get() {
+        Map<String, String> injected = Env.injected;
+        Map<String, String> replaced = Env.replaced;
+        Map<String, String> system = (replaced == null ? System.getenv() : Collections.unmodifiableMap(replaced));
+        if (injected == null) {
+            return system;
+        }
+        Map<String, String> environment = new HashMap<String, String>(system);
+        environment.putAll(injected);
+        return environment;
+    }
+
+    private Env() { }
+
+}
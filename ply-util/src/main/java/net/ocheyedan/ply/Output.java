@@ -10,9 +10,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * User: blangel
@@ -90,16 +89,17 @@ public final class Output {
     }
 
     /**
-     * A regex {@link java.util.regex.Pattern} paired with its corresponding output string.
+     * A term-code's output string paired with its non-colored equivalent and, for log statements, whether its
+     * level is enabled.
      */
     private static final class TermCode {
-        private final Pattern pattern;
         private final String output;
         private final String nonColoredOutput;
-        private TermCode(Pattern pattern, String output, String nonColoredOutput) {
-            this.pattern = pattern;
+        private final AtomicBoolean level;
+        private TermCode(String output, String nonColoredOutput, AtomicBoolean level) {
             this.output = output;
             this.nonColoredOutput = nonColoredOutput;
+            this.level = level;
         }
     }
 
@@ -143,17 +143,46 @@ public final class Output {
     private static final AtomicBoolean withinTerminal = new AtomicBoolean(true);
 
     /**
-     * A mapping of easily identifiable words to a {@link TermCode} object for colored output.
+     * A mapping of easily identifiable words (as written between '^' characters) to a {@link TermCode} object for
+     * colored output.
      */
     private static final Map<String, TermCode> TERM_CODES = new HashMap<String, TermCode>();
 
+    /**
+     * The length of the longest key within {@link #TERM_CODES}; longer text between '^' characters is not looked up.
+     */
+    private static final int MAX_TERM_CODE_LENGTH = 7;
+
+    /**
+     * The rendered prefix (everything preceding the script's line) of {@link #printFromExec(String, Object...)}
+     * messages mapped by message and then by script name.
+     */
+    private static final Map<String, Map<String, String>> EXEC_PREFIXES = new ConcurrentHashMap<String, Map<String, String>>(2, 1.0f);
+
+    /**
+     * Output from {@link #printFromExec(String, Object...)} accumulates per thread and is written in bulk upon
+     * {@link #flush()} (or any other print from the same thread) rather than line by line.
+     */
+    private static final ThreadLocal<StringBuilder> PENDING = new ThreadLocal<StringBuilder>() {
+        @Override protected StringBuilder initialValue() {
+            return new StringBuilder(PENDING_CAPACITY);
+        }
+    };
+
+    /**
+     * The amount of pending output at which it is written regardless of {@link #flush()}.
+     */
+    private static final int PENDING_CAPACITY = 64 * 1024;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
     /**
      * Set to true when {@link #init()} has been called.
      */
     private static AtomicBoolean inited = new AtomicBoolean(false);
     static {
         // if this is not ply itself - init straight-away
-        if ("ply".equals(System.getenv("ply$ply.invoker"))) {
+        if ("ply".equals(Env.get("ply$ply.invoker"))) {
             init();
         }
     }
@@ -168,7 +197,7 @@ public final class Output {
         if (inited.getAndSet(true)) {
             return;
         }
-        String terminal = System.getenv("TERM");
+        String terminal = Env.get("TERM");
         if (!logLevels.contains("warn")) {
             warnLevel.set(false);
         }
@@ -186,26 +215,45 @@ public final class Output {
         Output.coloredOutput.set(useColor);
         // TODO - what are the range of terminal values and what looks best for each?
         String terminalBold = ("xterm".equals(terminal) ? "1" : "0");
-        TERM_CODES.put("ply", new TermCode(Pattern.compile("\\^ply\\^"), "[\u001b[0;33mply\u001b[0m]", "[ply]"));
-        TERM_CODES.put("error", new TermCode(Pattern.compile("\\^error\\^"), "[\u001b[1;31merr!\u001b[0m]", "[err!]"));
-        TERM_CODES.put("warn", new TermCode(Pattern.compile("\\^warn\\^"), "[\u001b[1;33mwarn\u001b[0m]", "[warn]"));
-        TERM_CODES.put("info", new TermCode(Pattern.compile("\\^info\\^"), "[\u001b[1;34minfo\u001b[0m]", "[info]"));
-        TERM_CODES.put("dbug", new TermCode(Pattern.compile("\\^dbug\\^"), "[\u001b[1;30mdbug\u001b[0m]", "[dbug]"));
-        TERM_CODES.put("reset", new TermCode(Pattern.compile("\\^r\\^"), "\u001b[0m", ""));
-        TERM_CODES.put("bold", new TermCode(Pattern.compile("\\^b\\^"), "\u001b[1m", ""));
-        TERM_CODES.put("normal", new TermCode(Pattern.compile("\\^n\\^"), "\u001b[2m", ""));
-        TERM_CODES.put("inverse", new TermCode(Pattern.compile("\\^i\\^"), "\u001b[7m", ""));
-        TERM_CODES.put("black", new TermCode(Pattern.compile("\\^black\\^"), "\u001b[" + terminalBold + ";30m", ""));
-        TERM_CODES.put("red", new TermCode(Pattern.compile("\\^red\\^"),  "\u001b[" + terminalBold + ";31m", ""));
-        TERM_CODES.put("green", new TermCode(Pattern.compile("\\^green\\^"), "\u001b[" + terminalBold + ";32m", ""));
-        TERM_CODES.put("yellow", new TermCode(Pattern.compile("\\^yellow\\^"), "\u001b[" + terminalBold + ";33m", ""));
-        TERM_CODES.put("blue", new TermCode(Pattern.compile("\\^blue\\^"), "\u001b[" + terminalBold + ";34m", ""));
-        TERM_CODES.put("magenta", new TermCode(Pattern.compile("\\^magenta\\^"), "\u001b[" + terminalBold + ";35m", ""));
-        TERM_CODES.put("cyan", new TermCode(Pattern.compile("\\^cyan\\^"), "\u001b[" + terminalBold + ";36m", ""));
-        TERM_CODES.put("white", new TermCode(Pattern.compile("\\^white\\^"), "\u001b[" + terminalBold + ";37m", ""));
+        EXEC_PREFIXES.clear();
+        TERM_CODES.put("ply", new TermCode("[\u001b[0;33mply\u001b[0m]", "[ply]", null));
+        TERM_CODES.put("error", new TermCode("[\u001b[1;31merr!\u001b[0m]", "[err!]", null));
+        TERM_CODES.put("warn", new TermCode("[\u001b[1;33mwarn\u001b[0m]", "[warn]", warnLevel));
+        TERM_CODES.put("info", new TermCode("[\u001b[1;34minfo\u001b[0m]", "[info]", infoLevel));
+        TERM_CODES.put("dbug", new TermCode("[\u001b[1;30mdbug\u001b[0m]", "[dbug]", dbugLevel));
+        TERM_CODES.put("r", new TermCode("\u001b[0m", "", null));
+        TERM_CODES.put("b", new TermCode("\u001b[1m", "", null));
+        TERM_CODES.put("n", new TermCode("\u001b[2m", "", null));
+        TERM_CODES.put("i", new TermCode("\u001b[7m", "", null));
+        TERM_CODES.put("black", new TermCode("\u001b[" + terminalBold + ";30m", "", null));
+        TERM_CODES.put("red", new TermCode("\u001b[" + terminalBold + ";31m", "", null));
+        TERM_CODES.put("green", new TermCode("\u001b[" + terminalBold + ";32m", "", null));
+        TERM_CODES.put("yellow", new TermCode("\u001b[" + terminalBold + ";33m", "", null));
+        TERM_CODES.put("blue", new TermCode("\u001b[" + terminalBold + ";34m", "", null));
+        TERM_CODES.put("magenta", new TermCode("\u001b[" + terminalBold + ";35m", "", null));
+        TERM_CODES.put("cyan", new TermCode("\u001b[" + terminalBold + ";36m", "", null));
+        TERM_CODES.put("white", new TermCode("\u001b[" + terminalBold + ";37m", "", null));
         drainQueue();
     }
 
+    /**
+     * Returns output to its un-initialized state so that a subsequent call to {@link #init()} re-reads the
+     * output properties.  Messages printed before that call will again be queued.
+     */
+    static void reset() {
+        if (!inited.getAndSet(false)) {
+            return;
+        }
+        warnLevel.set(true);
+        infoLevel.set(true);
+        dbugLevel.set(true);
+        coloredOutput.set(true);
+        decorated.set(true);
+        withinTerminal.set(true);
+        EXEC_PREFIXES.clear();
+        queue.clear();
+    }
+
     /**
      * Takes all the messages from {@link #queue} and calls the appropriate print method based on its {@link Message.Type}
      */
@@ -233,6 +281,7 @@ public final class Output {
         if ((formatted == null) || (!decorated.get() && isPrintFromPly())) {
             return;
         }
+        flush();
         System.out.println(formatted);
     }
 
@@ -245,7 +294,9 @@ public final class Output {
         if ((formatted == null) || (!decorated.get() && isPrintFromPly())) {
             return;
         }
+        flush();
         System.out.print(formatted);
+        System.out.flush();
     }
     
     private static boolean isPrintFromPly() {
@@ -260,6 +311,10 @@ public final class Output {
         return false;
     }
 
+    /**
+     * Prints the line {@code args[1]} of script {@code args[0]} according to {@code message}.  The line is not
+     * written immediately but accumulated (see {@link #flush()}).
+     */
     static void printFromExec(String message, Object ... args) {
         if (!inited.get()) {
             queue.add(new Message(message, Message.Type.Exec, args));
@@ -267,7 +322,7 @@ public final class Output {
         }
         String scriptArg = (String) args[1];
         if (!decorated.get()) {
-            System.out.println(scriptArg);
+            pend(scriptArg);
             return;
         }
         boolean noLine = scriptArg.contains("^no_line^");
@@ -279,10 +334,60 @@ public final class Output {
         } else if (noLine) {
             printNoLine(message, args[0], scriptArg.replaceFirst("\\^no_line\\^", ""));
         } else {
-            print(message, args);
+            String prefix = getExecPrefix(message, (String) args[0]);
+            String formatted = (prefix == null ? resolve(message, args) : render(scriptArg));
+            if (formatted != null) {
+                pend(prefix == null ? formatted : prefix.concat(formatted));
+            }
+        }
+    }
+
+    /**
+     * Writes all output accumulated by the calling thread via {@link #printFromExec(String, Object...)}.
+     */
+    public static void flush() {
+        StringBuilder pending = PENDING.get();
+        if (pending.length() > 0) {
+            System.out.print(pending);
+            System.out.flush();
+            pending.setLength(0);
         }
     }
 
+    private static void pend(String line) {
+        StringBuilder pending = PENDING.get();
+        pending.append(line).append(LINE_SEPARATOR);
+        if (pending.length() >= PENDING_CAPACITY) {
+            flush();
+        }
+    }
+
+    /**
+     * @param message of the {@link #printFromExec(String, Object...)} call
+     * @param script the name of the script
+     * @return the rendered text preceding the script's line, which is the final {@literal %s} of {@code message}, or
+     *         null if {@code message} does not end with the script's line or its prefix is not printable
+     */
+    private static String getExecPrefix(String message, String script) {
+        Map<String, String> prefixes = EXEC_PREFIXES.get(message);
+        if (prefixes == null) {
+            if (!message.endsWith("%s")) {
+                return null;
+            }
+            prefixes = new ConcurrentHashMap<String, String>(8, 1.0f);
+            EXEC_PREFIXES.put(message, prefixes);
+        }
+        String prefix = prefixes.get(script);
+        if (prefix == null) {
+            prefix = resolve(message.substring(0, message.length() - 2), new Object[] { script });
+            if (prefix == null) {
+                return null;
+            }
+            prefixes.put(script, prefix);
+        }
+        return prefix;
+    }
+
     public static void print(Throwable t) {
         print("^error^ Message: ^i^^red^%s^r^", (t == null ? "" : t.getMessage()));
         if (isDebug()) {
@@ -290,26 +395,82 @@ public final class Output {
         }
     }
 
+    /**
+     * Formats {@code message} with {@code args} and then replaces the term-codes (i.e., {@literal ^r^}) within it.
+     * @return the resolved message or null if it is a log statement for a disabled log-level
+     */
     static String resolve(String message, Object[] args) {
-        String formatted = String.format(message, args);
-        // TODO - fix!  this case fails: ^cyan^warn^r^ if ^warn^ is evaluated first...really meant for ^cyan^ and ^r^
-        // TODO - to be resolved
-        for (String key : TERM_CODES.keySet()) {
-            TermCode termCode = TERM_CODES.get(key);
-            Matcher matcher = termCode.pattern.matcher(formatted);
-            if (matcher.find()) {
-                if (("warn".equals(key) && !warnLevel.get()) || ("info".equals(key) && !infoLevel.get())
-                        || ("dbug".equals(key) && !dbugLevel.get())) {
-                    // this is a log statement for a disabled log-level, skip.
-                    return null;
-                }
-                if (decorated.get()) {
-                    String output = isColoredOutput() ? termCode.output : termCode.nonColoredOutput;
-                    formatted = matcher.replaceAll(output);
+        // skip statements of disabled log-levels before any formatting
+        if ((!warnLevel.get() || !infoLevel.get() || !dbugLevel.get()) && isDisabledLevel(message)) {
+            return null;
+        }
+        String formatted = (message.indexOf('%') == -1 ? message : String.format(message, args));
+        return render(formatted);
+    }
+
+    /**
+     * @return true if {@code message} contains the term-code of a disabled log-level
+     */
+    private static boolean isDisabledLevel(String message) {
+        int start = message.indexOf('^');
+        while (start != -1) {
+            int end = message.indexOf('^', start + 1);
+            if (end == -1) {
+                break;
+            }
+            TermCode termCode = ((end - start - 1) <= MAX_TERM_CODE_LENGTH
+                    ? TERM_CODES.get(message.substring(start + 1, end)) : null);
+            if (termCode == null) {
+                start = end;
+                continue;
+            }
+            if ((termCode.level != null) && !termCode.level.get()) {
+                return true;
+            }
+            start = message.indexOf('^', end + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Replaces, in a single pass, each term-code within {@code formatted} with its output (if decorated).
+     * @return the rendered text or null if {@code formatted} contains the term-code of a disabled log-level
+     */
+    private static String render(String formatted) {
+        int start = formatted.indexOf('^');
+        if (start == -1) {
+            return formatted;
+        }
+        boolean decorate = decorated.get(), color = isColoredOutput();
+        StringBuilder rendered = null;
+        int from = 0;
+        while (start != -1) {
+            int end = formatted.indexOf('^', start + 1);
+            if (end == -1) {
+                break;
+            }
+            TermCode termCode = ((end - start - 1) <= MAX_TERM_CODE_LENGTH
+                    ? TERM_CODES.get(formatted.substring(start + 1, end)) : null);
+            if (termCode == null) {
+                start = end; // the closing '^' may open a term-code
+                continue;
+            }
+            if ((termCode.level != null) && !termCode.level.get()) {
+                return null; // this is a log statement for a disabled log-level, skip.
+            }
+            if (decorate) {
+                if (rendered == null) {
+                    rendered = new StringBuilder(formatted.length() + 32);
                 }
+                rendered.append(formatted, from, start).append(color ? termCode.output : termCode.nonColoredOutput);
+                from = end + 1;
             }
+            start = formatted.indexOf('^', end + 1);
+        }
+        if (rendered == null) {
+            return formatted;
         }
-        return formatted;
+        return rendered.append(formatted, from, formatted.length()).toString();
     }
 
     /**
@@ -0,0 +1,199 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.mvn.MavenPomParser;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves {@link DependencyAtom} objects (via {@link Deps#resolveDependency(DependencyAtom, RepositoryRegistry, boolean, DependencyResolver)})
+ * on a bounded pool of threads.  Once an atom has been resolved its (non-transient) dependencies are submitted for
+ * resolution so that the pom and artifact downloads of a dependency tree overlap.  Resolutions are memoized by atom so
+ * that each is resolved at most once, regardless of how many times it is requested, and parsed pom files are cached
+ * (see {@link MavenPomParser.Cache}) so that shared parent poms are parsed once.  The number of concurrent
+ * connections to any one remote repository is bounded and atoms of the same namespace, name and version (which share
+ * a local repository directory) are never resolved concurrently.
+ * The graph itself is built by the caller (in the same order as if resolution were sequential) from the values of
+ * {@link #get(DependencyAtom, boolean)}.
+ */
+final class DependencyResolver {
+
+    private final RepositoryRegistry repositoryRegistry;
+
+    /**
+     * Null if resolution is to happen on the calling thread.
+     */
+    private final ExecutorService executor;
+
+    private final Map<RepositoryAtom, Semaphore> connections;
+
+    private final ConcurrentMap<String, FutureTask<Dep>> resolutions = new ConcurrentHashMap<String, FutureTask<Dep>>();
+
+    private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+
+    private final MavenPomParser.Cache pomCache = new MavenPomParser.Cache();
+
+    /**
+     * Keys of the resolutions requested via {@link #get(DependencyAtom, boolean)} (to count repeated requests).
+     */
+    private final Set<String> requested = Collections.synchronizedSet(new HashSet<String>());
+
+    private final AtomicInteger requests = new AtomicInteger(0);
+
+    private final AtomicInteger hits = new AtomicInteger(0);
+
+    /**
+     * @param repositoryRegistry the repositories to consult when resolving
+     * @param threads the number of threads with which to resolve; if less than two resolution happens on the calling thread
+     * @param connectionsPerRepository maximum number of concurrent connections to any one remote repository
+     */
+    DependencyResolver(RepositoryRegistry repositoryRegistry, int threads, int connectionsPerRepository) {
+        this.repositoryRegistry = repositoryRegistry;
+        if (threads < 2) {
+            this.executor = null;
+            this.connections = null;
+        } else {
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger(0);
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ply-dep-resolver-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.connections = new HashMap<RepositoryAtom, Semaphore>();
+            if (repositoryRegistry.remoteRepositories != null) {
+                for (RepositoryAtom remoteRepository : repositoryRegistry.remoteRepositories) {
+                    this.connections.put(remoteRepository, new Semaphore(Math.max(1, connectionsPerRepository), true));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param dependencyAtom to resolve
+     * @param pomSufficient if true, then only the pom from a maven repository is necessary to have successfully
+     *                      resolved the {@code dependencyAtom}.
+     * @return the resolved {@link Dep} of {@code dependencyAtom} or null if it could not be resolved
+     * @throws Throwable any failure encountered while resolving {@code dependencyAtom}
+     */
+    Dep get(DependencyAtom dependencyAtom, boolean pomSufficient) throws Throwable {
+        requests.incrementAndGet();
+        if (!requested.add(getKey(dependencyAtom, pomSufficient))) {
+            hits.incrementAndGet();
+        }
+        FutureTask<Dep> resolution = submit(dependencyAtom, pomSufficient);
+        if (executor == null) {
+            resolution.run(); // no-op if already run
+        }
+        try {
+            return resolution.get();
+        } catch (ExecutionException ee) {
+            throw ee.getCause();
+        }
+    }
+
+    /**
+     * @param remoteRepository for which to retrieve the connection limit
+     * @return the permits of concurrent connections to {@code remoteRepository} or null if unlimited
+     */
+    Semaphore getConnections(RepositoryAtom remoteRepository) {
+        return (connections == null ? null : connections.get(remoteRepository));
+    }
+
+    MavenPomParser.Cache getPomCache() {
+        return pomCache;
+    }
+
+    /**
+     * Prints (at debug level) the number of requested resolutions and pom parses which were satisfied from cache.
+     */
+    void printStatistics() {
+        int pomRequests = pomCache.getHits() + pomCache.getMisses();
+        Output.print("^dbug^ Dependency resolutions ^b^%d^r^ of which ^b^%d^r^ (%d%%) were cached.", requests.get(),
+                     hits.get(), percent(hits.get(), requests.get()));
+        Output.print("^dbug^ Pom parses ^b^%d^r^ of which ^b^%d^r^ (%d%%) were cached.", pomRequests, pomCache.getHits(),
+                     percent(pomCache.getHits(), pomRequests));
+    }
+
+    private static int percent(int of, int total) {
+        return (total == 0 ? 0 : (int) ((of * 100L) / total));
+    }
+
+    /**
+     * Cancels any resolution not yet started and releases the resolving threads.
+     */
+    void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        for (FutureTask<Dep> resolution : resolutions.values()) {
+            resolution.cancel(false);
+        }
+        executor.shutdown();
+    }
+
+    private FutureTask<Dep> submit(final DependencyAtom dependencyAtom, final boolean pomSufficient) {
+        String key = getKey(dependencyAtom, pomSufficient);
+        FutureTask<Dep> resolution = resolutions.get(key);
+        if (resolution != null) {
+            return resolution;
+        }
+        FutureTask<Dep> created = new FutureTask<Dep>(new Callable<Dep>() {
+            @Override public Dep call() throws Exception {
+                Dep resolved = resolve(dependencyAtom, pomSufficient);
+                if ((resolved != null) && !dependencyAtom.transientDep) {
+                    prefetch(resolved.dependencies);
+                }
+                return resolved;
+            }
+        });
+        resolution = resolutions.putIfAbsent(key, created);
+        if (resolution != null) {
+            return resolution;
+        }
+        if (executor != null) {
+            try {
+                executor.execute(created);
+            } catch (RejectedExecutionException ree) {
+                created.cancel(false); // prefetch after shutdown
+            }
+        }
+        return created;
+    }
+
+    private static String getKey(DependencyAtom dependencyAtom, boolean pomSufficient) {
+        return dependencyAtom.toString() + (pomSufficient ? ":pom" : "");
+    }
+
+    private Dep resolve(DependencyAtom dependencyAtom, boolean pomSufficient) {
+        String coordinate = dependencyAtom.namespace + ":" + dependencyAtom.name + ":" + dependencyAtom.version;
+        Object lock = locks.get(coordinate);
+        if (lock == null) {
+            Object created = new Object();
+            lock = locks.putIfAbsent(coordinate, created);
+            lock = (lock == null ? created : lock);
+        }
+        synchronized (lock) {
+            return Deps.resolveDependency(dependencyAtom, repositoryRegistry, pomSufficient, this);
+        }
+    }
+
+    /**
+     * Submits the dependencies of a resolved {@link Dep} exactly as they will be requested by the caller when
+     * building the graph (transient dependencies of non-direct dependencies are skipped and the pom is sufficient).
+     */
+    private void prefetch(List<DependencyAtom> dependencyAtoms) {
+        if (executor == null) {
+            return;
+        }
+        for (DependencyAtom dependencyAtom : dependencyAtoms) {
+            if (!dependencyAtom.transientDep) {
+                submit(dependencyAtom, true);
+            }
+        }
+    }
+
+}
@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static net.ocheyedan.ply.props.PropFile.Prop;
@@ -31,6 +32,16 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  */
 public final class Deps {
 
+    /**
+     * Default number of threads with which to resolve dependencies.
+     */
+    private static final int DEFAULT_RESOLUTION_THREADS = 4;
+
+    /**
+     * Default maximum number of concurrent connections to any one remote repository.
+     */
+    private static final int DEFAULT_CONNECTIONS_PER_REPOSITORY = 2;
+
     /**
      * Encapsulates a {@link DependencyAtom} object's paths to the local {@link RepositoryAtom}.
      */
@@ -82,11 +93,70 @@ public final class Deps {
     public static DirectedAcyclicGraph<Dep> getDependencyGraph(List<DependencyAtom> dependencyAtoms,
                                                                RepositoryRegistry repositoryRegistry,
                                                                boolean failMissingDependency) {
+        Context depmngrContext = Context.named("depmngr");
+        int threads = getPositiveInt("resolution.threads", depmngrContext, DEFAULT_RESOLUTION_THREADS);
+        int connectionsPerRepository = getPositiveInt("resolution.connectionsPerRepository", depmngrContext,
+                                                      DEFAULT_CONNECTIONS_PER_REPOSITORY);
+        return getDependencyGraph(dependencyAtoms, repositoryRegistry, failMissingDependency, threads, connectionsPerRepository);
+    }
+
+    /**
+     * Resolution of the dependencies happens concurrently (see {@link DependencyResolver}) but the resulting graph
+     * (including the order of its vertices) and any errors are the same as if resolution were sequential.
+     * If the same dependencies have already been resolved from the same repositories, and the local repository has
+     * not since changed, the graph is read from the {@link ResolvedGraphCache}.
+     * @param dependencyAtoms the direct dependencies from which to create a dependency graph
+     * @param repositoryRegistry the repositories to consult when resolving {@code dependencyAtoms}.
+     * @param failMissingDependency true to fail on missing dependencies; false to ignore and continue resolution
+     * @param threads the number of threads with which to resolve; 1 to resolve sequentially
+     * @param connectionsPerRepository maximum number of concurrent connections to any one remote repository
+     * @return a DAG {@link Graph<Dep>} implementation representing the resolved {@code dependencyAtoms} and its tree of
+     *         transitive dependencies.
+     */
+    public static DirectedAcyclicGraph<Dep> getDependencyGraph(List<DependencyAtom> dependencyAtoms,
+                                                               RepositoryRegistry repositoryRegistry,
+                                                               boolean failMissingDependency, int threads,
+                                                               int connectionsPerRepository) {
+        boolean cacheable = ResolvedGraphCache.isCacheable(repositoryRegistry, failMissingDependency);
+        File cacheFile = (cacheable ? ResolvedGraphCache.getCacheFile(dependencyAtoms, repositoryRegistry) : null);
+        if (cacheFile != null) {
+            DirectedAcyclicGraph<Dep> cached = ResolvedGraphCache.load(cacheFile);
+            if (cached != null) {
+                Output.print("^dbug^ Using cached dependency graph ^b^%s^r^.", cacheFile.getPath());
+                return cached;
+            }
+        }
         DirectedAcyclicGraph<Dep> dependencyDAG = new DirectedAcyclicGraph<Dep>();
-        fillDependencyGraph(null, dependencyAtoms, repositoryRegistry, dependencyDAG, false, failMissingDependency);
+        DependencyResolver resolver = new DependencyResolver(repositoryRegistry, threads, connectionsPerRepository);
+        try {
+            fillDependencyGraph(null, dependencyAtoms, repositoryRegistry, resolver, dependencyDAG, false,
+                                failMissingDependency);
+        } finally {
+            resolver.shutdown();
+        }
+        if (Output.isDebug()) {
+            resolver.printStatistics();
+        }
+        if (cacheFile != null) {
+            ResolvedGraphCache.store(dependencyDAG, repositoryRegistry, cacheFile);
+        }
         return dependencyDAG;
     }
 
+    private static int getPositiveInt(String name, Context context, int defaultValue) {
+        String value = Props.get(name, context).value();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            return (parsed > 0 ? parsed : defaultValue);
+        } catch (NumberFormatException nfe) {
+            Output.print("^warn^ Invalid ^b^%s.%s^r^ value ^b^%s^r^, using %d.", context.name, name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
     /**
      * For each resolved {@link Dep} object of {@code dependencyAtoms} a {@link Vertex<Dep>} will be created and added
      * to {@code graph}.  If {@code parentVertex} is not null, an edge will be added from {@code parentVertex} and
@@ -101,6 +171,7 @@ public final class Deps {
      * @param parentVertex the parent of {@code dependencyAtoms}
      * @param dependencyAtoms the dependencies which to resolve and place into {@code graph}
      * @param repositoryRegistry the repositories to consult when resolving {@code dependencyAtoms}.
+     * @param resolver with which to resolve {@code dependencyAtoms}
      * @param graph to fill with the resolved {@link Dep} objects of {@code dependencyAtoms}.
      * @param pomSufficient if true, then only the pom from a maven repository is necessary to have successfully
      *                      resolved the {@code dependencyAtom}.
@@ -108,8 +179,9 @@ public final class Deps {
      *                              ignore and continue resolution
      */
     private static void fillDependencyGraph(Vertex<Dep> parentVertex, List<DependencyAtom> dependencyAtoms,
-                                            RepositoryRegistry repositoryRegistry, DirectedAcyclicGraph<Dep> graph,
-                                            boolean pomSufficient, boolean failMissingDependency) {
+                                            RepositoryRegistry repositoryRegistry, DependencyResolver resolver,
+                                            DirectedAcyclicGraph<Dep> graph, boolean pomSufficient,
+                                            boolean failMissingDependency) {
         if (repositoryRegistry.isEmpty()) {
             Output.print("^error^ No repositories found, cannot resolve dependencies.");
             SystemExit.exit(1);
@@ -121,9 +193,10 @@ public final class Deps {
             // pom is sufficient for resolution if this is a transient dependency
             Dep resolvedDep;
             try {
-                resolvedDep = resolveDependency(dependencyAtom, repositoryRegistry, (pomSufficient || dependencyAtom.transientDep),
-                                                failMissingDependency);
-                if ((resolvedDep == null) && !failMissingDependency) {
+                resolvedDep = resolver.get(dependencyAtom, (pomSufficient || dependencyAtom.transientDep));
+                if ((resolvedDep == null) && failMissingDependency) {
+                    printMissing(dependencyAtom, repositoryRegistry);
+                } else if (resolvedDep == null) {
                     if (Output.isInfo()) {
                         Output.print("^info^ Could not resolve dependency ^b^%s^r^.", dependencyAtom.toString());
                         String path = getPathAsString(parentVertex, dependencyAtom);
@@ -154,7 +227,8 @@ public final class Deps {
                 }
             }
             if (!dependencyAtom.transientDep) { // direct transient dependencies are not recurred upon
-                fillDependencyGraph(vertex, vertex.getValue().dependencies, repositoryRegistry, graph, true, failMissingDependency);
+                fillDependencyGraph(vertex, vertex.getValue().dependencies, repositoryRegistry, resolver, graph, true,
+                                    failMissingDependency);
             }
         }
     }
@@ -227,12 +301,13 @@ public final class Deps {
      * @param repositoryRegistry repositories to use when resolving {@code dependencyAtom}
      * @param pomSufficient if true, then only the pom from a maven repository is necessary to have successfully
      *                      resolved the {@code dependencyAtom}.
-     * @param failMissingDependency true to print failure message on missing dependency
+     * @param resolver limiting the concurrent connections to each remote repository and caching parsed pom files,
+     *                 may be null
      * @return a {@link Dep} representation of {@code dependencyAtom} or null if {@code dependencyAtom} could
      *         not be resolved.
      */
     static Dep resolveDependency(DependencyAtom dependencyAtom, RepositoryRegistry repositoryRegistry,
-                                 boolean pomSufficient, boolean failMissingDependency) {
+                                 boolean pomSufficient, DependencyResolver resolver) {
         // determine the local-repository directory for dependencyAtom; as it is needed regardless of where the dependency
         // if found.
         RepositoryAtom localRepo = repositoryRegistry.localRepository;
@@ -243,23 +318,20 @@ public final class Deps {
             return new Dep(dependencyAtom, repositoryRegistry.syntheticRepository.get(dependencyAtom), localPaths.localDirPath);
         }
         // not present within the synthetic, check the local and other (likely remote) repositories
-        Dep resolved = resolveDependency(dependencyAtom, repositoryRegistry, localRepo, pomSufficient);
-        if (resolved != null) {
-            return resolved;
-        }
+        return resolveDependency(dependencyAtom, repositoryRegistry, localRepo, pomSufficient, resolver);
+    }
 
-        if (failMissingDependency) {
-            Output.print("^error^ Dependency ^b^%s^r^ not found in any repository; ensure repositories are accessible.", dependencyAtom.toString());
-            Output.print("^error^ Project's local repository is ^b^%s^r^.", localRepo.toString());
-            int remoteRepoSize = repositoryRegistry.remoteRepositories.size();
-            Output.print("^error^ Project has ^b^%d^r^ other repositor%s %s", remoteRepoSize, (remoteRepoSize != 1 ? "ies" : "y"),
-                    (remoteRepoSize > 0 ? repositoryRegistry.remoteRepositories.toString() : ""));
-        }
-        return null;
+    private static void printMissing(DependencyAtom dependencyAtom, RepositoryRegistry repositoryRegistry) {
+        Output.print("^error^ Dependency ^b^%s^r^ not found in any repository; ensure repositories are accessible.", dependencyAtom.toString());
+        Output.print("^error^ Project's local repository is ^b^%s^r^.", repositoryRegistry.localRepository.toString());
+        int remoteRepoSize = repositoryRegistry.remoteRepositories.size();
+        Output.print("^error^ Project has ^b^%d^r^ other repositor%s %s", remoteRepoSize, (remoteRepoSize != 1 ? "ies" : "y"),
+                (remoteRepoSize > 0 ? repositoryRegistry.remoteRepositories.toString() : ""));
     }
 
     private static Dep resolveDependency(DependencyAtom dependencyAtom, RepositoryRegistry repositoryRegistry,
-                                         RepositoryAtom localRepo, boolean pomSufficient) {
+                                         RepositoryAtom localRepo, boolean pomSufficient,
+                                         DependencyResolver resolver) {
         LocalPaths localPaths = LocalPaths.get(dependencyAtom, localRepo);
         // also create pom-only objects
         DependencyAtom pomDependencyAtom = dependencyAtom.with("pom");
@@ -268,21 +340,25 @@ public final class Deps {
         File localDepFile = new File(localPaths.localUrl.getFile());
         File localPomDepFile = new File(localPomPaths.localUrl.getFile());
         if (localDepFile.exists()) {
-            return resolveDependency(dependencyAtom, localRepo, localPaths.localDirUrlPath, localPaths.localDirPath);
+            return resolveDependency(dependencyAtom, localRepo, localPaths.localDirUrlPath, localPaths.localDirPath,
+                                     true, resolver);
         } else if (pomSufficient && localPomDepFile.exists()) {
-            return resolveDependency(pomDependencyAtom, localRepo, localPomPaths.localDirUrlPath, localPomPaths.localDirPath);
+            return resolveDependency(pomDependencyAtom, localRepo, localPomPaths.localDirUrlPath, localPomPaths.localDirPath,
+                                     true, resolver);
         }
         // not in the local repository, check each other repository.
-        Dep resolved = resolveDependencyFromRemoteRepos(dependencyAtom, repositoryRegistry, localPaths, localDepFile);
+        Dep resolved = resolveDependencyFromRemoteRepos(dependencyAtom, repositoryRegistry, localPaths, localDepFile,
+                                                        resolver);
         if ((resolved == null) && pomSufficient) {
-            resolved = resolveDependencyFromRemoteRepos(pomDependencyAtom, repositoryRegistry, localPomPaths, localPomDepFile);
+            resolved = resolveDependencyFromRemoteRepos(pomDependencyAtom, repositoryRegistry, localPomPaths, localPomDepFile,
+                                                        resolver);
         }
         return resolved;
     }
 
     private static Dep resolveDependencyFromRemoteRepos(DependencyAtom dependencyAtom,
                                                         RepositoryRegistry repositoryRegistry, LocalPaths localPaths,
-                                                        File localDepFile) {
+                                                        File localDepFile, DependencyResolver resolver) {
         List<RepositoryAtom> nonLocalRepos = repositoryRegistry.remoteRepositories;
         for (RepositoryAtom remoteRepo : nonLocalRepos) {
             String remotePathDir = getDependencyDirectoryPathForRepo(dependencyAtom, remoteRepo);
@@ -291,21 +367,34 @@ public final class Deps {
             if (remoteUrl == null) {
                 continue;
             }
-            InputStream stream;
+            Semaphore connection = (resolver == null ? null : resolver.getConnections(remoteRepo));
+            if (connection != null) {
+                connection.acquireUninterruptibly();
+            }
+            boolean copied;
             try {
-                // TODO - proxy info (see http://download.oracle.com/javase/6/docs/technotes/guides/net/proxies.html)
-                URLConnection urlConnection = remoteUrl.openConnection();
-                stream = urlConnection.getInputStream();
-            } catch (FileNotFoundException fnfe) {
-                // this is fine, check next repo
-                continue;
-            } catch (IOException ioe) {
-                Output.print(ioe); // TODO - parse exception and more gracefully handle http-errors.
-                continue;
+                InputStream stream;
+                try {
+                    // TODO - proxy info (see http://download.oracle.com/javase/6/docs/technotes/guides/net/proxies.html)
+                    URLConnection urlConnection = remoteUrl.openConnection();
+                    stream = urlConnection.getInputStream();
+                } catch (FileNotFoundException fnfe) {
+                    // this is fine, check next repo
+                    continue;
+                } catch (IOException ioe) {
+                    Output.print(ioe); // TODO - parse exception and more gracefully handle http-errors.
+                    continue;
+                }
+                Output.print("^info^ Downloading %s from %s...", dependencyAtom.toString(), remoteRepo.toString());
+                copied = FileUtil.copy(stream, localDepFile);
+            } finally {
+                if (connection != null) {
+                    connection.release();
+                }
             }
-            Output.print("^info^ Downloading %s from %s...", dependencyAtom.toString(), remoteRepo.toString());
-            if (FileUtil.copy(stream, localDepFile)) {
-                return resolveDependency(dependencyAtom, remoteRepo, remotePathDir, localPaths.localDirPath);
+            if (copied) {
+                return resolveDependency(dependencyAtom, remoteRepo, remotePathDir, localPaths.localDirPath, false,
+                                         resolver);
             }
         }
         return null;
@@ -318,17 +407,24 @@ public final class Deps {
      * @param repositoryAtom from which {@code dependencyAtom} was resolved.
      * @param repoDirPath the directory location of {@code dependencyAtom} within the {@code repositoryAtom}.
      * @param saveToRepoDirPath to save the found dependency property file (should be within the local repository).
+     * @param local true if {@code repositoryAtom} is the local repository (i.e., an existing dependency property
+     *              file need not be saved again)
+     * @param resolver caching parsed pom files, may be null
      * @return the property file associated with {@code dependencyAtom} (could be empty if {@code dependencyAtom}
      *         has no dependencies).
      */
     private static Dep resolveDependency(DependencyAtom dependencyAtom, RepositoryAtom repositoryAtom,
-                                         String repoDirPath, String saveToRepoDirPath) {
-        PropFile dependenciesFile = getDependenciesFile(dependencyAtom, repositoryAtom, repoDirPath);
+                                         String repoDirPath, String saveToRepoDirPath, boolean local,
+                                         DependencyResolver resolver) {
+        PropFile dependenciesFile = getDependenciesFile(dependencyAtom, repositoryAtom, repoDirPath, resolver);
         if (dependenciesFile == null) {
             Output.print("^dbug^ No dependencies file found for %s.", dependencyAtom.toString());
             dependenciesFile = new PropFile(Context.named("dependencies"), PropFile.Loc.Local);
+            storeDependenciesFile(dependenciesFile, saveToRepoDirPath);
+        } else if (!local || (repositoryAtom.getResolvedType() != RepositoryAtom.Type.ply)) {
+            // re-storing a local ply repository's existing file would needlessly modify it (see ResolvedGraphCache)
+            storeDependenciesFile(dependenciesFile, saveToRepoDirPath);
         }
-        storeDependenciesFile(dependenciesFile, saveToRepoDirPath);
         List<DependencyAtom> dependencyAtoms = parse(dependenciesFile);
         return new Dep(dependencyAtom, dependencyAtoms, saveToRepoDirPath);
     }
@@ -373,13 +469,34 @@ public final class Deps {
         return dependencyAtoms;
     }
 
+    /**
+     * @param graph the resolved dependency graph
+     * @param repositoryRegistry from which {@code graph} was resolved
+     * @return the files within the local repository from which {@code graph} was resolved (each dependency's artifact
+     *         and its {@literal dependencies.properties}); if any of them changes, {@code graph} may no longer be
+     *         current (see {@link ResolvedGraphCache}).
+     */
+    public static List<File> getLocalRepositoryFiles(DirectedAcyclicGraph<Dep> graph,
+                                                     RepositoryRegistry repositoryRegistry) {
+        List<File> files = new ArrayList<File>();
+        for (Vertex<Dep> vertex : graph.getVertices()) {
+            Dep dep = vertex.getValue();
+            boolean synthetic = (repositoryRegistry.syntheticRepository != null)
+                    && repositoryRegistry.syntheticRepository.containsKey(dep.dependencyAtom);
+            files.addAll(Arrays.asList(ResolvedGraphCache.getFiles(dep.dependencyAtom, dep.localRepositoryDirectory,
+                                                                   synthetic)));
+        }
+        return files;
+    }
+
     /**
      * @param graph to convert into a resolved properties file
      * @return a {@link PropFile} object mapping each {@link Vertex<Dep>} (reachable from {@code graph}) object's
      *         {@link DependencyAtom} object's key (which is {@link Dep#dependencyAtom#getPropertyName()} + ":"
      *         + {@link Dep#dependencyAtom#getPropertyName()}) to the local repository location (which is
      *         {@link Dep#localRepositoryDirectory} + {@link File#separator}
-     *         + {@link Dep#dependencyAtom#getArtifactName()}).
+     *         + {@link Dep#dependencyAtom#getArtifactName()}).  The entries (and so the classpath) are in depth-first
+     *         pre-order; i.e., each dependency is followed by its not yet included transitive dependencies.
      *
      */
     public static PropFile convertToResolvedPropertiesFile(DirectedAcyclicGraph<Dep> graph) {
@@ -523,7 +640,7 @@ public final class Deps {
     }
 
     private static PropFile getDependenciesFile(DependencyAtom dependencyAtom, RepositoryAtom repositoryAtom,
-                                                  String repoDepDir) {
+                                                  String repoDepDir, DependencyResolver resolver) {
         if (repositoryAtom.getResolvedType() == RepositoryAtom.Type.ply) {
             // no dependencies file just means no dependencies, skip.
             URL url = null;
@@ -541,7 +658,8 @@ public final class Deps {
             // @see 'classifier' under 'dependencies' in 'Pom Relationships' - http://maven.apache.org/pom.html
             DependencyAtom pom = dependencyAtom.withoutClassifier().with("pom");
             String pomName = pom.getArtifactName();
-            return getDependenciesFromMavenRepo(FileUtil.pathFromParts(repoDepDir, pomName), repositoryAtom);
+            return getDependenciesFromMavenRepo(FileUtil.pathFromParts(repoDepDir, pomName), repositoryAtom,
+                                                (resolver == null ? null : resolver.getPomCache()));
         }
     }
 
@@ -555,8 +673,9 @@ public final class Deps {
         return null;
     }
 
-    private static PropFile getDependenciesFromMavenRepo(String pomUrlPath, RepositoryAtom repositoryAtom) {
-        MavenPomParser mavenPomParser = new MavenPomParser();
+    private static PropFile getDependenciesFromMavenRepo(String pomUrlPath, RepositoryAtom repositoryAtom,
+                                                         MavenPomParser.Cache pomCache) {
+        MavenPomParser mavenPomParser = new MavenPomParser(pomCache);
         MavenPom mavenPom = mavenPomParser.parsePom(pomUrlPath, repositoryAtom);
         return (mavenPom == null ? new PropFile(Context.named("dependencies"), PropFile.Loc.Local) : mavenPom.dependencies);
     }
@@ -0,0 +1,240 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * An on-disk cache of resolved dependency graphs stored within the local repository (in directory
+ * {@literal .resolved-graphs}).  Each graph is stored in a file named by the fingerprint (a {@literal SHA1} hash) of
+ * the direct dependencies and repositories (including any synthetic repository) from which it was resolved so that
+ * any project or script with the same dependencies and repositories shares the resolved graph.  Along with each
+ * resolved {@link Dep} (not from the synthetic repository) the size and last modified time of its files within the
+ * local repository (the artifact and its {@literal dependencies.properties}) are stored; if any has changed (or no
+ * longer exists) the cached graph is considered stale and is not used.
+ * Only complete resolutions are cached (see {@link #isCacheable(RepositoryRegistry, boolean)}).
+ */
+final class ResolvedGraphCache {
+
+    private static final int VERSION = 1;
+
+    private static final String CACHE_DIR = ".resolved-graphs";
+
+    /**
+     * @param repositoryRegistry from which the graph is resolved
+     * @param failMissingDependency true if resolution fails on missing dependencies
+     * @return true if the graph resolved from {@code repositoryRegistry} can be cached; a graph resolved without
+     *         failing on missing dependencies may be incomplete.
+     */
+    static boolean isCacheable(RepositoryRegistry repositoryRegistry, boolean failMissingDependency) {
+        return failMissingDependency && (repositoryRegistry.localRepository != null);
+    }
+
+    /**
+     * @param dependencyAtoms the direct dependencies
+     * @param repositoryRegistry from which the graph is resolved
+     * @return the cache file for the graph resolved from {@code dependencyAtoms} and {@code repositoryRegistry}
+     */
+    static File getCacheFile(List<DependencyAtom> dependencyAtoms, RepositoryRegistry repositoryRegistry) {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(VERSION).append('\n');
+        for (DependencyAtom dependencyAtom : dependencyAtoms) {
+            buffer.append(dependencyAtom.getPropertyName()).append(':').append(dependencyAtom.getPropertyValue()).append('\n');
+        }
+        buffer.append(repositoryRegistry.localRepository.toString()).append('\n');
+        if (repositoryRegistry.remoteRepositories != null) {
+            for (RepositoryAtom remoteRepository : repositoryRegistry.remoteRepositories) {
+                buffer.append(remoteRepository.toString()).append('\n');
+            }
+        }
+        if (repositoryRegistry.syntheticRepository != null) {
+            Set<String> synthetic = new TreeSet<String>();
+            for (Map.Entry<DependencyAtom, List<DependencyAtom>> entry : repositoryRegistry.syntheticRepository.entrySet()) {
+                synthetic.add(entry.getKey().toString() + "=" + entry.getValue().toString());
+            }
+            for (String entry : synthetic) {
+                buffer.append(entry).append('\n');
+            }
+        }
+        String localRepoPath = Deps.getDirectoryPathForRepo(repositoryRegistry.localRepository);
+        return FileUtil.fromParts(localRepoPath, CACHE_DIR, BitUtil.sha1Hex(buffer.toString()) + ".graph");
+    }
+
+    /**
+     * @param cacheFile from which to read the graph
+     * @return the cached graph or null if there is none or if it is stale
+     */
+    static DirectedAcyclicGraph<Dep> load(File cacheFile) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 8192));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            int vertexCount = in.readInt();
+            List<Dep> deps = new ArrayList<Dep>(vertexCount);
+            List<int[]> children = new ArrayList<int[]>(vertexCount);
+            for (int i = 0; i < vertexCount; i++) {
+                DependencyAtom dependencyAtom = readAtom(in);
+                String localRepositoryDirectory = in.readUTF();
+                int dependencyCount = in.readInt();
+                List<DependencyAtom> dependencies = new ArrayList<DependencyAtom>(dependencyCount);
+                for (int j = 0; j < dependencyCount; j++) {
+                    dependencies.add(readAtom(in));
+                }
+                boolean synthetic = in.readBoolean();
+                for (File file : getFiles(dependencyAtom, localRepositoryDirectory, synthetic)) {
+                    long length = in.readLong(), lastModified = in.readLong();
+                    if ((length != getLength(file)) || (lastModified != file.lastModified())) {
+                        Output.print("^dbug^ Cached dependency graph is stale, ^b^%s^r^ has changed.", file.getPath());
+                        return null;
+                    }
+                }
+                int[] childIndices = new int[in.readInt()];
+                for (int j = 0; j < childIndices.length; j++) {
+                    childIndices[j] = in.readInt();
+                }
+                deps.add(new Dep(dependencyAtom, dependencies, localRepositoryDirectory));
+                children.add(childIndices);
+            }
+            DirectedAcyclicGraph<Dep> graph = new DirectedAcyclicGraph<Dep>();
+            List<Vertex<Dep>> vertices = new ArrayList<Vertex<Dep>>(vertexCount);
+            for (Dep dep : deps) {
+                vertices.add(graph.addVertex(dep));
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                for (int childIndex : children.get(i)) {
+                    graph.addEdge(vertices.get(i), vertices.get(childIndex));
+                }
+            }
+            return graph;
+        } catch (IOException ioe) {
+            Output.print("^dbug^ Could not read cached dependency graph ^b^%s^r^; %s", cacheFile.getPath(), ioe.getMessage());
+            return null;
+        } catch (Graph.CycleException gce) {
+            return null; // corrupt, cannot happen with a graph stored by this class
+        } catch (IndexOutOfBoundsException ioobe) {
+            return null; // corrupt
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores {@code graph} to {@code cacheFile}; failure to store is not an error as the graph can be resolved again.
+     * @param graph to store
+     * @param repositoryRegistry from which {@code graph} was resolved
+     * @param cacheFile to which to store {@code graph}
+     */
+    static void store(DirectedAcyclicGraph<Dep> graph, RepositoryRegistry repositoryRegistry, File cacheFile) {
+        File directory = cacheFile.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        List<Vertex<Dep>> vertices = graph.getVertices();
+        Map<Vertex<Dep>, Integer> indices = new HashMap<Vertex<Dep>, Integer>(vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            indices.put(vertices.get(i), i);
+        }
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            // write to a temp file and rename so that concurrent readers never see a partially written file
+            temp = File.createTempFile(cacheFile.getName(), ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 8192));
+            out.writeInt(VERSION);
+            out.writeInt(vertices.size());
+            for (Vertex<Dep> vertex : vertices) {
+                Dep dep = vertex.getValue();
+                writeAtom(dep.dependencyAtom, out);
+                out.writeUTF(dep.localRepositoryDirectory);
+                out.writeInt(dep.dependencies.size());
+                for (DependencyAtom dependency : dep.dependencies) {
+                    writeAtom(dependency, out);
+                }
+                boolean synthetic = (repositoryRegistry.syntheticRepository != null)
+                        && repositoryRegistry.syntheticRepository.containsKey(dep.dependencyAtom);
+                out.writeBoolean(synthetic);
+                for (File file : getFiles(dep.dependencyAtom, dep.localRepositoryDirectory, synthetic)) {
+                    out.writeLong(getLength(file));
+                    out.writeLong(file.lastModified());
+                }
+                List<Vertex<Dep>> children = vertex.getChildren();
+                out.writeInt(children.size());
+                for (Vertex<Dep> child : children) {
+                    out.writeInt(indices.get(child));
+                }
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(cacheFile) && (!cacheFile.delete() || !temp.renameTo(cacheFile))) {
+                temp.delete();
+            }
+        } catch (IOException ioe) {
+            Output.print("^dbug^ Could not cache dependency graph ^b^%s^r^; %s", cacheFile.getPath(), ioe.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the files within the local repository upon which the resolution of {@code dependencyAtom} depends
+     */
+    static File[] getFiles(DependencyAtom dependencyAtom, String localRepositoryDirectory, boolean synthetic) {
+        if (synthetic) {
+            return new File[0];
+        }
+        return new File[] { FileUtil.fromParts(localRepositoryDirectory, dependencyAtom.getArtifactName()),
+                            FileUtil.fromParts(localRepositoryDirectory, "dependencies.properties") };
+    }
+
+    private static long getLength(File file) {
+        return (file.exists() ? file.length() : -1L);
+    }
+
+    private static void writeAtom(DependencyAtom dependencyAtom, DataOutputStream out) throws IOException {
+        out.writeUTF(dependencyAtom.namespace);
+        out.writeUTF(dependencyAtom.name);
+        out.writeUTF(dependencyAtom.version);
+        out.writeBoolean(dependencyAtom.artifactName != null);
+        if (dependencyAtom.artifactName != null) {
+            out.writeUTF(dependencyAtom.artifactName);
+        }
+        out.writeBoolean(dependencyAtom.transientDep);
+    }
+
+    private static DependencyAtom readAtom(DataInputStream in) throws IOException {
+        String namespace = in.readUTF();
+        String name = in.readUTF();
+        String version = in.readUTF();
+        String artifactName = (in.readBoolean() ? in.readUTF() : null);
+        return new DependencyAtom(namespace, name, version, artifactName, in.readBoolean());
+    }
+
+    private ResolvedGraphCache() { }
+
+}
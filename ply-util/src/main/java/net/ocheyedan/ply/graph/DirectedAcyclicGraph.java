@@ -9,9 +9,19 @@ import java.util.*;
  *
  * A directed acyclic graph data structure.
  * Code influenced by {@see org.codehaus.plexus.util.dag.DAG}
+ * A topological order of the vertices is maintained incrementally as edges are added (see Pearce and Kelly, "A
+ * Dynamic Topological Sort Algorithm for Directed Acyclic Graphs") so that adding an edge which agrees with the
+ * current order is constant time and adding one which does not only visits the vertices between its endpoints
+ * within the order, rather than everything reachable from the edge.
  */
 public class DirectedAcyclicGraph<T> implements Graph<T> {
 
+    private static final Comparator<Vertex<?>> ORDER = new Comparator<Vertex<?>>() {
+        @Override public int compare(Vertex<?> left, Vertex<?> right) {
+            return (left.order < right.order ? -1 : (left.order == right.order ? 0 : 1));
+        }
+    };
+
     private final Map<T, Vertex<T>> vertices;
 
     public DirectedAcyclicGraph() {
@@ -24,6 +34,7 @@ public class DirectedAcyclicGraph<T> implements Graph<T> {
             vertex = vertices.get(of);
         } else {
             vertex = new Vertex<T>(of);
+            vertex.order = vertices.size();
             vertices.put(of, vertex);
         }
         return vertex;
@@ -34,17 +45,116 @@ public class DirectedAcyclicGraph<T> implements Graph<T> {
                 || !vertices.containsKey(to.getValue())) {
             return;
         }
-        from.addEdgeTo(to);
-        to.addEdgeFrom(from);
-        List<Vertex<T>> cycle = CycleDetector.introducesCycle(to);
+        if (from.hasEdgeTo(to)) {
+            return;
+        }
+        List<Vertex<T>> cycle = null;
+        if (from.equals(to)) {
+            cycle = new ArrayList<Vertex<T>>(2);
+            cycle.add(to);
+            cycle.add(to);
+        } else if (from.order > to.order) {
+            cycle = reorder(from, to);
+        }
         if (cycle != null) {
-            removeEdge(from, to);
             List<Vertex<T>> path = getAnyPathToRoot(to); // a path, not necessarily the only or shortest
             String message = String.format("Edge between '%s' and '%s' would introduce a cycle into the graph.",
                     from.getValue().toString(),
                     to.getValue().toString());
             throw new CycleException(message, cycle, path);
         }
+        from.addEdgeTo(to);
+        to.addEdgeFrom(from);
+    }
+
+    /**
+     * Restores the topological order for a new edge from {@code from} to {@code to} where {@code to} currently
+     * precedes {@code from}.  The vertices reachable from {@code to} which precede {@code from} and the vertices
+     * reaching {@code from} which follow {@code to} are reassigned the positions they jointly occupy such that the
+     * latter all precede the former.
+     * @param from of the new edge
+     * @param to of the new edge
+     * @return null if the order was restored or, if the edge would introduce a cycle (i.e., {@code from} is reachable
+     *         from {@code to}), the cycle (starting and ending with {@code to}) in which case the order is unchanged
+     */
+    private List<Vertex<T>> reorder(Vertex<T> from, Vertex<T> to) {
+        List<Vertex<T>> forward = new ArrayList<Vertex<T>>();
+        List<Vertex<T>> cycle = collectForward(to, from, forward);
+        if (cycle != null) {
+            return cycle;
+        }
+        List<Vertex<T>> backward = new ArrayList<Vertex<T>>();
+        collectBackward(from, to.order, backward);
+        Collections.sort(forward, ORDER);
+        Collections.sort(backward, ORDER);
+        int[] positions = new int[forward.size() + backward.size()];
+        int index = 0;
+        for (Vertex<T> vertex : backward) {
+            positions[index++] = vertex.order;
+        }
+        for (Vertex<T> vertex : forward) {
+            positions[index++] = vertex.order;
+        }
+        Arrays.sort(positions);
+        index = 0;
+        for (Vertex<T> vertex : backward) {
+            vertex.order = positions[index++];
+        }
+        for (Vertex<T> vertex : forward) {
+            vertex.order = positions[index++];
+        }
+        return null;
+    }
+
+    /**
+     * Collects into {@code into} the vertices reachable from {@code start} which precede {@code until}.
+     * @return null or, if {@code until} is reachable from {@code start}, the cycle which an edge from {@code until}
+     *         to {@code start} would introduce (starting and ending with {@code start})
+     */
+    private List<Vertex<T>> collectForward(Vertex<T> start, Vertex<T> until, List<Vertex<T>> into) {
+        Map<Vertex<T>, Vertex<T>> visited = new HashMap<Vertex<T>, Vertex<T>>(); // vertex to the vertex preceding it
+        LinkedList<Vertex<T>> stack = new LinkedList<Vertex<T>>();
+        visited.put(start, null);
+        stack.addFirst(start);
+        while (!stack.isEmpty()) {
+            Vertex<T> vertex = stack.removeFirst();
+            into.add(vertex);
+            for (Vertex<T> child : vertex.getChildren()) {
+                if (child.equals(until)) {
+                    LinkedList<Vertex<T>> cycle = new LinkedList<Vertex<T>>();
+                    cycle.addFirst(start);
+                    cycle.addFirst(child);
+                    for (Vertex<T> on = vertex; on != null; on = visited.get(on)) {
+                        cycle.addFirst(on);
+                    }
+                    return cycle;
+                }
+                if ((child.order < until.order) && !visited.containsKey(child)) {
+                    visited.put(child, vertex);
+                    stack.addFirst(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects into {@code into} the vertices reaching {@code start} which follow position {@code after}.
+     */
+    private void collectBackward(Vertex<T> start, int after, List<Vertex<T>> into) {
+        Set<Vertex<T>> visited = new HashSet<Vertex<T>>();
+        LinkedList<Vertex<T>> stack = new LinkedList<Vertex<T>>();
+        visited.add(start);
+        stack.addFirst(start);
+        while (!stack.isEmpty()) {
+            Vertex<T> vertex = stack.removeFirst();
+            into.add(vertex);
+            for (Vertex<T> parent : vertex.getParents()) {
+                if ((parent.order > after) && visited.add(parent)) {
+                    stack.addFirst(parent);
+                }
+            }
+        }
     }
 
     protected List<Vertex<T>> getAnyPathToRoot(Vertex<T> from) {
@@ -1,8 +1,7 @@
 package net.ocheyedan.ply.graph;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * User: blangel
@@ -10,6 +9,8 @@ import java.util.Map;
  * Time: 9:01 AM
  *
  * A utility class for {@link Graph} objects.
+ * The orderings provided are deterministic; vertices which could equally go next are taken in the order in which
+ * they were added to the graph.
  */
 public final class Graphs {
 
@@ -17,10 +18,6 @@ public final class Graphs {
         void visit(Vertex<T> vertex);
     }
 
-    private final static Integer NOT_VISTITED = 0;
-    private final static Integer VISITING = 1;
-    private final static Integer VISITED = 2;
-
     /**
      * TODO - augment to support CycleDetector needs
      * Visits each {@link Vertex} within {@code graph} once and only once.
@@ -30,29 +27,181 @@ public final class Graphs {
      */
     public static <T> void visit(Graph<T> graph, Visitor<T> visitor) {
         final List<Vertex<T>> vertices = graph.getVertices();
-        final Map<Vertex<T>, Integer> vertexStateMap = new HashMap<Vertex<T>, Integer>();
+        final Set<Vertex<T>> visited = new HashSet<Vertex<T>>(vertices.size());
         for (final Vertex<T> vertex : vertices) {
-            visit(vertex, visitor, vertexStateMap);
+            visit(vertex, visitor, visited);
         }
     }
 
-    private static <T> void visit(Vertex<T> vertex, Visitor<T> visitor, Map<Vertex<T>, Integer> vertexStateMap) {
-        if (isNotVisited(vertex, vertexStateMap)) {
-            vertexStateMap.put(vertex, VISITING);
+    private static <T> void visit(Vertex<T> vertex, Visitor<T> visitor, Set<Vertex<T>> visited) {
+        if (visited.add(vertex)) {
             visitor.visit(vertex);
             for (Vertex<T> child : vertex.getChildren()) {
-                visit(child, visitor, vertexStateMap);
+                visit(child, visitor, visited);
+            }
+        }
+    }
+
+    /**
+     * @param graph to sort
+     * @param <T> type of the value of {@link Vertex} objects within {@code graph}
+     * @return the vertices of {@code graph} ordered such that each vertex precedes all of its children
+     */
+    public static <T> List<Vertex<T>> topologicalSort(Graph<T> graph) {
+        return sort(graph, false);
+    }
+
+    /**
+     * @param graph to sort
+     * @param <T> type of the value of {@link Vertex} objects within {@code graph}
+     * @return the vertices of {@code graph} ordered such that each vertex follows all of its children; i.e., an order
+     *         in which each vertex comes after everything upon which it depends
+     */
+    public static <T> List<Vertex<T>> reverseTopologicalSort(Graph<T> graph) {
+        return sort(graph, true);
+    }
+
+    /**
+     * Decomposes {@code graph} into levels (or waves) where the first level contains the leaves of {@code graph} and
+     * each subsequent level contains the vertices whose children are all within preceding levels.  The vertices of
+     * any one level do not depend upon each other and so may be processed concurrently once the preceding levels
+     * have been processed.
+     * @param graph to decompose
+     * @param <T> type of the value of {@link Vertex} objects within {@code graph}
+     * @return the levels of {@code graph}
+     */
+    public static <T> List<List<Vertex<T>>> getLevels(Graph<T> graph) {
+        List<List<Vertex<T>>> levels = new ArrayList<List<Vertex<T>>>();
+        Map<Vertex<T>, Integer> levelMap = new HashMap<Vertex<T>, Integer>();
+        for (Vertex<T> vertex : reverseTopologicalSort(graph)) {
+            int level = 0;
+            for (Vertex<T> child : vertex.getChildren()) {
+                level = Math.max(level, levelMap.get(child) + 1);
+            }
+            levelMap.put(vertex, level);
+        }
+        for (Vertex<T> vertex : graph.getVertices()) {
+            int level = levelMap.get(vertex);
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<Vertex<T>>());
+            }
+            levels.get(level).add(vertex);
+        }
+        return levels;
+    }
+
+    /**
+     * Visits each {@link Vertex} within {@code graph} once and only once using {@code executor}.  A vertex is only
+     * visited after all its children have been visited; vertices which are ready at the same time are submitted in
+     * the order in which they were added to {@code graph}.  If any visit fails no further visits are started; those
+     * already started are allowed to complete and then the first failure is thrown.  Any {@link ExecutorService}
+     * may be used (including a {@literal ForkJoinPool} where available); it is not shutdown.
+     * @param graph to visit
+     * @param visitor the visitor object, must be thread-safe
+     * @param executor with which to visit
+     * @param <T> type of the value of {@link Vertex} objects within {@code graph}
+     * @throws InterruptedException if interrupted while waiting for visits to complete
+     */
+    public static <T> void visitInParallel(Graph<T> graph, final Visitor<T> visitor, ExecutorService executor)
+            throws InterruptedException {
+        List<Vertex<T>> vertices = graph.getVertices();
+        final Map<Vertex<T>, Integer> remaining = new HashMap<Vertex<T>, Integer>(vertices.size());
+        PriorityQueue<Vertex<T>> ready = new PriorityQueue<Vertex<T>>(Math.max(1, vertices.size()),
+                getInsertionOrder(vertices));
+        for (Vertex<T> vertex : vertices) {
+            remaining.put(vertex, vertex.getChildren().size());
+            if (vertex.isLeaf()) {
+                ready.add(vertex);
             }
-            vertexStateMap.put(vertex, VISITED);
+        }
+        CompletionService<Vertex<T>> completionService = new ExecutorCompletionService<Vertex<T>>(executor);
+        Throwable failure = null;
+        int inFlight = 0;
+        while (true) {
+            while ((failure == null) && !ready.isEmpty()) {
+                final Vertex<T> vertex = ready.poll();
+                completionService.submit(new Callable<Vertex<T>>() {
+                    @Override public Vertex<T> call() throws Exception {
+                        visitor.visit(vertex);
+                        return vertex;
+                    }
+                });
+                inFlight++;
+            }
+            if (inFlight == 0) {
+                break;
+            }
+            Future<Vertex<T>> completed = completionService.take();
+            inFlight--;
+            try {
+                Vertex<T> vertex = completed.get();
+                for (Vertex<T> parent : vertex.getParents()) {
+                    int count = remaining.get(parent) - 1;
+                    remaining.put(parent, count);
+                    if (count == 0) {
+                        ready.add(parent);
+                    }
+                }
+            } catch (ExecutionException ee) {
+                if (failure == null) {
+                    failure = ee.getCause();
+                }
+            }
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new AssertionError(failure); // Visitor#visit throws no checked exceptions
         }
     }
 
-    private static <T> boolean isNotVisited(final Vertex<T> vertex, final Map<Vertex<T>, Integer> vertexStateMap) {
-        if (!vertexStateMap.containsKey(vertex)) {
-            return true;
+    /**
+     * Kahn's algorithm; vertices are emitted once all their parents (or children if {@code childrenFirst}) have been.
+     */
+    private static <T> List<Vertex<T>> sort(Graph<T> graph, boolean childrenFirst) {
+        List<Vertex<T>> vertices = graph.getVertices();
+        List<Vertex<T>> sorted = new ArrayList<Vertex<T>>(vertices.size());
+        Map<Vertex<T>, Integer> remaining = new HashMap<Vertex<T>, Integer>(vertices.size());
+        PriorityQueue<Vertex<T>> ready = new PriorityQueue<Vertex<T>>(Math.max(1, vertices.size()),
+                getInsertionOrder(vertices));
+        for (Vertex<T> vertex : vertices) {
+            int count = (childrenFirst ? vertex.getChildren().size() : vertex.getParents().size());
+            remaining.put(vertex, count);
+            if (count == 0) {
+                ready.add(vertex);
+            }
+        }
+        while (!ready.isEmpty()) {
+            Vertex<T> vertex = ready.poll();
+            sorted.add(vertex);
+            for (Vertex<T> next : (childrenFirst ? vertex.getParents() : vertex.getChildren())) {
+                int count = remaining.get(next) - 1;
+                remaining.put(next, count);
+                if (count == 0) {
+                    ready.add(next);
+                }
+            }
         }
-        final Integer state = vertexStateMap.get(vertex);
-        return NOT_VISTITED.equals(state);
+        return sorted;
     }
 
+    /**
+     * @return a comparator ordering vertices by their position within {@code vertices}
+     */
+    private static <T> Comparator<Vertex<T>> getInsertionOrder(List<Vertex<T>> vertices) {
+        final Map<Vertex<T>, Integer> indices = new HashMap<Vertex<T>, Integer>(vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            indices.put(vertices.get(i), i);
+        }
+        return new Comparator<Vertex<T>>() {
+            @Override public int compare(Vertex<T> left, Vertex<T> right) {
+                return indices.get(left).compareTo(indices.get(right));
+            }
+        };
+    }
+
+    private Graphs() { }
+
 }
@@ -1,8 +1,6 @@
 package net.ocheyedan.ply.graph;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * User: blangel
@@ -11,35 +9,48 @@ import java.util.List;
  *
  * A vertex within a {@link Graph<T>}
  * Code influenced by {@see org.codehaus.plexus.util.dag.Vertex}
+ * Edges are kept in hash based sets (in insertion order) so that adding, removing and testing for an edge does not
+ * depend upon the number of edges of the vertex.
  */
 public final class Vertex<T> {
 
-    private final List<Vertex<T>> parents;
+    private final Set<Vertex<T>> parents;
 
-    private final List<Vertex<T>> children;
+    private final Set<Vertex<T>> children;
+
+    /**
+     * The {@link #children} in insertion order, as returned by {@link #getChildren()}.
+     */
+    private final List<Vertex<T>> childrenList;
 
     private final T value;
 
+    /**
+     * The position of this vertex within the topological order maintained by the owning {@link DirectedAcyclicGraph}.
+     */
+    int order;
+
     Vertex(T value) {
-        this.parents = new ArrayList<Vertex<T>>();
-        this.children = new ArrayList<Vertex<T>>();
+        this.parents = new LinkedHashSet<Vertex<T>>(4);
+        this.children = new HashSet<Vertex<T>>(4);
+        this.childrenList = new ArrayList<Vertex<T>>(4);
         this.value = value;
     }
 
     void addEdgeTo(Vertex<T> vertex) {
-        if (!children.contains(vertex)) {
-            children.add(vertex);
+        if (children.add(vertex)) {
+            childrenList.add(vertex);
         }
     }
 
     void addEdgeFrom(Vertex<T> vertex) {
-        if (!parents.contains(vertex)) {
-            parents.add(vertex);
-        }
+        parents.add(vertex);
     }
 
     void removeEdgeTo(Vertex<T> vertex) {
-        children.remove(vertex);
+        if (children.remove(vertex)) {
+            childrenList.remove(vertex);
+        }
     }
 
     void removeEdgeFrom(Vertex<T> vertex) {
@@ -63,7 +74,7 @@ public final class Vertex<T> {
     }
 
     public Vertex<T> getAnyParent() {
-        return (parents.isEmpty() ? null : parents.get(0));
+        return (parents.isEmpty() ? null : parents.iterator().next());
     }
 
     public T getValue() {
@@ -75,7 +86,14 @@ public final class Vertex<T> {
     }
 
     public List<Vertex<T>> getChildren() {
-        return Collections.unmodifiableList(children);
+        return Collections.unmodifiableList(childrenList);
+    }
+
+    /**
+     * @return the parents of this vertex, in the order their edges were added
+     */
+    Collection<Vertex<T>> getParents() {
+        return Collections.unmodifiableCollection(parents);
     }
 
     @Override public String toString() {
@@ -85,7 +103,7 @@ public final class Vertex<T> {
     public String toExtendedString() {
         StringBuilder buffer = new StringBuilder();
         buffer.append(toString());
-        for (Vertex<T> child : children) {
+        for (Vertex<T> child : childrenList) {
             if (buffer.length() > toString().length()) {
                 buffer.append("\n\t");
             }
@@ -23,6 +23,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,6 +43,30 @@ import java.util.regex.Pattern;
  */
 public class MavenPomParser {
 
+    /**
+     * A cache of parsed pom files keyed by url path, to be shared by the {@link MavenPomParser} objects of a
+     * single resolution so that commonly inherited parent poms (i.e., {@literal org.apache:apache}) are
+     * read and parsed only once.  Cached documents are never modified and are only ever traversed while
+     * holding their lock; the cache is safe for use by concurrent parsers.
+     */
+    public static final class Cache {
+
+        private final ConcurrentMap<String, Document> documents = new ConcurrentHashMap<String, Document>();
+
+        private final AtomicInteger hits = new AtomicInteger(0);
+
+        private final AtomicInteger misses = new AtomicInteger(0);
+
+        public int getHits() {
+            return hits.get();
+        }
+
+        public int getMisses() {
+            return misses.get();
+        }
+
+    }
+
     /**
      * Holds a collection of resolved property values and un-resolved dependencies and repositories from
      * parsing a pom file.
@@ -188,6 +215,22 @@ public class MavenPomParser {
         }
     }
 
+    /**
+     * The parsed pom files to reuse, may be null.
+     */
+    private final Cache cache;
+
+    public MavenPomParser() {
+        this(null);
+    }
+
+    /**
+     * @param cache of parsed pom files to consult and fill, may be null
+     */
+    public MavenPomParser(Cache cache) {
+        this.cache = cache;
+    }
+
     /**
      * Parses the pom file represented by {@code pomUrlPath} positioned at {@code repositoryAtom}.
      * @param pomUrlPath to parse
@@ -263,21 +306,19 @@ public class MavenPomParser {
 
     private void parse(String pomUrlPath, PomUri pomUri, RepositoryAtom repositoryAtom, ParseResult parseResult)
             throws ParserConfigurationException, IOException, SAXException {
-        Resource pomResource = Resources.parse(pomUrlPath);
-        try {
-            InputStream stream = pomResource.open();
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
+        Document document = getDocument(pomUrlPath);
+        // store the parent pom url so that recursive processing is done after the entire current pom is analyzed
+        // so that any local property filtering (i.e., version) can be done.
+        PomUri parentPomUri = null;
+        // store the parent version in case the version of the project is not explicitly specified, will use
+        // parent's per maven convention.
+        AtomicReference<String> parentVersion = new AtomicReference<String>("");
+        String localVersion = null;
+        // similar to the parent version, need to store the parent's groupId
+        AtomicReference<String> parentGroupId = new AtomicReference<String>("");
+        String localGroupId = null, localArtifactId = null, packaging = null;
+        synchronized (document) { // dom implementations are not safe for concurrent reads
             NodeList pomChildren = document.getDocumentElement().getChildNodes();
-            // store the parent pom url so that recursive processing is done after the entire current pom is analyzed
-            // so that any local property filtering (i.e., version) can be done.
-            PomUri parentPomUri = null;
-            // store the parent version in case the version of the project is not explicitly specified, will use
-            // parent's per maven convention.
-            AtomicReference<String> parentVersion = new AtomicReference<String>("");
-            String localVersion = null;
-            // similar to the parent version, need to store the parent's groupId
-            AtomicReference<String> parentGroupId = new AtomicReference<String>("");
-            String localGroupId = null, localArtifactId = null, packaging = null;
             for (int i = 0; i < pomChildren.getLength(); i++) {
                 Node child = pomChildren.item(i);
                 String nodeName = child.getNodeName();
@@ -305,34 +346,64 @@ public class MavenPomParser {
                     parseModules(child, parseResult);
                 }
             }
-            if (!parseResult.mavenProperties.containsKey("project.groupId")) {
-                parseResult.mavenProperties.put("project.groupId", (localGroupId != null ? localGroupId : parentGroupId.get()));
-                parseResult.mavenProperties.put("pom.groupId", (localGroupId != null ? localGroupId : parentGroupId.get()));
-            }
-            if (!parseResult.mavenProperties.containsKey("project.artifactId")) { // don't override artifactId with parent.artifactId
-                parseResult.mavenProperties.put("project.artifactId", localArtifactId);
-                parseResult.mavenProperties.put("pom.artifactId", localArtifactId);
-            }
-            if (!parseResult.mavenProperties.containsKey("project.version")) {
-                String version = (localVersion != null ? localVersion : parentVersion.get());
-                version = filterVersion(version, parseResult);
-                parseResult.mavenProperties.put("project.version", version);
-                parseResult.mavenProperties.put("pom.version", version);
-            }
-            if (!parseResult.mavenProperties.containsKey("project.packaging")) {
-                parseResult.mavenProperties.put("project.packaging", packaging);
-            }
-            if (parentPomUri != null) {
-                // filter project.* so that they are not overridden by the recursion on parent
-                filterLocalProjectProperties(parseResult);
-                parse(parentPomUri, repositoryAtom, parseResult);
-                String version = parseResult.mavenProperties.get("project.version");
-                version = filterVersion(version, parseResult);
-                parseResult.mavenProperties.put("project.version", version);
+        }
+        if (!parseResult.mavenProperties.containsKey("project.groupId")) {
+            parseResult.mavenProperties.put("project.groupId", (localGroupId != null ? localGroupId : parentGroupId.get()));
+            parseResult.mavenProperties.put("pom.groupId", (localGroupId != null ? localGroupId : parentGroupId.get()));
+        }
+        if (!parseResult.mavenProperties.containsKey("project.artifactId")) { // don't override artifactId with parent.artifactId
+            parseResult.mavenProperties.put("project.artifactId", localArtifactId);
+            parseResult.mavenProperties.put("pom.artifactId", localArtifactId);
+        }
+        if (!parseResult.mavenProperties.containsKey("project.version")) {
+            String version = (localVersion != null ? localVersion : parentVersion.get());
+            version = filterVersion(version, parseResult);
+            parseResult.mavenProperties.put("project.version", version);
+            parseResult.mavenProperties.put("pom.version", version);
+        }
+        if (!parseResult.mavenProperties.containsKey("project.packaging")) {
+            parseResult.mavenProperties.put("project.packaging", packaging);
+        }
+        if (parentPomUri != null) {
+            // filter project.* so that they are not overridden by the recursion on parent
+            filterLocalProjectProperties(parseResult);
+            parse(parentPomUri, repositoryAtom, parseResult);
+            String version = parseResult.mavenProperties.get("project.version");
+            version = filterVersion(version, parseResult);
+            parseResult.mavenProperties.put("project.version", version);
+        }
+    }
+
+    /**
+     * @param pomUrlPath of the pom file
+     * @return the parsed pom file at {@code pomUrlPath} (from the {@link #cache} if present)
+     */
+    private Document getDocument(String pomUrlPath) throws ParserConfigurationException, IOException, SAXException {
+        Document document = (cache == null ? null : cache.documents.get(pomUrlPath));
+        if (document != null) {
+            cache.hits.incrementAndGet();
+            return document;
+        }
+        Resource pomResource = Resources.parse(pomUrlPath);
+        try {
+            InputStream stream = pomResource.open();
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            try {
+                // expand all nodes while parsing so that subsequent reads do not modify the document
+                factory.setFeature("http://apache.org/xml/features/dom/defer-node-expansion", false);
+            } catch (ParserConfigurationException pce) {
+                // not a xerces implementation, nothing to do
             }
+            document = factory.newDocumentBuilder().parse(stream);
         } finally {
             pomResource.close();
         }
+        if (cache != null) {
+            cache.misses.incrementAndGet();
+            Document existing = cache.documents.putIfAbsent(pomUrlPath, document);
+            document = (existing == null ? document : existing);
+        }
+        return document;
     }
 
     private String getMetadataBaseUrl(String pomUrlPath) {
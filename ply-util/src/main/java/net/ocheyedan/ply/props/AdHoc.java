@@ -26,15 +26,22 @@ public final class AdHoc {
     static final Map<Scope, Map<Context, PropFile>> adHocProps = new ConcurrentHashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
 
     /**
-     * Parses {@code adHocProps} and adds them to the set of ad-hoc properties.
+     * Parses {@code adHocProps} and adds them to the set of ad-hoc properties.  As ad-hoc properties take precedence
+     * over every other property, the loaded properties are invalidated if any are added so that values resolved
+     * (and filtered) prior to the addition are not returned.
      * @param adHocProps to parse and add to the set of ad-hoc properties
      */
     public static void add(List<String> adHocProps) {
         if (adHocProps == null) {
             return;
         }
+        boolean added = false;
         for (String adHocProp : adHocProps) {
-            parseAndAdd(adHocProp);
+            added |= parseAndAdd(adHocProp);
+        }
+        if (added) {
+            Loader.invalidate();
+            Filter.invalidate();
         }
     }
 
@@ -120,10 +127,11 @@ public final class AdHoc {
      * Parses {@code prop} which is expected to be in the format {@literal context#scope.propName=propValue}
      * where {@literal #scope} is optional.
      * @param prop to parse
+     * @return true if {@code prop} was added
      */
-    static void parseAndAdd(String prop) {
+    static boolean parseAndAdd(String prop) {
         if (prop == null) {
-            return;
+            return false;
         }
         try {
             String context, scope, propName, propValue;
@@ -156,10 +164,12 @@ public final class AdHoc {
                              context, propScope.getAdHocSuffix(), propName, adHocProp.value(), propValue, adHocProp.value());
             } else {
                 adHocPropFile.add(propName, propValue);
+                return true;
             }
         } catch (Exception e) {
             Output.print("^error^ Could not parse ad-hoc property ^b^%s^r^.", prop);
         }
+        return false;
     }
 
 }
\ No newline at end of file
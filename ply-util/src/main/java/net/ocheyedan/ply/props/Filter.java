@@ -1,13 +1,14 @@
 package net.ocheyedan.ply.props;
 
+import net.ocheyedan.ply.Env;
 import net.ocheyedan.ply.Output;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * User: blangel
@@ -15,6 +16,9 @@ import java.util.regex.Pattern;
  * Time: 12:50 PM
  *
  * Filters property values based on other properties and the system environment variables.
+ * Each distinct value is parsed once into a {@link Template} of literal text and {@literal ${...}} property
+ * placeholder references.  Filtering is thread-safe; circular references are detected per thread as the resolution
+ * of a placeholder may recursively filter other values.
  */
 public final class Filter {
 
@@ -33,14 +37,120 @@ public final class Filter {
         }
     }
 
-    private static final Map<String, String> cache = new ConcurrentHashMap<String, String>();
+    /**
+     * A {@literal ${...}} property placeholder within a value.
+     */
+    private static final class Reference {
+        private final String placeholder;
+        /**
+         * The context named by the placeholder (the text preceding the first '.') or null if there is no '.'
+         */
+        private final Context placeholderContext;
+        /**
+         * The placeholder without its {@link #placeholderContext} or null if there is no '.'
+         */
+        private final String placeholderWithoutContext;
+        private Reference(String placeholder) {
+            this.placeholder = placeholder;
+            int contextIndex = placeholder.indexOf('.');
+            this.placeholderContext = (contextIndex == -1 ? null : Context.named(placeholder.substring(0, contextIndex)));
+            this.placeholderWithoutContext = (contextIndex == -1 ? null : placeholder.substring(contextIndex + 1));
+        }
+    }
 
-    private static final Pattern propertyPlaceholderRegex = Pattern.compile("\\$\\{(.*?)\\}");
+    /**
+     * A parsed value; a sequence of segments each of which is either literal text (a {@link String}) or a
+     * {@link Reference}.
+     */
+    private static final class Template {
+        private final Object[] segments;
+        private Template(Object[] segments) {
+            this.segments = segments;
+        }
+        private static Template parse(String value) {
+            List<Object> segments = new ArrayList<Object>(4);
+            int from = 0, search = 0;
+            while (true) {
+                int start = value.indexOf("${", search);
+                int end = (start == -1 ? -1 : value.indexOf('}', start + 2));
+                if (end == -1) {
+                    break;
+                }
+                String placeholder = value.substring(start + 2, end);
+                if (hasLineTerminator(placeholder)) {
+                    search = start + 1; // placeholders do not span lines
+                    continue;
+                }
+                if (start > from) {
+                    segments.add(value.substring(from, start));
+                }
+                segments.add(new Reference(placeholder));
+                from = search = end + 1;
+            }
+            if (from < value.length()) {
+                segments.add(value.substring(from));
+            }
+            return new Template(segments.toArray());
+        }
+        private static boolean hasLineTerminator(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char character = value.charAt(i);
+                if ((character == '\n') || (character == '\r') || (character == '\u0085')
+                        || (character == '\u2028') || (character == '\u2029')) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 
     /**
-     * Contains cache-keys currently being resolved - used to detect circular references.
+     * The key of a filtered value within the {@link #cache}.
      */
-    private static final Set<String> resolvingCacheKeys = new HashSet<String>(2, 1.0f);
+    private static final class Key {
+        private final String unfiltered;
+        private final String uniqueIdentifier;
+        private final int hashCode;
+        private Key(String unfiltered, String uniqueIdentifier) {
+            this.unfiltered = unfiltered;
+            this.uniqueIdentifier = uniqueIdentifier;
+            this.hashCode = (31 * unfiltered.hashCode()) + uniqueIdentifier.hashCode();
+        }
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return unfiltered.equals(key.unfiltered) && uniqueIdentifier.equals(key.uniqueIdentifier);
+        }
+        @Override public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    private static final Map<Key, String> cache = new ConcurrentHashMap<Key, String>();
+
+    private static final Map<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+    /**
+     * Contains cache-keys currently being resolved by the current thread - used to detect circular references.
+     */
+    private static final ThreadLocal<Set<Key>> resolvingCacheKeys = new ThreadLocal<Set<Key>>() {
+        @Override protected Set<Key> initialValue() {
+            return new HashSet<Key>(4);
+        }
+    };
+
+    /**
+     * Clears the caches of filtered values and of parsed templates.
+     */
+    static void invalidate() {
+        cache.clear();
+        templates.clear();
+    }
 
     /**
      * Filters {@code unfiltered} with the property values within {@code filterConsultant} and returns a copy
@@ -52,7 +162,7 @@ public final class Filter {
      * @throws Circular if {@code toFilter} contains a circular property placeholder reference
      */
     public static PropFile.Prop filter(PropFile.Prop unfiltered, String uniqueIdentifier,
-                                       Map<Context, PropFileChain> filterConsultant) throws Circular {
+                                      Map<Context, PropFileChain> filterConsultant) throws Circular {
         if ((unfiltered == null) || (uniqueIdentifier == null) || (filterConsultant == null)) {
             throw new NullPointerException(String.format("Parameters may not be null [ toFilter = %s " +
                     "| uniqueIdentifier = %s | filterConsultant = %s ].", (unfiltered == null ? "null" : "prop"),
@@ -80,7 +190,7 @@ public final class Filter {
      * @throws Circular if {@code toFilter} contains a circular property placeholder reference
      */
     public static String filter(String toFilter, Context context, String uniqueIdentifier,
-                                Map<Context, PropFileChain> filterConsultant) throws Circular {
+                                 Map<Context, PropFileChain> filterConsultant) throws Circular {
         FilterResult result = _filter(toFilter, context, uniqueIdentifier, filterConsultant);
         return result.filteredResult;
     }
@@ -95,58 +205,73 @@ public final class Filter {
         if (!toFilter.contains("${")) {
             return new FilterResult(toFilter, false);
         }
-        String cacheKey = getKey(toFilter, uniqueIdentifier);
-        if (cache.containsKey(cacheKey)) {
-            return new FilterResult(cache.get(cacheKey), false);
+        Key cacheKey = new Key(toFilter, uniqueIdentifier);
+        String cached = cache.get(cacheKey);
+        if (cached != null) {
+            return new FilterResult(cached, false);
         }
-        if (!resolvingCacheKeys.add(cacheKey)) {
+        Set<Key> resolving = resolvingCacheKeys.get();
+        if (!resolving.add(cacheKey)) {
             throw new Circular();
         }
-        String filtered = toFilter;
-        Matcher matcher = propertyPlaceholderRegex.matcher(toFilter);
-        while (matcher.find()) {
-            String propertyPlaceholder = matcher.group(1);
-            // first, check the {@code context} directly
-            PropFileChain chain = filterConsultant.get(context);
-            if (chain != null) {
-                PropFile.Prop resolved = chain.get(propertyPlaceholder);
-                if (resolved != PropFile.Prop.Empty) {
-                    filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                            Matcher.quoteReplacement(resolved.value()));
-                    continue; // found!
-                }
+        try {
+            Template template = templates.get(toFilter);
+            if (template == null) {
+                template = Template.parse(toFilter);
+                templates.put(toFilter, template);
             }
-            // next, parse propertyPlaceholder for a context and, if one exists, check against that
-            int contextIndex = propertyPlaceholder.indexOf(".");
-            if (contextIndex != -1) {
-                Context contextWithinPropertyPlaceholder = Context.named(propertyPlaceholder.substring(0, contextIndex));
-                String propertyPlaceholderWithoutContext = propertyPlaceholder.substring(contextIndex + 1);
-                chain = filterConsultant.get(contextWithinPropertyPlaceholder);
-                if (chain != null) {
-                    PropFile.Prop resolved = chain.get(propertyPlaceholderWithoutContext);
-                    if (resolved != PropFile.Prop.Empty) {
-                        filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                                Matcher.quoteReplacement(resolved.value()));
-                        continue; // found!
+            StringBuilder filtered = new StringBuilder(toFilter.length() + 32);
+            for (Object segment : template.segments) {
+                if (segment instanceof String) {
+                    filtered.append((String) segment);
+                } else {
+                    Reference reference = (Reference) segment;
+                    String resolved = resolve(reference, context, filterConsultant);
+                    if (resolved == null) {
+                        Output.print("^warn^ No filter-value found for property ^b^%s^r^", reference.placeholder);
+                        filtered.append("${").append(reference.placeholder).append('}');
+                    } else {
+                        filtered.append(resolved);
                     }
                 }
             }
-            // lastly, check if the property is an environment variable
-            String replacement = System.getenv(propertyPlaceholder);
-            if (replacement != null) {
-                filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                        Matcher.quoteReplacement(replacement));
-            } else {
-                Output.print("^warn^ No filter-value found for property ^b^%s^r^", propertyPlaceholder);
-            }
+            String result = filtered.toString();
+            cache.put(cacheKey, result);
+            return new FilterResult(result, true);
+        } finally {
+            resolving.remove(cacheKey);
         }
-        cache.put(cacheKey, filtered);
-        resolvingCacheKeys.remove(cacheKey);
-        return new FilterResult(filtered, true);
     }
 
-    private static String getKey(String unfiltered, String uniqueIdentifier) {
-        return String.format("%s#%s", unfiltered, uniqueIdentifier);
+    /**
+     * @param reference to resolve
+     * @param context to consult for non-context prefixed property values
+     * @param filterConsultant the property values which to use to resolve {@code reference}
+     * @return the value of {@code reference} or null if it cannot be resolved
+     * @throws Circular if the value of {@code reference} contains a circular property placeholder reference
+     */
+    private static String resolve(Reference reference, Context context, Map<Context, PropFileChain> filterConsultant)
+            throws Circular {
+        // first, check the {@code context} directly
+        PropFileChain chain = filterConsultant.get(context);
+        if (chain != null) {
+            PropFile.Prop resolved = chain.get(reference.placeholder);
+            if (resolved != PropFile.Prop.Empty) {
+                return resolved.value();
+            }
+        }
+        // next, if the placeholder is prefixed with a context, check against that
+        if (reference.placeholderContext != null) {
+            chain = filterConsultant.get(reference.placeholderContext);
+            if (chain != null) {
+                PropFile.Prop resolved = chain.get(reference.placeholderWithoutContext);
+                if (resolved != PropFile.Prop.Empty) {
+                    return resolved.value();
+                }
+            }
+        }
+        // lastly, check if the property is an environment variable
+        return Env.get(reference.placeholder);
     }
 
     private Filter() { }
@@ -1,5 +1,6 @@
 package net.ocheyedan.ply.props;
 
+import net.ocheyedan.ply.Env;
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.PlyUtil;
 
@@ -7,6 +8,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -34,13 +36,19 @@ final class Loader {
     private static final AtomicBoolean systemCacheLoaded = new AtomicBoolean(false);
     private static final Map<Scope, Map<Context, PropFile>> systemCache = new ConcurrentHashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
 
+    /**
+     * Mapping of canonical-path of each configuration directory loaded into the {@link #cache} and {@link #systemCache}
+     * to its fingerprint at the time of loading (see {@link #fingerprint(java.io.File)}).
+     */
+    private static final Map<String, Long> fingerprints = new ConcurrentHashMap<String, Long>(3, 1.0f);
+
     /**
      * Loads the properties from {@code configurationDirectory} and chains them with the system and ad-hoc properties.
      * @param configurationDirectory from which to load local properties
      * @return a mapping of scope to a mapping of context to {@link PropFileChain} loaded from {@code configurationDirectory}
      *         augmented by any available ad-hoc and system properties.
      */
-    static Map<Scope, Map<Context, PropFileChain>> load(File configurationDirectory) {
+    static synchronized Map<Scope, Map<Context, PropFileChain>> load(File configurationDirectory) {
         String cacheKey = FileUtil.getCanonicalPath(configurationDirectory);
         if (cache.containsKey(cacheKey)) {
             return cache.get(cacheKey);
@@ -55,13 +63,39 @@ final class Loader {
         return loaded;
     }
 
+    /**
+     * @return true if any configuration directory loaded into the cache has changed (a property file has been added,
+     *         removed or modified) since it was loaded.
+     */
+    static boolean isStale() {
+        for (Map.Entry<String, Long> entry : fingerprints.entrySet()) {
+            if (fingerprint(new File(entry.getKey())) != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Clears all cached properties so that subsequent calls to {@link #load(java.io.File)} re-read from disk.
+     */
+    static synchronized void invalidate() {
+        cache.clear();
+        systemCache.clear();
+        systemCacheLoaded.set(false);
+        fingerprints.clear();
+        PropsSnapshot.invalidate();
+    }
+
     private static boolean shouldLoadFromEnv(File configDirectory) {
         return ((configDirectory == PlyUtil.LOCAL_CONFIG_DIR)
-                && (System.getenv("ply$ply.invoker") != null));
+                && (Env.get("ply$ply.invoker") != null));
     }
 
     /**
-     * Loads the properties from the environment variables.
+     * Loads the properties from the environment variables.  If ply handed off the properties within a file (see
+     * {@link PropsHandoff}) they are read from it and augmented by the (synthetic) properties within the environment
+     * variables.
      * @return the properties found within the environment variables
      */
     private static Map<Scope, Map<Context, PropFileChain>> loadFromEnv() {
@@ -70,9 +104,16 @@ final class Loader {
         Scope scope = Props.getScope();
         Map<Context, PropFileChain> contexts = new ConcurrentHashMap<Context, PropFileChain>(13, 1.0f);
         props.put(scope, contexts);
-        Map<Context, PropFile> propFiles = new ConcurrentHashMap<Context, PropFile>(13, 1.0f);
-        
-        Map<String, String> env = System.getenv();
+        Map<Context, PropFile> propFiles = null;
+        String handoff = Env.get(PropsHandoff.ENV_NAME);
+        if (handoff != null) {
+            propFiles = PropsHandoff.read(new File(handoff), scope);
+        }
+        if (propFiles == null) {
+            propFiles = new ConcurrentHashMap<Context, PropFile>(13, 1.0f);
+        }
+
+        Map<String, String> env = Env.get();
         for (String key : env.keySet()) {
             if (!key.startsWith("ply$")) {
                 continue; // non-ply property
@@ -106,7 +147,12 @@ final class Loader {
      */
     private static Map<Scope, Map<Context, PropFileChain>> loadChain(File configurationDirectory) {
         if (!systemCacheLoaded.getAndSet(true)) {
-            load(PlyUtil.SYSTEM_CONFIG_DIR, PropFile.Loc.System, systemCache);
+            // loaded once and shared (unmodifiable) by the chains of every configuration directory; i.e., submodules
+            Map<Scope, Map<Context, PropFile>> system = new HashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
+            load(PlyUtil.SYSTEM_CONFIG_DIR, PropFile.Loc.System, system);
+            for (Map.Entry<Scope, Map<Context, PropFile>> entry : system.entrySet()) {
+                systemCache.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+            }
         }
         Map<Scope, Map<Context, PropFile>> local = new ConcurrentHashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
         load(configurationDirectory, PropFile.Loc.Local, local);
@@ -118,7 +164,8 @@ final class Loader {
 
     /**
      * Chains together the inputted properties such that {@code adHoc} are consulted first during resolution, then
-     * {@code local} and finally {@code system}.
+     * {@code local} and finally {@code system}.  The {@link PropFileChain} of each context is only created upon
+     * first access (see {@link Chains}).
      * @param system the system properties
      * @param local the local properties
      * @param adHoc the ad-hoc properties
@@ -128,56 +175,90 @@ final class Loader {
                                                                  Map<Scope, Map<Context, PropFile>> local,
                                                                  Map<Scope, Map<Context, PropFile>> adHoc) {
         Map<Scope, Map<Context, PropFileChain>> chain = new ConcurrentHashMap<Scope, Map<Context, PropFileChain>>(3, 1.0f);
-        Map<Context, PropFileChain> defaultScopeChain = new ConcurrentHashMap<Context, PropFileChain>(13, 1.0f);
-        chain.put(Scope.Default, defaultScopeChain);
 
         Set<Scope> allScopes = collectScopes(system, local, adHoc);
         Set<Context> allContexts = collectContexts(system, local, adHoc);
 
         // first do the Scope.Default so that it can be used as the default-delegate for all other scopes
-        chain(system.containsKey(Scope.Default) ? system.get(Scope.Default) : Collections.<Context, PropFile>emptyMap(),
-              local.containsKey(Scope.Default) ? local.get(Scope.Default) : Collections.<Context, PropFile>emptyMap(),
-              adHoc.containsKey(Scope.Default) ? adHoc.get(Scope.Default) : Collections.<Context, PropFile>emptyMap(),
-              defaultScopeChain, allContexts, null);
+        Chains defaultScopeChain = new Chains(system.get(Scope.Default), local.get(Scope.Default),
+                                              adHoc.get(Scope.Default), allContexts, null);
+        chain.put(Scope.Default, defaultScopeChain);
         // now do all other scopes
         for (Scope scope : allScopes) {
             if (Scope.Default.equals(scope)) {
                 continue;
             }
-            Map<Context, PropFile> systemFiles = system.get(scope);
-            Map<Context, PropFile> localFiles = local.get(scope);
-            Map<Context, PropFile> adHocFiles = adHoc.get(scope);
-            Map<Context, PropFileChain> scopedChain = new ConcurrentHashMap<Context, PropFileChain>(13, 1.0f);
-            chain.put(scope, scopedChain);
-            chain(systemFiles == null ? Collections.<Context, PropFile>emptyMap() : systemFiles,
-                  localFiles == null ? Collections.<Context, PropFile>emptyMap() : localFiles,
-                  adHocFiles == null ? Collections.<Context, PropFile>emptyMap() : adHocFiles,
-                  scopedChain, allContexts, defaultScopeChain);
+            chain.put(scope, new Chains(system.get(scope), local.get(scope), adHoc.get(scope), allContexts,
+                                        defaultScopeChain));
         }
         
         return chain;
     }
-    
-    private static void chain(Map<Context, PropFile> system, Map<Context, PropFile> local,
-                              Map<Context, PropFile> adHoc, Map<Context, PropFileChain> chain,
-                              Set<Context> allContexts, Map<Context, PropFileChain> defaultChain) {
-        chain(system, PropFile.Loc.System, chain, allContexts, defaultChain);
-        chain(local, PropFile.Loc.Local, chain, allContexts, defaultChain);
-        chain(adHoc, PropFile.Loc.AdHoc, chain, allContexts, defaultChain);
-    }
-    
-    private static void chain(Map<Context, PropFile> files, PropFile.Loc loc, Map<Context, PropFileChain> chain, 
-                              Set<Context> contexts, Map<Context, PropFileChain> defaultChain) {
-        for (Context context : contexts) {
-            PropFileChain contextChain = chain.get(context);
-            if (contextChain == null) {
-                PropFileChain contextDefault = (defaultChain == null ? null : defaultChain.get(context));
-                contextChain = new PropFileChain(contextDefault, chain);
-                chain.put(context, contextChain);
+
+    /**
+     * The unmodifiable mapping of {@link Context} to {@link PropFileChain} for one scope.  Every context is present
+     * but its chain is only created (and linked to the default scope's chain of the same context) when first
+     * retrieved; a script typically consults only a few of the contexts.  Iterating the mapping creates every chain.
+     */
+    private static final class Chains extends AbstractMap<Context, PropFileChain> {
+
+        private final Map<Context, PropFile> system;
+
+        private final Map<Context, PropFile> local;
+
+        private final Map<Context, PropFile> adHoc;
+
+        private final Set<Context> contexts;
+
+        private final Chains defaultChains;
+
+        private final ConcurrentMap<Context, PropFileChain> created;
+
+        private Chains(Map<Context, PropFile> system, Map<Context, PropFile> local, Map<Context, PropFile> adHoc,
+                       Set<Context> contexts, Chains defaultChains) {
+            this.system = (system == null ? Collections.<Context, PropFile>emptyMap() : system);
+            this.local = (local == null ? Collections.<Context, PropFile>emptyMap() : local);
+            this.adHoc = (adHoc == null ? Collections.<Context, PropFile>emptyMap() : adHoc);
+            this.contexts = contexts;
+            this.defaultChains = defaultChains;
+            this.created = new ConcurrentHashMap<Context, PropFileChain>(contexts.size(), 1.0f);
+        }
+
+        @Override public PropFileChain get(Object key) {
+            PropFileChain chain = created.get(key);
+            if ((chain != null) || !contexts.contains(key)) {
+                return chain;
             }
-            if (files.containsKey(context)) {
-                contextChain.set(files.get(context), loc);
+            Context context = (Context) key;
+            chain = new PropFileChain((defaultChains == null ? null : defaultChains.get(context)), this);
+            if (system.containsKey(context)) {
+                chain.set(system.get(context), PropFile.Loc.System);
             }
+            if (local.containsKey(context)) {
+                chain.set(local.get(context), PropFile.Loc.Local);
+            }
+            if (adHoc.containsKey(context)) {
+                chain.set(adHoc.get(context), PropFile.Loc.AdHoc);
+            }
+            PropFileChain existing = created.putIfAbsent(context, chain);
+            return (existing == null ? chain : existing);
+        }
+
+        @Override public boolean containsKey(Object key) {
+            return contexts.contains(key);
+        }
+
+        @Override public int size() {
+            return contexts.size();
+        }
+
+        @Override public Set<Entry<Context, PropFileChain>> entrySet() {
+            if (created.size() < contexts.size()) {
+                for (Context context : contexts) {
+                    get(context);
+                }
+            }
+            return Collections.unmodifiableMap(created).entrySet();
         }
     }
 
@@ -220,12 +301,14 @@ final class Loader {
 
     /**
      * Loads all {@literal .properties} files from {@code configurationDirectory} and creates a {@link PropFile}
-     * for the extracted context and scope (according to the file name) at {@code loc}
+     * for the extracted context and scope (according to the file name) at {@code loc}.
      * @param configurationDirectory from which to load properties files
      * @param loc at which the loading is occurring
      * @param into the map to store the loaded {@link PropFile} objects
      */
     private static void load(File configurationDirectory, PropFile.Loc loc, Map<Scope, Map<Context, PropFile>> into) {
+        // fingerprint before reading so that concurrent modifications are seen as stale by {@link #isStale()}
+        fingerprints.put(FileUtil.getCanonicalPath(configurationDirectory), fingerprint(configurationDirectory));
         File[] subFiles = configurationDirectory.listFiles(PROPERTIES_FILENAME_FILTER);
         if (subFiles == null) {
             return;
@@ -256,6 +339,27 @@ final class Loader {
         }
     }
 
+    /**
+     * Note, the fingerprint is independent of the order in which the files are listed.
+     * @param configurationDirectory to fingerprint
+     * @return a value which changes if any properties file within {@code configurationDirectory} is added, removed
+     *         or modified
+     */
+    private static long fingerprint(File configurationDirectory) {
+        long fingerprint = configurationDirectory.lastModified();
+        File[] subFiles = configurationDirectory.listFiles(PROPERTIES_FILENAME_FILTER);
+        if (subFiles == null) {
+            return fingerprint;
+        }
+        for (File subFile : subFiles) {
+            long fileFingerprint = subFile.getName().hashCode();
+            fileFingerprint = (31 * fileFingerprint) + subFile.lastModified();
+            fileFingerprint = (31 * fileFingerprint) + subFile.length();
+            fingerprint += fileFingerprint;
+        }
+        return fingerprint;
+    }
+
     private Loader() { }
 
 }
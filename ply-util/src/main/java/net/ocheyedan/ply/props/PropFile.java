@@ -3,9 +3,7 @@ package net.ocheyedan.ply.props;
 import net.ocheyedan.ply.EmptyConcurrentMap;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
@@ -125,8 +123,12 @@ public final class PropFile {
     private static class Impl {
         
         private static final Impl Empty = new Impl(Context.named(""), Scope.Default, Loc.System,
-                                                   EmptyConcurrentMap.<String, Prop>get(), Collections.<Prop>emptyList()) {
+                                                   EmptyConcurrentMap.<String, Prop>get(), new ArrayList<Prop>(0)) {
             
+            @Override protected Prop add(String name, String value, String comments) {
+                throw new UnsupportedOperationException();
+            }
+            @Override protected void ensureCapacity(int size) { }
             @Override protected boolean contains(String name) {
                 return false;
             }
@@ -158,13 +160,13 @@ public final class PropFile {
 
         private final ConcurrentMap<String, Prop> props;
 
-        private final List<Prop> order;
+        private final ArrayList<Prop> order;
 
         private Impl(Context context, Scope scope, Loc loc) {
             this(context, scope, loc, new ConcurrentHashMap<String, Prop>(), new ArrayList<Prop>());
         }
         
-        private Impl(Context context, Scope scope, Loc loc, ConcurrentMap<String, Prop> props, List<Prop> order) {
+        private Impl(Context context, Scope scope, Loc loc, ConcurrentMap<String, Prop> props, ArrayList<Prop> order) {
             this.context = context;
             this.scope = scope;
             this.loc = loc;
@@ -172,7 +174,7 @@ public final class PropFile {
             this.order = order;
         }
 
-        private Prop add(String name, String value, String comments) {
+        protected Prop add(String name, String value, String comments) {
             name = name.trim();
             Prop prop = new Prop(this, name, value, comments);
             Prop existing;
@@ -184,6 +186,10 @@ public final class PropFile {
             return prop;
         }
         
+        protected void ensureCapacity(int size) {
+            order.ensureCapacity(size);
+        }
+
         protected boolean contains(String name) {
             return props.containsKey(name);
         }
@@ -328,6 +334,15 @@ public final class PropFile {
         return delegate.add(name, value, comments);
     }
 
+    /**
+     * Sizes the ordered list of this properties file to hold {@code size} properties without growing; a hint used when
+     * the number of properties about to be added is known (or bounded) in advance.
+     * @param size the expected number of properties
+     */
+    final void ensureCapacity(int size) {
+        delegate.ensureCapacity(size);
+    }
+
     /**
      * @param name of the property
      * @return true if {@code name} is within this properties file.
@@ -116,6 +116,17 @@ public final class PropFileChain {
             return defaultChain.get(named);
         }
 
+        protected void collectNames(Set<String> into) {
+            for (PropFile propFile : chain) {
+                for (PropFile.Prop prop : propFile.props()) {
+                    into.add(prop.name);
+                }
+            }
+            if (defaultChain != null) {
+                defaultChain.collectNames(into);
+            }
+        }
+
         protected Iterator<PropFile.Prop> iterator() {
             return new Iterator<PropFile.Prop>() {
                 final Set<PropFile.Prop> encountered = new HashSet<PropFile.Prop>();
@@ -213,6 +224,15 @@ public final class PropFileChain {
         return delegate.get(named);
     }
 
+    /**
+     * Adds the names of all the properties within this chain (and this chain's delegate) to {@code into} without
+     * filtering their values.
+     * @param into the set into which to add the names
+     */
+    void collectNames(Set<String> into) {
+        delegate.collectNames(into);
+    }
+
     /**
      * @return an {@link Iterable} of type {@link PropFile.Prop} over the chain's properties.
      */
@@ -32,101 +32,188 @@ public interface PropFileReader {
      * Also, the only thing one needs to escape is the '#' character, spaces within a key do not need to be
      * escaped as the only key to value delimiter is the '#' character.  However, like {@link java.util.Properties},
      * whitespace is not allowed as the start of the key (it will be trimmed by this implementation).
+     * <p/>
+     * The whole of the {@link BufferedReader} is read in bulk into a character array which is then parsed in a single
+     * pass; lines are delimited by index rather than copied and values (including those continued across lines)
+     * accumulate within one reused buffer so that the only objects created are the keys, values and comments.
      */
     static final PropFileReader Default = new PropFileReader() {
-        
-        class ParseResult {
-            private final Boolean complete;
-            private final String key;
-            private final String value;
-            private ParseResult(Boolean complete, String key, String value) {
-                this.complete = complete;
-                this.key = key;
-                this.value = value;
-            }
-        }
 
         @Override public void load(BufferedReader reader, PropFile into) throws IOException {
             if ((reader == null) || (into == null)) {
                 throw new NullPointerException("The BufferedReader and PropFile cannot be null.");
             }
-            String line;
-            StringBuilder commentsBuffer = new StringBuilder();
-            ParseResult parsing = null;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() && (parsing == null)) {
-                    // continue;
-                } else if (line.startsWith("#")) {
-                    if (commentsBuffer.length() > 0) {
-                        commentsBuffer.append("\n");
+            char[] data = new char[8192];
+            int length = 0, read;
+            while ((read = reader.read(data, length, data.length - length)) != -1) {
+                length += read;
+                if (length == data.length) {
+                    char[] expanded = new char[data.length << 1];
+                    System.arraycopy(data, 0, expanded, 0, length);
+                    data = expanded;
+                }
+            }
+            into.ensureCapacity(countLines(data, length));
+            parse(data, length, into);
+        }
+
+        /**
+         * @return the number of lines within {@code data}; an upper bound on the number of properties
+         */
+        private int countLines(char[] data, int length) {
+            int lines = 1;
+            for (int i = 0; i < length; i++) {
+                if (data[i] == '\n') {
+                    lines++;
+                }
+            }
+            return lines;
+        }
+
+        @SuppressWarnings("fallthrough")
+        private void parse(char[] data, int length, PropFile into) {
+            StringBuilder comments = new StringBuilder();
+            StringBuilder value = new StringBuilder();
+            String parsingKey = null; // non-null while a property's value is continued onto subsequent lines
+            int position = 0;
+            while (position < length) {
+                // delimit the line as per BufferedReader#readLine; '\n', '\r' or '\r\n'
+                int start = position, end = position;
+                while ((end < length) && (data[end] != '\n') && (data[end] != '\r')) {
+                    end++;
+                }
+                position = end + 1;
+                if ((end < length) && (data[end] == '\r') && (position < length) && (data[position] == '\n')) {
+                    position++;
+                }
+                // trim as per String#trim
+                while ((start < end) && (data[start] <= ' ')) {
+                    start++;
+                }
+                while ((start < end) && (data[end - 1] <= ' ')) {
+                    end--;
+                }
+                if ((start == end) && (parsingKey == null)) {
+                    continue;
+                } else if ((start < end) && (data[start] == '#')) {
+                    if (comments.length() > 0) {
+                        comments.append('\n');
                     }
-                    commentsBuffer.append(line.substring(1));
-                } else {
-                    ParseResult parsedLine = parse(line);
-                    if (parsing != null) {
-                        if (!parsedLine.key.isEmpty()) {
-                            throw new Invalid("Properties may only have one key.");
-                        }
-                        parsing = new ParseResult(false, parsing.key, String.format("%s%s", parsing.value, parsedLine.value));
-                    } else {
-                        parsing = parsedLine;
+                    comments.append(data, start + 1, end - start - 1);
+                    continue;
+                }
+                if ((parsingKey == null) && parseUnescaped(data, start, end, into, comments)) {
+                    comments.setLength(0);
+                    continue;
+                }
+                // parse the line, appending its value to any value continued from previous lines
+                int valueStart = value.length();
+                String key = "";
+                boolean isEscaped = false;
+                for (int i = start; i < end; i++) {
+                    char character = data[i];
+                    switch (character) {
+                        case '\\':
+                            isEscaped = true;
+                            break;
+                        case '=':
+                            if (isEscaped) {
+                                value.append('=');
+                            } else {
+                                key = value.substring(valueStart);
+                                value.setLength(valueStart);
+                            }
+                            isEscaped = false;
+                            break;
+                        case ':':
+                        case ' ':
+                            if (isEscaped && key.isEmpty()) {
+                                isEscaped = false; // eliminate ':' and ' ' escapes within key to conform to {@link Properties}
+                            }
+                        default:
+                            if (isEscaped) {
+                                value.append('\\');
+                            }
+                            value.append(character);
+                            isEscaped = false;
+                    }
+                }
+                if (isEscaped) {
+                    value.append('\\');
+                }
+                boolean complete = true;
+                if ((value.length() > valueStart) && (value.charAt(value.length() - 1) == '\\')) {
+                    value.setLength(value.length() - 1);
+                    complete = false;
+                }
+                if (parsingKey != null) {
+                    if (!key.isEmpty()) {
+                        throw new Invalid("Properties may only have one key.");
                     }
-                    if (parsedLine.complete) {
-                        if (parsing.key.isEmpty()) {
-                            throw new Invalid("Keys must be non-empty.");
-                        } else if (into.contains(parsing.key)) {
-                            throw new Invalid("Keys must be unique.");
-                        }
-                        into.add(parsing.key.trim(), parsing.value.trim(), commentsBuffer.toString());
-                        parsing = null;
-                        commentsBuffer = new StringBuilder();
+                } else {
+                    parsingKey = key;
+                }
+                if (complete) {
+                    if (parsingKey.isEmpty()) {
+                        throw new Invalid("Keys must be non-empty.");
+                    } else if (into.contains(parsingKey)) {
+                        throw new Invalid("Keys must be unique.");
                     }
+                    into.add(parsingKey.trim(), trim(value), (comments.length() == 0 ? "" : comments.toString()));
+                    parsingKey = null;
+                    value.setLength(0);
+                    comments.setLength(0);
                 }
             }
         }
 
-        @SuppressWarnings("fallthrough")
-        private ParseResult parse(String line) {
-            StringBuilder buffer = new StringBuilder();
-            String key = "", value;
-            boolean isEscaped = false;
-            for (char character : line.toCharArray()) {
-                switch (character) {
-                    case '\\':
-                        isEscaped = true;
-                        break;
-                    case '=':
-                        if (isEscaped) {
-                            buffer.append('=');
-                        } else {
-                            key = buffer.toString();
-                            buffer = new StringBuilder();
-                        }
-                        isEscaped = false;
-                        break;
-                    case ':':
-                    case ' ':
-                        if (isEscaped && key.isEmpty()) {
-                            isEscaped = false; // eliminate ':' and ' ' escapes within key to conform to {@link Properties}
-                        }
-                    default:
-                        if (isEscaped) {
-                            buffer.append('\\');
-                        }
-                        buffer.append(character);
-                        isEscaped = false;
+        /**
+         * Parses the (trimmed) line {@code data[start, end)} directly into {@code into} if it contains no escape
+         * characters (and so is neither continued nor needs un-escaping); the common case.  As with escaped lines, if
+         * there are multiple '=' characters the key is that text preceding the last.
+         * @return true if the line was parsed; false if it contains escapes and so must be parsed character by character
+         */
+        private boolean parseUnescaped(char[] data, int start, int end, PropFile into, StringBuilder comments) {
+            int keyStart = start, separator = -1;
+            for (int i = start; i < end; i++) {
+                char character = data[i];
+                if (character == '\\') {
+                    return false;
+                } else if (character == '=') {
+                    if (separator != -1) {
+                        keyStart = separator + 1;
+                    }
+                    separator = i;
                 }
             }
-            if (isEscaped) {
-                buffer.append('\\');
+            if ((separator == -1) || (separator == keyStart)) {
+                throw new Invalid("Keys must be non-empty.");
+            }
+            String key = new String(data, keyStart, separator - keyStart);
+            if (into.contains(key)) {
+                throw new Invalid("Keys must be unique.");
+            }
+            int valueStart = separator + 1;
+            while ((valueStart < end) && (data[valueStart] <= ' ')) {
+                valueStart++;
+            }
+            into.add(key.trim(), new String(data, valueStart, end - valueStart),
+                    (comments.length() == 0 ? "" : comments.toString()));
+            return true;
+        }
+
+        /**
+         * @return {@code buffer} as a string trimmed as per {@link String#trim()}
+         */
+        private String trim(StringBuilder buffer) {
+            int start = 0, end = buffer.length();
+            while ((start < end) && (buffer.charAt(start) <= ' ')) {
+                start++;
             }
-            value = buffer.toString();
-            if (value.endsWith("\\")) {
-                return new ParseResult(false, key, value.substring(0, value.length() - 1));
-            } else {
-                return new ParseResult(true, key, value);
+            while ((start < end) && (buffer.charAt(end - 1) <= ' ')) {
+                end--;
             }
+            return buffer.substring(start, end);
         }
     };
 
@@ -1,5 +1,6 @@
 package net.ocheyedan.ply.props;
 
+import net.ocheyedan.ply.Env;
 import net.ocheyedan.ply.PlyUtil;
 
 import java.io.File;
@@ -135,6 +136,11 @@ public final class Props {
      *         {@code configurationDirectory}. The result will never be null, it will be {@link Prop#Empty} if not present.
      */
     public static Prop get(String named, Context context, Scope scope, File configurationDirectory) {
+        Prop prop = PropsSnapshot.get(scope, configurationDirectory).get(named, context);
+        if (prop != null) {
+            return prop;
+        }
+        // not within the snapshot (it may have been added since the snapshot was taken)
         PropFileChain chain = get(context, scope, configurationDirectory);
         return chain.get(named);
     }
@@ -144,7 +150,7 @@ public final class Props {
      *         variable is not set.
      */
     public static Scope getScope() {
-        String scope = System.getenv("ply$ply.scope"); // cannot use Props itself as this is called internally while resolving
+        String scope = Env.get("ply$ply.scope"); // cannot use Props itself as this is called internally while resolving
         return (scope == null ? Scope.Default : new Scope(scope));
     }
     
@@ -0,0 +1,140 @@
+package net.ocheyedan.ply.props;
+
+import net.ocheyedan.ply.Output;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands resolved properties from ply to the scripts it forks via a single file rather than one environment variable
+ * per property (see {@literal PropsExt#getPropsForEnv}).  The file's location is exported to the script as
+ * the environment variable {@link #ENV_NAME}.  The file is laid out as:
+ * <pre>
+ *     magic (int) version (int) context-count (int)
+ *     for each context: name (string) property-count (int)
+ *         for each property: name (string) filtered-value (string)
+ * </pre>
+ * where each string is its UTF-8 byte length (int) followed by its UTF-8 bytes.  The values are already filtered so
+ * the reading script never needs to resolve placeholders.  Only scripts which read their properties via
+ * {@link Props} (i.e., those depending upon {@literal ply-util}) can understand the file.
+ */
+final class PropsHandoff {
+
+    /**
+     * The name of the environment variable whose value is the path of the handoff file.
+     */
+    static final String ENV_NAME = "ply$ply.props.handoff";
+
+    private static final int MAGIC = 0x504c5950; // 'PLYP'
+
+    private static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Writes the filtered values of {@code props} into {@code to}.
+     * @param props to write
+     * @param to the file into which to write
+     * @return true if {@code props} were written successfully
+     */
+    static boolean write(Map<Context, PropFileChain> props, File to) {
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(to)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(props.size());
+            for (Map.Entry<Context, PropFileChain> entry : props.entrySet()) {
+                write(output, entry.getKey().name);
+                int count = 0;
+                for (PropFile.Prop ignored : entry.getValue().props()) {
+                    count++;
+                }
+                output.writeInt(count);
+                for (PropFile.Prop prop : entry.getValue().props()) {
+                    write(output, prop.name);
+                    write(output, prop.value());
+                }
+            }
+            return true;
+        } catch (IOException ioe) {
+            Output.print(ioe);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Memory-maps {@code from} and decodes its properties.
+     * @param from the handoff file
+     * @param scope with which to associate the decoded properties
+     * @return the decoded properties mapped by context or null if {@code from} could not be read
+     */
+    static Map<Context, PropFile> read(File from, Scope scope) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(from, "r");
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) {
+                Output.print("^warn^ Property handoff file %s is not understood, ignoring.", from.getPath());
+                return null;
+            }
+            int contexts = buffer.getInt();
+            Map<Context, PropFile> props = new ConcurrentHashMap<Context, PropFile>(contexts, 1.0f);
+            byte[] scratch = new byte[256];
+            for (int i = 0; i < contexts; i++) {
+                Context context = Context.named(read(buffer, scratch));
+                PropFile propFile = new PropFile(context, scope, PropFile.Loc.System);
+                int count = buffer.getInt();
+                for (int j = 0; j < count; j++) {
+                    String name = read(buffer, scratch);
+                    propFile.add(name, read(buffer, scratch));
+                }
+                props.put(context, propFile);
+            }
+            return props;
+        } catch (IOException ioe) {
+            Output.print(ioe);
+        } catch (RuntimeException re) { // BufferUnderflowException, etc; a truncated file
+            Output.print("^warn^ Property handoff file %s is corrupt, ignoring.", from.getPath());
+        } finally {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void write(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String read(ByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        byte[] bytes = (length <= scratch.length ? scratch : new byte[length]);
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    private PropsHandoff() { }
+
+}
@@ -0,0 +1,158 @@
+package net.ocheyedan.ply.props;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable snapshot of every property (of every {@link Context}) resolvable for a configuration directory and
+ * {@link Scope}.  The properties of each context are flattened into an open-addressing table keyed by name so that
+ * a lookup is one probe rather than a canonicalization of the configuration directory, several map lookups and a
+ * walk of the {@link PropFileChain} (ad-hoc, local and system files followed by the default scope's chain).
+ * A context's table is only created when the context is first consulted.
+ * Values are filtered upon first access (via the owning {@link PropFileChain}) so that unreferenced properties never
+ * produce filtering warnings; thereafter the filtered value is returned directly.
+ * Snapshots are shared across threads and are discarded whenever the {@link Loader} is invalidated (which happens
+ * when a loaded configuration file changes, see {@link Loader#isStale()}, or when an ad-hoc property is added, see
+ * {@link AdHoc#add(java.util.List)}).
+ */
+final class PropsSnapshot {
+
+    /**
+     * Snapshots mapped by the (uncanonicalized) path of their configuration directory and then by scope.
+     */
+    private static final ConcurrentMap<String, ConcurrentMap<Scope, PropsSnapshot>> snapshots
+            = new ConcurrentHashMap<String, ConcurrentMap<Scope, PropsSnapshot>>(3, 1.0f);
+
+    /**
+     * An empty table for contexts which have no properties within the snapshot.
+     */
+    private static final Table EMPTY = new Table(null);
+
+    /**
+     * @param scope of the snapshot
+     * @param configurationDirectory of the snapshot
+     * @return the snapshot of the properties for {@code scope} within {@code configurationDirectory}
+     */
+    static PropsSnapshot get(Scope scope, File configurationDirectory) {
+        String path = configurationDirectory.getPath();
+        ConcurrentMap<Scope, PropsSnapshot> scoped = snapshots.get(path);
+        if (scoped == null) {
+            ConcurrentMap<Scope, PropsSnapshot> created = new ConcurrentHashMap<Scope, PropsSnapshot>(2, 1.0f);
+            scoped = snapshots.putIfAbsent(path, created);
+            scoped = (scoped == null ? created : scoped);
+        }
+        PropsSnapshot snapshot = scoped.get(scope);
+        if (snapshot == null) {
+            snapshot = new PropsSnapshot(Props.get(scope, configurationDirectory));
+            PropsSnapshot existing = scoped.putIfAbsent(scope, snapshot);
+            snapshot = (existing == null ? snapshot : existing);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discards all snapshots.
+     */
+    static void invalidate() {
+        snapshots.clear();
+    }
+
+    private final Map<Context, PropFileChain> loaded;
+
+    /**
+     * The flattened properties of each context, created upon first access of the context so that the chains of
+     * contexts which are never consulted need not be built.
+     */
+    private final ConcurrentMap<Context, Table> tables;
+
+    private PropsSnapshot(Map<Context, PropFileChain> loaded) {
+        this.loaded = loaded;
+        this.tables = new ConcurrentHashMap<Context, Table>(13, 1.0f);
+    }
+
+    /**
+     * @param named the name of the property
+     * @param context the context of the property
+     * @return the filtered property or null if there is no property {@code named} within {@code context} in this
+     *         snapshot
+     */
+    PropFile.Prop get(String named, Context context) {
+        Table table = tables.get(context);
+        if (table == null) {
+            PropFileChain chain = loaded.get(context);
+            table = (chain == null ? EMPTY : new Table(chain));
+            Table existing = tables.putIfAbsent(context, table);
+            table = (existing == null ? table : existing);
+        }
+        return table.get(named);
+    }
+
+    /**
+     * The properties of one context within an open-addressing table keyed by name.
+     */
+    private static final class Table {
+
+        private final PropFileChain chain;
+
+        private final String[] names;
+
+        /**
+         * The filtered properties; null until first accessed.
+         */
+        private final AtomicReferenceArray<PropFile.Prop> values;
+
+        private final int mask;
+
+        private Table(PropFileChain chain) {
+            Set<String> chainNames = new HashSet<String>();
+            if (chain != null) {
+                chain.collectNames(chainNames);
+            }
+            int capacity = 2;
+            while (capacity < (chainNames.size() * 2)) {
+                capacity <<= 1;
+            }
+            this.chain = chain;
+            this.names = new String[capacity];
+            this.values = new AtomicReferenceArray<PropFile.Prop>(capacity);
+            this.mask = capacity - 1;
+            for (String name : chainNames) {
+                names[indexOf(name)] = name;
+            }
+        }
+
+        private PropFile.Prop get(String named) {
+            int index = indexOf(named);
+            if (names[index] == null) {
+                return null;
+            }
+            PropFile.Prop value = values.get(index);
+            if (value == null) {
+                value = chain.get(named);
+                values.set(index, value);
+            }
+            return value;
+        }
+
+        /**
+         * @return the index of the slot for {@code name}; either the slot containing it or the empty slot in which
+         *         it would be placed
+         */
+        private int indexOf(String name) {
+            int hash = name.hashCode();
+            hash ^= (hash >>> 16);
+            int index = hash & mask;
+            while ((names[index] != null) && !names[index].equals(name)) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+    }
+
+}
@@ -20,4 +20,10 @@ public class BitUtilTest {
         assertEquals("FFFFFFFF", BitUtil.toHexString(new byte[] { (byte) 0xff, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF }));
     }
 
+    @Test
+    public void sha1Hex() {
+        assertEquals("DA39A3EE5E6B4B0D3255BFEF95601890AFD80709", BitUtil.sha1Hex(""));
+        assertEquals("A9993E364706816ABA3E25717850C26C9CD0D89D", BitUtil.sha1Hex("abc"));
+    }
+
 }
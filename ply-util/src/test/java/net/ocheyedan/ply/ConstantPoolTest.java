@@ -0,0 +1,55 @@
+package net.ocheyedan.ply;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+public class ConstantPoolTest {
+
+    static class Sample {
+        static final String LITERAL = "Ljava/util/Map;";
+        Runnable[] runnables;
+        List<Iter> list() {
+            return null;
+        }
+        Object create() {
+            return new StringBuilder(LITERAL);
+        }
+    }
+
+    @Test
+    public void getReferencedClasses() throws IOException {
+        InputStream in = ConstantPoolTest.class.getResourceAsStream("ConstantPoolTest$Sample.class");
+        Set<String> referenced;
+        try {
+            referenced = ConstantPool.read(new DataInputStream(in)).getReferencedClasses();
+        } finally {
+            in.close();
+        }
+        assertTrue(referenced.contains("java/lang/Object"));
+        assertTrue(referenced.contains("java/lang/StringBuilder"));
+        assertTrue(referenced.contains("java/lang/Runnable")); // array descriptor
+        assertTrue(referenced.contains("java/util/List"));
+        assertTrue(referenced.contains("net/ocheyedan/ply/Iter")); // generic signature
+        assertFalse(referenced.contains("java/util/Map")); // string literals are not references
+    }
+
+    @Test
+    public void unknownTag() throws IOException {
+        byte[] classFile = new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 50, 0, 2, 99 };
+        try {
+            ConstantPool.read(new DataInputStream(new ByteArrayInputStream(classFile)));
+            fail("Expecting an IOException for an unknown constant pool tag.");
+        } catch (IOException ioe) {
+            assertEquals("Unknown constant pool tag 99.", ioe.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package net.ocheyedan.ply;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static junit.framework.Assert.*;
+
+public class DirectorySyncTest {
+
+    @Test
+    public void sync() throws IOException {
+        File base = File.createTempFile("sync", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            File classes = FileUtil.fromParts(base.getPath(), "classes");
+            File resources = FileUtil.fromParts(base.getPath(), "resources");
+            File dependency = FileUtil.fromParts(base.getPath(), "repo", "dep-1.0.jar");
+            write(FileUtil.fromParts(classes.getPath(), "net", "A.class"), "class-a");
+            write(FileUtil.fromParts(classes.getPath(), "net", "dup.txt"), "from-classes");
+            write(FileUtil.fromParts(resources.getPath(), "net", "dup.txt"), "from-resources");
+            write(dependency, "dependency");
+            File exploded = FileUtil.fromParts(base.getPath(), "exploded");
+            File stale = FileUtil.fromParts(exploded.getPath(), "WEB-INF", "classes", "old", "Stale.class");
+            write(stale, "stale");
+
+            sync(exploded, classes, resources, dependency, "manifest");
+            File a = FileUtil.fromParts(exploded.getPath(), "WEB-INF", "classes", "net", "A.class");
+            assertEquals("class-a", read(a));
+            assertEquals(FileUtil.fromParts(classes.getPath(), "net", "A.class").lastModified(), a.lastModified());
+            // later additions replace earlier
+            assertEquals("from-resources", read(FileUtil.fromParts(exploded.getPath(), "WEB-INF", "classes", "net", "dup.txt")));
+            assertEquals("dependency", read(FileUtil.fromParts(exploded.getPath(), "WEB-INF", "lib", "dep-1.0.jar")));
+            assertEquals("manifest", read(FileUtil.fromParts(exploded.getPath(), "META-INF", "Manifest.mf")));
+            // stale files and their directories are removed
+            assertFalse(stale.exists());
+            assertFalse(stale.getParentFile().exists());
+
+            // changes are synchronized; removed sources are removed
+            write(FileUtil.fromParts(classes.getPath(), "net", "A.class"), "class-a-changed");
+            assertTrue(FileUtil.fromParts(classes.getPath(), "net", "A.class").setLastModified(a.lastModified() + 10000L));
+            assertTrue(FileUtil.fromParts(resources.getPath(), "net", "dup.txt").delete());
+            sync(exploded, classes, resources, dependency, "manifest-changed");
+            assertEquals("class-a-changed", read(a));
+            assertEquals("from-classes", read(FileUtil.fromParts(exploded.getPath(), "WEB-INF", "classes", "net", "dup.txt")));
+            assertEquals("manifest-changed", read(FileUtil.fromParts(exploded.getPath(), "META-INF", "Manifest.mf")));
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void syncShared() throws IOException {
+        File base = File.createTempFile("sync", "");
+        base.delete();
+        base.mkdirs();
+        try {
+            File resources = FileUtil.fromParts(base.getPath(), "resources");
+            File build = FileUtil.fromParts(base.getPath(), "build", "resources");
+            File manifest = FileUtil.fromParts(base.getPath(), "build", "resources.sync");
+            File a = FileUtil.fromParts(resources.getPath(), "a.txt");
+            File b = FileUtil.fromParts(resources.getPath(), "dir", "b.txt");
+            write(a, "a");
+            write(b, "b");
+            write(FileUtil.fromParts(resources.getPath(), "CVS", "Entries"), "excluded");
+            File foreign = FileUtil.fromParts(build.getPath(), "generated", "foreign.txt");
+            write(foreign, "foreign");
+            File foreignRoot = FileUtil.fromParts(build.getPath(), "foreign.txt");
+            write(foreignRoot, "foreign");
+
+            // added
+            syncShared(resources, build, manifest);
+            File builtA = FileUtil.fromParts(build.getPath(), "a.txt");
+            File builtB = FileUtil.fromParts(build.getPath(), "dir", "b.txt");
+            assertEquals("a", read(builtA));
+            assertEquals("b", read(builtB));
+            assertEquals(a.lastModified(), builtA.lastModified());
+            assertFalse(FileUtil.fromParts(build.getPath(), "CVS").exists());
+            assertTrue(foreign.exists());
+            assertTrue(foreignRoot.exists());
+
+            // untouched
+            long untouchedStamp = builtB.lastModified();
+            syncShared(resources, build, manifest);
+            assertEquals(untouchedStamp, builtB.lastModified());
+
+            // changed
+            write(a, "a-changed");
+            assertTrue(a.setLastModified(builtA.lastModified() + 10000L));
+            syncShared(resources, build, manifest);
+            assertEquals("a-changed", read(builtA));
+            assertEquals(a.lastModified(), builtA.lastModified());
+
+            // removed (along with the directory synced for it), foreign files are untouched
+            assertTrue(b.delete());
+            assertTrue(b.getParentFile().delete());
+            syncShared(resources, build, manifest);
+            assertFalse(builtB.exists());
+            assertFalse(builtB.getParentFile().exists());
+            assertTrue(builtA.exists());
+            assertEquals("foreign", read(foreign));
+            assertEquals("foreign", read(foreignRoot));
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    private static void syncShared(File resources, File build, File manifest) {
+        DirectorySync sync = new DirectorySync(build, manifest);
+        sync.addDirectory(resources, "", new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return "CVS".equals(name);
+            }
+        }, false);
+        assertTrue(sync.sync());
+    }
+
+    private static void sync(File exploded, File classes, File resources, File dependency, String manifest)
+            throws IOException {
+        DirectorySync sync = new DirectorySync(exploded);
+        sync.addContent(manifest.getBytes("UTF-8"), "META-INF/Manifest.mf");
+        sync.addDirectory(classes, "WEB-INF/classes");
+        sync.addDirectory(resources, "WEB-INF/classes");
+        sync.addDirectory("WEB-INF/lib");
+        sync.addFile(dependency, "WEB-INF/lib/" + dependency.getName(), false);
+        assertTrue(sync.sync());
+    }
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            return reader.readLine();
+        } finally {
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package net.ocheyedan.ply;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNull;
+
+public class EnvTest {
+
+    @Test
+    public void replace() {
+        String path = System.getenv("PATH");
+        Map<String, String> client = new HashMap<String, String>();
+        client.put("PLY_ENV_TEST", "client");
+        try {
+            Env.replace(client);
+            client.put("PLY_ENV_TEST", "modified"); // copied when replaced
+            assertEquals("client", Env.get("PLY_ENV_TEST"));
+            // variables of the system environment not within the replacement are not visible
+            assertNull(Env.get("PATH"));
+            assertEquals(Collections.singletonMap("PLY_ENV_TEST", "client"), Env.get());
+
+            // injected values still take precedence
+            Env.inject(Collections.singletonMap("PLY_ENV_TEST", "injected"));
+            assertEquals("injected", Env.get("PLY_ENV_TEST"));
+            assertEquals("injected", Env.get().get("PLY_ENV_TEST"));
+            assertFalse(Env.get().containsKey("PATH"));
+        } finally {
+            Env.inject(null);
+            Env.replace(null);
+        }
+        assertNull(Env.get("PLY_ENV_TEST"));
+        assertEquals(path, Env.get("PATH"));
+    }
+
+}
@@ -0,0 +1,39 @@
+package net.ocheyedan.ply;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+
+public class OutputTest {
+
+    @Test
+    public void resolve() {
+        Output.reset();
+        Output.init("false", "true", "warn,info");
+        try {
+            assertEquals("[ply] building ply, 1.0", Output.resolve("^ply^ building ^b^%s^r^, %s", new Object[] { "ply", "1.0" }));
+            assertEquals("[err!] 100%", Output.resolve("^error^ 100%%", new Object[0]));
+            assertEquals("[warn] a^b c^d", Output.resolve("^warn^ %s", new Object[] { "a^b c^d" }));
+            // unknown and unterminated codes are left as-is
+            assertEquals("^unknown^ ^x", Output.resolve("^unknown^ ^x", new Object[0]));
+            // the closing '^' of an unknown code may open another
+            assertEquals("^unknown[info]", Output.resolve("^unknown^info^", new Object[0]));
+            // disabled log-levels are skipped, whether within the message or its arguments
+            assertNull(Output.resolve("^dbug^ %s", new Object[] { "debugging" }));
+            assertNull(Output.resolve("[^green^%s^r^] %s", new Object[] { "script", "^dbug^ debugging" }));
+            // codes are resolved in a single pass; 'warn' here is text between two codes, not a code itself
+            Output.reset();
+            Output.init("false", "true", "info");
+            assertEquals("warn", Output.resolve("^cyan^warn^r^", new Object[0]));
+            // undecorated output leaves the codes but still skips disabled log-levels
+            Output.reset();
+            Output.init("false", "false", "warn");
+            assertEquals("^b^bold^r^", Output.resolve("^b^%s^r^", new Object[] { "bold" }));
+            assertNull(Output.resolve("^info^ information", new Object[0]));
+        } finally {
+            Output.reset();
+        }
+    }
+
+}
@@ -6,16 +6,17 @@ import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
 import net.ocheyedan.ply.graph.Vertex;
 import net.ocheyedan.ply.mvn.MavenPom;
 import net.ocheyedan.ply.mvn.MavenPomParser;
+import net.ocheyedan.ply.props.PropFile;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
-import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.*;
 
 /**
  * User: blangel
@@ -32,22 +33,168 @@ public class DepsTest {
         if (!plyUtilPath.contains("ply-util")) {
             plyUtilPath = plyUtilPath.replace(".ply", FileUtil.pathFromParts("ply-util", ".ply"));
         }
-        String repoPath = FileUtil.pathFromParts(plyUtilPath, "src", "test", "resources", "mock-mvn-repo");
-        RepositoryAtom mockRepo = new RepositoryAtom(new URI("file://" + repoPath), RepositoryAtom.Type.maven);
+        // resolve from a copy so that neither resolution nor the ResolvedGraphCache write into the checked-in repo
+        // (and so that the graph is always resolved rather than served from a previous run's cache)
+        File mockRepoCopy = new File(System.getProperty("java.io.tmpdir"), "ply-mock-mvn-repo-" + System.currentTimeMillis());
+        assertTrue(FileUtil.copyDir(new File(FileUtil.pathFromParts(plyUtilPath, "src", "test", "resources", "mock-mvn-repo")),
+                                    mockRepoCopy));
+        try {
+            String repoPath = mockRepoCopy.getPath();
+            RepositoryAtom mockRepo = new RepositoryAtom(new URI("file://" + repoPath), RepositoryAtom.Type.maven);
 
-        MavenPom pom = parser.parsePom("file://" + repoPath + "/net/sf/ehcache/ehcache-core/2.2.0/ehcache-core-2.2.0.pom", mockRepo);
-        List<DependencyAtom> deps = Deps.parse(pom.dependencies);
-        assertEquals(3, deps.size());
+            MavenPom pom = parser.parsePom("file://" + repoPath + "/net/sf/ehcache/ehcache-core/2.2.0/ehcache-core-2.2.0.pom", mockRepo);
+            List<DependencyAtom> deps = Deps.parse(pom.dependencies);
+            assertEquals(3, deps.size());
 
-        Map<DependencyAtom, List<DependencyAtom>> synthetic = new HashMap<DependencyAtom, List<DependencyAtom>>(1);
-        for (DependencyAtom atom : deps) {
-            if ("slf4j-api".equals(atom.name)) {
-                synthetic.put(atom, Collections.<DependencyAtom>emptyList());
+            Map<DependencyAtom, List<DependencyAtom>> synthetic = new HashMap<DependencyAtom, List<DependencyAtom>>(1);
+            for (DependencyAtom atom : deps) {
+                if ("slf4j-api".equals(atom.name)) {
+                    synthetic.put(atom, Collections.<DependencyAtom>emptyList());
+                }
             }
+            RepositoryRegistry registry = new RepositoryRegistry(mockRepo, null, synthetic);
+            assertNull(ResolvedGraphCache.load(ResolvedGraphCache.getCacheFile(deps, registry)));
+            DirectedAcyclicGraph<Dep> graph = Deps.getDependencyGraph(deps, registry);
+            List<Vertex<Dep>> resolved = graph.getVertices();
+            assertEquals(3, resolved.size());
+        } finally {
+            FileUtil.delete(mockRepoCopy);
         }
-        DirectedAcyclicGraph<Dep> graph = Deps.getDependencyGraph(deps, new RepositoryRegistry(mockRepo, null, synthetic));
-        List<Vertex<Dep>> resolved = graph.getVertices();
-        assertEquals(3, resolved.size());
+    }
+
+    @Test
+    public void getDependencyGraphConcurrently() throws IOException, URISyntaxException {
+        File remote = new File(System.getProperty("java.io.tmpdir"), "ply-deps-test-" + System.currentTimeMillis());
+        try {
+            // a -> b, c, d; b -> d, e; c -> e, f; e -> f; d and f have no dependencies
+            writeArtifact(remote, "a", "b", "c", "d");
+            writeArtifact(remote, "b", "d", "e");
+            writeArtifact(remote, "c", "e", "f");
+            writeArtifact(remote, "d");
+            writeArtifact(remote, "e", "f");
+            writeArtifact(remote, "f");
+            RepositoryAtom remoteRepo = new RepositoryAtom(new URI("file://" + remote.getPath()), RepositoryAtom.Type.maven);
+            List<DependencyAtom> deps = Collections.singletonList(new DependencyAtom("net.ocheyedan.test", "a", "1.0"));
+
+            List<String> sequential = toStrings(Deps.getDependencyGraph(deps, createRegistry(remote, "sequential", remoteRepo),
+                                                                        true, 1, 1));
+            List<String> concurrent = toStrings(Deps.getDependencyGraph(deps, createRegistry(remote, "concurrent", remoteRepo),
+                                                                        true, 4, 2));
+            assertEquals(6, sequential.size());
+            assertEquals(sequential, concurrent);
+        } finally {
+            FileUtil.delete(remote);
+        }
+    }
+
+    @Test
+    public void getDependencyGraphFromCache() throws IOException, URISyntaxException {
+        File remote = new File(System.getProperty("java.io.tmpdir"), "ply-deps-cache-test-" + System.currentTimeMillis());
+        try {
+            writeArtifact(remote, "a", "b", "c");
+            writeArtifact(remote, "b", "c");
+            writeArtifact(remote, "c");
+            RepositoryAtom remoteRepo = new RepositoryAtom(new URI("file://" + remote.getPath()), RepositoryAtom.Type.maven);
+            RepositoryRegistry registry = createRegistry(remote, "local", remoteRepo);
+            List<DependencyAtom> deps = Collections.singletonList(new DependencyAtom("net.ocheyedan.test", "a", "1.0"));
+
+            File cacheFile = ResolvedGraphCache.getCacheFile(deps, registry);
+            assertNull(ResolvedGraphCache.load(cacheFile));
+            List<String> resolved = toStrings(Deps.getDependencyGraph(deps, registry, true, 1, 1));
+            DirectedAcyclicGraph<Dep> cached = ResolvedGraphCache.load(cacheFile);
+            assertNotNull(cached);
+            assertEquals(resolved, toStrings(cached));
+            assertEquals(resolved, toStrings(Deps.getDependencyGraph(deps, registry, true, 1, 1)));
+
+            // a different set of direct dependencies is cached separately
+            List<DependencyAtom> otherDeps = Collections.singletonList(new DependencyAtom("net.ocheyedan.test", "b", "1.0"));
+            assertFalse(cacheFile.equals(ResolvedGraphCache.getCacheFile(otherDeps, registry)));
+
+            // changing the local repository invalidates the cache
+            File localJar = FileUtil.fromParts(remote.getPath(), "local", "net.ocheyedan.test", "c", "1.0", "c-1.0.jar");
+            assertTrue(localJar.exists());
+            write(localJar, "changed");
+            assertNull(ResolvedGraphCache.load(cacheFile));
+            assertEquals(resolved, toStrings(Deps.getDependencyGraph(deps, registry, true, 1, 1)));
+            assertNotNull(ResolvedGraphCache.load(cacheFile));
+        } finally {
+            FileUtil.delete(remote);
+        }
+    }
+
+    private static RepositoryRegistry createRegistry(File remote, String localName, RepositoryAtom remoteRepo)
+            throws URISyntaxException {
+        RepositoryAtom localRepo = new RepositoryAtom(new URI("file://" + new File(remote, localName).getPath()),
+                                                      RepositoryAtom.Type.ply);
+        return new RepositoryRegistry(localRepo, Collections.singletonList(remoteRepo), null);
+    }
+
+    private static void writeArtifact(File repo, String name, String ... dependencies) throws IOException {
+        File dir = FileUtil.fromParts(repo.getPath(), "net", "ocheyedan", "test", name, "1.0");
+        dir.mkdirs();
+        StringBuilder pom = new StringBuilder("<project><modelVersion>4.0.0</modelVersion>");
+        pom.append("<groupId>net.ocheyedan.test</groupId><artifactId>").append(name).append("</artifactId>");
+        pom.append("<version>1.0</version><dependencies>");
+        for (String dependency : dependencies) {
+            pom.append("<dependency><groupId>net.ocheyedan.test</groupId><artifactId>").append(dependency);
+            pom.append("</artifactId><version>1.0</version></dependency>");
+        }
+        pom.append("</dependencies></project>");
+        write(new File(dir, name + "-1.0.pom"), pom.toString());
+        write(new File(dir, name + "-1.0.jar"), name);
+    }
+
+    @Test
+    public void convertToResolvedPropertiesFile() {
+        // a -> x, a -> y and b -> y; added in resolution order
+        DirectedAcyclicGraph<Dep> graph = new DirectedAcyclicGraph<Dep>();
+        Vertex<Dep> a = graph.addVertex(dep("a", false));
+        Vertex<Dep> x = graph.addVertex(dep("x", false));
+        Vertex<Dep> y = graph.addVertex(dep("y", false));
+        Vertex<Dep> b = graph.addVertex(dep("b", false));
+        Vertex<Dep> t = graph.addVertex(dep("t", true));
+        graph.addEdge(a, x);
+        graph.addEdge(a, y);
+        graph.addEdge(b, y);
+        graph.addEdge(x, t);
+
+        // depth-first pre-order (y before b) which determines the classpath order; transitive transient deps excluded
+        PropFile resolved = Deps.convertToResolvedPropertiesFile(graph);
+        List<String> names = new ArrayList<String>();
+        for (PropFile.Prop prop : resolved.props()) {
+            names.add(prop.name);
+        }
+        assertEquals(Arrays.asList("ply:a:1.0", "ply:x:1.0", "ply:y:1.0", "ply:b:1.0"), names);
+        assertEquals(FileUtil.pathFromParts("repo", "a", "a-1.0.jar"), resolved.get("ply:a:1.0").value());
+    }
+
+    private static Dep dep(String name, boolean transientDep) {
+        return new Dep(new DependencyAtom("ply", name, "1.0", transientDep), Collections.<DependencyAtom>emptyList(),
+                       FileUtil.pathFromParts("repo", name));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        writer.write(content);
+        writer.close();
+    }
+
+    /**
+     * @return each vertex (in order) followed by its edges
+     */
+    private static List<String> toStrings(DirectedAcyclicGraph<Dep> graph) {
+        List<String> strings = new ArrayList<String>();
+        List<Vertex<Dep>> vertices = graph.getVertices();
+        for (Vertex<Dep> vertex : vertices) {
+            StringBuilder buffer = new StringBuilder(vertex.getValue().toVersionString()).append(" ->");
+            for (Vertex<Dep> to : vertices) {
+                if (vertex.hasEdgeTo(to)) {
+                    buffer.append(' ').append(to.getValue().toVersionString());
+                }
+            }
+            strings.add(buffer.toString());
+        }
+        return strings;
     }
 
 }
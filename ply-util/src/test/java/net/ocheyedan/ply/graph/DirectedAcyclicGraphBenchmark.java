@@ -0,0 +1,77 @@
+package net.ocheyedan.ply.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Times the construction of {@link DirectedAcyclicGraph} objects of 10,000 vertices; once with edges added in
+ * topological order, once with edges added in reverse topological order and once with edges added randomly (including
+ * edges which would introduce a cycle).  Run via its main method, the optional argument is the number of iterations.
+ */
+public final class DirectedAcyclicGraphBenchmark {
+
+    private static final int VERTICES = 10000;
+
+    private static final int EDGES_PER_VERTEX = 4;
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        for (int i = 0; i < iterations; i++) {
+            System.out.printf("iteration %d: ordered %dms, reversed %dms, random %dms%n", (i + 1), ordered(),
+                              reversed(), random());
+        }
+    }
+
+    private static long ordered() {
+        long start = System.currentTimeMillis();
+        DirectedAcyclicGraph<Integer> graph = new DirectedAcyclicGraph<Integer>();
+        List<Vertex<Integer>> vertices = addVertices(graph);
+        Random random = new Random(VERTICES);
+        for (int i = 0; i < (VERTICES - 1); i++) {
+            for (int j = 0; j < EDGES_PER_VERTEX; j++) {
+                graph.addEdge(vertices.get(i), vertices.get(i + 1 + random.nextInt(VERTICES - i - 1)));
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long reversed() {
+        long start = System.currentTimeMillis();
+        DirectedAcyclicGraph<Integer> graph = new DirectedAcyclicGraph<Integer>();
+        List<Vertex<Integer>> vertices = addVertices(graph);
+        Random random = new Random(VERTICES);
+        for (int i = (VERTICES - 1); i > 0; i--) {
+            for (int j = 0; j < EDGES_PER_VERTEX; j++) {
+                graph.addEdge(vertices.get(i), vertices.get(random.nextInt(i)));
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long random() {
+        long start = System.currentTimeMillis();
+        DirectedAcyclicGraph<Integer> graph = new DirectedAcyclicGraph<Integer>();
+        List<Vertex<Integer>> vertices = addVertices(graph);
+        Random random = new Random(VERTICES);
+        for (int i = 0; i < (VERTICES * EDGES_PER_VERTEX); i++) {
+            try {
+                graph.addEdge(vertices.get(random.nextInt(VERTICES)), vertices.get(random.nextInt(VERTICES)));
+            } catch (Graph.CycleException gce) {
+                // expected
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static List<Vertex<Integer>> addVertices(DirectedAcyclicGraph<Integer> graph) {
+        List<Vertex<Integer>> vertices = new ArrayList<Vertex<Integer>>(VERTICES);
+        for (int i = 0; i < VERTICES; i++) {
+            vertices.add(graph.addVertex(i));
+        }
+        return vertices;
+    }
+
+    private DirectedAcyclicGraphBenchmark() { }
+
+}
@@ -4,7 +4,7 @@ import org.junit.Test;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
-import java.util.List;
+import java.util.*;
 
 import static junit.framework.Assert.*;
 
@@ -152,4 +152,48 @@ public class DirectedAcyclicGraphTest {
         assertTrue(graph.hasVertex("hello3"));
     }
 
+    @Test
+    public void addEdgeMaintainsTopologicalOrder() {
+        DirectedAcyclicGraph<Integer> graph = new DirectedAcyclicGraph<Integer>();
+        List<Vertex<Integer>> vertices = new ArrayList<Vertex<Integer>>();
+        for (int i = 0; i < 200; i++) {
+            vertices.add(graph.addVertex(i));
+        }
+        Random random = new Random(11L);
+        for (int i = 0; i < 2000; i++) {
+            Vertex<Integer> from = vertices.get(random.nextInt(vertices.size()));
+            Vertex<Integer> to = vertices.get(random.nextInt(vertices.size()));
+            boolean cycle = isReachable(to, from, new HashSet<Vertex<Integer>>());
+            try {
+                graph.addEdge(from, to);
+                assertFalse(cycle);
+                assertTrue(graph.hasEdge(from, to));
+            } catch (Graph.CycleException gce) {
+                assertTrue(cycle);
+                assertFalse(graph.hasEdge(from, to));
+                List<Vertex<?>> detected = gce.getCycle();
+                assertEquals(to, detected.get(0));
+                assertEquals(to, detected.get(detected.size() - 1));
+            }
+        }
+        assertNull(CycleDetector.hasCycle(graph));
+        for (Vertex<Integer> vertex : vertices) {
+            for (Vertex<Integer> child : vertex.getChildren()) {
+                assertTrue(vertex.order < child.order);
+            }
+        }
+    }
+
+    private static boolean isReachable(Vertex<Integer> from, Vertex<Integer> to, Set<Vertex<Integer>> visited) {
+        if (from == to) {
+            return true;
+        }
+        for (Vertex<Integer> child : from.getChildren()) {
+            if (visited.add(child) && isReachable(child, to, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
 }
@@ -0,0 +1,100 @@
+package net.ocheyedan.ply.graph;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static junit.framework.Assert.*;
+
+public class GraphsTest {
+
+    @Test
+    public void topologicalSort() {
+        DirectedAcyclicGraph<String> graph = createGraph();
+        assertEquals(Arrays.asList("a", "b", "e", "c", "d"), values(Graphs.topologicalSort(graph)));
+        assertTrue(Graphs.topologicalSort(new DirectedAcyclicGraph<String>()).isEmpty());
+    }
+
+    @Test
+    public void reverseTopologicalSort() {
+        DirectedAcyclicGraph<String> graph = createGraph();
+        assertEquals(Arrays.asList("d", "c", "b", "a", "e"), values(Graphs.reverseTopologicalSort(graph)));
+    }
+
+    @Test
+    public void getLevels() {
+        DirectedAcyclicGraph<String> graph = createGraph();
+        List<List<Vertex<String>>> levels = Graphs.getLevels(graph);
+        assertEquals(4, levels.size());
+        assertEquals(Arrays.asList("d"), values(levels.get(0)));
+        assertEquals(Arrays.asList("c"), values(levels.get(1)));
+        assertEquals(Arrays.asList("b", "e"), values(levels.get(2)));
+        assertEquals(Arrays.asList("a"), values(levels.get(3)));
+    }
+
+    @Test
+    public void visitInParallel() throws InterruptedException {
+        DirectedAcyclicGraph<String> graph = createGraph();
+        final List<String> visited = Collections.synchronizedList(new ArrayList<String>());
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Graphs.visitInParallel(graph, new Graphs.Visitor<String>() {
+                @Override public void visit(Vertex<String> vertex) {
+                    for (Vertex<String> child : vertex.getChildren()) {
+                        assertTrue(visited.contains(child.getValue()));
+                    }
+                    visited.add(vertex.getValue());
+                }
+            }, executor);
+            assertEquals(5, visited.size());
+            assertEquals(5, new HashSet<String>(visited).size());
+
+            visited.clear();
+            try {
+                Graphs.visitInParallel(graph, new Graphs.Visitor<String>() {
+                    @Override public void visit(Vertex<String> vertex) {
+                        visited.add(vertex.getValue());
+                        if ("c".equals(vertex.getValue())) {
+                            throw new IllegalStateException("c");
+                        }
+                    }
+                }, executor);
+                fail("Expected an IllegalStateException");
+            } catch (IllegalStateException ise) {
+                assertEquals("c", ise.getMessage());
+            }
+            assertEquals(Arrays.asList("d", "c"), visited);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @return a -> b -> c -> d, a -> c, e -> c
+     */
+    private static DirectedAcyclicGraph<String> createGraph() {
+        DirectedAcyclicGraph<String> graph = new DirectedAcyclicGraph<String>();
+        Vertex<String> a = graph.addVertex("a");
+        Vertex<String> b = graph.addVertex("b");
+        Vertex<String> c = graph.addVertex("c");
+        Vertex<String> d = graph.addVertex("d");
+        Vertex<String> e = graph.addVertex("e");
+        graph.addEdge(a, b);
+        graph.addEdge(b, c);
+        graph.addEdge(c, d);
+        graph.addEdge(a, c);
+        graph.addEdge(e, c);
+        return graph;
+    }
+
+    private static List<String> values(List<Vertex<String>> vertices) {
+        List<String> values = new ArrayList<String>(vertices.size());
+        for (Vertex<String> vertex : vertices) {
+            values.add(vertex.getValue());
+        }
+        return values;
+    }
+
+}
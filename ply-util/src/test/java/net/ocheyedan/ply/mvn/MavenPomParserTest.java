@@ -109,4 +109,32 @@ public class MavenPomParserTest {
         assertEquals("", properties.get("httpclient-osgi").value());
     }
 
+    @Test
+    public void parsePomWithCache() throws URISyntaxException {
+        RepositoryAtom mockRepo = new RepositoryAtom(new URI("classpath:mock-mvn-repo/"));
+        String slf4jApi = "classpath:mock-mvn-repo/org/slf4j/slf4j-api/1.5.11/slf4j-api-1.5.11.pom";
+        String slf4jJcl = "classpath:mock-mvn-repo/org/slf4j/slf4j-jcl/1.5.11/slf4j-jcl-1.5.11.pom";
+        MavenPomParser.Cache cache = new MavenPomParser.Cache();
+        MavenPom api = new MavenPomParser(cache).parsePom(slf4jApi, mockRepo);
+        int misses = cache.getMisses();
+        assertEquals(0, cache.getHits());
+        MavenPom jcl = new MavenPomParser(cache).parsePom(slf4jJcl, mockRepo);
+        assertTrue(cache.getHits() > 0); // the shared slf4j-parent
+        assertEquals(misses + 1, cache.getMisses()); // only slf4j-jcl itself is new
+
+        MavenPom uncachedApi = new MavenPomParser().parsePom(slf4jApi, mockRepo);
+        MavenPom uncachedJcl = new MavenPomParser().parsePom(slf4jJcl, mockRepo);
+        assertEquals(uncachedApi.version, api.version);
+        assertSameProps(uncachedApi.dependencies, api.dependencies);
+        assertEquals(uncachedJcl.version, jcl.version);
+        assertSameProps(uncachedJcl.dependencies, jcl.dependencies);
+    }
+
+    private static void assertSameProps(PropFile expected, PropFile actual) {
+        assertEquals(expected.size(), actual.size());
+        for (PropFile.Prop prop : expected.props()) {
+            assertEquals(prop.value(), actual.get(prop.name).value());
+        }
+    }
+
 }
@@ -0,0 +1,151 @@
+package net.ocheyedan.ply.props;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the time taken by {@link Filter} to filter values against that of the previous implementation (which
+ * replaced each {@literal ${...}} placeholder via {@link String#replaceAll(String, String)}).  The values reference
+ * properties whose own values contain placeholders so that both resolve recursively.  Both implementations keep
+ * their caches (of filtered values and of the chain's filtered properties) within an iteration and have them cleared,
+ * outside of the timing, between iterations.  Run via its main method, the optional argument is the number of
+ * iterations.
+ */
+public final class FilterBenchmark {
+
+    private static final int VALUES = 10000;
+
+    private static final Pattern propertyPlaceholderRegex = Pattern.compile("\\$\\{(.*?)\\}");
+
+    public static void main(String[] args) {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        Map<Context, PropFileChain> filterConsultant = new ConcurrentHashMap<Context, PropFileChain>();
+        PropFileChain chain = new PropFileChain(filterConsultant);
+        PropFile project = new PropFile(Context.named("project"), PropFile.Loc.System);
+        project.add("base.dir", "/home/user/ply-benchmark");
+        project.add("build.dir", "${base.dir}/target");
+        project.add("src.dir", "${base.dir}/src/main/java");
+        project.add("name", "ply-benchmark");
+        project.add("version", "1.0");
+        project.add("artifact.name", "${name}-${version}.jar");
+        filterConsultant.put(Context.named("project"), chain);
+        String[] values = new String[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = "${build.dir}/classes-" + i + ":${project.src.dir}/${artifact.name}:${build.dir}";
+        }
+        Context context = Context.named("project");
+        Legacy legacy = new Legacy(context, project);
+        for (int i = 0; i < iterations; i++) {
+            Filter.invalidate();
+            chain.set(project, PropFile.Loc.System); // clears the chain's cache of filtered properties
+            long start = System.nanoTime();
+            String[] filtered = new String[VALUES];
+            for (int j = 0; j < VALUES; j++) {
+                filtered[j] = Filter.filter(values[j], context, "benchmark", filterConsultant);
+            }
+            long filter = (System.nanoTime() - start) / 1000000L;
+            legacy.invalidate();
+            start = System.nanoTime();
+            String[] regexFiltered = new String[VALUES];
+            for (int j = 0; j < VALUES; j++) {
+                regexFiltered[j] = legacy.filter(values[j], "benchmark");
+            }
+            long regex = (System.nanoTime() - start) / 1000000L;
+            for (int j = 0; j < VALUES; j++) {
+                if (!filtered[j].equals(regexFiltered[j])) {
+                    throw new AssertionError(String.format("Filtered %s to %s but legacy filtered to %s.", values[j],
+                            filtered[j], regexFiltered[j]));
+                }
+            }
+            System.out.printf("iteration %d: filter %dms, regex %dms%n", (i + 1), filter, regex);
+        }
+    }
+
+    /**
+     * The previous implementation of {@link Filter#filter(String, Context, String, Map)} along with its cache and that
+     * of {@link PropFileChain} (through which property values were recursively filtered) for a single context.
+     */
+    private static final class Legacy {
+
+        private final Context context;
+
+        private final PropFile props;
+
+        private final Map<String, String> cache = new ConcurrentHashMap<String, String>();
+
+        private final Map<String, String> chainCache = new ConcurrentHashMap<String, String>();
+
+        private Legacy(Context context, PropFile props) {
+            this.context = context;
+            this.props = props;
+        }
+
+        private void invalidate() {
+            cache.clear();
+            chainCache.clear();
+        }
+
+        /**
+         * @return the filtered value of the property {@code named} or null if there is no such property
+         */
+        private String get(String named) {
+            String filtered = chainCache.get(named);
+            if (filtered != null) {
+                return filtered;
+            }
+            PropFile.Prop unfiltered = props.get(named);
+            if (unfiltered == PropFile.Prop.Empty) {
+                return null;
+            }
+            filtered = filter(unfiltered.unfilteredValue, "chain");
+            chainCache.put(named, filtered);
+            return filtered;
+        }
+
+        private String filter(String toFilter, String uniqueIdentifier) {
+            if (!toFilter.contains("${")) {
+                return toFilter;
+            }
+            String cacheKey = String.format("%s#%s", toFilter, uniqueIdentifier);
+            if (cache.containsKey(cacheKey)) {
+                return cache.get(cacheKey);
+            }
+            String filtered = toFilter;
+            Matcher matcher = propertyPlaceholderRegex.matcher(toFilter);
+            while (matcher.find()) {
+                String propertyPlaceholder = matcher.group(1);
+                String resolved = get(propertyPlaceholder);
+                if (resolved != null) {
+                    filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
+                            Matcher.quoteReplacement(resolved));
+                    continue;
+                }
+                int contextIndex = propertyPlaceholder.indexOf(".");
+                if (contextIndex != -1) {
+                    Context contextWithinPropertyPlaceholder = Context.named(propertyPlaceholder.substring(0, contextIndex));
+                    String propertyPlaceholderWithoutContext = propertyPlaceholder.substring(contextIndex + 1);
+                    if (context.equals(contextWithinPropertyPlaceholder)) {
+                        resolved = get(propertyPlaceholderWithoutContext);
+                        if (resolved != null) {
+                            filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
+                                    Matcher.quoteReplacement(resolved));
+                            continue;
+                        }
+                    }
+                }
+                String replacement = System.getenv(propertyPlaceholder);
+                if (replacement != null) {
+                    filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
+                            Matcher.quoteReplacement(replacement));
+                }
+            }
+            cache.put(cacheKey, filtered);
+            return filtered;
+        }
+    }
+
+    private FilterBenchmark() { }
+
+}
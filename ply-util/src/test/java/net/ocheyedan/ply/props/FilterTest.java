@@ -314,7 +314,7 @@ public class FilterTest {
         // ensure there's nothing vestigial in the resolvingCacheKeys property
         Field resolvingCacheKeysField = Filter.class.getDeclaredField("resolvingCacheKeys");
         resolvingCacheKeysField.setAccessible(true);
-        Set<String> resolvingCacheKeys = (Set<String>) resolvingCacheKeysField.get(null);
+        Set<?> resolvingCacheKeys = ((ThreadLocal<Set<?>>) resolvingCacheKeysField.get(null)).get();
         Assert.assertEquals(0, resolvingCacheKeys.size());
 
         // test circular reference
@@ -326,6 +326,11 @@ public class FilterTest {
         } catch (Filter.Circular pffc) {
             // expected
         }
+        Assert.assertEquals(0, resolvingCacheKeys.size());
+
+        // test placeholders do not span lines and unterminated placeholders are left as is
+        filtered = Filter.filter("${build\n.dir} ${build.dir} ${build.dir", Context.named("test"), "test", filterConsultant);
+        Assert.assertEquals("${build\n.dir} usr/src ${build.dir", filtered);
         
         // test scenario where non-scoped context has a value dependent upon a scoped context value
         filterConsultant.clear();
@@ -0,0 +1,111 @@
+package net.ocheyedan.ply.props;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+/**
+ * The previous implementation of {@link PropFileReader#Default} which parsed line by line via
+ * {@link BufferedReader#readLine()}; kept to compare against (see {@link PropFileReaderBenchmark} and
+ * {@link PropFileReaderTest#crossCheck()}).
+ */
+final class LegacyPropFileReader implements PropFileReader {
+
+    static final PropFileReader Instance = new LegacyPropFileReader();
+
+    private static final class ParseResult {
+        private final Boolean complete;
+        private final String key;
+        private final String value;
+        private ParseResult(Boolean complete, String key, String value) {
+            this.complete = complete;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    @Override public void load(BufferedReader reader, PropFile into) throws IOException {
+        if ((reader == null) || (into == null)) {
+            throw new NullPointerException("The BufferedReader and PropFile cannot be null.");
+        }
+        String line;
+        StringBuilder commentsBuffer = new StringBuilder();
+        ParseResult parsing = null;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() && (parsing == null)) {
+                // continue;
+            } else if (line.startsWith("#")) {
+                if (commentsBuffer.length() > 0) {
+                    commentsBuffer.append("\n");
+                }
+                commentsBuffer.append(line.substring(1));
+            } else {
+                ParseResult parsedLine = parse(line);
+                if (parsing != null) {
+                    if (!parsedLine.key.isEmpty()) {
+                        throw new PropFileReader.Invalid("Properties may only have one key.");
+                    }
+                    parsing = new ParseResult(false, parsing.key, String.format("%s%s", parsing.value, parsedLine.value));
+                } else {
+                    parsing = parsedLine;
+                }
+                if (parsedLine.complete) {
+                    if (parsing.key.isEmpty()) {
+                        throw new PropFileReader.Invalid("Keys must be non-empty.");
+                    } else if (into.contains(parsing.key)) {
+                        throw new PropFileReader.Invalid("Keys must be unique.");
+                    }
+                    into.add(parsing.key.trim(), parsing.value.trim(), commentsBuffer.toString());
+                    parsing = null;
+                    commentsBuffer = new StringBuilder();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("fallthrough")
+    private ParseResult parse(String line) {
+        StringBuilder buffer = new StringBuilder();
+        String key = "", value;
+        boolean isEscaped = false;
+        for (char character : line.toCharArray()) {
+            switch (character) {
+                case '\\':
+                    isEscaped = true;
+                    break;
+                case '=':
+                    if (isEscaped) {
+                        buffer.append('=');
+                    } else {
+                        key = buffer.toString();
+                        buffer = new StringBuilder();
+                    }
+                    isEscaped = false;
+                    break;
+                case ':':
+                case ' ':
+                    if (isEscaped && key.isEmpty()) {
+                        isEscaped = false; // eliminate ':' and ' ' escapes within key to conform to {@link Properties}
+                    }
+                default:
+                    if (isEscaped) {
+                        buffer.append('\\');
+                    }
+                    buffer.append(character);
+                    isEscaped = false;
+            }
+        }
+        if (isEscaped) {
+            buffer.append('\\');
+        }
+        value = buffer.toString();
+        if (value.endsWith("\\")) {
+            return new ParseResult(false, key, value.substring(0, value.length() - 1));
+        } else {
+            return new ParseResult(true, key, value);
+        }
+    }
+
+    private LegacyPropFileReader() { }
+
+}
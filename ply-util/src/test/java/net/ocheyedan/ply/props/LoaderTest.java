@@ -4,13 +4,13 @@ import net.ocheyedan.ply.FileUtil;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
-import static junit.framework.Assert.assertEquals;
-import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.*;
 
 /**
  * User: blangel
@@ -282,4 +282,53 @@ public class LoaderTest {
         
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void loadConcurrentlyAndChainLazily() throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException, IOException {
+        Method loadMethod = Loader.class.getDeclaredMethod("load", File.class, PropFile.Loc.class, Map.class);
+        loadMethod.setAccessible(true);
+        Method chainMethod = Loader.class.getDeclaredMethod("chain", Map.class, Map.class, Map.class);
+        chainMethod.setAccessible(true);
+
+        File configurationDirectory = File.createTempFile("ply-loader", "");
+        assertTrue(configurationDirectory.delete() && configurationDirectory.mkdir());
+        try {
+            for (int i = 0; i < 12; i++) {
+                PropFile propFile = new PropFile(Context.named("context" + i), PropFile.Loc.Local);
+                propFile.add("key", "value" + i);
+                PropFiles.store(propFile, FileUtil.pathFromParts(configurationDirectory.getPath(),
+                        "context" + i + (i < 10 ? "" : ".test") + ".properties"), true);
+            }
+            Map<Scope, Map<Context, PropFile>> propFiles = new ConcurrentHashMap<Scope, Map<Context, PropFile>>();
+            loadMethod.invoke(null, configurationDirectory, PropFile.Loc.Local, propFiles);
+            assertEquals(2, propFiles.size());
+            assertEquals(10, propFiles.get(Scope.Default).size());
+            assertEquals(2, propFiles.get(Scope.named("test")).size());
+            assertEquals("value3", propFiles.get(Scope.Default).get(Context.named("context3")).get("key").value());
+            assertEquals("value11", propFiles.get(Scope.named("test")).get(Context.named("context11")).get("key").value());
+
+            Map<Scope, Map<Context, PropFile>> empty = new ConcurrentHashMap<Scope, Map<Context, PropFile>>();
+            Map<Scope, Map<Context, PropFileChain>> chain = (Map<Scope, Map<Context, PropFileChain>>)
+                    chainMethod.invoke(null, empty, propFiles, empty);
+            Map<Context, PropFileChain> testChain = chain.get(Scope.named("test"));
+            assertEquals(12, testChain.size());
+            assertTrue(testChain.containsKey(Context.named("context0")));
+            assertNull(testChain.get(Context.named("nonexistent")));
+            PropFileChain context0 = testChain.get(Context.named("context0"));
+            assertSame(context0, testChain.get(Context.named("context0")));
+            assertEquals("value0", context0.get("key").value()); // inherited from the default scope
+            assertEquals(12, testChain.entrySet().size());
+            assertSame(context0, testChain.get(Context.named("context0")));
+            try {
+                testChain.put(Context.named("context0"), context0);
+                fail("Expecting an UnsupportedOperationException");
+            } catch (UnsupportedOperationException uoe) {
+                // expected
+            }
+        } finally {
+            FileUtil.delete(configurationDirectory);
+        }
+    }
+
 }
@@ -0,0 +1,52 @@
+package net.ocheyedan.ply.props;
+
+import java.io.*;
+
+/**
+ * Compares the time taken by {@link PropFileReader#Default} to load large properties files against that of the
+ * previous implementation ({@link LegacyPropFileReader}).  The files are shaped like those ply writes in bulk;
+ * {@literal resolved-deps} (a dependency atom mapped to its local repository path) and the properties form of
+ * {@literal changed-meta} (a file path mapped to its last-modified time and hash).  Run via its main method, the
+ * optional arguments are the number of iterations and the number of properties per file.
+ */
+public final class PropFileReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int iterations = (args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        int size = (args.length > 1 ? Integer.parseInt(args[1]) : 50000);
+        File resolvedDeps = File.createTempFile("resolved-deps", ".properties");
+        resolvedDeps.deleteOnExit();
+        File changedMeta = File.createTempFile("changed-meta", ".properties");
+        changedMeta.deleteOnExit();
+        PropFile deps = new PropFile(Context.named("resolved-deps"), PropFile.Loc.Local);
+        PropFile meta = new PropFile(Context.named("changed-meta"), PropFile.Loc.Local);
+        for (int i = 0; i < size; i++) {
+            deps.add("net.ocheyedan.group" + (i % 100) + ":artifact-" + i + ":1.0." + i,
+                    "/home/user/.ply/repo/net/ocheyedan/group" + (i % 100) + "/artifact-" + i + "/1.0." + i
+                            + "/artifact-" + i + "-1.0." + i + ".jar", (i % 10 == 0 ? " transitive of " + i : ""));
+            meta.add("/home/user/project/src/main/java/net/ocheyedan/pkg" + (i % 50) + "/Type" + i + ".java",
+                    (1332000000000L + i) + "," + Integer.toHexString(i * 31) + "0a0b0c0d0e0f");
+        }
+        PropFiles.store(deps, resolvedDeps.getPath(), true);
+        PropFiles.store(meta, changedMeta.getPath(), true);
+        for (int i = 0; i < iterations; i++) {
+            System.out.printf("iteration %d: resolved-deps [ reader %dms, legacy %dms ], changed-meta [ reader %dms, legacy %dms ]%n",
+                    (i + 1), time(PropFileReader.Default, resolvedDeps), time(LegacyPropFileReader.Instance, resolvedDeps),
+                    time(PropFileReader.Default, changedMeta), time(LegacyPropFileReader.Instance, changedMeta));
+        }
+    }
+
+    private static long time(PropFileReader reader, File file) throws IOException {
+        long start = System.nanoTime();
+        BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
+        try {
+            reader.load(bufferedReader, new PropFile(Context.named("benchmark"), PropFile.Loc.Local));
+        } finally {
+            bufferedReader.close();
+        }
+        return (System.nanoTime() - start) / 1000000L;
+    }
+
+    private PropFileReaderBenchmark() { }
+
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 
 import java.io.*;
 import java.util.Iterator;
+import java.util.Random;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.fail;
@@ -104,4 +105,43 @@ public class PropFileReaderTest {
         assertEquals(" notice the blank space between, both before and after this comment", prop.comments());
     }
 
+    /**
+     * Loads random inputs (built from the characters significant to the format) with both {@link PropFileReader#Default}
+     * and {@link LegacyPropFileReader} and checks that they agree on the properties (and their order and comments) or
+     * on the {@link PropFileReader.Invalid} message.
+     */
+    @Test
+    public void crossCheck() throws IOException {
+        char[] alphabet = { 'a', 'b', ' ', '\t', '=', ':', '\\', '#', '!', '\n', '\r', '\u00e9' };
+        Random random = new Random(42L);
+        for (int i = 0; i < 50000; i++) {
+            char[] input = new char[random.nextInt(40)];
+            for (int j = 0; j < input.length; j++) {
+                input[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String expected = load(LegacyPropFileReader.Instance, input);
+            String actual = load(PropFileReader.Default, input);
+            assertEquals(String.format("Input [%s]", new String(input)), expected, actual);
+        }
+    }
+
+    /**
+     * @return a description of the properties {@code reader} loads from {@code input} or of the {@link PropFileReader.Invalid}
+     *         thrown
+     */
+    private static String load(PropFileReader reader, char[] input) throws IOException {
+        PropFile propFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        try {
+            reader.load(new BufferedReader(new CharArrayReader(input)), propFile);
+        } catch (PropFileReader.Invalid pfri) {
+            return "invalid: " + pfri.getMessage();
+        }
+        StringBuilder description = new StringBuilder();
+        for (PropFile.Prop prop : propFile.props()) {
+            description.append('[').append(prop.name).append("]=[").append(prop.value()).append("]#[")
+                    .append(prop.comments()).append("]\n");
+        }
+        return description.toString();
+    }
+
 }
@@ -0,0 +1,53 @@
+package net.ocheyedan.ply.props;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static junit.framework.Assert.*;
+
+public class PropsHandoffTest {
+
+    @Test
+    public void writeAndRead() throws IOException {
+        Map<Context, PropFileChain> props = new ConcurrentHashMap<Context, PropFileChain>();
+        PropFileChain project = new PropFileChain(props);
+        PropFile projectFile = new PropFile(Context.named("project"), PropFile.Loc.System);
+        projectFile.add("build.dir", "target");
+        projectFile.add("artifact", "${build.dir}/ply-\u00e9t\u00e9.jar");
+        project.set(projectFile, PropFile.Loc.System);
+        props.put(Context.named("project"), project);
+        PropFileChain empty = new PropFileChain(props);
+        empty.set(new PropFile(Context.named("empty"), PropFile.Loc.System), PropFile.Loc.System);
+        props.put(Context.named("empty"), empty);
+
+        File handoff = File.createTempFile("ply-props-", ".bin");
+        try {
+            assertTrue(PropsHandoff.write(props, handoff));
+            Map<Context, PropFile> read = PropsHandoff.read(handoff, Scope.named("test"));
+            assertNotNull(read);
+            assertEquals(2, read.size());
+            PropFile readProject = read.get(Context.named("project"));
+            assertEquals(2, readProject.size());
+            assertEquals("target", readProject.get("build.dir").value());
+            // values are handed off filtered
+            assertEquals("target/ply-\u00e9t\u00e9.jar", readProject.get("artifact").value());
+            assertEquals(Scope.named("test"), readProject.get("artifact").scope());
+            assertEquals(PropFile.Loc.System, readProject.get("artifact").loc());
+            assertTrue(read.get(Context.named("empty")).isEmpty());
+
+            // truncated
+            FileOutputStream output = new FileOutputStream(handoff);
+            output.write(new byte[] { 0x50, 0x4c, 0x59, 0x50, 0, 0, 0, 1, 0, 0, 0, 1 });
+            output.close();
+            assertNull(PropsHandoff.read(handoff, Scope.Default));
+        } finally {
+            handoff.delete();
+        }
+    }
+
+}
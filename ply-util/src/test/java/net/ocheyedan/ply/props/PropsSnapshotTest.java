@@ -0,0 +1,78 @@
+package net.ocheyedan.ply.props;
+
+import net.ocheyedan.ply.FileUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static junit.framework.Assert.*;
+
+public class PropsSnapshotTest {
+
+    @Test
+    public void get() {
+        File configurationDirectory = getConfigurationDirectory();
+        Context loader = Context.named("loader");
+        Loader.invalidate();
+        try {
+            PropsSnapshot snapshot = PropsSnapshot.get(Scope.Default, configurationDirectory);
+            assertSame(snapshot, PropsSnapshot.get(Scope.Default, configurationDirectory));
+            assertEquals("mock_value", snapshot.get("mock_key", loader).value());
+            assertEquals("mock_value_2", snapshot.get("mock_key_2", loader).value());
+            assertNull(snapshot.get("mock_key_3", loader));
+            assertNull(snapshot.get("mock_key", Context.named("other")));
+
+            // scoped values take precedence over, and missing scopes default to, the default scope's values
+            PropsSnapshot testSnapshot = PropsSnapshot.get(Scope.named("test"), configurationDirectory);
+            assertNotSame(snapshot, testSnapshot);
+            assertEquals("mock_value_test", testSnapshot.get("mock_key", loader).value());
+            assertEquals("mock_value", PropsSnapshot.get(Scope.named("other"), configurationDirectory)
+                    .get("mock_key", loader).value());
+
+            // equivalent to the chains from which the snapshot was taken
+            PropFileChain chain = Props.get(loader, Scope.named("test"), configurationDirectory);
+            assertSame(chain.get("mock_key_2"), testSnapshot.get("mock_key_2", loader));
+            assertSame(chain.get("mock_key_2"), Props.get("mock_key_2", loader, Scope.named("test"), configurationDirectory));
+            assertSame(PropFile.Prop.Empty, Props.get("mock_key_3", loader, Scope.named("test"), configurationDirectory));
+
+            Loader.invalidate();
+            assertNotSame(snapshot, PropsSnapshot.get(Scope.Default, configurationDirectory));
+        } finally {
+            Loader.invalidate();
+        }
+    }
+
+    @Test
+    public void adHocAfterSnapshot() {
+        File configurationDirectory = getConfigurationDirectory();
+        Context loader = Context.named("loader");
+        Loader.invalidate();
+        try {
+            PropsSnapshot snapshot = PropsSnapshot.get(Scope.Default, configurationDirectory);
+            assertEquals("mock_value", snapshot.get("mock_key", loader).value());
+            assertNull(snapshot.get("mock_key_3", loader));
+
+            AdHoc.add(Arrays.asList("loader.mock_key=ad_hoc_value", "loader.mock_key_3=ad_hoc_value_3"));
+            PropsSnapshot overridden = PropsSnapshot.get(Scope.Default, configurationDirectory);
+            assertNotSame(snapshot, overridden);
+            assertEquals("ad_hoc_value", overridden.get("mock_key", loader).value());
+            assertEquals("ad_hoc_value_3", overridden.get("mock_key_3", loader).value());
+            assertEquals("ad_hoc_value", Props.get("mock_key", loader, Scope.Default, configurationDirectory).value());
+        } finally {
+            AdHoc.adHocProps.clear();
+            Loader.invalidate();
+        }
+    }
+
+    private static File getConfigurationDirectory() {
+        File base;
+        if (FileUtil.getCanonicalPath(new File("./")).contains("ply-util")) {
+            base = new File("./");
+        } else {
+            base = new File("ply-util/");
+        }
+        return FileUtil.fromParts(base.getPath(), "src/test/resources/mock-prop-loader-files");
+    }
+
+}
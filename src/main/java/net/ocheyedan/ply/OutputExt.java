@@ -25,4 +25,8 @@ public class OutputExt {
         Output.init(coloredOutput, decorated, logLevels);
     }
 
+    public static void reset() {
+        Output.reset();
+    }
+
 }
@@ -47,27 +47,64 @@ public final class CommandLineParser {
             return new Prepend(parseArgs(Iter.sized(args)));
         } else if ("update".equals(args[0]) || args[0].endsWith(":update")) { 
             return new Update(parseArgs(Iter.sized(args)));
+        } else if ("daemon".equals(args[0])) {
+            return new Daemon(parseArgs(Iter.sized(args)));
         } else {
             return new Build(parseArgs(Iter.sized(args)));
         }
     }
 
+    /**
+     * Parses {@code clArgs} into {@link Args}.  Arguments prefixed with {@literal -P} are ad-hoc properties and
+     * {@literal -j N} (or {@literal -jN}) is shorthand for the ad-hoc property {@literal ply.parallel=N}; a
+     * {@literal -j} without a number uses the number of available processors.
+     * @param clArgs to parse
+     * @return the parsed {@link Args}
+     */
     public static Args parseArgs(Iter.Sized<String> clArgs) {
         if ((clArgs == null) || (clArgs.size() < 1)) {
             return NIL;
         }
         List<String> args = new ArrayList<String>(clArgs.size());
         List<String> adHocProps = new ArrayList<String>(2);
+        boolean parallelism = false;
         for (String arg : clArgs) {
+            if (parallelism) {
+                parallelism = false;
+                if (isPositiveInteger(arg)) {
+                    adHocProps.add("ply.parallel=" + arg);
+                    continue;
+                }
+                adHocProps.add("ply.parallel=" + Runtime.getRuntime().availableProcessors());
+            }
             if (arg.startsWith("-P")) {
                 if (arg.length() > 2) {
                     adHocProps.add(arg.substring(2));
                 }
+            } else if ("-j".equals(arg)) {
+                parallelism = true;
+            } else if (arg.startsWith("-j") && isPositiveInteger(arg.substring(2))) {
+                adHocProps.add("ply.parallel=" + arg.substring(2));
             } else {
                 args.add(arg);
             }
         }
+        if (parallelism) {
+            adHocProps.add("ply.parallel=" + Runtime.getRuntime().availableProcessors());
+        }
         return new Args(args, adHocProps);
     }
 
+    private static boolean isPositiveInteger(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return !value.matches("0+");
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package net.ocheyedan.ply.cmd;
+
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.PlyUtil;
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.daemon.Client;
+import net.ocheyedan.ply.daemon.Server;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A {@link Command} to start (in the foreground) or stop the ply daemon for the current project.
+ * See {@link Server}.
+ */
+public final class Daemon extends Command.ProjectReliant {
+
+    public Daemon(Args args) {
+        super(args);
+    }
+
+    /**
+     * @return true if this is a request to stop the running daemon
+     */
+    public boolean isStop() {
+        return ((args.args.size() > 1) && "stop".equals(args.args.get(1)));
+    }
+
+    @Override protected void runBeforeAssumptionsCheck() {
+        OutputExt.init();
+    }
+
+    @Override protected void runAfterAssumptionsCheck() {
+        File daemonFile = Server.getDaemonFile(PlyUtil.LOCAL_PROJECT_DIR);
+        if (isStop()) {
+            // reaching here means the daemon did not handle the request itself, try directly before giving up
+            if (daemonFile.exists() && (Client.invoke(daemonFile, new String[] { "daemon", "stop" }) == 0)) {
+                return;
+            }
+            daemonFile.delete();
+            Output.print("^warn^ no ply daemon running for this project.");
+            return;
+        }
+        try {
+            Server server = new Server(PlyUtil.LOCAL_PROJECT_DIR);
+            Output.print("^ply^ daemon listening on port ^b^%d^r^ (stop with ^b^ply daemon stop^r^).", server.getPort());
+            server.serve();
+        } catch (IOException ioe) {
+            Output.print("^error^ could not start the ply daemon.");
+            Output.print(ioe);
+            throw new SystemExit(1);
+        }
+    }
+
+}
@@ -18,12 +18,14 @@ public final class Usage extends Command {
 
     @Override public void run() {
         OutputExt.init();
-        Output.print("ply <^b^command^r^> [--usage|--help|--version] [-PadHocProp]");
+        Output.print("ply <^b^command^r^> [--usage|--help|--version] [-j N] [-PadHocProp]");
         Output.print("  where ^b^command^r^ is either:");
         Output.print("    ^b^init^r^");
         Output.print("        initializes the current directory as a ply project");
         Output.print("    ^b^update^r^");
         Output.print("        checks for updates to the ply system itself");
+        Output.print("    ^b^daemon^r^ [stop]");
+        Output.print("        runs (in the foreground) or stops a daemon which subsequent ply invocations within the project use");
         Output.print("    ^b^get^r^ [propName] [from ^b^context^r^] [--unfiltered]");
         Output.print("        lists all project properties or, if specified, those like '^b^propName^r^' within '^b^context^r^'");
         Output.print("    ^b^get-all^r^ [propName] [from ^b^context^r^] [--unfiltered]");
@@ -38,6 +40,7 @@ public final class Usage extends Command {
         Output.print("        removes '^b^propName^b^' from '^b^context^r^' for the project");
         Output.print("    <^b^build-scripts^r^>");
         Output.print("        a space delimited list of build scripts; i.e., ^b^ply clean \"myscript opt1\" compile test^r^");
+        Output.print("  and ^b^-j N^r^ builds up to ^b^N^r^ independent submodules concurrently (i.e., ^b^-Pply.parallel=N^r^)");
         Output.print("  and ^b^-PadHocProp^r^ is zero to many ad-hoc properties prefixed with ^b^-P^r^ in the format ^b^context[#scope].propName=propValue^r^");
     }
 
@@ -149,6 +149,13 @@ public final class Alias extends Script {
      */
     static final Map<String, Resolver> cache = new HashMap<String, Resolver>();
 
+    /**
+     * Clears the cache of resolved aliases so that they will be re-resolved upon next access.
+     */
+    public static void invalidate() {
+        cache.clear();
+    }
+
     /**
      * @param configDirectory the project configuration directory from which to get an alias named {@code named}
      * @param scope from which to find alias {@code named}
@@ -5,12 +5,16 @@ import net.ocheyedan.ply.cmd.Args;
 import net.ocheyedan.ply.cmd.Command;
 import net.ocheyedan.ply.exec.Exec;
 import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.Props;
 import net.ocheyedan.ply.submodules.Submodule;
 import net.ocheyedan.ply.submodules.Submodules;
 
 import java.io.File;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +64,8 @@ public final class Build extends Command.ProjectReliant {
                 Output.print("^ply^   ^b^%s^r^", submodule.name);
             }
             Map<String, Float> submodulesTimeMap = new LinkedHashMap<String, Float>(orderedSubmodules.size());
+            DirectedAcyclicGraph<Submodule> submoduleGraph = getSubmoduleGraph(orderedSubmodules);
+            int parallelism = getParallelism();
 
             // first run the args against the current project
             Output.print("^ply^");
@@ -68,44 +74,50 @@ public final class Build extends Command.ProjectReliant {
             if (!Exec.invoke(PlyUtil.LOCAL_PROJECT_DIR, executions)) {
                 throw new SystemExit(1);
             }
-            int maxSubmoduleName = projectName.length();
-            float seconds = printTime(projectStart, String.format("^b^%s^r^ ", projectName));
-            float maxSubmoduleTime = seconds;
-            submodulesTimeMap.put(projectName, seconds);
+            float projectSeconds = printTime(projectStart, String.format("^b^%s^r^ ", projectName));
+            submodulesTimeMap.put(projectName, projectSeconds);
             Output.print("^ply^");
 
-            for (Submodule submodule : orderedSubmodules) {
-                Output.print("^ply^ building ^b^%s^r^", submodule);
-                if (submodule.name.length() > maxSubmoduleName) {
-                    maxSubmoduleName = submodule.name.length();
+            if (parallelism > 1) {
+                Output.print("^ply^ building submodules using ^b^%d^r^ threads", parallelism);
+                if (!new ParallelBuild(args, parallelism).build(orderedSubmodules, submoduleGraph, submodulesTimeMap)) {
+                    throw new SystemExit(1);
                 }
-                long submoduleStart = System.currentTimeMillis();
-                File submodulePlyDir = FileUtil
-                        .fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name, ".ply");
-                if (!submodulePlyDir.exists()) {
-                    File submoduleDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name);
-                    if (!submoduleDir.exists()) {
-                        Output.print("^warn^ directory ^b^%s^r^ doesn't exist.", submodule.name);
-                    } else {
-                        Output.print("^warn^ submodule ^b^%s^r^ is not a ply project, skipping.", submodule.name);
+            } else {
+                for (Submodule submodule : orderedSubmodules) {
+                    Output.print("^ply^ building ^b^%s^r^", submodule);
+                    long submoduleStart = System.currentTimeMillis();
+                    File submodulePlyDir = FileUtil
+                            .fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name, ".ply");
+                    if (!submodulePlyDir.exists()) {
+                        File submoduleDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name);
+                        if (!submoduleDir.exists()) {
+                            Output.print("^warn^ directory ^b^%s^r^ doesn't exist.", submodule.name);
+                        } else {
+                            Output.print("^warn^ submodule ^b^%s^r^ is not a ply project, skipping.", submodule.name);
+                        }
+                        Output.print("^ply^");
+                        continue;
                     }
+                    File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(submodulePlyDir), "config");
+                    List<Execution> submoduleExecutions = Module.resolve(args, submoduleConfigDir);
+                    if (!Exec.invoke(submodulePlyDir, submoduleExecutions)) {
+                        throw new SystemExit(1);
+                    }
+                    float seconds = printTime(submoduleStart, String.format("^b^%s^r^ ", submodule.name));
+                    submodulesTimeMap.put(submodule.name, seconds);
                     Output.print("^ply^");
-                    continue;
                 }
-                File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(submodulePlyDir), "config");
-                List<Execution> submoduleExecutions = Module.resolve(args, submoduleConfigDir);
-                if (!Exec.invoke(submodulePlyDir, submoduleExecutions)) {
-                    throw new SystemExit(1);
-                }
-                seconds = printTime(submoduleStart, String.format("^b^%s^r^ ", submodule.name));
-                if (seconds > maxSubmoduleTime) {
-                    maxSubmoduleTime = seconds;
-                }
-                submodulesTimeMap.put(submodule.name, seconds);
-                Output.print("^ply^");
-
             }
+            float wallClockSeconds = ((System.currentTimeMillis() - projectStart) / 1000.0f);
+            float criticalPathSeconds = projectSeconds + getCriticalPath(submoduleGraph, submodulesTimeMap);
 
+            int maxSubmoduleName = 0;
+            float maxSubmoduleTime = 0.0f;
+            for (String module : submodulesTimeMap.keySet()) {
+                maxSubmoduleName = Math.max(maxSubmoduleName, module.length());
+                maxSubmoduleTime = Math.max(maxSubmoduleTime, submodulesTimeMap.get(module));
+            }
             Output.print("^ply^ Build Summary");
             maxSubmoduleName = Math.min(maxSubmoduleName, 80); // don't be ridiculous
             int maxTimeLength = String.valueOf(Float.valueOf(maxSubmoduleTime).intValue()).length();
@@ -116,19 +128,78 @@ public final class Build extends Command.ProjectReliant {
                 String timePadString = (timePad == 0 ? "" : String.valueOf(timePad));
                 Output.print("^ply^ ^b^%s^r^%" + pad + "s%" + timePadString + "s^b^%.3f^r^ seconds", module, "", "", time);
             }
+            Output.print("^ply^ wall-clock ^b^%.3f^r^ seconds, critical-path ^b^%.3f^r^ seconds", wallClockSeconds,
+                         criticalPathSeconds);
 
         }
 
         printTime(start, "");
     }
     
+    /**
+     * @return the number of submodules to build concurrently (from {@literal ply.parallel}, see {@literal -j}).
+     */
+    private static int getParallelism() {
+        String parallel = Props.get("parallel", Context.named("ply")).value();
+        try {
+            return (parallel.isEmpty() ? 1 : Math.max(1, Integer.parseInt(parallel)));
+        } catch (NumberFormatException nfe) {
+            Output.print("^warn^ invalid ^b^ply.parallel^r^ value ^b^%s^r^, building submodules serially.", parallel);
+            return 1;
+        }
+    }
+
+    /**
+     * @param submodules for which to create a dependency graph
+     * @return the dependency graph of {@code submodules}
+     */
+    private static DirectedAcyclicGraph<Submodule> getSubmoduleGraph(List<Submodule> submodules) {
+        try {
+            return Submodules.getSubmoduleGraph(PlyUtil.LOCAL_CONFIG_DIR, submodules);
+        } catch (Graph.CycleException gce) {
+            Output.print("^error^ circular dependency between submodules: ^b^%s^r^", gce.getCycle());
+            throw new SystemExit(1);
+        }
+    }
+
+    /**
+     * @param graph the dependency graph of the submodules
+     * @param times the time, in seconds, taken to build each submodule (keyed by name)
+     * @return the time, in seconds, of the longest chain of dependent submodules; i.e., the least amount of time
+     *         in which the submodules could have been built given unlimited parallelism
+     */
+    private static float getCriticalPath(DirectedAcyclicGraph<Submodule> graph, Map<String, Float> times) {
+        Map<Vertex<Submodule>, Float> paths = new HashMap<Vertex<Submodule>, Float>();
+        float criticalPath = 0.0f;
+        for (Vertex<Submodule> vertex : graph.getVertices()) {
+            criticalPath = Math.max(criticalPath, getCriticalPath(vertex, times, paths));
+        }
+        return criticalPath;
+    }
+
+    private static float getCriticalPath(Vertex<Submodule> vertex, Map<String, Float> times,
+                                         Map<Vertex<Submodule>, Float> paths) {
+        Float path = paths.get(vertex);
+        if (path != null) {
+            return path;
+        }
+        float longestChild = 0.0f;
+        for (Vertex<Submodule> child : vertex.getChildren()) {
+            longestChild = Math.max(longestChild, getCriticalPath(child, times, paths));
+        }
+        Float time = times.get(vertex.getValue().name);
+        path = longestChild + (time == null ? 0.0f : time);
+        paths.put(vertex, path);
+        return path;
+    }
+
     /**
      * Prints the amount of time used since {@code start} along with the memory usage.
      * @param start time of some task/execution/build
      * @param suppliment to indicate what has completed (should end with a blank space)
      * @return the amount of time in seconds since {@code start}
      */
-    private float printTime(long start, String suppliment) {
+    static float printTime(long start, String suppliment) {
         long end = System.currentTimeMillis();
         float seconds = ((end - start) / 1000.0f);
         long totalMem = Runtime.getRuntime().totalMemory() / 1024 / 1024;
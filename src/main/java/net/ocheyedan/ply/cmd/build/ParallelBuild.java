@@ -0,0 +1,215 @@
+package net.ocheyedan.ply.cmd.build;
+
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.PlyUtil;
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.cmd.Args;
+import net.ocheyedan.ply.exec.Exec;
+import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graphs;
+import net.ocheyedan.ply.graph.Vertex;
+import net.ocheyedan.ply.submodules.Submodule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds submodules concurrently on a bounded pool of threads.  A submodule is only built once all the submodules
+ * upon which it depends (its children within the submodule graph) have been built.  The output of each submodule
+ * is buffered and printed in its entirety once the submodule has been built.  After the first failure no new
+ * submodules are started; those already started are allowed to complete.
+ */
+final class ParallelBuild {
+
+    /**
+     * Thrown to stop scheduling once a submodule has failed to build.
+     */
+    @SuppressWarnings("serial")
+    private static final class Failure extends RuntimeException { }
+
+    /**
+     * The outcome of building a single submodule.
+     */
+    private static final class Result {
+        private final Submodule submodule;
+        private final boolean success;
+        /**
+         * Time, in seconds, to build or null if the submodule was skipped.
+         */
+        private final Float seconds;
+        private final byte[] output;
+        private Result(Submodule submodule, boolean success, Float seconds, byte[] output) {
+            this.submodule = submodule;
+            this.success = success;
+            this.seconds = seconds;
+            this.output = output;
+        }
+    }
+
+    /**
+     * Routes writes to the buffer of the current thread, if it has one, otherwise to the original stream.
+     */
+    private static final class ThreadBufferedOutputStream extends OutputStream {
+
+        private final PrintStream original;
+
+        private final ThreadLocal<ByteArrayOutputStream> buffers = new ThreadLocal<ByteArrayOutputStream>();
+
+        private ThreadBufferedOutputStream(PrintStream original) {
+            this.original = original;
+        }
+
+        @Override public void write(int b) throws IOException {
+            ByteArrayOutputStream buffer = buffers.get();
+            if (buffer == null) {
+                original.write(b);
+            } else {
+                buffer.write(b);
+            }
+        }
+
+        @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteArrayOutputStream buffer = buffers.get();
+            if (buffer == null) {
+                original.write(bytes, offset, length);
+            } else {
+                buffer.write(bytes, offset, length);
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            if (buffers.get() == null) {
+                original.flush();
+            }
+        }
+    }
+
+    private final Args args;
+
+    private final int parallelism;
+
+    ParallelBuild(Args args, int parallelism) {
+        this.args = args;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Builds {@code submodules}, in parallel where allowed by {@code graph}.
+     * @param submodules the sorted submodules to build
+     * @param graph the dependency graph of {@code submodules} (whose vertices are in the order of {@code submodules}
+     *              which is used to order submodules which are ready at the same time)
+     * @param submodulesTimeMap into which to place the time (in seconds) taken to build each submodule
+     * @return false if any submodule failed to build
+     */
+    boolean build(List<Submodule> submodules, DirectedAcyclicGraph<Submodule> graph,
+                  Map<String, Float> submodulesTimeMap) {
+        // resolve on this thread as alias resolution is not thread-safe and may exit the build
+        final Map<Submodule, List<Execution>> executions = new HashMap<Submodule, List<Execution>>(submodules.size());
+        for (Submodule submodule : submodules) {
+            File submodulePlyDir = getPlyDir(submodule);
+            if (submodulePlyDir.exists()) {
+                File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(submodulePlyDir), "config");
+                executions.put(submodule, Module.resolve(args, submoduleConfigDir));
+            }
+        }
+        final PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        final ThreadBufferedOutputStream buffered = new ThreadBufferedOutputStream(originalOut);
+        PrintStream bufferedPrintStream = new PrintStream(buffered, true);
+        System.setOut(bufferedPrintStream);
+        System.setErr(bufferedPrintStream);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ply-submodule-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final Map<String, Float> times = new ConcurrentHashMap<String, Float>(submodules.size());
+        boolean failed = false;
+        try {
+            // a submodule is built once all the submodules upon which it depends (its children) have been built
+            Graphs.visitInParallel(graph, new Graphs.Visitor<Submodule>() {
+                @Override public void visit(Vertex<Submodule> vertex) {
+                    Submodule submodule = vertex.getValue();
+                    Result result = buildSubmodule(submodule, executions.get(submodule), buffered);
+                    synchronized (originalOut) {
+                        originalOut.write(result.output, 0, result.output.length);
+                        originalOut.flush();
+                    }
+                    if (result.seconds != null) {
+                        times.put(result.submodule.name, result.seconds);
+                    }
+                    if (!result.success) {
+                        throw new Failure(); // no new submodules are started, those in-flight finish
+                    }
+                }
+            }, executor);
+        } catch (Failure f) {
+            failed = true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } finally {
+            executor.shutdownNow();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+        }
+        for (Submodule submodule : submodules) {
+            if (times.containsKey(submodule.name)) {
+                submodulesTimeMap.put(submodule.name, times.get(submodule.name));
+            }
+        }
+        return !failed;
+    }
+
+    private Result buildSubmodule(Submodule submodule, List<Execution> executions, ThreadBufferedOutputStream buffered) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        buffered.buffers.set(buffer);
+        try {
+            Output.print("^ply^ building ^b^%s^r^", submodule);
+            if (executions == null) {
+                File submoduleDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name);
+                if (!submoduleDir.exists()) {
+                    Output.print("^warn^ directory ^b^%s^r^ doesn't exist.", submodule.name);
+                } else {
+                    Output.print("^warn^ submodule ^b^%s^r^ is not a ply project, skipping.", submodule.name);
+                }
+                Output.print("^ply^");
+                return new Result(submodule, true, null, buffer.toByteArray());
+            }
+            long start = System.currentTimeMillis();
+            boolean success;
+            try {
+                success = Exec.invoke(getPlyDir(submodule), executions);
+            } catch (SystemExit se) {
+                success = (se.exitCode == 0);
+            } catch (RuntimeException re) {
+                Output.print(re);
+                success = false;
+            }
+            Float seconds = null;
+            if (success) {
+                seconds = Build.printTime(start, String.format("^b^%s^r^ ", submodule.name));
+                Output.print("^ply^");
+            }
+            return new Result(submodule, success, seconds, buffer.toByteArray());
+        } finally {
+            buffered.buffers.remove();
+        }
+    }
+
+    private static File getPlyDir(Submodule submodule) {
+        return FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name, ".ply");
+    }
+
+}
@@ -0,0 +1,132 @@
+package net.ocheyedan.ply.daemon;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Forwards a ply invocation to a running {@link Server}.  The first argument is the daemon file (see
+ * {@link Server#getDaemonFile(java.io.File)}) and the remaining are the arguments given to ply.  If there is no
+ * running server or the server refuses the request this exits with {@link Frame#FALLBACK_EXIT_CODE} to signal the
+ * invoking script to run ply itself.  Along with the arguments, the client's working directory, environment and java
+ * executable (the system property {@literal ply.java}) are sent so that the request is run as if by the client itself.
+ * <p/>
+ * Note, this class is loaded into a minimal VM and so should only depend upon the {@literal JDK} and {@link Frame}.
+ */
+public final class Client {
+
+    public static void main(String[] args) {
+        if ((args == null) || (args.length < 1)) {
+            System.exit(Frame.FALLBACK_EXIT_CODE);
+        }
+        String[] plyArgs = new String[args.length - 1];
+        System.arraycopy(args, 1, plyArgs, 0, plyArgs.length);
+        System.exit(invoke(new File(args[0]), plyArgs));
+    }
+
+    /**
+     * @param daemonFile of the running server
+     * @param args to send to the server
+     * @return the exit code of the request or {@link Frame#FALLBACK_EXIT_CODE} if the request could not be handled
+     *         by a server
+     */
+    public static int invoke(File daemonFile, String[] args) {
+        Properties daemon = new Properties();
+        Socket socket = new Socket();
+        try {
+            InputStream daemonIn = new FileInputStream(daemonFile);
+            try {
+                daemon.load(daemonIn);
+            } finally {
+                daemonIn.close();
+            }
+            socket.connect(new InetSocketAddress("127.0.0.1", Integer.parseInt(daemon.getProperty("port"))), 500);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeUTF(daemon.getProperty("token"));
+            out.writeUTF(new File(".").getCanonicalPath());
+            out.writeUTF(System.getProperty("ply.java", ""));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            Map<String, String> environment = System.getenv();
+            out.writeInt(environment.size());
+            for (Map.Entry<String, String> variable : environment.entrySet()) {
+                out.writeUTF(variable.getKey());
+                out.writeUTF(variable.getValue());
+            }
+            out.flush();
+            startStdinPipe(out);
+            return readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())));
+        } catch (IOException ioe) {
+            return Frame.FALLBACK_EXIT_CODE;
+        } catch (NumberFormatException nfe) {
+            return Frame.FALLBACK_EXIT_CODE;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+    }
+
+    private static int readResponse(DataInputStream in) throws IOException {
+        boolean printed = false;
+        byte[] buffer = new byte[8192];
+        while (true) {
+            int type = in.read();
+            switch (type) {
+                case Frame.STDOUT:
+                    int length = in.readInt();
+                    if (length > buffer.length) {
+                        buffer = new byte[length];
+                    }
+                    in.readFully(buffer, 0, length);
+                    System.out.write(buffer, 0, length);
+                    System.out.flush();
+                    printed = true;
+                    break;
+                case Frame.EXIT:
+                    return in.readInt();
+                case Frame.REFUSED:
+                    return Frame.FALLBACK_EXIT_CODE;
+                default:
+                    // the server died; only safe to re-run if nothing of the request has been seen
+                    return (printed ? 1 : Frame.FALLBACK_EXIT_CODE);
+            }
+        }
+    }
+
+    /**
+     * Forwards this process's standard input to the server until it is closed.
+     * @param out to which to forward standard input
+     */
+    private static void startStdinPipe(final DataOutputStream out) {
+        Thread pipe = new Thread(new Runnable() {
+            @Override public void run() {
+                byte[] buffer = new byte[1024];
+                try {
+                    int read;
+                    while ((read = System.in.read(buffer)) != -1) {
+                        out.writeByte(Frame.STDIN);
+                        out.writeInt(read);
+                        out.write(buffer, 0, read);
+                        out.flush();
+                    }
+                    out.writeByte(Frame.STDIN_CLOSED);
+                    out.flush();
+                } catch (IOException ioe) {
+                    // request has completed
+                }
+            }
+        });
+        pipe.setDaemon(true);
+        pipe.start();
+    }
+
+    private Client() { }
+
+}
@@ -0,0 +1,152 @@
+package net.ocheyedan.ply.daemon;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The wire protocol between the {@link Client} and the {@link Server}.  After the request header (the token, the
+ * client's working directory, its java executable, its arguments and its environment) both sides exchange frames; a
+ * frame is a single type byte followed by a type specific payload.
+ * <pre>
+ *   client -> server : {@link #STDIN} (length, bytes) | {@link #STDIN_CLOSED}
+ *   server -> client : {@link #STDOUT} (length, bytes) | {@link #EXIT} (exit code) | {@link #REFUSED}
+ * </pre>
+ */
+final class Frame {
+
+    /**
+     * Bytes read from the client's standard input.
+     */
+    static final byte STDIN = 'i';
+
+    /**
+     * The client's standard input has been closed.
+     */
+    static final byte STDIN_CLOSED = 'e';
+
+    /**
+     * Bytes to be written to the client's standard output.
+     */
+    static final byte STDOUT = 'o';
+
+    /**
+     * The request has completed; followed by the exit code.
+     */
+    static final byte EXIT = 'x';
+
+    /**
+     * The server will not handle the request; the client should fall back to running ply itself.
+     */
+    static final byte REFUSED = 'r';
+
+    /**
+     * The exit code used by the {@link Client} to signal the invoking script to fall back to running ply itself.
+     */
+    static final int FALLBACK_EXIT_CODE = 254;
+
+    /**
+     * Writes everything as {@link #STDOUT} frames.
+     */
+    static final class Out extends OutputStream {
+
+        private final DataOutputStream out;
+
+        Out(DataOutputStream out) {
+            this.out = out;
+        }
+
+        @Override public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length < 1) {
+                return;
+            }
+            synchronized (out) {
+                out.writeByte(STDOUT);
+                out.writeInt(length);
+                out.write(bytes, offset, length);
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads the payload of {@link #STDIN} frames until a {@link #STDIN_CLOSED} frame is encountered (or the underlying
+     * stream ends).  Note, {@link #available()} only reports the bytes remaining from frames already read and so never
+     * blocks; neither on the underlying stream nor on a concurrent {@link #read(byte[], int, int)}.
+     */
+    static final class In extends InputStream {
+
+        private final DataInputStream in;
+
+        private byte[] buffer = new byte[0];
+
+        private int position = 0;
+
+        private boolean closed = false;
+
+        /**
+         * The number of bytes remaining within {@link #buffer}; kept apart so that {@link #available()} needn't
+         * synchronize with a (blocked) read.
+         */
+        private volatile int buffered = 0;
+
+        In(DataInputStream in) {
+            this.in = in;
+        }
+
+        @Override public synchronized int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return (read == -1 ? -1 : (single[0] & 0xFF));
+        }
+
+        @Override public synchronized int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position >= buffer.length) {
+                if (closed || !fill()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(length, buffer.length - position);
+            System.arraycopy(buffer, position, bytes, offset, read);
+            position += read;
+            buffered = (buffer.length - position);
+            return read;
+        }
+
+        @Override public int available() {
+            return buffered;
+        }
+
+        /**
+         * @return false if there is no more input
+         * @throws IOException on error reading from the underlying stream
+         */
+        private boolean fill() throws IOException {
+            int type = in.read();
+            if (type == STDIN) {
+                buffer = new byte[in.readInt()];
+                in.readFully(buffer);
+                position = 0;
+                buffered = buffer.length;
+                return true;
+            }
+            closed = true;
+            return false;
+        }
+    }
+
+    private Frame() { }
+
+}
@@ -0,0 +1,260 @@
+package net.ocheyedan.ply.daemon;
+
+import net.ocheyedan.ply.Env;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.cmd.Args;
+import net.ocheyedan.ply.cmd.Command;
+import net.ocheyedan.ply.cmd.CommandLineParser;
+import net.ocheyedan.ply.cmd.Daemon;
+import net.ocheyedan.ply.cmd.Update;
+import net.ocheyedan.ply.cmd.build.Alias;
+import net.ocheyedan.ply.props.AdHoc;
+import net.ocheyedan.ply.props.PropsExt;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A long running ply process which handles requests from {@link Client} objects for a single project.  Keeping the
+ * process running keeps the JVM warm and allows the loaded properties, resolved aliases and resolved environment
+ * properties to be reused across invocations.  These caches are invalidated whenever a loaded configuration
+ * directory changes, ad-hoc properties have been applied or the client's environment differs from that of the
+ * previous request.  Each request is run with the client's environment (see {@link Env#replace(java.util.Map)}).
+ * <p/>
+ * Requests are handled serially.  The server only listens on the loopback interface and only accepts requests
+ * which present the token written (readable only by the owner) to the {@link #getDaemonFile(java.io.File)}.
+ * Requests are refused (and the {@link Client} falls back to running ply itself) if they originate from a different
+ * working directory, are from a client using a different java executable than the server or are for commands which
+ * cannot be run within the server (i.e., {@literal update}).
+ */
+public final class Server {
+
+    /**
+     * @param projectPlyDir the {@literal .ply} directory of the project
+     * @return the file containing the port and token of the server for the project at {@code projectPlyDir}
+     */
+    public static File getDaemonFile(File projectPlyDir) {
+        return FileUtil.fromParts(projectPlyDir.getPath(), "daemon.properties");
+    }
+
+    private final File daemonFile;
+
+    private final String workingDirectory;
+
+    private final String token;
+
+    /**
+     * The java executable used by this server (and so by the scripts it forks).
+     */
+    private final String java;
+
+    /**
+     * The environment of the previous request's client or null if there has been no request.
+     */
+    private Map<String, String> environment;
+
+    private final ServerSocket serverSocket;
+
+    private volatile boolean running;
+
+    public Server(File projectPlyDir) throws IOException {
+        this.daemonFile = getDaemonFile(projectPlyDir);
+        this.workingDirectory = FileUtil.getCanonicalPath(new File("."));
+        this.token = Long.toHexString(new SecureRandom().nextLong());
+        this.java = System.getProperty("ply.java", "");
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    }
+
+    /**
+     * @return the port on which this server is listening
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Handles requests until stopped via a {@literal ply daemon stop} request.
+     * @throws IOException if the daemon file could not be written
+     */
+    public void serve() throws IOException {
+        writeDaemonFile();
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override public void run() {
+                daemonFile.delete();
+            }
+        }));
+        running = true;
+        try {
+            while (running) {
+                Socket socket = serverSocket.accept();
+                try {
+                    handle(socket);
+                } catch (IOException ioe) {
+                    // client went away; nothing to do but wait for the next
+                } finally {
+                    close(socket);
+                }
+            }
+        } finally {
+            daemonFile.delete();
+            serverSocket.close();
+        }
+    }
+
+    /**
+     * Writes the port and token to the {@link #daemonFile}.  The token is written to a temporary file which is
+     * restricted to the owner before anything is written to it and then renamed to the {@link #daemonFile}.
+     * @throws IOException if the file could not be written or restricted to the owner
+     */
+    private void writeDaemonFile() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("port", String.valueOf(getPort()));
+        properties.setProperty("token", token);
+        File tmp = File.createTempFile("daemon", ".properties", daemonFile.getParentFile());
+        try {
+            if (!tmp.setReadable(false, false) || !tmp.setReadable(true, true)
+                    || !tmp.setWritable(false, false) || !tmp.setWritable(true, true)) {
+                throw new IOException(String.format("Could not restrict %s to its owner.", tmp.getPath()));
+            }
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(daemonFile) && !(daemonFile.delete() && tmp.renameTo(daemonFile))) {
+                throw new IOException(String.format("Could not rename %s to %s.", tmp.getPath(), daemonFile.getPath()));
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        String requestToken = in.readUTF();
+        String requestWorkingDirectory = in.readUTF();
+        String requestJava = in.readUTF();
+        String[] args = new String[in.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = in.readUTF();
+        }
+        int variables = in.readInt();
+        Map<String, String> requestEnvironment = new HashMap<String, String>(variables);
+        for (int i = 0; i < variables; i++) {
+            requestEnvironment.put(in.readUTF(), in.readUTF());
+        }
+        if (!token.equals(requestToken) || !workingDirectory.equals(requestWorkingDirectory)) {
+            refuse(out);
+            return;
+        }
+        if (!java.equals(requestJava)) {
+            Output.print("^dbug^ refused request using ^b^%s^r^ as the daemon uses ^b^%s^r^.", requestJava, java);
+            refuse(out);
+            return;
+        }
+        Command command = CommandLineParser.parse(args);
+        if (command instanceof Update) {
+            refuse(out);
+            return;
+        }
+        Runnable runnable = command;
+        if (command instanceof Daemon) {
+            runnable = createDaemonCommand((Daemon) command);
+        }
+        int exitCode = run(runnable, command.args, requestEnvironment, in, out);
+        out.writeByte(Frame.EXIT);
+        out.writeInt(exitCode);
+        out.flush();
+    }
+
+    /**
+     * @param command the {@literal daemon} command sent to this server
+     * @return a runnable which stops this server if {@code command} is a stop request and otherwise fails as this
+     *         server is already running
+     */
+    private Runnable createDaemonCommand(final Daemon command) {
+        return new Runnable() {
+            @Override public void run() {
+                OutputExt.init();
+                if (command.isStop()) {
+                    running = false;
+                    Output.print("^ply^ daemon stopped.");
+                } else {
+                    Output.print("^warn^ daemon already running on port ^b^%d^r^.", getPort());
+                    throw new SystemExit(1);
+                }
+            }
+        };
+    }
+
+    /**
+     * Runs {@code command} with the standard streams of this process redirected to/from the client.
+     * @param command to run
+     * @param args the parsed arguments of the request (from which ad-hoc properties are applied)
+     * @param requestEnvironment the environment of the client
+     * @param in the request's input from which to read the client's standard input
+     * @param out the request's output to which to write standard output and error
+     * @return the exit code of running {@code command}
+     */
+    private int run(Runnable command, Args args, Map<String, String> requestEnvironment, DataInputStream in,
+                    DataOutputStream out) {
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        InputStream originalIn = System.in;
+        PrintStream requestOut = new PrintStream(new Frame.Out(out), true);
+        System.setOut(requestOut);
+        System.setErr(requestOut);
+        System.setIn(new Frame.In(in));
+        try {
+            // the environment is read when loading and filtering properties and so is also a source of staleness
+            boolean environmentChanged = !requestEnvironment.equals(environment);
+            environment = requestEnvironment;
+            Env.replace(requestEnvironment);
+            if (environmentChanged || PropsExt.isStale()) {
+                PropsExt.invalidate();
+                Alias.invalidate();
+            }
+            OutputExt.reset();
+            AdHoc.add(args.adHocProps);
+            command.run();
+            return 0;
+        } catch (SystemExit se) {
+            OutputExt.init(); // ensure the queue-ed messages have been printed
+            return se.exitCode;
+        } catch (RuntimeException re) {
+            OutputExt.init();
+            Output.print(re);
+            return 1;
+        } finally {
+            requestOut.flush();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            System.setIn(originalIn);
+        }
+    }
+
+    private static void refuse(DataOutputStream out) throws IOException {
+        out.writeByte(Frame.REFUSED);
+        out.flush();
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package net.ocheyedan.ply.exec;
 
+import net.ocheyedan.ply.Env;
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.OutputExt;
@@ -51,17 +52,80 @@ public final class Exec {
      */
     private static boolean invoke(Execution execution, File projectRoot) {
         File projectConfigDir = FileUtil.fromParts(projectRoot.getPath(), ".ply", "config");
+        long start = System.currentTimeMillis();
+        String outputScriptName = buildExecutionName(execution);
+        Map<String, String> environment = PropsExt.getPropsForEnv(projectConfigDir, execution.script.scope);
+        Integer result = invokeInProcess(execution, projectRoot, projectConfigDir, environment, outputScriptName);
+        if (result == null) {
+            result = fork(execution, projectRoot, projectConfigDir, environment, outputScriptName);
+            if (result == null) {
+                return false;
+            }
+        }
+
+        printTime(start, outputScriptName);
+
+        if (result == 0) {
+            return true;
+        }
+        Output.print("^error^ script ^green^%s^r^ failed [ exit code = %d ].", execution.script.unparsedName, result);
+        return false;
+    }
+
+    /**
+     * Invokes {@code execution} within this process if it is a trusted jar script (see
+     * {@link JarExec#createInProcessInvocation(Execution, File)}).  As in-process scripts share this process's working
+     * directory, only executions whose {@code projectRoot} is the working directory are eligible.
+     * @param execution to invoke
+     * @param projectRoot the root directory of the project
+     * @param projectConfigDir the configuration directory of the project
+     * @param environment the resolved environment properties
+     * @param outputScriptName the name with which to prefix the script's output
+     * @return the exit code or null if {@code execution} was not invoked
+     */
+    private static Integer invokeInProcess(Execution execution, File projectRoot, File projectConfigDir,
+                                           Map<String, String> environment, String outputScriptName) {
+        if (!execution.executionArgs[0].endsWith(".jar")
+                || !FileUtil.getCanonicalPath(projectRoot).equals(FileUtil.getCanonicalPath(new File(".")))
+                || !InProcessExec.isSupported()) {
+            return null;
+        }
+        InProcessExec.Invocation invocation = JarExec.createInProcessInvocation(execution, projectConfigDir);
+        if (invocation == null) {
+            return null;
+        }
+        Output.print("^dbug^ invoking %s in-process", invocation.mainClass);
+        return InProcessExec.invoke(invocation, environment, outputScriptName);
+    }
+
+    /**
+     * Invokes {@code execution} within a new process and routes all output to this process's output stream.
+     * The resolved properties are exported to the process as {@code environment} unless {@code execution} is a jar
+     * script configured to have them handed off within a file (see {@link JarExec#isHandoff(Execution, File)}).
+     * @param execution to invoke
+     * @param projectRoot for which to set the root directory for the process handling the {@code execution}
+     * @param projectConfigDir the configuration directory of the project
+     * @param environment the resolved environment properties
+     * @param outputScriptName the name with which to prefix the script's output
+     * @return the exit code or null if the invocation of {@code execution} failed for any reason.
+     */
+    private static Integer fork(Execution execution, File projectRoot, File projectConfigDir,
+                                Map<String, String> environment, String outputScriptName) {
+        if (JarExec.isHandoff(execution, projectConfigDir)) {
+            Map<String, String> handoff = PropsExt.getPropsForHandoff(projectConfigDir, execution.script.scope);
+            if (handoff != null) {
+                environment = handoff;
+            }
+        }
         execution = handleNonNativeExecutable(execution, projectConfigDir);
         String script = Output.isDebug() ? buildScriptName(execution.executionArgs) : "";
         try {
-            long start = System.currentTimeMillis();
-
             ProcessBuilder processBuilder = new ProcessBuilder(execution.executionArgs).redirectErrorStream(true).directory(projectRoot);
+            Map<String, String> processEnvironment = processBuilder.environment();
+            processEnvironment.clear(); // Env's may differ from this process's own (i.e., if running as a daemon)
+            processEnvironment.putAll(Env.get());
+            processEnvironment.putAll(environment);
 
-            Map<String, String> environment = processBuilder.environment();
-            environment.putAll(PropsExt.getPropsForEnv(projectConfigDir, execution.script.scope));
-
-            String outputScriptName = buildExecutionName(execution);
             Output.print("^dbug^ invoking %s", script);
 
             // the Process thread reaps the child if the parent (this) is terminated
@@ -71,25 +135,27 @@ public final class Exec {
             // take the child's input and reformat for output on parent process
             BufferedReader processStdout = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String processStdoutLine;
-            while ((processStdoutLine = processStdout.readLine()) != null) {
-                OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, processStdoutLine);
+            try {
+                while ((processStdoutLine = processStdout.readLine()) != null) {
+                    OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, processStdoutLine);
+                    // write in bulk; once the child pauses (or its output is exhausted)
+                    if (!processStdout.ready()) {
+                        Output.flush();
+                    }
+                }
+            } finally {
+                Output.flush();
             }
             int result = process.waitFor();
             STDIN_PROCESS_PIPE.pausePipe();
-
-            printTime(start, outputScriptName);
-
-            if (result == 0) {
-                return true;
-            }
-            Output.print("^error^ script ^green^%s^r^ failed [ exit code = %d ].", execution.script.unparsedName, result);
+            return result;
         } catch (IOException ioe) {
             Output.print("^error^ executing script ^green^%s^r^", execution.script.unparsedName);
             Output.print(ioe);
         } catch (InterruptedException ie) {
             Output.print(ie);
         }
-        return false;
+        return null;
     }
 
     private static float printTime(long start, String script) {
@@ -0,0 +1,433 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Invokes trusted jar scripts within ply's own process rather than forking a new VM for each.  Each script is loaded
+ * by its own {@link URLClassLoader} (whose parent is the system class-loader's parent so that ply's own classes
+ * are not visible) which is cached according to the script's classpath and environment.  The environment
+ * properties are injected into the script's copy of {@literal net.ocheyedan.ply.Env}, calls to {@link System#exit(int)}
+ * from the script are captured as its exit code and its output is handled as if it had been read from a forked process.
+ * Capturing {@link System#exit(int)} requires installing a {@link SecurityManager}; it is installed only while a
+ * script runs and scripts are forked if another security manager is installed or the vm doesn't permit installing one.
+ * As the security manager is deprecated for removal (warned of on every installation as of java 17 and unsupported by
+ * default as of java 18) scripts are always forked on java 17 and later.
+ */
+@SuppressWarnings("removal")
+final class InProcessExec {
+
+    /**
+     * The information necessary to invoke a jar script in-process.
+     */
+    static final class Invocation {
+
+        final String classpath;
+
+        final String mainClass;
+
+        final String[] args;
+
+        Invocation(String classpath, String mainClass, String[] args) {
+            this.classpath = classpath;
+            this.mainClass = mainClass;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Thrown from {@link System#exit(int)} when called by an in-process script.
+     */
+    @SuppressWarnings("serial")
+    private static final class Exit extends SecurityException {
+        private Exit(int exitCode) {
+            super(String.format("System.exit(%d) called by in-process script.", exitCode));
+        }
+    }
+
+    /**
+     * Permits everything except calls to {@link System#exit(int)} from within the {@link #scriptGroup}.
+     */
+    private static final class ExitTrap extends SecurityManager {
+        @Override public void checkPermission(Permission perm) { }
+        @Override public void checkPermission(Permission perm, Object context) { }
+        @Override public void checkExit(int status) {
+            ThreadGroup scriptGroup = InProcessExec.scriptGroup;
+            if ((scriptGroup != null) && scriptGroup.parentOf(Thread.currentThread().getThreadGroup())) {
+                exitCode.compareAndSet(null, status);
+                throw new Exit(status);
+            }
+        }
+    }
+
+    /**
+     * Cache key of a script's class-loader.  The environment is part of the key as ply's utility classes cache
+     * the properties read from the environment.
+     */
+    private static final class Key {
+        private final String classpath;
+        private final Map<String, String> environment;
+        private Key(String classpath, Map<String, String> environment) {
+            this.classpath = classpath;
+            this.environment = environment;
+        }
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            Key key = (Key) o;
+            return (classpath.equals(key.classpath) && environment.equals(key.environment));
+        }
+        @Override public int hashCode() {
+            return (31 * classpath.hashCode()) + environment.hashCode();
+        }
+    }
+
+    /**
+     * Forwards each complete line to {@link OutputExt#printFromExec(String, Object...)}.  As that will itself print
+     * to {@link System#out} (which is this stream while a script is running) those writes are passed directly
+     * to the original stream.
+     */
+    private static final class ScriptOutputStream extends OutputStream {
+
+        private final PrintStream original;
+
+        private final String outputScriptName;
+
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+
+        private final ThreadLocal<Boolean> forwarding = new ThreadLocal<Boolean>();
+
+        private ScriptOutputStream(PrintStream original, String outputScriptName) {
+            this.original = original;
+            this.outputScriptName = outputScriptName;
+        }
+
+        @Override public synchronized void write(int b) throws IOException {
+            if (forwarding.get() != null) {
+                original.write(b);
+            } else if (b == '\n') {
+                forwardLine();
+            } else {
+                line.write(b);
+            }
+        }
+
+        @Override public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+            if (forwarding.get() != null) {
+                original.write(bytes, offset, length);
+                return;
+            }
+            for (int i = offset; i < (offset + length); i++) {
+                write(bytes[i]);
+            }
+        }
+
+        @Override public synchronized void flush() throws IOException {
+            original.flush();
+        }
+
+        private synchronized void forwardRemaining() {
+            if (line.size() > 0) {
+                forwardLine();
+            }
+            original.flush();
+        }
+
+        private void forwardLine() {
+            String printed = line.toString();
+            line.reset();
+            if (printed.endsWith("\r")) {
+                printed = printed.substring(0, printed.length() - 1);
+            }
+            forwarding.set(Boolean.TRUE);
+            try {
+                OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, printed);
+                Output.flush(); // the script's thread may not be the invoking thread
+            } finally {
+                forwarding.remove();
+            }
+        }
+    }
+
+    /**
+     * The maximum number of script class-loaders to cache.
+     */
+    private static final int MAX_CACHED_LOADERS = 16;
+
+    /**
+     * The cached script class-loaders, evicted loaders are closed (see {@link #close(ClassLoader)}).
+     */
+    @SuppressWarnings("serial")
+    private static final Map<Key, ClassLoader> loaders = new LinkedHashMap<Key, ClassLoader>(MAX_CACHED_LOADERS, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<Key, ClassLoader> eldest) {
+            if (size() > MAX_CACHED_LOADERS) {
+                close(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * The first java version whose vm warns on each installation of a {@link SecurityManager}.
+     */
+    private static final int SECURITY_MANAGER_DEPRECATED_VERSION = 17;
+
+    /**
+     * The thread-group of the currently running in-process script or null if none is running.
+     */
+    private static volatile ThreadGroup scriptGroup;
+
+    /**
+     * The exit code passed to {@link System#exit(int)} by the currently running in-process script, if any.
+     */
+    private static final AtomicReference<Integer> exitCode = new AtomicReference<Integer>();
+
+    /**
+     * Null until the first attempt at installing the {@link ExitTrap}, then whether the vm permits installing it.
+     */
+    private static Boolean exitTrapSupported;
+
+    /**
+     * @return false if this vm cannot capture {@link System#exit(int)} from in-process scripts (see
+     *         {@link #installExitTrap()}) and so all scripts must be forked
+     */
+    static synchronized boolean isSupported() {
+        if (exitTrapSupported == null) {
+            int version = getJavaVersion();
+            if ((version == -1) || (version >= SECURITY_MANAGER_DEPRECATED_VERSION)) {
+                Output.print("^dbug^ cannot capture System.exit within java %s, forking jar scripts.",
+                        System.getProperty("java.specification.version"));
+                exitTrapSupported = Boolean.FALSE;
+            }
+        }
+        return !Boolean.FALSE.equals(exitTrapSupported);
+    }
+
+    /**
+     * Invokes {@code invocation} within this process.
+     * @param invocation to invoke
+     * @param environment the properties to inject as the script's environment
+     * @param outputScriptName the name with which to prefix the script's output
+     * @return the exit code of the script or null if the script cannot be invoked in-process (in which case it
+     *         has not been invoked and should be forked).
+     */
+    static synchronized Integer invoke(Invocation invocation, Map<String, String> environment, String outputScriptName) {
+        if (!installExitTrap()) {
+            return null;
+        }
+        try {
+            return invokeTrapped(invocation, environment, outputScriptName);
+        } finally {
+            removeExitTrap();
+        }
+    }
+
+    private static Integer invokeTrapped(Invocation invocation, Map<String, String> environment,
+                                         String outputScriptName) {
+        ClassLoader loader = getLoader(invocation.classpath, environment);
+        final Method main;
+        try {
+            Class<?> env = loader.loadClass("net.ocheyedan.ply.Env");
+            env.getMethod("inject", Map.class).invoke(null, environment);
+            main = Class.forName(invocation.mainClass, false, loader).getMethod("main", String[].class);
+        } catch (ClassNotFoundException cnfe) {
+            Output.print("^dbug^ could not load ^b^%s^r^ in-process, forking instead.", cnfe.getMessage());
+            return null;
+        } catch (NoSuchMethodException nsme) {
+            Output.print("^dbug^ no main method in ^b^%s^r^, forking instead.", invocation.mainClass);
+            return null;
+        } catch (IllegalAccessException iae) {
+            throw new AssertionError(iae);
+        } catch (InvocationTargetException ite) {
+            throw new AssertionError(ite.getCause());
+        }
+
+        final String[] args = invocation.args;
+        final AtomicReference<Throwable> uncaught = new AtomicReference<Throwable>();
+        ThreadGroup group = new ThreadGroup(outputScriptName);
+        Thread mainThread = new Thread(group, new Runnable() {
+            @Override public void run() {
+                try {
+                    main.invoke(null, (Object) args);
+                } catch (IllegalAccessException iae) {
+                    uncaught.set(iae);
+                } catch (InvocationTargetException ite) {
+                    uncaught.set(ite.getCause());
+                }
+            }
+        }, "main");
+        mainThread.setContextClassLoader(loader);
+
+        PrintStream originalOut = System.out;
+        PrintStream originalErr = System.err;
+        ScriptOutputStream scriptOutput = new ScriptOutputStream(originalOut, outputScriptName);
+        PrintStream scriptPrintStream = new PrintStream(scriptOutput, true);
+        exitCode.set(null);
+        scriptGroup = group;
+        System.setOut(scriptPrintStream);
+        System.setErr(scriptPrintStream);
+        try {
+            mainThread.start();
+            mainThread.join();
+            awaitNonDaemonThreads(group);
+            Integer exited = exitCode.get();
+            if (exited != null) {
+                return exited;
+            }
+            Throwable throwable = uncaught.get();
+            if (throwable != null) {
+                throwable.printStackTrace();
+                return 1;
+            }
+            return 0;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return 1;
+        } finally {
+            scriptPrintStream.flush();
+            scriptOutput.forwardRemaining();
+            System.setOut(originalOut);
+            System.setErr(originalErr);
+            scriptGroup = null;
+        }
+    }
+
+    /**
+     * Mirrors the VM's behavior of not exiting until all non-daemon threads have completed (unless
+     * {@link System#exit(int)} has been called).
+     * @param group of the script's threads
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void awaitNonDaemonThreads(ThreadGroup group) throws InterruptedException {
+        while (exitCode.get() == null) {
+            Thread[] threads = new Thread[group.activeCount() + 1];
+            int count = group.enumerate(threads, true);
+            Thread running = null;
+            for (int i = 0; i < count; i++) {
+                if (!threads[i].isDaemon() && threads[i].isAlive()) {
+                    running = threads[i];
+                    break;
+                }
+            }
+            if (running == null) {
+                return;
+            }
+            running.join(100);
+        }
+    }
+
+    private static ClassLoader getLoader(String classpath, Map<String, String> environment) {
+        Key key = new Key(classpath, environment);
+        ClassLoader loader = loaders.get(key);
+        if (loader == null) {
+            loader = new URLClassLoader(toUrls(classpath), ClassLoader.getSystemClassLoader().getParent());
+            loaders.put(key, loader);
+        }
+        return loader;
+    }
+
+    private static URL[] toUrls(String classpath) {
+        String[] paths = classpath.split(File.pathSeparator);
+        URL[] urls = new URL[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            try {
+                urls[i] = new File(paths[i]).toURI().toURL();
+            } catch (MalformedURLException murle) {
+                throw new AssertionError(murle);
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Closes {@code loader} (and so the jar files it has opened) if the vm's class-loaders are closeable (java 7+).
+     * @param loader to close
+     */
+    private static void close(ClassLoader loader) {
+        if (loader instanceof Closeable) {
+            try {
+                ((Closeable) loader).close();
+            } catch (IOException ioe) {
+                Output.print("^dbug^ could not close script class-loader: %s", ioe.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Installs the {@link ExitTrap} unless a security manager is already installed (which is left in place) or the vm
+     * does not permit installing one (or is of a version which warns on doing so).
+     * @return true if the {@link ExitTrap} was installed, in which case it must be removed via {@link #removeExitTrap()}
+     */
+    private static boolean installExitTrap() {
+        if (!isSupported()) {
+            return false;
+        }
+        if (System.getSecurityManager() != null) {
+            Output.print("^dbug^ a security manager is installed, forking jar scripts.");
+            return false;
+        }
+        try {
+            System.setSecurityManager(new ExitTrap());
+            exitTrapSupported = Boolean.TRUE;
+            return true;
+        } catch (UnsupportedOperationException uoe) {
+            Output.print("^dbug^ cannot capture System.exit within this vm, forking jar scripts.");
+            exitTrapSupported = Boolean.FALSE;
+        } catch (SecurityException se) {
+            Output.print("^dbug^ cannot capture System.exit within this vm, forking jar scripts.");
+            exitTrapSupported = Boolean.FALSE;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the {@link ExitTrap} (permitted as it permits everything) restoring the vm to having no security manager.
+     */
+    private static void removeExitTrap() {
+        System.setSecurityManager(null);
+    }
+
+    /**
+     * @return the major version of the running vm (i.e., 6 for {@literal 1.6} and 17 for {@literal 17}) or -1 if it
+     *         cannot be determined
+     */
+    private static int getJavaVersion() {
+        String version = System.getProperty("java.specification.version", "");
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+        int index = version.indexOf('.');
+        if (index != -1) {
+            version = version.substring(0, index);
+        }
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    private InProcessExec() { }
+
+}
@@ -0,0 +1,209 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.dep.Deps;
+import net.ocheyedan.ply.dep.RepositoryAtom;
+import net.ocheyedan.ply.props.*;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static net.ocheyedan.ply.props.PropFile.Prop;
+
+/**
+ * Caches the classpath and {@literal Main-Class} computed by {@link JarExec} for a jar script so that subsequent
+ * launches of the script need neither inspect the jar nor resolve its dependencies.  Entries are keyed by the jar's
+ * canonical path, size and last modified time together with the scope and the repository configuration of the
+ * launch.  Entries are held in memory (for repeated launches within one ply invocation) and stored within the local
+ * repository, in directory {@literal .resolved-classpaths}, (for launches across ply invocations).  As with the
+ * {@literal ResolvedGraphCache}, each entry records the size and last modified time of the files within the local
+ * repository from which its classpath was resolved (see {@link Deps#getLocalRepositoryFiles}); if any has changed (or
+ * no longer exists) the entry is stale and is ignored.
+ */
+final class JarClasspathCache {
+
+    private static final String CACHE_DIR = ".resolved-classpaths";
+
+    /**
+     * Value of the classpath property for jars without a dependencies file (whose classpath is therefore null).
+     */
+    private static final String NO_CLASSPATH = "";
+
+    /**
+     * A cached classpath and {@literal Main-Class} (either may be null).
+     */
+    static final class Entry {
+
+        final String classpath;
+
+        final String mainClass;
+
+        /**
+         * The stamp (see {@link #stamp(File)}) of each file from which {@link #classpath} was resolved keyed by the
+         * file's path.
+         */
+        final Map<String, String> inputs;
+
+        Entry(String classpath, String mainClass, Map<String, String> inputs) {
+            this.classpath = classpath;
+            this.mainClass = mainClass;
+            this.inputs = inputs;
+        }
+
+    }
+
+    private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * @param jarPath of the jar script
+     * @param scope of the execution
+     * @param projectConfigDir the ply configuration directory from which to resolve properties
+     * @return the key for the classpath of {@code jarPath} launched in {@code scope}
+     */
+    static String getKey(String jarPath, Scope scope, File projectConfigDir) {
+        File jar = new File(jarPath);
+        StringBuilder buffer = new StringBuilder();
+        buffer.append(FileUtil.getCanonicalPath(jar)).append('\n');
+        buffer.append(jar.length()).append(':').append(jar.lastModified()).append('\n');
+        buffer.append(scope.name).append('\n');
+        buffer.append(getLocalRepo(scope, projectConfigDir)).append('\n');
+        for (Prop repository : Props.get(Context.named("repositories"), scope, projectConfigDir).props()) {
+            buffer.append(repository.name).append('=').append(repository.value()).append('\n');
+        }
+        return BitUtil.sha1Hex(buffer.toString());
+    }
+
+    /**
+     * @param key of the entry (see {@link #getKey(String, Scope, File)})
+     * @param scope of the execution
+     * @param projectConfigDir the ply configuration directory from which to resolve properties
+     * @return the cached entry for {@code key} or null if there is none or if it is stale
+     */
+    static Entry get(String key, Scope scope, File projectConfigDir) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = load(getCacheFile(key, scope, projectConfigDir));
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        if ((entry != null) && !isCurrent(entry)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @param key of the entry (see {@link #getKey(String, Scope, File)})
+     * @param scope of the execution
+     * @param projectConfigDir the ply configuration directory from which to resolve properties
+     * @param classpath the computed classpath, may be null
+     * @param mainClass the jar's {@literal Main-Class}, may be null
+     * @param inputs the files from which {@code classpath} was resolved
+     */
+    static void put(String key, Scope scope, File projectConfigDir, String classpath, String mainClass,
+                    List<File> inputs) {
+        Map<String, String> stamps = new LinkedHashMap<String, String>(inputs.size());
+        for (File input : inputs) {
+            stamps.put(input.getPath(), stamp(input));
+        }
+        entries.put(key, new Entry(classpath, mainClass, stamps));
+        File cacheFile = getCacheFile(key, scope, projectConfigDir);
+        if (cacheFile == null) {
+            return;
+        }
+        PropFile stored = new PropFile(Context.named("classpath"), PropFile.Loc.Local);
+        stored.add("classpath", (classpath == null ? NO_CLASSPATH : classpath));
+        stored.add("mainClass", (mainClass == null ? "" : mainClass));
+        StringBuilder storedInputs = new StringBuilder();
+        for (Map.Entry<String, String> stamp : stamps.entrySet()) {
+            if (storedInputs.length() > 0) {
+                storedInputs.append(File.pathSeparator);
+            }
+            storedInputs.append(stamp.getValue()).append(',').append(stamp.getKey());
+        }
+        stored.add("inputs", storedInputs.toString());
+        // store to a temp file and rename so that concurrent ply invocations never read a partially written entry
+        File temp = new File(cacheFile.getPath() + "." + System.nanoTime() + ".tmp");
+        if (PropFiles.store(stored, temp.getPath(), true)
+                && !temp.renameTo(cacheFile) && (!cacheFile.delete() || !temp.renameTo(cacheFile))) {
+            temp.delete();
+        }
+    }
+
+    private static Entry load(File cacheFile) {
+        if ((cacheFile == null) || !cacheFile.exists()) {
+            return null;
+        }
+        PropFile stored = PropFiles.load(cacheFile.getPath(), false, true);
+        if ((stored == null) || !stored.contains("classpath") || !stored.contains("inputs")) {
+            return null;
+        }
+        String classpath = stored.get("classpath").value();
+        String mainClass = stored.get("mainClass").value();
+        Map<String, String> inputs = new LinkedHashMap<String, String>();
+        for (String input : stored.get("inputs").value().split(File.pathSeparator)) {
+            if (input.isEmpty()) {
+                continue;
+            }
+            // stamp (length,lastModified) followed by the path
+            int pathIndex = input.indexOf(',', input.indexOf(',') + 1);
+            if (pathIndex == -1) {
+                return null; // corrupt
+            }
+            inputs.put(input.substring(pathIndex + 1), input.substring(0, pathIndex));
+        }
+        return new Entry((NO_CLASSPATH.equals(classpath) ? null : classpath), (mainClass.isEmpty() ? null : mainClass),
+                         inputs);
+    }
+
+    /**
+     * @return true if none of the inputs of {@code entry} has changed since {@code entry} was cached
+     */
+    private static boolean isCurrent(Entry entry) {
+        for (Map.Entry<String, String> input : entry.inputs.entrySet()) {
+            if (!input.getValue().equals(stamp(new File(input.getKey())))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the size and last modified time of {@code file} as {@literal length,lastModified} (with a length of
+     *         -1 if {@code file} does not exist)
+     */
+    private static String stamp(File file) {
+        return (file.exists() ? file.length() : -1L) + "," + file.lastModified();
+    }
+
+    /**
+     * @return the file in which to store the entry for {@code key} or null if the local repository is not a valid
+     *         directory
+     */
+    private static File getCacheFile(String key, Scope scope, File projectConfigDir) {
+        RepositoryAtom localRepo = RepositoryAtom.parse(getLocalRepo(scope, projectConfigDir));
+        if (localRepo == null) {
+            return null;
+        }
+        File directory = FileUtil.fromParts(Deps.getDirectoryPathForRepo(localRepo), CACHE_DIR);
+        if (!directory.exists() && !directory.mkdirs()) {
+            return null;
+        }
+        return new File(directory, key + ".properties");
+    }
+
+    private static String getLocalRepo(Scope scope, File projectConfigDir) {
+        String localRepo = Props.get("localRepo", Context.named("depmngr"), scope, projectConfigDir).value();
+        return (localRepo.isEmpty() ? null : localRepo);
+    }
+
+    private JarClasspathCache() { }
+
+}
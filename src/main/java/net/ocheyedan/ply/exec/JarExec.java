@@ -1,6 +1,8 @@
 package net.ocheyedan.ply.exec;
 
+import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.PlyUtil;
 import net.ocheyedan.ply.SystemExit;
 import net.ocheyedan.ply.dep.*;
 import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
@@ -68,10 +70,112 @@ public final class JarExec {
         return execution.with(newCmdArray);
     }
 
+    /**
+     * Determines whether {@code execution} can be invoked within ply's own process and if so how.  Only scripts
+     * installed within the {@link PlyUtil#SYSTEM_SCRIPTS_DIR} are trusted to run in-process and then only if the
+     * {@literal scripts-jar} property {@literal fork.<jar-name>} (or {@literal fork.default} if there is none for the
+     * script) is {@literal false}.  Note, the jvm options (other than the classpath and main-class) are not applicable
+     * to in-process invocations; as such, scripts whose maximum heap size (the {@literal -Xmx} option) exceeds the
+     * heap available within ply's own vm are forked.
+     * @param execution to invoke
+     * @param configDirectory the ply configuration directory from which to resolve properties
+     * @return the in-process invocation for {@code execution} or null if {@code execution} should be forked
+     */
+    static InProcessExec.Invocation createInProcessInvocation(Execution execution, File configDirectory) {
+        String jarPath = execution.executionArgs[0];
+        File jarDirectory = new File(jarPath).getParentFile();
+        if ((jarDirectory == null) || !FileUtil.getCanonicalPath(jarDirectory).equals(
+                FileUtil.getCanonicalPath(PlyUtil.SYSTEM_SCRIPTS_DIR))) {
+            return null;
+        }
+        if (!"false".equalsIgnoreCase(getJarScriptProperty("fork", configDirectory, execution))) {
+            return null;
+        }
+        String classpath, mainClass;
+        AtomicBoolean staticClasspath = new AtomicBoolean(false);
+        String[] options = getJarScriptOptions(configDirectory, execution, staticClasspath);
+        long maxHeap = getMaxHeap(options);
+        Runtime runtime = Runtime.getRuntime();
+        if (maxHeap > (runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory()))) {
+            Output.print("^dbug^ heap of ^b^%s^r^ exceeds that available in-process, forking.", execution.name);
+            return null;
+        }
+        if (staticClasspath.get()) {
+            int index = 0;
+            while ((index < options.length) && !"-cp".equals(options[index]) && !"-classpath".equals(options[index])) {
+                index++;
+            }
+            if ((index + 2) != (options.length - 1)) {
+                return null; // options other than the main-class after the classpath, must fork
+            }
+            classpath = options[index + 1];
+            mainClass = options[index + 2];
+        } else {
+            AtomicReference<String> manifestMainClass = new AtomicReference<String>();
+            classpath = getClasspathEntries(jarPath, execution.script.scope, manifestMainClass, configDirectory);
+            mainClass = manifestMainClass.get();
+            if (classpath == null) {
+                classpath = jarPath;
+            }
+        }
+        if (mainClass == null) {
+            return null;
+        }
+        String[] args = new String[execution.executionArgs.length - 1];
+        System.arraycopy(execution.executionArgs, 1, args, 0, args.length);
+        return new InProcessExec.Invocation(classpath, mainClass, args);
+    }
+
+    /**
+     * @param options the jvm options of a jar script
+     * @return the maximum heap size in bytes given by the last {@literal -Xmx} option within {@code options} or -1 if
+     *         there is none (or it is malformed)
+     */
+    static long getMaxHeap(String[] options) {
+        for (int i = options.length - 1; i >= 0; i--) {
+            if (!options[i].startsWith("-Xmx") || (options[i].length() == 4)) {
+                continue;
+            }
+            String size = options[i].substring(4);
+            long multiplier = 1L;
+            switch (Character.toLowerCase(size.charAt(size.length() - 1))) {
+                case 'k': multiplier = 1024L; break;
+                case 'm': multiplier = 1024L * 1024L; break;
+                case 'g': multiplier = 1024L * 1024L * 1024L; break;
+            }
+            if (multiplier != 1L) {
+                size = size.substring(0, size.length() - 1);
+            }
+            try {
+                return (Long.parseLong(size) * multiplier);
+            } catch (NumberFormatException nfe) {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Determines whether the properties for {@code execution} should be handed off within a file (see
+     * {@link PropsExt#getPropsForHandoff(File, Scope)}) rather than as environment variables.  This is the case
+     * if the {@literal scripts-jar} property {@literal handoff.<jar-name>} (or {@literal handoff.default} if there is
+     * none for the script) is {@literal true}.
+     * @param execution to invoke
+     * @param configDirectory the ply configuration directory from which to resolve properties
+     * @return true if {@code execution} is a jar script whose properties should be handed off within a file
+     */
+    static boolean isHandoff(Execution execution, File configDirectory) {
+        return (execution.executionArgs[0].endsWith(".jar")
+                && "true".equalsIgnoreCase(getJarScriptProperty("handoff", configDirectory, execution)));
+    }
+
     /**
      * Constructs a classpath element for {@code jarPath} (including it itself, {@code jarPath}, on the path) by
      * analyzing the jar at {@code jarPath} for a {@literal META-INF/ply/dependencies.properties} file within it.
      * If one is found, its values are resolved and returned as the classpath (with the appropriate path separator),
+     * otherwise null is returned.
+     * The result is cached (see {@link JarClasspathCache}) so that subsequent launches of an unchanged jar with the
+     * same scope and repositories neither inspect the jar nor resolve its dependencies.
      * @param jarPath of the jar to get classpath entries
      * @param scope of the execution
      * @param mainClass will be set with the 'Main-Class' value within the jar, if it is present
@@ -80,6 +184,24 @@ public final class JarExec {
      */
     private static String getClasspathEntries(String jarPath, Scope scope, AtomicReference<String> mainClass,
                                               File projectConfigDir) {
+        String key = JarClasspathCache.getKey(jarPath, scope, projectConfigDir);
+        JarClasspathCache.Entry cached = JarClasspathCache.get(key, scope, projectConfigDir);
+        if (cached != null) {
+            mainClass.set(cached.mainClass);
+            return cached.classpath;
+        }
+        List<File> inputs = new ArrayList<File>();
+        String classpath = resolveClasspathEntries(jarPath, scope, mainClass, inputs, projectConfigDir);
+        JarClasspathCache.put(key, scope, projectConfigDir, classpath, mainClass.get(), inputs);
+        return classpath;
+    }
+
+    /**
+     * @param inputs will be populated with the files within the local repository from which the classpath is resolved
+     * @see #getClasspathEntries(String, Scope, AtomicReference, File)
+     */
+    private static String resolveClasspathEntries(String jarPath, Scope scope, AtomicReference<String> mainClass,
+                                                  List<File> inputs, File projectConfigDir) {
         JarFile jarFile = null;
         try {
             jarFile = new JarFile(jarPath, false);
@@ -101,6 +223,7 @@ public final class JarExec {
             List<DependencyAtom> deps = Deps.parse(dependencies);
             RepositoryRegistry repos = createRepositoryList(projectConfigDir, scope);
             DirectedAcyclicGraph<Dep> depGraph = Deps.getDependencyGraph(deps, repos);
+            inputs.addAll(Deps.getLocalRepositoryFiles(depGraph, repos));
             PropFile resolvedDependencies = Deps.convertToResolvedPropertiesFile(depGraph);
             return Deps.getClasspath(resolvedDependencies, jarPath);
         } catch (IOException ioe) {
@@ -152,20 +275,38 @@ public final class JarExec {
      * @return the split jvm options for {@code script}
      */
     private static String[] getJarScriptOptions(File configDirectory, Execution execution, AtomicBoolean staticClasspath) {
+        String options = getJarScriptProperty("options", configDirectory, execution);
+        if (options.contains("-cp") || options.contains("-classpath")) {
+            staticClasspath.set(true);
+        }
+        List<String> split = new ArrayList<String>();
+        for (String option : options.split(" ")) {
+            if (!option.isEmpty()) {
+                split.add(option);
+            }
+        }
+        return split.toArray(new String[split.size()]);
+    }
+
+    /**
+     * @param prefix of the property name
+     * @param configDirectory the ply configuration directory from which to resolve properties
+     * @param execution for which to retrieve the property
+     * @return the {@literal scripts-jar} property named {@code prefix}.{@literal jar-name} for {@code execution} or
+     *         the property named {@code prefix}.{@literal default} if the former is not specified
+     */
+    private static String getJarScriptProperty(String prefix, File configDirectory, Execution execution) {
         String executable = execution.executionArgs[0];
         // strip the resolved path (just use the jar name)
         int index = executable.lastIndexOf(File.separator);
         if (index != -1) {
             executable = executable.substring(index + 1);
         }
-        String options = Props.get("options." + executable, Context.named("scripts-jar"), execution.script.scope, configDirectory).value();
-        if (options.isEmpty()) {
-            options = Props.get("options.default", Context.named("scripts-jar"), execution.script.scope, configDirectory).value();
-        }
-        if (options.contains("-cp") || options.contains("-classpath")) {
-            staticClasspath.set(true);
+        String value = Props.get(prefix + "." + executable, Context.named("scripts-jar"), execution.script.scope, configDirectory).value();
+        if (value.isEmpty()) {
+            value = Props.get(prefix + ".default", Context.named("scripts-jar"), execution.script.scope, configDirectory).value();
         }
-        return options.split(" ");
+        return value;
     }
 
     private JarExec() { }
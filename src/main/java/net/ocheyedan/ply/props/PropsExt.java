@@ -1,8 +1,10 @@
 package net.ocheyedan.ply.props;
 
 import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -23,6 +25,11 @@ public final class PropsExt {
      */
     private static final Map<String, Map<String, String>> RESOLVED_ENV_CACHE = new HashMap<String, Map<String, String>>();
 
+    /**
+     * A cache of project-path/scope to the environment properties pointing to the written handoff file.
+     */
+    private static final Map<String, Map<String, String>> RESOLVED_HANDOFF_CACHE = new HashMap<String, Map<String, String>>();
+
     /**
      * From the resolved properties, creates a mapping appropriate for exporting to a process's system environment
      * variables.  The mapping returned by this method will only include the contexts' {@code scope} (and the default scope's
@@ -34,7 +41,7 @@ public final class PropsExt {
      * @return a mapping of env-property-name to property value (using {@code scope})
      */
     @SuppressWarnings("unchecked")
-    public static Map<String, String> getPropsForEnv(File configDirectory, Scope scope) {
+    public static synchronized Map<String, String> getPropsForEnv(File configDirectory, Scope scope) {
         String cacheKey = FileUtil.getCanonicalPath(configDirectory) + "-" + scope.name;
         if (RESOLVED_ENV_CACHE.containsKey(cacheKey)) {
             return RESOLVED_ENV_CACHE.get(cacheKey);
@@ -48,7 +55,57 @@ public final class PropsExt {
                 envProps.put(envKey, prop.value());
             }
         }
-        // now add some synthetic properties like the local ply directory location.
+        addSyntheticProps(envProps, configDirectory, scope);
+
+        RESOLVED_ENV_CACHE.put(cacheKey, envProps);
+        return envProps;
+    }
+
+    /**
+     * Like {@link #getPropsForEnv(File, Scope)} except that the resolved properties are written into a single
+     * file (see {@link PropsHandoff}) whose path is exported as the only non-synthetic property.  This keeps the
+     * environment of forked scripts small but is only understood by scripts reading their properties via
+     * {@link Props}; see the {@literal scripts-jar} property {@literal handoff.default}.  The file is restricted to
+     * its owner before the properties are written into it.
+     * @param configDirectory configuration directory associated for the project.
+     * @param scope of the properties to include in the handoff file
+     * @return a mapping of env-property-name to property value (using {@code scope}) or null if the handoff file could
+     *         not be written
+     */
+    public static synchronized Map<String, String> getPropsForHandoff(File configDirectory, Scope scope) {
+        String cacheKey = FileUtil.getCanonicalPath(configDirectory) + "-" + scope.name;
+        Map<String, String> envProps = RESOLVED_HANDOFF_CACHE.get(cacheKey);
+        if ((envProps != null) && new File(envProps.get(PropsHandoff.ENV_NAME)).exists()) {
+            return envProps;
+        }
+        File handoff;
+        try {
+            handoff = File.createTempFile("ply-props-", ".bin");
+            handoff.deleteOnExit();
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return null;
+        }
+        // restrict to the owner before writing as the properties may contain secrets
+        if (!handoff.setReadable(false, false) || !handoff.setReadable(true, true)
+                || !handoff.setWritable(false, false) || !handoff.setWritable(true, true)) {
+            Output.print("^dbug^ could not restrict handoff file ^b^%s^r^ to its owner.", handoff.getPath());
+            handoff.delete();
+            return null;
+        }
+        if (!PropsHandoff.write(Props.get(scope, configDirectory), handoff)) {
+            handoff.delete();
+            return null;
+        }
+        envProps = new HashMap<String, String>(8, 1.0f);
+        envProps.put(PropsHandoff.ENV_NAME, handoff.getPath());
+        addSyntheticProps(envProps, configDirectory, scope);
+        RESOLVED_HANDOFF_CACHE.put(cacheKey, envProps);
+        return envProps;
+    }
+
+    private static void addSyntheticProps(Map<String, String> envProps, File configDirectory, Scope scope) {
+        // add some synthetic properties like the local ply directory location.
         envProps.put("ply$ply.project.dir",
                 FileUtil.getCanonicalPath(FileUtil.fromParts(configDirectory.getPath(), "..")));
         envProps.put("ply$ply.java", System.getProperty("ply.java"));
@@ -59,9 +116,40 @@ public final class PropsExt {
         envProps.put("ply$ply.scope", scope.name);
         // finally, add a property to signify that the script is being invoked via ply
         envProps.put("ply$ply.invoker", "ply");
+    }
 
-        RESOLVED_ENV_CACHE.put(cacheKey, envProps);
-        return envProps;
+    /**
+     * @return true if the cached properties are no longer valid; i.e., a loaded configuration directory has changed
+     *         since being loaded or ad-hoc properties have been applied (as these are universal and so affect
+     *         every cached property chain).
+     */
+    public static boolean isStale() {
+        return (Loader.isStale() || hasAdHocProps());
+    }
+
+    /**
+     * Clears all cached properties (including ad-hoc properties) so that they will be re-read upon next access.
+     */
+    public static synchronized void invalidate() {
+        Loader.invalidate();
+        Filter.invalidate();
+        AdHoc.adHocProps.clear();
+        RESOLVED_ENV_CACHE.clear();
+        for (Map<String, String> envProps : RESOLVED_HANDOFF_CACHE.values()) {
+            new File(envProps.get(PropsHandoff.ENV_NAME)).delete();
+        }
+        RESOLVED_HANDOFF_CACHE.clear();
+    }
+
+    private static boolean hasAdHocProps() {
+        for (Map<Context, PropFile> contexts : AdHoc.adHocProps.values()) {
+            for (PropFile propFile : contexts.values()) {
+                if (propFile.size() > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     private PropsExt() { }
@@ -2,6 +2,10 @@ package net.ocheyedan.ply.submodules;
 
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.dep.DependencyAtom;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Graphs;
+import net.ocheyedan.ply.graph.Vertex;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.PropFileChain;
 import net.ocheyedan.ply.props.Props;
@@ -27,7 +31,7 @@ public final class Submodules {
      * If submoduleA depends upon submoduleB then submoduleB goes first;
      * else if submoduleA is child of submoduleB then submoduleB goes first;
      * else if submoduleA is a child but submoduleB isn't then submoduleB goes first;
-     * else submoduleA is equal to submoduleB
+     * else submoduleA and submoduleB are in the order in which they were declared.
      *
      * Note, for each submodule found, this method recurs and collects any of its submodules as well.
      * Any submodule whose {@link Prop#value} is equal to {@literal exclude} is ignored and not included in the returned
@@ -36,13 +40,48 @@ public final class Submodules {
      * @return all {@link Submodule} based on {@code localConfigDir} mapped to their own {@link Submodule} objects.
      */
     public static List<Submodule> getSubmodules(File configDirectory) {
-        Prop submodulesScopeProp = Props.get("submodules.scope", Context.named("project"), Props.getScope(), configDirectory);
-        Scope submodulesScope = (submodulesScopeProp == null ? Scope.Default : Scope.named(submodulesScopeProp.value()));
-        Map<String, Submodule> submodules = new HashMap<String, Submodule>();
+        Scope submodulesScope = getSubmodulesScope(configDirectory);
+        Map<String, Submodule> submodules = new LinkedHashMap<String, Submodule>();
         getSubmodules(configDirectory, submodulesScope, "", submodules);
         return sortSubmodules(submodules, configDirectory, submodulesScope);
     }
 
+    /**
+     * Creates a graph of {@code submodules} where an edge from submoduleA to submoduleB indicates that submoduleA
+     * depends upon submoduleB.  The vertices are added in the order of {@code submodules}.
+     * @param configDirectory the configuration directory of the project from which the {@code submodules} originated
+     * @param submodules to graph, as returned by {@link #getSubmodules(java.io.File)}
+     * @return the dependency graph of {@code submodules}
+     * @throws Graph.CycleException if the submodules' dependencies are circular
+     */
+    public static DirectedAcyclicGraph<Submodule> getSubmoduleGraph(File configDirectory, List<Submodule> submodules)
+            throws Graph.CycleException {
+        Map<String, Submodule> submodulesByDepName = new HashMap<String, Submodule>(submodules.size());
+        DirectedAcyclicGraph<Submodule> graph = new DirectedAcyclicGraph<Submodule>();
+        for (Submodule submodule : submodules) {
+            submodulesByDepName.put(submodule.dependencyName, submodule);
+            graph.addVertex(submodule);
+        }
+        Map<Submodule, Set<String>> submoduleDepMap = getDependencies(submodulesByDepName, configDirectory,
+                                                                      getSubmodulesScope(configDirectory));
+        for (Submodule submodule : submodules) {
+            Vertex<Submodule> vertex = graph.getVertex(submodule);
+            for (String dep : submoduleDepMap.get(submodule)) {
+                graph.addEdge(vertex, graph.getVertex(submodulesByDepName.get(dep)));
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * @param configDirectory location from which to retrieve submodules
+     * @return the scope from which to retrieve submodules
+     */
+    private static Scope getSubmodulesScope(File configDirectory) {
+        Prop submodulesScopeProp = Props.get("submodules.scope", Context.named("project"), Props.getScope(), configDirectory);
+        return (submodulesScopeProp == null ? Scope.Default : Scope.named(submodulesScopeProp.value()));
+    }
+
     /**
      * Retrieves the {@literal submodules} from directory {@code configDirectory} for scope {@code scope}.
      * Note, for each submodule found, this method recurs and collects any of its submodules as well.
@@ -80,7 +119,7 @@ public final class Submodules {
      * If submoduleA depends upon submoduleB then submoduleB goes first;
      * else if submoduleA is child of submoduleB then submoduleB goes first;
      * else if submoduleA is a child but submoduleB isn't then submoduleB goes first;
-     * else submoduleA is equal to submoduleB
+     * else submoduleA and submoduleB are in the order in which they were declared.
 
      * @param submodules which to sort; {@link Submodule} objects mapped by their dependency name.
      * @param configDirectory the configuration directory of the project from which the {@code submodules} originated
@@ -91,70 +130,67 @@ public final class Submodules {
         if ((submodules == null) || submodules.isEmpty()) {
             return Collections.emptyList();
         }
-        List<Submodule> orderedSubmodules = new ArrayList<Submodule>();
-        final Map<Submodule, Set<String>> submoduleDepMap = new HashMap<Submodule, Set<String>>();
-        for (String submoduleDepName : submodules.keySet()) {
-            Submodule submodule = submodules.get(submoduleDepName);
-            orderedSubmodules.add(submodule);
-            File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(configDirectory), "..", "..",
-                                                         submodule.name, ".ply", "config");
-            PropFileChain depProps = Props.get(Context.named("dependencies"), scope, submoduleConfigDir);
-            Set<String> deps = convertDeps(depProps, submodules);
-            submoduleDepMap.put(submodule, deps);
+        // parents before their children and top-level before nested submodules, otherwise in declaration order
+        List<Submodule> orderedSubmodules = new ArrayList<Submodule>(submodules.values());
+        Collections.sort(orderedSubmodules, new Comparator<Submodule>() {
+            @Override public int compare(Submodule submoduleA, Submodule submoduleB) {
+                int depthA = getDepth(submoduleA), depthB = getDepth(submoduleB);
+                return (depthA < depthB ? -1 : (depthA == depthB ? 0 : 1));
+            }
+        });
+        // then dependencies before their dependents
+        Map<Submodule, Set<String>> submoduleDepMap = getDependencies(submodules, configDirectory, scope);
+        DirectedAcyclicGraph<Submodule> graph = new DirectedAcyclicGraph<Submodule>();
+        for (Submodule submodule : orderedSubmodules) {
+            graph.addVertex(submodule);
         }
-        // if submoduleA depends upon submoduleB then submoduleB goes first
-        // if submoduleA is child of submoduleB then submoduleB goes first
-        // if submoduleA is a child but submoduleB isn't then submoduleB goes first
-        Comparator<Submodule> comparator = new Comparator<Submodule>() {
-            @Override public int compare(final Submodule submoduleA, Submodule submoduleB) {
-                if (submoduleA.name.equals(submoduleB.name)) {
-                    return 0;
+        for (Submodule submodule : orderedSubmodules) {
+            Vertex<Submodule> vertex = graph.getVertex(submodule);
+            for (String dep : submoduleDepMap.get(submodule)) {
+                try {
+                    graph.addEdge(vertex, graph.getVertex(submodules.get(dep)));
+                } catch (Graph.CycleException gce) {
+                    // circular dependencies are reported when the submodule graph is built, keep declaration order
                 }
-                if (dependsUpon(submoduleA, submoduleB, submodules, submoduleDepMap)) {
-                    return 1;
-                } else if (dependsUpon(submoduleB, submoduleA, submodules, submoduleDepMap)) {
-                    return -1;
-                }
-                if (submoduleA.name.contains(submoduleB.name)) {
-                    return 1;
-                } else if (submoduleB.name.contains(submoduleA.name)) {
-                    return -1;
-                }
-                if (submoduleA.name.contains(File.separator) && !submoduleB.name.contains(File.separator)) {
-                    return 1;
-                } else if (submoduleB.name.contains(File.separator) && !submoduleA.name.contains(File.separator)) {
-                    return -1;
-                }
-                return 0; // TODO - default to order specified by user
             }
-        };
-        Collections.sort(orderedSubmodules, comparator);
-        return orderedSubmodules;
+        }
+        List<Submodule> sortedSubmodules = new ArrayList<Submodule>(orderedSubmodules.size());
+        for (Vertex<Submodule> vertex : Graphs.reverseTopologicalSort(graph)) {
+            sortedSubmodules.add(vertex.getValue());
+        }
+        return sortedSubmodules;
     }
 
     /**
-     * @param submodule to see if it depends upon {@code dependencyToCheck}
-     * @param dependencyToCheck whether it is a dependency of {@code submodule}
-     * @param submodules a mapping of a submodules dependency name to the actual {@link Submodule} object
-     * @param submoduleDepMap a mapping of {@link Submodule} to its dependencies' names
-     * @return true if {@code submodule} depends upon {@code dependencyToCheck}
+     * @param submodule for which to determine the depth
+     * @return the number of parent submodules of {@code submodule}
      */
-    private static boolean dependsUpon(Submodule submodule, Submodule dependencyToCheck, Map<String, Submodule> submodules,
-                                       Map<Submodule, Set<String>> submoduleDepMap) {
-        Set<String> submoduleDeps = submoduleDepMap.get(submodule);
-        if (submoduleDeps == null) {
-            return false;
-        }
-        if (submoduleDeps.contains(dependencyToCheck.dependencyName)) {
-            return true;
+    private static int getDepth(Submodule submodule) {
+        int depth = 0;
+        for (int index = submodule.name.indexOf(File.separatorChar); index != -1;
+             index = submodule.name.indexOf(File.separatorChar, index + 1)) {
+            depth++;
         }
-        for (String dep : submoduleDeps) {
-            if (submodules.containsKey(dep) && dependsUpon(submodules.get(dep), dependencyToCheck,
-                                                           submodules, submoduleDepMap)) {
-                return true;
-            }
+        return depth;
+    }
+
+    /**
+     * @param submodules a mapping of a submodules dependency name to the actual {@link Submodule} object
+     * @param configDirectory the configuration directory of the project from which the {@code submodules} originated
+     * @param scope of the retrieved {@code submodules}
+     * @return a mapping of {@link Submodule} to the dependency names of those of its dependencies which are
+     *         themselves within {@code submodules}
+     */
+    private static Map<Submodule, Set<String>> getDependencies(Map<String, Submodule> submodules, File configDirectory,
+                                                               Scope scope) {
+        Map<Submodule, Set<String>> submoduleDepMap = new HashMap<Submodule, Set<String>>(submodules.size());
+        for (Submodule submodule : submodules.values()) {
+            File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(configDirectory), "..", "..",
+                                                         submodule.name, ".ply", "config");
+            PropFileChain depProps = Props.get(Context.named("dependencies"), scope, submoduleConfigDir);
+            submoduleDepMap.put(submodule, convertDeps(depProps, submodules));
         }
-        return false;
+        return submoduleDepMap;
     }
 
     private static String getSubmoduleResolvedDepName(File submoduleConfigDir, Scope scope) {
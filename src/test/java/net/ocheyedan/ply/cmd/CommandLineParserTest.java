@@ -172,6 +172,28 @@ public class CommandLineParserTest {
         assertEquals("compile", args.args.get(1));
         assertEquals("package", args.args.get(2));
         assertEquals(0, args.adHocProps.size());
+
+        rawArgs = new String[] { "-j", "4", "clean", "compile" };
+        args = CommandLineParser.parseArgs(Iter.sized(rawArgs));
+        assertEquals(2, args.args.size());
+        assertEquals("clean", args.args.get(0));
+        assertEquals("compile", args.args.get(1));
+        assertEquals(1, args.adHocProps.size());
+        assertEquals("ply.parallel=4", args.adHocProps.get(0));
+
+        rawArgs = new String[] { "clean", "-j8" };
+        args = CommandLineParser.parseArgs(Iter.sized(rawArgs));
+        assertEquals(1, args.args.size());
+        assertEquals("clean", args.args.get(0));
+        assertEquals(1, args.adHocProps.size());
+        assertEquals("ply.parallel=8", args.adHocProps.get(0));
+
+        rawArgs = new String[] { "-j", "clean" };
+        args = CommandLineParser.parseArgs(Iter.sized(rawArgs));
+        assertEquals(1, args.args.size());
+        assertEquals("clean", args.args.get(0));
+        assertEquals(1, args.adHocProps.size());
+        assertEquals("ply.parallel=" + Runtime.getRuntime().availableProcessors(), args.adHocProps.get(0));
     }
 
 }
@@ -0,0 +1,59 @@
+package net.ocheyedan.ply.daemon;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+public class FrameTest {
+
+    @Test
+    public void inAvailable() throws Exception {
+        PipedOutputStream client = new PipedOutputStream();
+        DataOutputStream frames = new DataOutputStream(new BufferedOutputStream(client));
+        final Frame.In in = new Frame.In(new DataInputStream(new PipedInputStream(client, 1024)));
+
+        // a partially written frame is not available (and reading it would block)
+        frames.writeByte(Frame.STDIN);
+        frames.flush();
+        assertEquals(0, in.available());
+
+        // nor does available block while a read is blocked
+        final CountDownLatch read = new CountDownLatch(1);
+        final byte[] bytes = new byte[2];
+        Thread reader = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    if (in.read(bytes, 0, 2) == 2) {
+                        read.countDown();
+                    }
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        Thread.sleep(100L);
+        assertEquals(0, in.available());
+
+        // written at once as the pipe refuses writes once the reading thread has completed
+        frames.writeInt(3);
+        frames.write(new byte[] { 'a', 'b', 'c' });
+        frames.writeByte(Frame.STDIN_CLOSED);
+        frames.flush();
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertEquals('a', bytes[0]);
+        assertEquals('b', bytes[1]);
+        assertEquals(1, in.available());
+        assertEquals('c', in.read());
+        assertEquals(0, in.available());
+        assertEquals(-1, in.read());
+        assertEquals(0, in.available());
+    }
+
+}
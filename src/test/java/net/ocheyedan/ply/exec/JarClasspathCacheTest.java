@@ -0,0 +1,129 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.props.Scope;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Tests for {@link JarClasspathCache}.
+ */
+public class JarClasspathCacheTest {
+
+    @Test
+    public void miss() throws IOException {
+        File base = createBase();
+        try {
+            File configDir = createConfigDir(base);
+            File jar = write(new File(base, "script.jar"), "jar");
+            String key = JarClasspathCache.getKey(jar.getPath(), Scope.Default, configDir);
+            assertNull(JarClasspathCache.get(key, Scope.Default, configDir));
+            // a changed jar is a different key
+            JarClasspathCache.put(key, Scope.Default, configDir, null, "net.Main", Collections.<File>emptyList());
+            write(jar, "jar-changed");
+            String changedKey = JarClasspathCache.getKey(jar.getPath(), Scope.Default, configDir);
+            assertFalse(key.equals(changedKey));
+            assertNull(JarClasspathCache.get(changedKey, Scope.Default, configDir));
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void hit() throws IOException {
+        File base = createBase();
+        try {
+            File configDir = createConfigDir(base);
+            File jar = write(new File(base, "script.jar"), "jar");
+            List<File> inputs = createInputs(base);
+            String classpath = inputs.get(0).getPath() + File.pathSeparator + jar.getPath();
+            String key = JarClasspathCache.getKey(jar.getPath(), Scope.Default, configDir);
+            JarClasspathCache.put(key, Scope.Default, configDir, classpath, "net.Main", inputs);
+
+            JarClasspathCache.Entry entry = JarClasspathCache.get(key, Scope.Default, configDir);
+            assertNotNull(entry);
+            assertEquals(classpath, entry.classpath);
+            assertEquals("net.Main", entry.mainClass);
+            // and is stored within the local repository for subsequent ply invocations
+            File[] stored = FileUtil.fromParts(base.getPath(), "repo", ".resolved-classpaths").listFiles();
+            assertNotNull(stored);
+            assertEquals(1, stored.length);
+            assertEquals(key + ".properties", stored[0].getName());
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    @Test
+    public void stale() throws IOException {
+        File base = createBase();
+        try {
+            File configDir = createConfigDir(base);
+            File jar = write(new File(base, "script.jar"), "jar");
+            List<File> inputs = createInputs(base);
+            String classpath = inputs.get(0).getPath() + File.pathSeparator + jar.getPath();
+            String key = JarClasspathCache.getKey(jar.getPath(), Scope.Default, configDir);
+
+            // a transitive dependencies.properties changed in place
+            JarClasspathCache.put(key, Scope.Default, configDir, classpath, "net.Main", inputs);
+            assertNotNull(JarClasspathCache.get(key, Scope.Default, configDir));
+            write(inputs.get(1), "dep:dep-b=2.0.1");
+            assertNull(JarClasspathCache.get(key, Scope.Default, configDir));
+
+            // an artifact changed in place (same size, different timestamp)
+            JarClasspathCache.put(key, Scope.Default, configDir, classpath, "net.Main", inputs);
+            assertNotNull(JarClasspathCache.get(key, Scope.Default, configDir));
+            assertTrue(inputs.get(0).setLastModified(inputs.get(0).lastModified() - 10000L));
+            assertNull(JarClasspathCache.get(key, Scope.Default, configDir));
+
+            // an artifact deleted
+            JarClasspathCache.put(key, Scope.Default, configDir, classpath, "net.Main", inputs);
+            assertNotNull(JarClasspathCache.get(key, Scope.Default, configDir));
+            assertTrue(inputs.get(0).delete());
+            assertNull(JarClasspathCache.get(key, Scope.Default, configDir));
+        } finally {
+            FileUtil.delete(base);
+        }
+    }
+
+    private static File createBase() {
+        File base = new File(System.getProperty("java.io.tmpdir"), "ply-jar-classpath-cache-" + System.nanoTime());
+        assertTrue(base.mkdirs());
+        return base;
+    }
+
+    private static File createConfigDir(File base) throws IOException {
+        File configDir = FileUtil.fromParts(base.getPath(), ".ply", "config");
+        write(new File(configDir, "depmngr.properties"), "localRepo=" + new File(base, "repo").getPath());
+        return configDir;
+    }
+
+    /**
+     * @return an artifact and its dependencies.properties within the local repository
+     */
+    private static List<File> createInputs(File base) throws IOException {
+        File dir = FileUtil.fromParts(base.getPath(), "repo", "dep", "dep-a", "1.0");
+        return Arrays.asList(write(new File(dir, "dep-a-1.0.jar"), "dep-a"),
+                             write(new File(dir, "dependencies.properties"), "dep:dep-b=1.0"));
+    }
+
+    private static File write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,26 @@
+package net.ocheyedan.ply.exec;
+
+import org.junit.Test;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Tests for {@link JarExec}.
+ */
+public class JarExecTest {
+
+    @Test
+    public void getMaxHeap() {
+        assertEquals(-1L, JarExec.getMaxHeap(new String[0]));
+        assertEquals(-1L, JarExec.getMaxHeap(new String[] { "-client", "-Xms32M" }));
+        assertEquals(-1L, JarExec.getMaxHeap(new String[] { "-Xmx" }));
+        assertEquals(-1L, JarExec.getMaxHeap(new String[] { "-XmxM" }));
+        assertEquals(2048L, JarExec.getMaxHeap(new String[] { "-Xmx2048" }));
+        assertEquals(64L * 1024L, JarExec.getMaxHeap(new String[] { "-Xmx64k" }));
+        assertEquals(32L * 1024L * 1024L, JarExec.getMaxHeap(new String[] { "-client", "-Xms32M", "-Xmx32M" }));
+        assertEquals(2L * 1024L * 1024L * 1024L, JarExec.getMaxHeap(new String[] { "-Xmx2G" }));
+        // the last option wins, as with the vm
+        assertEquals(64L * 1024L * 1024L, JarExec.getMaxHeap(new String[] { "-Xmx32M", "-cp", "a.jar", "-Xmx64m" }));
+    }
+
+}
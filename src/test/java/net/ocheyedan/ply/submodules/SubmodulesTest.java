@@ -1,11 +1,13 @@
 package net.ocheyedan.ply.submodules;
 
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Vertex;
 import org.junit.Test;
 
 import java.io.File;
 import java.util.List;
 
-import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.*;
 
 /**
  * User: blangel
@@ -28,4 +30,20 @@ public class SubmodulesTest {
 
     }
 
+    @Test
+    public void getSubmoduleGraph() {
+        File configDir = new File("./src/test/resources/dot-ply/config");
+        List<Submodule> submodules = Submodules.getSubmodules(configDir);
+        DirectedAcyclicGraph<Submodule> graph = Submodules.getSubmoduleGraph(configDir, submodules);
+        assertEquals(3, graph.getVertices().size());
+        Vertex<Submodule> child1 = graph.getVertex(submodules.get(0));
+        Vertex<Submodule> child2 = graph.getVertex(submodules.get(1));
+        Vertex<Submodule> child3 = graph.getVertex(submodules.get(2));
+        assertTrue(child1.isLeaf());
+        assertTrue(child2.hasEdgeTo(child1));
+        assertTrue(child3.hasEdgeTo(child2));
+        assertFalse(child3.hasEdgeTo(child1));
+        assertTrue(child3.isRoot());
+    }
+
 }